@@ -0,0 +1,39 @@
+package com.krielwus.webtracinganalysis.config;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+
+/**
+ * 并发预算配置。
+ * 开启 tracing.concurrency.lanes.enabled 时，将应用数据源包装为 LaneLimitedDataSource，
+ * 入库与分析两条通道分别限定可占用的连接数与等待时间。看板请求的并发另由 DashboardRequestLimitFilter 限制。
+ * 请求线程是否使用虚拟线程由 spring.threads.virtual.enabled 控制（需 JDK 21+）。
+ */
+@Configuration
+public class ConcurrencyConfig {
+
+    @Bean
+    public static BeanPostProcessor laneLimitedDataSourcePostProcessor(Environment env) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+                if (!(bean instanceof DataSource) || bean instanceof LaneLimitedDataSource) return bean;
+                if (!env.getProperty("tracing.concurrency.lanes.enabled", Boolean.class, true)) return bean;
+                int poolSize = env.getProperty("spring.datasource.hikari.maximum-pool-size", Integer.class, 10);
+                int ingest = env.getProperty("tracing.concurrency.lanes.ingestConnections", Integer.class,
+                        Math.max(1, poolSize / 4));
+                int analytics = env.getProperty("tracing.concurrency.lanes.analyticsConnections", Integer.class,
+                        Math.max(1, poolSize - ingest));
+                long timeout = env.getProperty("tracing.concurrency.lanes.acquireTimeoutMs", Long.class, 30000L);
+                long requestTimeout = env.getProperty("tracing.concurrency.lanes.requestAcquireTimeoutMs", Long.class,
+                        2000L);
+                return new LaneLimitedDataSource((DataSource) bean, ingest, analytics, timeout, requestTimeout);
+            }
+        };
+    }
+}
@@ -0,0 +1,78 @@
+package com.krielwus.webtracinganalysis.config;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 看板查询并发上限。
+ * 统计类接口同时处理的请求数不超过 maxConcurrent，超出的请求最多排队 queueTimeoutMs，仍拿不到许可时返回 503 与 Retry-After。
+ * 慢查询堆积时占用的 Tomcat 工作线程因此有上界，/trackweb 上报始终有线程可用；
+ * 与 LaneLimitedDataSource 的分析通道配合，前者限制连接，本过滤器限制线程；放行的请求在取连接时按较短超时快速失败。
+ */
+public class DashboardRequestLimitFilter extends OncePerRequestFilter {
+
+    private final Semaphore permits;
+    private final int maxConcurrent;
+    private final long queueTimeoutMs;
+    private final String retryAfter;
+    private final AtomicLong rejected = new AtomicLong();
+
+    public DashboardRequestLimitFilter(int maxConcurrent, long queueTimeoutMs, int retryAfterSeconds) {
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.permits = new Semaphore(this.maxConcurrent, true);
+        this.queueTimeoutMs = Math.max(0, queueTimeoutMs);
+        this.retryAfter = String.valueOf(retryAfterSeconds);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return "OPTIONS".equals(request.getMethod());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(queueTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            rejected.incrementAndGet();
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            response.setHeader(HttpHeaders.RETRY_AFTER, retryAfter);
+            return;
+        }
+        LaneLimitedDataSource.markFailFast();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            LaneLimitedDataSource.clearFailFast();
+            permits.release();
+        }
+    }
+
+    /** 并发许可与拒绝计数 */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("maxConcurrent", maxConcurrent);
+        m.put("available", permits.availablePermits());
+        m.put("waiting", permits.getQueueLength());
+        m.put("queueTimeoutMs", queueTimeoutMs);
+        m.put("rejected", rejected.get());
+        return m;
+    }
+}
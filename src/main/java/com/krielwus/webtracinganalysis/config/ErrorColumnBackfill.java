@@ -0,0 +1,106 @@
+package com.krielwus.webtracinganalysis.config;
+
+import com.krielwus.webtracinganalysis.entity.ErrorSeverity;
+import com.krielwus.webtracinganalysis.repository.TracingEventRepository;
+import com.krielwus.webtracinganalysis.service.ErrorSeverityClassifier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 应用启动后在后台回填历史 ERROR 事件的结构化错误列（error_code/error_message/request_uri/error_level）
+ * 与错误等级（severity，由 ErrorSeverityClassifier 在 Java 侧计算）。
+ * 按主键区间分批 UPDATE，单批事务短小，不阻塞启动与上报写入；已回填或新写入的行不会被重复处理。
+ */
+@Component
+public class ErrorColumnBackfill implements CommandLineRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(ErrorColumnBackfill.class);
+
+    private final TracingEventRepository tracingEventRepository;
+    private final ErrorSeverityClassifier severityClassifier;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${tracing.errors.backfill.enabled:true}")
+    private boolean enabled;
+
+    /** 每批覆盖的主键区间大小 */
+    @Value("${tracing.errors.backfill.chunkSize:5000}")
+    private int chunkSize;
+
+    /** 批次间隔（毫秒），降低对线上库的压力 */
+    @Value("${tracing.errors.backfill.pauseMs:50}")
+    private long pauseMs;
+
+    public ErrorColumnBackfill(TracingEventRepository tracingEventRepository,
+            ErrorSeverityClassifier severityClassifier, JdbcTemplate jdbcTemplate) {
+        this.tracingEventRepository = tracingEventRepository;
+        this.severityClassifier = severityClassifier;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void run(String... args) {
+        if (!enabled) return;
+        Thread t = new Thread(this::backfill, "error-column-backfill");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private void backfill() {
+        Long min;
+        Long max;
+        try {
+            min = tracingEventRepository.findMinId();
+            max = tracingEventRepository.findMaxId();
+        } catch (RuntimeException e) {
+            log.warn("Error column backfill skipped: {}", e.getMessage());
+            return;
+        }
+        if (min == null || max == null) return;
+        long step = Math.max(1, chunkSize);
+        long updated = 0;
+        long classified = 0;
+        for (long from = min; from <= max && !Thread.currentThread().isInterrupted(); from += step) {
+            try {
+                updated += tracingEventRepository.backfillErrorColumns(from, from + step);
+                classified += backfillSeverity(from, from + step);
+            } catch (RuntimeException e) {
+                log.warn("Error column backfill stopped at id {}: {}", from, e.getMessage());
+                return;
+            }
+            if (pauseMs > 0) {
+                try {
+                    Thread.sleep(pauseMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        if (updated > 0 || classified > 0) {
+            log.info("Backfilled error columns for {} events, severity for {} events", updated, classified);
+        }
+    }
+
+    private int backfillSeverity(long fromId, long toId) {
+        List<Object[]> rows = tracingEventRepository.findErrorsWithoutSeverity(fromId, toId);
+        if (rows.isEmpty()) return 0;
+        List<Object[]> args = new ArrayList<>(rows.size());
+        for (Object[] r : rows) {
+            ErrorSeverity severity = severityClassifier.classify(text(r[1]), text(r[2]), text(r[3]));
+            args.add(new Object[] { severity.name(), ((Number) r[0]).longValue() });
+        }
+        jdbcTemplate.batchUpdate("UPDATE trace_event SET severity = ? WHERE id = ?", args);
+        return args.size();
+    }
+
+    private static String text(Object v) {
+        return v == null ? null : v.toString();
+    }
+}
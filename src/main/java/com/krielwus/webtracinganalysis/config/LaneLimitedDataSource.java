@@ -0,0 +1,163 @@
+package com.krielwus.webtracinganalysis.config;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按通道限流的数据源。
+ * 连接池前放置两个信号量：入库通道（消费线程与错误聚合落库）与分析通道（其余所有线程，主要是看板查询），
+ * 各自的许可数之和不超过连接池大小，看板查询再多也占不到入库的连接；大量虚拟线程同时取连接时在信号量上排队，
+ * 而不是一起涌向连接池等待超时。同一线程已持有许可时嵌套获取的连接（如 REQUIRES_NEW）不再占用许可，避免自锁。
+ * 看板请求线程（由 DashboardRequestLimitFilter 标记）使用较短的等待超时，拿不到连接时尽快失败，不在请求线程上长时间等待；
+ * 后台任务仍按 acquireTimeoutMs 等待。
+ */
+public class LaneLimitedDataSource extends DelegatingDataSource {
+
+    /** 连接通道 */
+    public enum Lane { INGEST, ANALYTICS }
+
+    private static final ThreadLocal<Lane> CURRENT_LANE = new ThreadLocal<>();
+    private static final ThreadLocal<int[]> HELD = ThreadLocal.withInitial(() -> new int[1]);
+    private static final ThreadLocal<Boolean> FAIL_FAST = new ThreadLocal<>();
+
+    private final Semaphore ingest;
+    private final Semaphore analytics;
+    private final int ingestPermits;
+    private final int analyticsPermits;
+    private final long acquireTimeoutMs;
+    private final long requestTimeoutMs;
+    private final AtomicLong timeouts = new AtomicLong();
+
+    public LaneLimitedDataSource(DataSource target, int ingestPermits, int analyticsPermits, long acquireTimeoutMs,
+            long requestTimeoutMs) {
+        super(target);
+        this.ingestPermits = Math.max(1, ingestPermits);
+        this.analyticsPermits = Math.max(1, analyticsPermits);
+        this.ingest = new Semaphore(this.ingestPermits, true);
+        this.analytics = new Semaphore(this.analyticsPermits, true);
+        this.acquireTimeoutMs = acquireTimeoutMs;
+        this.requestTimeoutMs = requestTimeoutMs;
+    }
+
+    /**
+     * 将当前线程标记为入库通道；消费线程等长期运行的线程在启动时调用一次。
+     */
+    public static void markIngestThread() {
+        CURRENT_LANE.set(Lane.INGEST);
+    }
+
+    /**
+     * 标记当前线程正在处理看板请求，取连接时按较短超时快速失败；请求结束时须调用 clearFailFast。
+     */
+    public static void markFailFast() {
+        FAIL_FAST.set(Boolean.TRUE);
+    }
+
+    public static void clearFailFast() {
+        FAIL_FAST.remove();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return limit(() -> super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return limit(() -> super.getConnection(username, password));
+    }
+
+    /** 各通道许可与等待情况 */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("ingestPermits", ingestPermits);
+        m.put("ingestAvailable", ingest.availablePermits());
+        m.put("ingestWaiting", ingest.getQueueLength());
+        m.put("analyticsPermits", analyticsPermits);
+        m.put("analyticsAvailable", analytics.availablePermits());
+        m.put("analyticsWaiting", analytics.getQueueLength());
+        m.put("acquireTimeoutMs", acquireTimeoutMs);
+        m.put("requestTimeoutMs", requestTimeoutMs);
+        m.put("acquireTimeouts", timeouts.get());
+        return m;
+    }
+
+    private Connection limit(ConnectionSupplier supplier) throws SQLException {
+        int[] held = HELD.get();
+        if (held[0] > 0) {
+            return wrap(supplier.get(), null, held);
+        }
+        boolean ingestLane = CURRENT_LANE.get() == Lane.INGEST;
+        Semaphore lane = ingestLane ? ingest : analytics;
+        long timeoutMs = FAIL_FAST.get() != null ? requestTimeoutMs : acquireTimeoutMs;
+        try {
+            if (!lane.tryAcquire(timeoutMs, TimeUnit.MILLISECONDS)) {
+                timeouts.incrementAndGet();
+                throw new SQLTransientConnectionException("Connection lane "
+                        + (ingestLane ? Lane.INGEST : Lane.ANALYTICS) + " saturated after " + timeoutMs + "ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted while waiting for connection lane", e);
+        }
+        Connection c;
+        try {
+            c = supplier.get();
+        } catch (SQLException | RuntimeException e) {
+            lane.release();
+            throw e;
+        }
+        return wrap(c, lane, held);
+    }
+
+    /**
+     * 包装连接：close 时归还许可（仅一次）；held 记录当前线程持有的连接数用于嵌套判断。
+     */
+    private static Connection wrap(Connection target, Semaphore lane, int[] held) {
+        held[0]++;
+        AtomicBoolean closed = new AtomicBoolean();
+        InvocationHandler handler = (proxy, method, args) -> {
+            String name = method.getName();
+            if ("close".equals(name) && method.getParameterCount() == 0) {
+                try {
+                    return method.invoke(target, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                } finally {
+                    if (closed.compareAndSet(false, true)) {
+                        held[0]--;
+                        if (lane != null) lane.release();
+                    }
+                }
+            }
+            if ("unwrap".equals(name) && args != null && args.length == 1 && ((Class<?>) args[0]).isInstance(proxy)) {
+                return proxy;
+            }
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        };
+        return (Connection) Proxy.newProxyInstance(LaneLimitedDataSource.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, handler);
+    }
+
+    @FunctionalInterface
+    private interface ConnectionSupplier {
+        Connection get() throws SQLException;
+    }
+}
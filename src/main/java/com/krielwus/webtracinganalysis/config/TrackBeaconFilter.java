@@ -0,0 +1,86 @@
+package com.krielwus.webtracinganalysis.config;
+
+import com.krielwus.webtracinganalysis.info.IngestPayload;
+import com.krielwus.webtracinganalysis.service.IngestResult;
+import com.krielwus.webtracinganalysis.service.TrackPayloadDecoder;
+import com.krielwus.webtracinganalysis.service.TracingService;
+import com.krielwus.webtracinganalysis.util.QueryParamDecoder;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * 图片打点快速通道。
+ * 拦截 GET /trackweb，直接从原始查询串解码参数 v 交给入库管线，
+ * 以固定的 1x1 GIF（或 204 无响应体）作答，不进入 Spring MVC、不解析请求参数、不创建会话。
+ * 过载、限流或停机排空时返回 429/503 与 Retry-After，应用未登记时返回 403，均不带响应体。其他方法原样放行给控制器。
+ */
+public class TrackBeaconFilter extends OncePerRequestFilter {
+
+    /** 1x1 透明 GIF */
+    private static final byte[] PIXEL_GIF = {
+            0x47, 0x49, 0x46, 0x38, 0x39, 0x61, 0x01, 0x00, 0x01, 0x00, (byte) 0x80, 0x00, 0x00,
+            0x00, 0x00, 0x00, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF,
+            0x21, (byte) 0xF9, 0x04, 0x01, 0x00, 0x00, 0x00, 0x00,
+            0x2C, 0x00, 0x00, 0x00, 0x00, 0x01, 0x00, 0x01, 0x00, 0x00,
+            0x02, 0x02, 0x44, 0x01, 0x00, 0x3B
+    };
+
+    private final TracingService tracingService;
+    private final TrackPayloadDecoder payloadDecoder;
+    private final boolean noContent;
+    private final int rejectStatus;
+    private final String retryAfter;
+
+    /**
+     * @param noContent 为 true 时成功响应 204，否则响应 GIF
+     */
+    public TrackBeaconFilter(TracingService tracingService, TrackPayloadDecoder payloadDecoder, boolean noContent,
+            int rejectStatus, int retryAfterSeconds) {
+        this.tracingService = tracingService;
+        this.payloadDecoder = payloadDecoder;
+        this.noContent = noContent;
+        this.rejectStatus = rejectStatus == 503 ? 503 : 429;
+        this.retryAfter = String.valueOf(retryAfterSeconds);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"GET".equals(request.getMethod());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        byte[] v = QueryParamDecoder.decode(request.getQueryString(), "v");
+        IngestPayload payload = v == null || v.length == 0 ? null : payloadDecoder.decode(v);
+        IngestResult result = tracingService.ingestAsync(payload);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-store");
+        if (result == IngestResult.UNKNOWN_APP) {
+            response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+            response.setContentLength(0);
+            return;
+        }
+        if (result == IngestResult.REJECTED || result == IngestResult.THROTTLED
+                || result == IngestResult.UNAVAILABLE) {
+            response.setStatus(result == IngestResult.THROTTLED ? 429
+                    : result == IngestResult.UNAVAILABLE ? 503 : rejectStatus);
+            response.setHeader(HttpHeaders.RETRY_AFTER, retryAfter);
+            response.setContentLength(0);
+            return;
+        }
+        if (noContent) {
+            response.setStatus(HttpServletResponse.SC_NO_CONTENT);
+            return;
+        }
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType("image/gif");
+        response.setContentLength(PIXEL_GIF.length);
+        response.getOutputStream().write(PIXEL_GIF);
+    }
+}
@@ -1,5 +1,8 @@
 package com.krielwus.webtracinganalysis.config;
 
+import com.krielwus.webtracinganalysis.service.TrackPayloadDecoder;
+import com.krielwus.webtracinganalysis.service.TracingService;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Bean;
@@ -49,6 +52,48 @@ public class WebMvcConfig implements WebMvcConfigurer {
         return registration;
     }
 
+    /**
+     * 图片打点快速通道：GET /trackweb 在过滤器中直接入队并返回像素，关闭后回退到控制器处理。
+     */
+    @Bean
+    public FilterRegistrationBean<TrackBeaconFilter> trackBeaconFilter(TracingService tracingService,
+            TrackPayloadDecoder payloadDecoder,
+            @Value("${tracing.ingest.beacon.enabled:true}") boolean enabled,
+            @Value("${tracing.ingest.beacon.response:gif}") String responseMode,
+            @Value("${tracing.ingest.overload.rejectStatus:429}") int rejectStatus,
+            @Value("${tracing.ingest.overload.retryAfterSeconds:5}") int retryAfterSeconds) {
+        TrackBeaconFilter filter = new TrackBeaconFilter(tracingService, payloadDecoder,
+                "204".equals(responseMode) || "none".equalsIgnoreCase(responseMode), rejectStatus, retryAfterSeconds);
+        FilterRegistrationBean<TrackBeaconFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.addUrlPatterns("/trackweb", "/api/trackweb");
+        registration.setEnabled(enabled);
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 1);
+        return registration;
+    }
+
+    @Bean
+    public DashboardRequestLimitFilter dashboardRequestLimitFilter(
+            @Value("${tracing.concurrency.dashboard.maxConcurrent:32}") int maxConcurrent,
+            @Value("${tracing.concurrency.dashboard.queueTimeoutMs:1000}") long queueTimeoutMs,
+            @Value("${tracing.ingest.overload.retryAfterSeconds:5}") int retryAfterSeconds) {
+        return new DashboardRequestLimitFilter(maxConcurrent, queueTimeoutMs, retryAfterSeconds);
+    }
+
+    /**
+     * 看板统计接口的并发上限，避免慢查询占满工作线程而饿死上报。
+     */
+    @Bean
+    public FilterRegistrationBean<DashboardRequestLimitFilter> dashboardRequestLimitRegistration(
+            DashboardRequestLimitFilter filter,
+            @Value("${tracing.concurrency.dashboard.enabled:true}") boolean enabled) {
+        FilterRegistrationBean<DashboardRequestLimitFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.addUrlPatterns("/api/webTrack/*", "/api/application/monitor/*", "/api/getAllTracingList",
+                "/api/getBaseInfo", "/getAllTracingList", "/getBaseInfo");
+        registration.setEnabled(enabled);
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 2);
+        return registration;
+    }
+
     @Bean
     public CorsFilter corsFilter() {
         CorsConfiguration config = new CorsConfiguration();
@@ -75,6 +120,8 @@ public class WebMvcConfig implements WebMvcConfigurer {
                         "/api/getAllTracingList",
                         "/api/getBaseInfo",
                         "/api/cleanTracingList",
+                        "/api/ingest/**",
+                        "/api/retention/**",
                         "/user/**",
                         "/application/**",
                         "/getAllTracingList",
@@ -90,6 +137,7 @@ public class WebMvcConfig implements WebMvcConfigurer {
                         "/api/register",
                         "/api/captcha/**",
                         "/api/trackweb",
+                        "/api/ingest/lifecycle",
                         "/login",
                         "/register",
                         "/captcha/**",
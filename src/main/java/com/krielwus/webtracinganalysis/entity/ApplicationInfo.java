@@ -27,6 +27,18 @@ public class ApplicationInfo {
     @Column(name = "app_managers", columnDefinition = "LONGTEXT")
     private String appManagers;
 
+    /** 上报限流：每秒事件数，为空时使用全局配置 */
+    @Column(name = "ingest_rate_limit")
+    private Integer ingestRateLimit;
+
+    /** 上报限流：突发容量（事件数），为空时取每秒事件数 */
+    @Column(name = "ingest_burst")
+    private Integer ingestBurst;
+
+    /** 按事件类型的采样率，格式 TYPE:rate,TYPE:rate，为空时使用全局配置 */
+    @Column(name = "sample_rates", length = 512)
+    private String sampleRates;
+
     @Temporal(TemporalType.TIMESTAMP)
     @Column(name = "created_at")
     private Date createdAt;
@@ -57,6 +69,12 @@ public class ApplicationInfo {
     public void setAppDesc(String appDesc) { this.appDesc = appDesc; }
     public String getAppManagers() { return appManagers; }
     public void setAppManagers(String appManagers) { this.appManagers = appManagers; }
+    public Integer getIngestRateLimit() { return ingestRateLimit; }
+    public void setIngestRateLimit(Integer ingestRateLimit) { this.ingestRateLimit = ingestRateLimit; }
+    public Integer getIngestBurst() { return ingestBurst; }
+    public void setIngestBurst(Integer ingestBurst) { this.ingestBurst = ingestBurst; }
+    public String getSampleRates() { return sampleRates; }
+    public void setSampleRates(String sampleRates) { this.sampleRates = sampleRates; }
     public Date getCreatedAt() { return createdAt; }
     public void setCreatedAt(Date createdAt) { this.createdAt = createdAt; }
     public Date getUpdatedAt() { return updatedAt; }
@@ -5,12 +5,19 @@ import java.util.Date;
 
 /**
  * 基线信息表。
- * 保存每次上报的基础环境与上下文信息的原始 JSON，
- * 供查询最新基线或比对不同批次的环境差异。
+ * 保存上报的基础环境与上下文信息的原始 JSON，供查询最新基线或比对不同批次的环境差异。
+ * 按标识哈希去重：baseInfo 除 sendTime 等易变字段外内容相同的上报每天只存一行（哈希含日期），
+ * created_at 为当天首次出现时间，last_seen 为当天最近出现时间，二者不跨天。
+ * 应用、会话、设备、用户标识另存为结构化列，UV/设备/会话等去重计数直接在 SQL 中按覆盖索引完成，不再解析 payload。
  */
 @Entity
-@Table(name = "base_info_record", indexes = {
-        @Index(name = "idx_base_created_at", columnList = "created_at")
+@Table(name = "base_info_record", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_base_content_hash", columnNames = { "content_hash" })
+}, indexes = {
+        @Index(name = "idx_base_created_at", columnList = "created_at"),
+        @Index(name = "idx_base_last_seen", columnList = "last_seen"),
+        @Index(name = "idx_base_app_identity", columnList = "app_code, last_seen, created_at, sdk_user_uuid, device_id, session_id"),
+        @Index(name = "idx_base_seen_identity", columnList = "last_seen, created_at, app_code, sdk_user_uuid, device_id, session_id")
 })
 public class BaseInfoRecord {
     @Id
@@ -22,11 +29,33 @@ public class BaseInfoRecord {
     @Column(name = "payload", columnDefinition = "LONGTEXT")
     private String payload;
 
-    /** 上报入库时间 */
+    /** baseInfo 标识哈希（排除 sendTime 等易变字段、按天分桶），同一标识每天只存一行；去重前的历史数据为空 */
+    @Column(name = "content_hash")
+    private Long contentHash;
+
+    /** 应用编码；载荷中缺失时为空串（用于区分尚未回填的历史数据） */
+    @Column(name = "app_code", length = 128)
+    private String appCode;
+
+    @Column(name = "session_id", length = 128)
+    private String sessionId;
+
+    @Column(name = "device_id", length = 128)
+    private String deviceId;
+
+    @Column(name = "sdk_user_uuid", length = 128)
+    private String sdkUserUuid;
+
+    /** 首次入库时间 */
     @Temporal(TemporalType.TIMESTAMP)
     @Column(name = "created_at")
     private Date createdAt;
 
+    /** 最近一次出现时间（精度为去重缓存的 touchIntervalMs） */
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "last_seen")
+    private Date lastSeen;
+
     /** 在持久化前自动记录入库时间 */
     @PrePersist
     public void prePersist() {
@@ -37,6 +66,18 @@ public class BaseInfoRecord {
     public void setId(Long id) { this.id = id; }
     public String getPayload() { return payload; }
     public void setPayload(String payload) { this.payload = payload; }
+    public Long getContentHash() { return contentHash; }
+    public void setContentHash(Long contentHash) { this.contentHash = contentHash; }
+    public String getAppCode() { return appCode; }
+    public void setAppCode(String appCode) { this.appCode = appCode; }
+    public String getSessionId() { return sessionId; }
+    public void setSessionId(String sessionId) { this.sessionId = sessionId; }
+    public String getDeviceId() { return deviceId; }
+    public void setDeviceId(String deviceId) { this.deviceId = deviceId; }
+    public String getSdkUserUuid() { return sdkUserUuid; }
+    public void setSdkUserUuid(String sdkUserUuid) { this.sdkUserUuid = sdkUserUuid; }
     public Date getCreatedAt() { return createdAt; }
     public void setCreatedAt(Date createdAt) { this.createdAt = createdAt; }
+    public Date getLastSeen() { return lastSeen; }
+    public void setLastSeen(Date lastSeen) { this.lastSeen = lastSeen; }
 }
@@ -0,0 +1,75 @@
+package com.krielwus.webtracinganalysis.entity;
+
+import jakarta.persistence.*;
+import java.util.Date;
+
+/**
+ * 错误聚合（Issue）表。
+ * 同一应用下指纹相同的错误事件归为一条，记录首次/末次出现时间、累计次数与一条样例事件，
+ * 由 ErrorIssueAggregator 在内存中合并后批量 upsert。
+ */
+@Entity
+@Table(name = "error_issue", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_issue_app_fingerprint", columnNames = { "app_code", "fingerprint" })
+}, indexes = {
+        @Index(name = "idx_issue_app_last_seen", columnList = "app_code, last_seen")
+})
+public class ErrorIssue {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "app_code", length = 128, nullable = false)
+    private String appCode;
+
+    /** 64 位错误指纹 */
+    @Column(name = "fingerprint", nullable = false)
+    private Long fingerprint;
+
+    @Column(name = "error_code", length = 128)
+    private String errorCode;
+
+    /** 归一化后的错误信息 */
+    @Column(name = "message", length = 1024)
+    private String message;
+
+    @Column(name = "severity", length = 16)
+    private String severity;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "first_seen")
+    private Date firstSeen;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "last_seen")
+    private Date lastSeen;
+
+    /** 累计次数（按采样率加权） */
+    @Column(name = "event_count")
+    private Long eventCount;
+
+    /** 最近一条样例事件 ID（trace_event.id） */
+    @Column(name = "sample_event_id")
+    private Long sampleEventId;
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    public String getAppCode() { return appCode; }
+    public void setAppCode(String appCode) { this.appCode = appCode; }
+    public Long getFingerprint() { return fingerprint; }
+    public void setFingerprint(Long fingerprint) { this.fingerprint = fingerprint; }
+    public String getErrorCode() { return errorCode; }
+    public void setErrorCode(String errorCode) { this.errorCode = errorCode; }
+    public String getMessage() { return message; }
+    public void setMessage(String message) { this.message = message; }
+    public String getSeverity() { return severity; }
+    public void setSeverity(String severity) { this.severity = severity; }
+    public Date getFirstSeen() { return firstSeen; }
+    public void setFirstSeen(Date firstSeen) { this.firstSeen = firstSeen; }
+    public Date getLastSeen() { return lastSeen; }
+    public void setLastSeen(Date lastSeen) { this.lastSeen = lastSeen; }
+    public Long getEventCount() { return eventCount; }
+    public void setEventCount(Long eventCount) { this.eventCount = eventCount; }
+    public Long getSampleEventId() { return sampleEventId; }
+    public void setSampleEventId(Long sampleEventId) { this.sampleEventId = sampleEventId; }
+}
@@ -0,0 +1,12 @@
+package com.krielwus.webtracinganalysis.entity;
+
+/**
+ * 错误等级，按严重程度从高到低排列；以名称字符串持久化到 trace_event.severity。
+ */
+public enum ErrorSeverity {
+    CRITICAL,
+    FATAL,
+    ERROR,
+    WARN,
+    INFO
+}
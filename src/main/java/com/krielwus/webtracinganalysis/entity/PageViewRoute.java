@@ -36,6 +36,10 @@ public class PageViewRoute {
     @Column(name = "route_path", length = 512)
     private String routePath;
 
+    /** 仅历史数据：早期版本写入的 routePath 字典 ID；路由不进字典，新写入不再赋值，分析也不读取 */
+    @Column(name = "route_id", insertable = false, updatable = false)
+    private Integer routeId;
+
     @Lob
     @Basic(fetch = FetchType.LAZY)
     @Column(name = "route_params", columnDefinition = "LONGTEXT")
@@ -44,6 +48,10 @@ public class PageViewRoute {
     @Column(name = "full_url", columnDefinition = "TEXT")
     private String fullUrl;
 
+    /** 对应 PV 事件的采样率 (0, 1]，路由 PV 统计按 1/sample_rate 加权；历史数据为空视为 1 */
+    @Column(name = "sample_rate")
+    private Double sampleRate;
+
     @Temporal(TemporalType.TIMESTAMP)
     @Column(name = "created_at")
     private Date createdAt;
@@ -69,10 +77,14 @@ public class PageViewRoute {
     public void setRouteType(String routeType) { this.routeType = routeType; }
     public String getRoutePath() { return routePath; }
     public void setRoutePath(String routePath) { this.routePath = routePath; }
+    public Integer getRouteId() { return routeId; }
+    public void setRouteId(Integer routeId) { this.routeId = routeId; }
     public String getRouteParams() { return routeParams; }
     public void setRouteParams(String routeParams) { this.routeParams = routeParams; }
     public String getFullUrl() { return fullUrl; }
     public void setFullUrl(String fullUrl) { this.fullUrl = fullUrl; }
+    public Double getSampleRate() { return sampleRate; }
+    public void setSampleRate(Double sampleRate) { this.sampleRate = sampleRate; }
     public Date getCreatedAt() { return createdAt; }
     public void setCreatedAt(Date createdAt) { this.createdAt = createdAt; }
 }
@@ -13,7 +13,10 @@ import java.util.Date;
         @Index(name = "idx_trace_event_type", columnList = "event_type"),
         @Index(name = "idx_trace_app_code", columnList = "app_code"),
         @Index(name = "idx_trace_created_at", columnList = "created_at"),
-        @Index(name = "idx_trace_type_code_time", columnList = "event_type, app_code, created_at")
+        @Index(name = "idx_trace_type_code_time", columnList = "event_type, app_code, created_at"),
+        @Index(name = "idx_trace_app_type_error_code", columnList = "app_code, event_type, error_code, created_at"),
+        @Index(name = "idx_trace_app_type_severity", columnList = "app_code, event_type, severity, created_at"),
+        @Index(name = "idx_trace_app_fingerprint", columnList = "app_code, fingerprint, created_at")
 })
 public class TracingEvent {
     @Id
@@ -42,6 +45,39 @@ public class TracingEvent {
     @Column(name = "payload", columnDefinition = "LONGTEXT")
     private String payload;
 
+    /** 采样率 (0, 1]，聚合时以 1/sample_rate 加权还原计数；历史数据为空视为 1 */
+    @Column(name = "sample_rate")
+    private Double sampleRate;
+
+    /** 错误码（仅 ERROR 事件，入库时从载荷提取） */
+    @Column(name = "error_code", length = 128)
+    private String errorCode;
+
+    /** 错误信息（仅 ERROR 事件，截断至 1024 字符） */
+    @Column(name = "error_message", length = 1024)
+    private String errorMessage;
+
+    /** 出错页面或请求地址（仅 ERROR 事件） */
+    @Column(name = "request_uri", length = 1024)
+    private String requestUri;
+
+    /** 上报的错误等级原值（severity/level/errLevel） */
+    @Column(name = "error_level", length = 32)
+    private String errorLevel;
+
+    /** 错误等级（仅 ERROR 事件，入库时由 ErrorSeverityClassifier 计算） */
+    @Enumerated(EnumType.STRING)
+    @Column(name = "severity", length = 16)
+    private ErrorSeverity severity;
+
+    /** 错误指纹（仅 ERROR 事件，对应 error_issue.fingerprint） */
+    @Column(name = "fingerprint")
+    private Long fingerprint;
+
+    /** 所属上报的 baseInfo 内容哈希（对应 base_info_record.content_hash） */
+    @Column(name = "base_hash")
+    private Long baseHash;
+
     /** 事件入库时间（服务端接收时间） */
     @Temporal(TemporalType.TIMESTAMP)
     @Column(name = "created_at")
@@ -68,4 +104,20 @@ public class TracingEvent {
     public void setAppName(String appName) { this.appName = appName; }
     public String getSessionId() { return sessionId; }
     public void setSessionId(String sessionId) { this.sessionId = sessionId; }
+    public Double getSampleRate() { return sampleRate; }
+    public void setSampleRate(Double sampleRate) { this.sampleRate = sampleRate; }
+    public String getErrorCode() { return errorCode; }
+    public void setErrorCode(String errorCode) { this.errorCode = errorCode; }
+    public String getErrorMessage() { return errorMessage; }
+    public void setErrorMessage(String errorMessage) { this.errorMessage = errorMessage; }
+    public String getRequestUri() { return requestUri; }
+    public void setRequestUri(String requestUri) { this.requestUri = requestUri; }
+    public String getErrorLevel() { return errorLevel; }
+    public void setErrorLevel(String errorLevel) { this.errorLevel = errorLevel; }
+    public ErrorSeverity getSeverity() { return severity; }
+    public void setSeverity(ErrorSeverity severity) { this.severity = severity; }
+    public Long getFingerprint() { return fingerprint; }
+    public void setFingerprint(Long fingerprint) { this.fingerprint = fingerprint; }
+    public Long getBaseHash() { return baseHash; }
+    public void setBaseHash(Long baseHash) { this.baseHash = baseHash; }
 }
@@ -0,0 +1,76 @@
+package com.krielwus.webtracinganalysis.info;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 上报载荷中的单条事件。
+ * 仅持有入库与索引需要的字段，原始 JSON 以 (source, offset, length) 切片形式引用，
+ * 不做二次解析与序列化。
+ */
+public class IngestEvent {
+    private final byte[] source;
+    private final int offset;
+    private final int length;
+    private String eventType;
+    private String appCode;
+    private String appName;
+    private String sessionId;
+    private String sdkUserUuid;
+    private String deviceId;
+    private String triggerPageUrl;
+    private String idempotencyKey;
+    private String errorCode;
+    private String errorMessage;
+    private String requestUri;
+    private String errorLevel;
+    private String errorStack;
+    /** 去重键（64 位哈希），未计算时为 0 */
+    private long dedupKey;
+    /** 采样率 (0, 1]，入库后用于还原计数 */
+    private double sampleRate = 1.0;
+
+    public IngestEvent(byte[] source, int offset, int length) {
+        this.source = source;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /** 事件原始 JSON 文本（按 UTF-8 解码切片） */
+    public String getPayloadJson() {
+        return new String(source, offset, length, StandardCharsets.UTF_8);
+    }
+
+    public byte[] getSource() { return source; }
+    public int getOffset() { return offset; }
+    public int getLength() { return length; }
+    public String getEventType() { return eventType; }
+    public void setEventType(String eventType) { this.eventType = eventType; }
+    public String getAppCode() { return appCode; }
+    public void setAppCode(String appCode) { this.appCode = appCode; }
+    public String getAppName() { return appName; }
+    public void setAppName(String appName) { this.appName = appName; }
+    public String getSessionId() { return sessionId; }
+    public void setSessionId(String sessionId) { this.sessionId = sessionId; }
+    public String getSdkUserUuid() { return sdkUserUuid; }
+    public void setSdkUserUuid(String sdkUserUuid) { this.sdkUserUuid = sdkUserUuid; }
+    public String getDeviceId() { return deviceId; }
+    public void setDeviceId(String deviceId) { this.deviceId = deviceId; }
+    public String getTriggerPageUrl() { return triggerPageUrl; }
+    public void setTriggerPageUrl(String triggerPageUrl) { this.triggerPageUrl = triggerPageUrl; }
+    public String getIdempotencyKey() { return idempotencyKey; }
+    public void setIdempotencyKey(String idempotencyKey) { this.idempotencyKey = idempotencyKey; }
+    public String getErrorCode() { return errorCode; }
+    public void setErrorCode(String errorCode) { this.errorCode = errorCode; }
+    public String getErrorMessage() { return errorMessage; }
+    public void setErrorMessage(String errorMessage) { this.errorMessage = errorMessage; }
+    public String getRequestUri() { return requestUri; }
+    public void setRequestUri(String requestUri) { this.requestUri = requestUri; }
+    public String getErrorLevel() { return errorLevel; }
+    public void setErrorLevel(String errorLevel) { this.errorLevel = errorLevel; }
+    public String getErrorStack() { return errorStack; }
+    public void setErrorStack(String errorStack) { this.errorStack = errorStack; }
+    public long getDedupKey() { return dedupKey; }
+    public void setDedupKey(long dedupKey) { this.dedupKey = dedupKey; }
+    public double getSampleRate() { return sampleRate; }
+    public void setSampleRate(double sampleRate) { this.sampleRate = sampleRate; }
+}
@@ -0,0 +1,84 @@
+package com.krielwus.webtracinganalysis.info;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 一次上报（/trackweb 请求体）解码后的类型化载荷。
+ * source 为请求体原始字节，baseInfo 与各事件均以切片引用其中的片段。
+ */
+public class IngestPayload {
+    private final byte[] source;
+    private int baseInfoOffset = -1;
+    private int baseInfoLength;
+    private long baseInfoHash;
+    private String appCode;
+    private String appName;
+    private String sessionId;
+    private String sdkUserUuid;
+    private String deviceId;
+    private final List<IngestEvent> events = new ArrayList<>();
+    /** 在预写日志中的位置；未写入日志时为 -1 */
+    private long walPosition = -1;
+
+    public IngestPayload(byte[] source) {
+        this.source = source;
+    }
+
+    /** 是否携带 baseInfo 对象 */
+    public boolean hasBaseInfo() {
+        return baseInfoOffset >= 0;
+    }
+
+    /** baseInfo 原始 JSON 文本；不存在时返回 null */
+    public String getBaseInfoJson() {
+        if (!hasBaseInfo()) return null;
+        return new String(source, baseInfoOffset, baseInfoLength, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 载荷归属的应用编码：存在 baseInfo 时取 baseInfo，否则取首个携带 appCode 的事件。
+     */
+    public String resolveAppCode() {
+        if (hasBaseInfo()) return appCode;
+        for (IngestEvent e : events) {
+            if (e.getAppCode() != null && !e.getAppCode().isEmpty()) return e.getAppCode();
+        }
+        return null;
+    }
+
+    /**
+     * baseInfo 的 64 位标识哈希：由解码器按字段名排序、排除 sendTime 等每次发送都会变化的字段后计算，
+     * 与字段顺序无关；不存在 baseInfo 时返回 0。
+     */
+    public long baseInfoHash() {
+        return hasBaseInfo() ? baseInfoHash : 0L;
+    }
+
+    public void setBaseInfoHash(long baseInfoHash) {
+        this.baseInfoHash = baseInfoHash;
+    }
+
+    public void setBaseInfoSlice(int offset, int length) {
+        this.baseInfoOffset = offset;
+        this.baseInfoLength = length;
+    }
+
+    public byte[] getSource() { return source; }
+    public int getBaseInfoOffset() { return baseInfoOffset; }
+    public int getBaseInfoLength() { return baseInfoLength; }
+    public String getAppCode() { return appCode; }
+    public void setAppCode(String appCode) { this.appCode = appCode; }
+    public String getAppName() { return appName; }
+    public void setAppName(String appName) { this.appName = appName; }
+    public String getSessionId() { return sessionId; }
+    public void setSessionId(String sessionId) { this.sessionId = sessionId; }
+    public String getSdkUserUuid() { return sdkUserUuid; }
+    public void setSdkUserUuid(String sdkUserUuid) { this.sdkUserUuid = sdkUserUuid; }
+    public String getDeviceId() { return deviceId; }
+    public void setDeviceId(String deviceId) { this.deviceId = deviceId; }
+    public List<IngestEvent> getEvents() { return events; }
+    public long getWalPosition() { return walPosition; }
+    public void setWalPosition(long walPosition) { this.walPosition = walPosition; }
+}
@@ -309,6 +309,46 @@ public class ApplicationController {
         }
     }
 
+    @GetMapping("/monitor/errors/issues")
+    public ResultInfo errorIssues(@RequestParam("appCode") String appCode,
+            @RequestParam(value = "pageNo", required = false, defaultValue = "1") Integer pageNo,
+            @RequestParam(value = "pageSize", required = false, defaultValue = "20") Integer pageSize,
+            @RequestParam(value = "severity", required = false) String severity,
+            @RequestParam(value = "sort", required = false) String sort) {
+        if (appCode == null || appCode.trim().isEmpty()) {
+            return new ResultInfo(400, "appCode required");
+        }
+        try {
+            java.util.Map<String, Object> data = service.pageErrorIssuesByApp(appCode.trim(), pageNo, pageSize,
+                    severity, sort);
+            return new ResultInfo(1000, "success", data);
+        } catch (Exception e) {
+            return new ResultInfo(500, "internal error");
+        }
+    }
+
+    @GetMapping("/monitor/errors/issues/events")
+    public ResultInfo errorIssueEvents(@RequestParam("appCode") String appCode,
+            @RequestParam("fingerprint") String fingerprint,
+            @RequestParam(value = "pageNo", required = false, defaultValue = "1") Integer pageNo,
+            @RequestParam(value = "pageSize", required = false, defaultValue = "20") Integer pageSize) {
+        if (appCode == null || appCode.trim().isEmpty()) {
+            return new ResultInfo(400, "appCode required");
+        }
+        if (fingerprint == null || fingerprint.trim().isEmpty()) {
+            return new ResultInfo(400, "fingerprint required");
+        }
+        try {
+            java.util.Map<String, Object> data = service.pageErrorsByFingerprint(appCode.trim(), fingerprint,
+                    pageNo, pageSize);
+            return new ResultInfo(1000, "success", data);
+        } catch (NumberFormatException e) {
+            return new ResultInfo(400, "fingerprint invalid");
+        } catch (Exception e) {
+            return new ResultInfo(500, "internal error");
+        }
+    }
+
     @GetMapping("/monitor/errors/detail")
     public ResultInfo errorDetail(@RequestParam("appCode") String appCode,
             @RequestParam("id") Long id) {
@@ -611,6 +651,40 @@ public class ApplicationController {
         }
     }
 
+    @PostMapping("/ingestPolicy")
+    public ResultInfo ingestPolicy(@RequestBody JSONObject body, HttpSession session) {
+        if (body == null) {
+            return new ResultInfo(400, "body required");
+        }
+        Long id = body.getLong("id");
+        if (id == null) {
+            return new ResultInfo(400, "id required");
+        }
+        com.krielwus.webtracinganalysis.entity.UserAccount u = (com.krielwus.webtracinganalysis.entity.UserAccount) session
+                .getAttribute("user");
+        String role = String.valueOf(session.getAttribute("role"));
+        if (u == null || u.getId() == null) {
+            return new ResultInfo(401, "unauthorized");
+        }
+        String operator = "SUPER_ADMIN".equals(role) ? "admin" : String.valueOf(u.getId());
+        try {
+            ApplicationInfo saved = service.updateIngestPolicy(id, body.getInteger("ingest_rate_limit"),
+                    body.getInteger("ingest_burst"), body.getString("sample_rates"), operator);
+            return new ResultInfo(1000, "success", saved);
+        } catch (IllegalArgumentException e) {
+            String msg = e.getMessage();
+            if (msg != null) {
+                if ("forbidden".equalsIgnoreCase(msg))
+                    return new ResultInfo(403, "forbidden");
+                if ("not found".equalsIgnoreCase(msg))
+                    return new ResultInfo(404, "not found");
+            }
+            return new ResultInfo(400, msg == null ? "bad request" : msg);
+        } catch (Exception e) {
+            return new ResultInfo(500, "internal error");
+        }
+    }
+
     @PostMapping("/delete")
     public ResultInfo delete(@RequestBody JSONObject body, HttpSession session) {
         if (body == null) {
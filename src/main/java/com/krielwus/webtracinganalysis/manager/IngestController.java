@@ -0,0 +1,108 @@
+package com.krielwus.webtracinganalysis.manager;
+
+import com.krielwus.webtracinganalysis.config.DashboardRequestLimitFilter;
+import com.krielwus.webtracinganalysis.config.LaneLimitedDataSource;
+import com.krielwus.webtracinganalysis.info.ResultInfo;
+import com.krielwus.webtracinganalysis.service.ApplicationRegistry;
+import com.krielwus.webtracinganalysis.service.BaseInfoDedupCache;
+import com.krielwus.webtracinganalysis.service.EmbeddedAnalyticsStore;
+import com.krielwus.webtracinganalysis.service.ErrorIssueAggregator;
+import com.krielwus.webtracinganalysis.service.EventArchive;
+import com.krielwus.webtracinganalysis.service.IngestAdmissionControl;
+import com.krielwus.webtracinganalysis.service.IngestBatchTuner;
+import com.krielwus.webtracinganalysis.service.IngestDeduplicator;
+import com.krielwus.webtracinganalysis.service.IngestMetrics;
+import com.krielwus.webtracinganalysis.service.PartitionManager;
+import com.krielwus.webtracinganalysis.service.RouteParseCache;
+import com.krielwus.webtracinganalysis.service.StringDictionaryService;
+import com.krielwus.webtracinganalysis.service.TracingService;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 上报链路运行状态接口。
+ * 提供入队队列深度、批量调节器当前决策、去重过滤器状态、限流采样策略、错误聚合合并状态、路由解析缓存命中率，
+ * 应用注册表与未登记应用的隔离统计、分区与冷数据归档状态、嵌入式分析存储状态、连接通道与看板并发，以及按 appCode 统计的接收/溢出/丢弃/拒绝/限流/去重/采样计数。
+ */
+@RestController
+@RequestMapping("/api/ingest")
+public class IngestController {
+    private final TracingService tracingService;
+    private final IngestMetrics ingestMetrics;
+    private final IngestBatchTuner batchTuner;
+    private final IngestDeduplicator deduplicator;
+    private final IngestAdmissionControl admissionControl;
+    private final ErrorIssueAggregator issueAggregator;
+    private final RouteParseCache routeParseCache;
+    private final StringDictionaryService stringDictionary;
+    private final BaseInfoDedupCache baseInfoDedup;
+    private final ApplicationRegistry appRegistry;
+    private final PartitionManager partitionManager;
+    private final EventArchive eventArchive;
+    private final EmbeddedAnalyticsStore analyticsStore;
+    private final javax.sql.DataSource dataSource;
+    private final DashboardRequestLimitFilter dashboardLimit;
+
+    public IngestController(TracingService tracingService, IngestMetrics ingestMetrics, IngestBatchTuner batchTuner,
+            IngestDeduplicator deduplicator, IngestAdmissionControl admissionControl,
+            ErrorIssueAggregator issueAggregator, RouteParseCache routeParseCache,
+            StringDictionaryService stringDictionary, BaseInfoDedupCache baseInfoDedup,
+            ApplicationRegistry appRegistry, PartitionManager partitionManager, EventArchive eventArchive,
+            EmbeddedAnalyticsStore analyticsStore, javax.sql.DataSource dataSource,
+            DashboardRequestLimitFilter dashboardLimit) {
+        this.tracingService = tracingService;
+        this.ingestMetrics = ingestMetrics;
+        this.batchTuner = batchTuner;
+        this.deduplicator = deduplicator;
+        this.admissionControl = admissionControl;
+        this.issueAggregator = issueAggregator;
+        this.routeParseCache = routeParseCache;
+        this.stringDictionary = stringDictionary;
+        this.baseInfoDedup = baseInfoDedup;
+        this.appRegistry = appRegistry;
+        this.partitionManager = partitionManager;
+        this.eventArchive = eventArchive;
+        this.analyticsStore = analyticsStore;
+        this.dataSource = dataSource;
+        this.dashboardLimit = dashboardLimit;
+    }
+
+    @GetMapping("/stats")
+    public ResultInfo stats() {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("queue", tracingService.getIngestQueueStats());
+        data.put("batch", batchTuner.snapshot());
+        data.put("dedup", deduplicator.snapshot());
+        data.put("admission", admissionControl.snapshot());
+        data.put("issues", issueAggregator.snapshot());
+        data.put("routeCache", routeParseCache.snapshot());
+        data.put("dict", stringDictionary.snapshot());
+        data.put("baseInfoDedup", baseInfoDedup.snapshot());
+        data.put("appRegistry", appRegistry.snapshot());
+        data.put("partitions", partitionManager.snapshot());
+        data.put("archive", eventArchive.snapshot());
+        data.put("analytics", analyticsStore.snapshot());
+        if (dataSource instanceof LaneLimitedDataSource) {
+            data.put("connectionLanes", ((LaneLimitedDataSource) dataSource).snapshot());
+        }
+        data.put("dashboardLimit", dashboardLimit.snapshot());
+        data.put("apps", ingestMetrics.snapshot());
+        return new ResultInfo(1000, "success", data);
+    }
+
+    /**
+     * 入库管线生命周期状态；停机编排可轮询 inFlight 与 state 判断是否排空完成。
+     */
+    @GetMapping("/lifecycle")
+    public ResultInfo lifecycle() {
+        return new ResultInfo(1000, "success", tracingService.getLifecycleStats());
+    }
+
+    @PostMapping("/stats/reset")
+    public ResultInfo reset() {
+        ingestMetrics.reset();
+        return new ResultInfo(1000, "success");
+    }
+}
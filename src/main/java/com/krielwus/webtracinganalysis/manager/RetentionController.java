@@ -0,0 +1,38 @@
+package com.krielwus.webtracinganalysis.manager;
+
+import com.krielwus.webtracinganalysis.info.ResultInfo;
+import com.krielwus.webtracinganalysis.service.RetentionService;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * 数据保留与清除任务接口：查看当前/上次任务状态与各表进度，手动触发一次清理或取消当前任务。
+ */
+@RestController
+@RequestMapping("/api/retention")
+public class RetentionController {
+    private final RetentionService retentionService;
+
+    public RetentionController(RetentionService retentionService) {
+        this.retentionService = retentionService;
+    }
+
+    @GetMapping("/status")
+    public ResultInfo status() {
+        return new ResultInfo(1000, "success", retentionService.snapshot());
+    }
+
+    @PostMapping("/run")
+    public ResultInfo run() {
+        retentionService.submitRetention();
+        return new ResultInfo(1000, "success");
+    }
+
+    /**
+     * 取消当前任务；已删除的数据不会恢复，进度保留，下次运行从断点继续。
+     */
+    @PostMapping("/cancel")
+    public ResultInfo cancel() {
+        retentionService.cancel();
+        return new ResultInfo(1000, "success");
+    }
+}
@@ -1,13 +1,20 @@
 package com.krielwus.webtracinganalysis.manager;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.krielwus.webtracinganalysis.info.IngestPayload;
 import com.krielwus.webtracinganalysis.info.ResultInfo;
+import com.krielwus.webtracinganalysis.service.IngestResult;
+import com.krielwus.webtracinganalysis.service.TrackPayloadDecoder;
 import com.krielwus.webtracinganalysis.service.TracingService;
+import com.krielwus.webtracinganalysis.util.NdjsonLineReader;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.beans.factory.annotation.Value;
 
 import jakarta.servlet.http.HttpServletRequest;
 import java.io.BufferedReader;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
@@ -16,49 +23,259 @@ import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
  * 埋点上报与查询接口。
- * 兼容 XHR/sendBeacon 的 POST 上报与图片打点的 GET 上报，
+ * 兼容 XHR/sendBeacon 的 POST 上报、图片打点的 GET 上报与中继转发的 NDJSON 批量上报，
  * 并提供事件列表与最新基线信息的查询，以及数据清理能力。
  */
 @RestController
 public class TrackWebController {
     private final TracingService tracingService;
+    private final TrackPayloadDecoder payloadDecoder;
     private final ObjectMapper objectMapper = new ObjectMapper();
     @Value("${server.port:17001}")
     private int serverPort;
+    /** 过载拒绝时的 HTTP 状态码：429 或 503 */
+    @Value("${tracing.ingest.overload.rejectStatus:429}")
+    private int rejectStatus;
+    @Value("${tracing.ingest.overload.retryAfterSeconds:5}")
+    private int retryAfterSeconds;
+    /** 批量上报单行最大字节数（解压后） */
+    @Value("${tracing.ingest.bulk.maxLineBytes:1048576}")
+    private int bulkMaxLineBytes;
+    /** 批量上报响应中最多列出的失败行数 */
+    @Value("${tracing.ingest.bulk.maxErrors:1000}")
+    private int bulkMaxErrors;
 
-    public TrackWebController(TracingService tracingService) {
+    public TrackWebController(TracingService tracingService, TrackPayloadDecoder payloadDecoder) {
         this.tracingService = tracingService;
+        this.payloadDecoder = payloadDecoder;
     }
 
     /**
-     * 事件上报（POST）：支持大批量 JSON（XHR/sendBeacon）。
+     * 事件上报（POST）：支持大批量 JSON（XHR/sendBeacon），以及 Smile/CBOR 二进制请求体。
+     * 直接读取请求体字节流式解码，不经过 String/Map 中转。
      */
     @PostMapping({ "/trackweb", "/api/trackweb" })
-    public Map<String, Object> trackweb(@RequestBody(required = false) String body) {
-        Map<String, Object> payload = parseBody(body);
-        tracingService.ingestAsync(payload);
+    public ResponseEntity<Map<String, Object>> trackweb(HttpServletRequest request) throws java.io.IOException {
+        IngestPayload payload = payloadDecoder.decode(request.getInputStream(), request.getContentType());
+        IngestResult result = tracingService.ingestAsync(payload);
+        if (result == IngestResult.REJECTED) return overloaded();
+        if (result == IngestResult.THROTTLED) return throttled();
+        if (result == IngestResult.UNAVAILABLE) return unavailable();
+        if (result == IngestResult.UNKNOWN_APP) return unknownApp();
         Map<String, Object> resp = new HashMap<>();
         resp.put("code", 200);
         resp.put("meaage", "上报成功！");
-        return resp;
+        return ResponseEntity.ok(resp);
     }
 
     /**
      * 事件上报（GET）：兼容图片打点，参数 v 为 JSON。
+     * 默认由 TrackBeaconFilter 在过滤器层处理，仅在关闭 tracing.ingest.beacon.enabled 时到达这里。
      */
     @GetMapping({ "/trackweb", "/api/trackweb" })
-    public Map<String, Object> trackwebGet(@RequestParam(value = "v", required = false) String v) {
-        Map<String, Object> payload = parseBody(v);
-        tracingService.ingestAsync(payload);
+    public ResponseEntity<Map<String, Object>> trackwebGet(@RequestParam(value = "v", required = false) String v) {
+        IngestPayload payload = v == null ? null : payloadDecoder.decode(v.getBytes(StandardCharsets.UTF_8));
+        IngestResult result = tracingService.ingestAsync(payload);
+        if (result == IngestResult.REJECTED) return overloaded();
+        if (result == IngestResult.THROTTLED) return throttled();
+        if (result == IngestResult.UNAVAILABLE) return unavailable();
+        if (result == IngestResult.UNKNOWN_APP) return unknownApp();
         Map<String, Object> resp = new HashMap<>();
         resp.put("code", 200);
         resp.put("data", "上报成功");
-        return resp;
+        return ResponseEntity.ok(resp);
+    }
+
+    /**
+     * 批量上报（POST）：请求体为 NDJSON，每行一个与 /trackweb 相同的 JSON 文档，
+     * 支持 Content-Encoding: gzip/deflate。逐行流式解码入队，不缓存整个请求体。
+     * 返回各结果的行数，以及未被接收的行号与原因（最多 bulk.maxErrors 条）。
+     * 请求体中途解压失败或被截断时返回 400，但仍携带已处理行的统计，以及出错位置
+     * （failedAtLine 为首个未处理的行号，failedAtOffset 为其在解压后流中的字节偏移），客户端只需从该行起重发。
+     */
+    @PostMapping({ "/trackweb/bulk", "/api/trackweb/bulk" })
+    public ResponseEntity<Map<String, Object>> trackwebBulk(HttpServletRequest request) throws java.io.IOException {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        List<Map<String, Object>> errors = new ArrayList<>();
+        long lines = 0, accepted = 0, spilled = 0, dropped = 0, quarantined = 0, rejected = 0;
+        boolean throttled = false;
+        boolean overloaded = false;
+        String bodyError = null;
+        NdjsonLineReader reader = null;
+        try (InputStream in = openBody(request)) {
+            reader = new NdjsonLineReader(in, bulkMaxLineBytes);
+            byte[] line;
+            while ((line = reader.next()) != null) {
+                if (reader.lastLineTooLong()) {
+                    lines++;
+                    rejected++;
+                    addBulkError(errors, reader.lineNumber(), "too_long");
+                    continue;
+                }
+                if (isBlank(line)) continue;
+                lines++;
+                // 一旦过载，剩余行直接拒绝，避免每行都等待 offerTimeoutMs
+                if (overloaded) {
+                    rejected++;
+                    addBulkError(errors, reader.lineNumber(), "overloaded");
+                    continue;
+                }
+                IngestPayload payload = payloadDecoder.decode(line);
+                if (payload == null) {
+                    rejected++;
+                    addBulkError(errors, reader.lineNumber(), "invalid_json");
+                    continue;
+                }
+                IngestResult result = tracingService.ingestAsync(payload);
+                switch (result) {
+                    case ACCEPTED: accepted++; break;
+                    case SPILLED: spilled++; break;
+                    case DROPPED: dropped++; break;
+                    case QUARANTINED: quarantined++; break;
+                    case UNKNOWN_APP:
+                        // 只针对该行所属应用，其他行继续入队
+                        rejected++;
+                        addBulkError(errors, reader.lineNumber(), "unknown_app");
+                        break;
+                    case UNAVAILABLE:
+                        // 实例停机排空中，剩余行同样无法接收
+                        rejected++;
+                        overloaded = true;
+                        addBulkError(errors, reader.lineNumber(), "shutting_down");
+                        break;
+                    case THROTTLED:
+                        // 限流只针对单个应用，不影响其他行继续入队
+                        rejected++;
+                        throttled = true;
+                        addBulkError(errors, reader.lineNumber(), "throttled");
+                        break;
+                    default:
+                        rejected++;
+                        overloaded = true;
+                        addBulkError(errors, reader.lineNumber(), "overloaded");
+                }
+            }
+        } catch (java.util.zip.ZipException e) {
+            bodyError = "corrupt_encoding";
+        } catch (java.io.EOFException e) {
+            bodyError = "truncated";
+        }
+        summary.put("lines", lines);
+        summary.put("accepted", accepted);
+        summary.put("spilled", spilled);
+        summary.put("dropped", dropped);
+        summary.put("quarantined", quarantined);
+        summary.put("rejected", rejected);
+        summary.put("errors", errors);
+        summary.put("errorsTruncated", rejected > errors.size());
+        if (bodyError != null) {
+            summary.put("bodyError", bodyError);
+            summary.put("failedAtLine", reader == null ? 1 : reader.lineNumber() + 1);
+            summary.put("failedAtOffset", reader == null ? 0 : reader.offset());
+            Map<String, Object> resp = new HashMap<>();
+            resp.put("code", 400);
+            resp.put("meaage", "请求体解压失败");
+            resp.put("data", summary);
+            ResponseEntity.BodyBuilder builder = ResponseEntity.badRequest();
+            if (overloaded || throttled) builder.header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+            return builder.body(resp);
+        }
+        Map<String, Object> resp = new HashMap<>();
+        resp.put("code", 200);
+        resp.put("data", summary);
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok();
+        if (overloaded || throttled) builder.header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        return builder.body(resp);
+    }
+
+    /**
+     * 按 Content-Encoding 包装请求体；deflate 兼容 zlib 封装与裸 deflate 两种格式。
+     */
+    private InputStream openBody(HttpServletRequest request) throws java.io.IOException {
+        InputStream in = request.getInputStream();
+        String encoding = request.getHeader(HttpHeaders.CONTENT_ENCODING);
+        if (encoding == null) return in;
+        encoding = encoding.trim().toLowerCase();
+        if ("gzip".equals(encoding) || "x-gzip".equals(encoding)) {
+            return new java.util.zip.GZIPInputStream(in, 8192);
+        }
+        if ("deflate".equals(encoding)) {
+            java.io.PushbackInputStream pin = new java.io.PushbackInputStream(in, 1);
+            int first = pin.read();
+            if (first >= 0) pin.unread(first);
+            // zlib 头首字节低 4 位为 8（CM=deflate）
+            boolean zlib = first >= 0 && (first & 0x0F) == 8;
+            return new java.util.zip.InflaterInputStream(pin, new java.util.zip.Inflater(!zlib), 8192);
+        }
+        return in;
+    }
+
+    private void addBulkError(List<Map<String, Object>> errors, long lineNumber, String reason) {
+        if (errors.size() >= bulkMaxErrors) return;
+        Map<String, Object> e = new LinkedHashMap<>();
+        e.put("line", lineNumber);
+        e.put("reason", reason);
+        errors.add(e);
+    }
+
+    private static boolean isBlank(byte[] line) {
+        for (byte b : line) {
+            if (b != ' ' && b != '\t' && b != '\r') return false;
+        }
+        return true;
+    }
+
+    /**
+     * 限流响应：429 并携带 Retry-After。
+     */
+    private ResponseEntity<Map<String, Object>> throttled() {
+        Map<String, Object> resp = new HashMap<>();
+        resp.put("code", 429);
+        resp.put("meaage", "上报频率超出应用限额");
+        return ResponseEntity.status(429)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .body(resp);
+    }
+
+    /**
+     * 停机排空响应：503 并携带 Retry-After，由负载均衡转发到其他实例或 SDK 稍后重试。
+     */
+    private ResponseEntity<Map<String, Object>> unavailable() {
+        Map<String, Object> resp = new HashMap<>();
+        resp.put("code", 503);
+        resp.put("meaage", "服务正在停机，请稍后重试");
+        return ResponseEntity.status(503)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .body(resp);
+    }
+
+    /**
+     * 未登记应用响应：403，不带 Retry-After，SDK 不应重试。
+     */
+    private ResponseEntity<Map<String, Object>> unknownApp() {
+        Map<String, Object> resp = new HashMap<>();
+        resp.put("code", 403);
+        resp.put("meaage", "应用未登记");
+        return ResponseEntity.status(403).body(resp);
+    }
+
+    /**
+     * 过载响应：429/503 并携带 Retry-After，提示 SDK 退避重试。
+     */
+    private ResponseEntity<Map<String, Object>> overloaded() {
+        int status = rejectStatus == 503 ? 503 : 429;
+        Map<String, Object> resp = new HashMap<>();
+        resp.put("code", status);
+        resp.put("meaage", "服务繁忙，请稍后重试");
+        return ResponseEntity.status(status)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .body(resp);
     }
 
     /**
@@ -86,14 +303,14 @@ public class TrackWebController {
     }
 
     /**
-     * 清除所有事件与基线数据（开发调试用）。
+     * 清除所有事件与基线数据（开发调试用），后台分块执行，进度见 /api/retention/status。
      */
     @PostMapping({ "/cleanTracingList", "/api/cleanTracingList" })
     public Map<String, Object> cleanTracingList() {
         tracingService.cleanAll();
         Map<String, Object> resp = new HashMap<>();
         resp.put("code", 200);
-        resp.put("meaage", "清除成功！");
+        resp.put("meaage", "清除任务已提交");
         return resp;
     }
 
@@ -145,18 +362,6 @@ public class TrackWebController {
         return resp;
     }
 
-    /**
-     * 安全解析 JSON 字符串为 Map。
-     */
-    private Map<String, Object> parseBody(String body) {
-        try {
-            if (body == null || body.trim().isEmpty()) return new HashMap<>();
-            return objectMapper.readValue(body, Map.class);
-        } catch (Exception e) {
-            return new HashMap<>();
-        }
-    }
-
     private boolean sendOnce(String method, int eventsPer, String appCode, String appName) {
         try {
             String url = "http://127.0.0.1:" + serverPort + "/trackweb";
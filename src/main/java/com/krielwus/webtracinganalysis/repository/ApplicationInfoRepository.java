@@ -2,8 +2,14 @@ package com.krielwus.webtracinganalysis.repository;
 
 import com.krielwus.webtracinganalysis.entity.ApplicationInfo;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
 
 public interface ApplicationInfoRepository extends JpaRepository<ApplicationInfo, Long> {
     ApplicationInfo findByAppCode(String appCode);
+
+    @Query("SELECT a.appCode FROM ApplicationInfo a")
+    List<String> findAllAppCodes();
 }
 
@@ -5,10 +5,61 @@ import org.springframework.data.jpa.repository.JpaRepository;
 
 /**
  * 基线信息仓库。
- * 提供查询最新一次上报的基线记录的方法。
+ * 提供查询最新一次上报的基线记录的方法，以及按结构化标识列在 SQL 中完成的去重计数。
+ * 去重计数的结果行依次为 [应用数, 用户数, 设备数, 会话数]；区间条件为“区间内出现过”（last_seen 不早于起点、首次出现早于终点）。
+ * 同一标识每天一行且不跨天，按天查询的计数与逐条存储时一致。
  */
 public interface BaseInfoRecordRepository extends JpaRepository<BaseInfoRecord, Long> {
     /** 按创建时间倒序取最新一条记录 */
     BaseInfoRecord findTopByOrderByCreatedAtDesc();
     java.util.List<BaseInfoRecord> findByCreatedAtBetween(java.util.Date start, java.util.Date end);
+
+    /**
+     * 在区间内出现过的基线记录：首次出现早于 end，且最近出现不早于 start（历史数据无 last_seen 时按 created_at）。
+     */
+    @org.springframework.data.jpa.repository.Query("SELECT r FROM BaseInfoRecord r WHERE r.createdAt < :end "
+            + "AND (r.lastSeen >= :start OR (r.lastSeen IS NULL AND r.createdAt >= :start))")
+    java.util.List<BaseInfoRecord> findActiveBetween(@org.springframework.data.repository.query.Param("start") java.util.Date start,
+                                                     @org.springframework.data.repository.query.Param("end") java.util.Date end);
+
+    /** 区间内出现过的应用/用户/设备/会话去重数 */
+    @org.springframework.data.jpa.repository.Query(value = IDENTITY_COUNTS
+            + "WHERE last_seen >= :start AND created_at < :end", nativeQuery = true)
+    java.util.List<Object[]> countIdentitiesBetween(@org.springframework.data.repository.query.Param("start") java.util.Date start,
+                                                    @org.springframework.data.repository.query.Param("end") java.util.Date end);
+
+    /** 指定应用在区间内出现过的去重数 */
+    @org.springframework.data.jpa.repository.Query(value = IDENTITY_COUNTS
+            + "WHERE app_code = :appCode AND last_seen >= :start AND created_at < :end", nativeQuery = true)
+    java.util.List<Object[]> countIdentitiesByAppBetween(@org.springframework.data.repository.query.Param("appCode") String appCode,
+                                                         @org.springframework.data.repository.query.Param("start") java.util.Date start,
+                                                         @org.springframework.data.repository.query.Param("end") java.util.Date end);
+
+    /** 应用集合在区间内出现过的去重数（跨应用合并去重） */
+    @org.springframework.data.jpa.repository.Query(value = IDENTITY_COUNTS
+            + "WHERE app_code IN (:appCodes) AND last_seen >= :start AND created_at < :end", nativeQuery = true)
+    java.util.List<Object[]> countIdentitiesByAppCodesBetween(@org.springframework.data.repository.query.Param("appCodes") java.util.Collection<String> appCodes,
+                                                              @org.springframework.data.repository.query.Param("start") java.util.Date start,
+                                                              @org.springframework.data.repository.query.Param("end") java.util.Date end);
+
+    /** 全部历史的去重数 */
+    @org.springframework.data.jpa.repository.Query(value = IDENTITY_COUNTS, nativeQuery = true)
+    java.util.List<Object[]> countIdentitiesAll();
+
+    /** 指定应用全部历史的去重数 */
+    @org.springframework.data.jpa.repository.Query(value = IDENTITY_COUNTS + "WHERE app_code = :appCode", nativeQuery = true)
+    java.util.List<Object[]> countIdentitiesByApp(@org.springframework.data.repository.query.Param("appCode") String appCode);
+
+    /** 应用集合全部历史的去重数（跨应用合并去重） */
+    @org.springframework.data.jpa.repository.Query(value = IDENTITY_COUNTS + "WHERE app_code IN (:appCodes)", nativeQuery = true)
+    java.util.List<Object[]> countIdentitiesByAppCodes(@org.springframework.data.repository.query.Param("appCodes") java.util.Collection<String> appCodes);
+
+    /** 区间内各应用的去重用户数：[app_code, 用户数] */
+    @org.springframework.data.jpa.repository.Query(value = "SELECT app_code, COUNT(DISTINCT sdk_user_uuid) FROM base_info_record "
+            + "WHERE app_code <> '' AND last_seen >= :start AND created_at < :end GROUP BY app_code", nativeQuery = true)
+    java.util.List<Object[]> countUsersGroupByAppBetween(@org.springframework.data.repository.query.Param("start") java.util.Date start,
+                                                         @org.springframework.data.repository.query.Param("end") java.util.Date end);
+
+    String IDENTITY_COUNTS = "SELECT COUNT(DISTINCT NULLIF(app_code, '')), COUNT(DISTINCT sdk_user_uuid), "
+            + "COUNT(DISTINCT device_id), COUNT(DISTINCT session_id) FROM base_info_record ";
 }
@@ -0,0 +1,18 @@
+package com.krielwus.webtracinganalysis.repository;
+
+import com.krielwus.webtracinganalysis.entity.ErrorIssue;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+/**
+ * 错误聚合仓库。
+ */
+public interface ErrorIssueRepository extends JpaRepository<ErrorIssue, Long> {
+
+    Page<ErrorIssue> findByAppCode(String appCode, Pageable pageable);
+
+    Page<ErrorIssue> findByAppCodeAndSeverity(String appCode, String severity, Pageable pageable);
+
+    ErrorIssue findByAppCodeAndFingerprint(String appCode, Long fingerprint);
+}
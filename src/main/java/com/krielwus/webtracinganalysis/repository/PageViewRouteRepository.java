@@ -10,24 +10,49 @@ import org.springframework.data.domain.Pageable;
 import java.util.Date;
 import java.util.List;
 
+/**
+ * 页面路由访问仓库。
+ * 时间区间均为左闭右开 [start, end)，条件直接作用于 created_at 列，分区表上可按区间裁剪分区。
+ */
 public interface PageViewRouteRepository extends JpaRepository<PageViewRoute, Long> {
-    @Query(value = "SELECT route_path AS path, COUNT(*) AS pv, " +
+    /** 各路由的访问量，PV 按采样率加权（SUM(1/sample_rate) 取整），会话与用户数按实际保留的记录去重 */
+    @Query(value = "SELECT route_path AS path, CAST(ROUND(SUM(1 / COALESCE(sample_rate, 1))) AS SIGNED) AS pv, " +
             "COUNT(DISTINCT session_id) AS session_num, " +
             "COUNT(DISTINCT sdk_user_uuid) AS user_num " +
             "FROM page_view_route " +
-            "WHERE app_code = :appCode AND created_at BETWEEN :start AND :end " +
+            "WHERE app_code = :appCode AND created_at >= :start AND created_at < :end " +
             "GROUP BY route_path " +
             "ORDER BY pv DESC", nativeQuery = true)
     List<Object[]> countRoutePvForAppBetween(@Param("appCode") String appCode,
                                              @Param("start") Date start,
                                              @Param("end") Date end);
 
-    Page<PageViewRoute> findByAppCodeAndRoutePathAndCreatedAtBetweenOrderByCreatedAtDesc(String appCode, String routePath, Date start, Date end, Pageable pageable);
+    /** 各路由按会话与用户分组的加权访问量 [route_path, session_id, sdk_user_uuid, pv]，与归档合并后在整个区间内去重 */
+    @Query(value = "SELECT route_path AS path, session_id, sdk_user_uuid, SUM(1 / COALESCE(sample_rate, 1)) AS pv " +
+            "FROM page_view_route " +
+            "WHERE app_code = :appCode AND created_at >= :start AND created_at < :end " +
+            "GROUP BY route_path, session_id, sdk_user_uuid", nativeQuery = true)
+    List<Object[]> sumRoutePvBySessionAndUserForAppBetween(@Param("appCode") String appCode,
+                                                           @Param("start") Date start,
+                                                           @Param("end") Date end);
+
+    @Query("SELECT p FROM PageViewRoute p WHERE p.appCode = :appCode AND p.routePath = :routePath "
+            + "AND p.createdAt >= :start AND p.createdAt < :end ORDER BY p.createdAt DESC")
+    Page<PageViewRoute> findByAppCodeAndRoutePathAndCreatedAtBetweenOrderByCreatedAtDesc(@Param("appCode") String appCode,
+                                                                                         @Param("routePath") String routePath,
+                                                                                         @Param("start") Date start,
+                                                                                         @Param("end") Date end,
+                                                                                         Pageable pageable);
 
-    List<PageViewRoute> findByAppCodeAndSessionIdAndCreatedAtBetweenOrderByCreatedAtAsc(String appCode, String sessionId, Date start, Date end);
+    @Query("SELECT p FROM PageViewRoute p WHERE p.appCode = :appCode AND p.sessionId = :sessionId "
+            + "AND p.createdAt >= :start AND p.createdAt < :end ORDER BY p.createdAt ASC")
+    List<PageViewRoute> findByAppCodeAndSessionIdAndCreatedAtBetweenOrderByCreatedAtAsc(@Param("appCode") String appCode,
+                                                                                        @Param("sessionId") String sessionId,
+                                                                                        @Param("start") Date start,
+                                                                                        @Param("end") Date end);
 
     @Query(value = "SELECT session_id FROM page_view_route " +
-            "WHERE app_code = :appCode AND created_at BETWEEN :start AND :end " +
+            "WHERE app_code = :appCode AND created_at >= :start AND created_at < :end " +
             "GROUP BY session_id " +
             "ORDER BY MAX(created_at) DESC", nativeQuery = true)
     List<String> findRecentSessionIdsBetween(@Param("appCode") String appCode,
@@ -35,9 +60,22 @@ public interface PageViewRouteRepository extends JpaRepository<PageViewRoute, Lo
                                             @Param("end") Date end,
                                             Pageable pageable);
 
-    @Query("SELECT p FROM PageViewRoute p WHERE p.appCode = :appCode AND p.sessionId IN (:sessionIds) AND p.createdAt BETWEEN :start AND :end ORDER BY p.sessionId ASC, p.createdAt ASC")
+    @Query("SELECT p FROM PageViewRoute p WHERE p.appCode = :appCode AND p.sessionId IN (:sessionIds) AND p.createdAt >= :start AND p.createdAt < :end ORDER BY p.sessionId ASC, p.createdAt ASC")
     List<PageViewRoute> findByAppCodeAndSessionIdsBetweenOrdered(@Param("appCode") String appCode,
                                                                  @Param("sessionIds") List<String> sessionIds,
                                                                  @Param("start") Date start,
                                                                  @Param("end") Date end);
+
+    /**
+     * 会话路径分析用的精简投影，不读取 route_params/full_url 等大字段。
+     * 列顺序：session_id, route_path, created_at, sdk_user_uuid, device_id, route_type
+     */
+    @Query(value = "SELECT session_id, route_path, created_at, sdk_user_uuid, device_id, route_type " +
+            "FROM page_view_route " +
+            "WHERE app_code = :appCode AND session_id IN (:sessionIds) AND created_at >= :start AND created_at < :end " +
+            "ORDER BY session_id ASC, created_at ASC", nativeQuery = true)
+    List<Object[]> findRouteStepsBySessionIds(@Param("appCode") String appCode,
+                                              @Param("sessionIds") List<String> sessionIds,
+                                              @Param("start") Date start,
+                                              @Param("end") Date end);
 }
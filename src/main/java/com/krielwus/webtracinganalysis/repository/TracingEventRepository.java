@@ -12,6 +12,8 @@ import java.util.Date;
 /**
  * 事件数据仓库。
  * 提供按时间倒序与事件类型过滤的查询方法。
+ * 时间区间均为左闭右开 [start, end)（按日统计时 end 为次日零点，零点整的事件不会同时计入两天），
+ * 条件直接作用于 created_at 列而不包裹函数，分区表上 MySQL 可据此裁剪分区。
  */
 public interface TracingEventRepository extends JpaRepository<TracingEvent, Long> {
     /** 按创建时间倒序查询全部事件 */
@@ -19,13 +21,26 @@ public interface TracingEventRepository extends JpaRepository<TracingEvent, Long
     /** 按事件类型过滤并倒序查询 */
     List<TracingEvent> findByEventTypeOrderByCreatedAtDesc(String eventType);
     /** 查询时间范围内的事件 */
-    List<TracingEvent> findByCreatedAtBetween(Date start, Date end);
+    @Query("SELECT e FROM TracingEvent e WHERE e.createdAt >= :start AND e.createdAt < :end")
+    List<TracingEvent> findByCreatedAtBetween(@Param("start") Date start, @Param("end") Date end);
 
     /** 过滤事件类型与应用，并按时间范围查询 */
-    List<TracingEvent> findByEventTypeAndAppCodeAndCreatedAtBetween(String eventType, String appCode, Date start, Date end);
+    @Query("SELECT e FROM TracingEvent e WHERE e.eventType = :eventType AND e.appCode = :appCode "
+            + "AND e.createdAt >= :start AND e.createdAt < :end")
+    List<TracingEvent> findByEventTypeAndAppCodeAndCreatedAtBetween(@Param("eventType") String eventType,
+            @Param("appCode") String appCode, @Param("start") Date start, @Param("end") Date end);
 
     /** 统计事件类型与应用在时间范围内的数量 */
-    long countByEventTypeAndAppCodeAndCreatedAtBetween(String eventType, String appCode, Date start, Date end);
+    @Query("SELECT COUNT(e) FROM TracingEvent e WHERE e.eventType = :eventType AND e.appCode = :appCode "
+            + "AND e.createdAt >= :start AND e.createdAt < :end")
+    long countByEventTypeAndAppCodeAndCreatedAtBetween(@Param("eventType") String eventType,
+            @Param("appCode") String appCode, @Param("start") Date start, @Param("end") Date end);
+
+    /** 按采样率加权统计应用在时间范围内的事件数（SUM(1/sample_rate)，未采样数据权重为 1） */
+    @Query(value = "SELECT CAST(COALESCE(ROUND(SUM(1 / COALESCE(sample_rate, 1))), 0) AS SIGNED) FROM trace_event "
+            + "WHERE event_type = :eventType AND app_code = :appCode AND created_at >= :start AND created_at < :end", nativeQuery = true)
+    long sumWeightedByEventTypeAndAppCodeBetween(@Param("eventType") String eventType, @Param("appCode") String appCode,
+            @Param("start") Date start, @Param("end") Date end);
 
     /** 统计事件类型与应用的总数量 */
     long countByEventTypeAndAppCode(String eventType, String appCode);
@@ -34,74 +49,76 @@ public interface TracingEventRepository extends JpaRepository<TracingEvent, Long
     long countByEventType(String eventType);
 
     /** 按事件类型统计在时间范围内的数量（全应用） */
-    long countByEventTypeAndCreatedAtBetween(String eventType, Date start, Date end);
+    @Query("SELECT COUNT(e) FROM TracingEvent e WHERE e.eventType = :eventType AND e.createdAt >= :start AND e.createdAt < :end")
+    long countByEventTypeAndCreatedAtBetween(@Param("eventType") String eventType, @Param("start") Date start,
+            @Param("end") Date end);
 
     /** 统计时间范围内的应用数量（按事件中的 app_code 去重） */
-    @Query(value = "SELECT COUNT(DISTINCT app_code) FROM trace_event WHERE created_at BETWEEN :start AND :end", nativeQuery = true)
+    @Query(value = "SELECT COUNT(DISTINCT app_code) FROM trace_event WHERE created_at >= :start AND created_at < :end", nativeQuery = true)
     long countDistinctAppCodeBetween(@Param("start") Date start, @Param("end") Date end);
 
     /** 统计时间范围内的会话数量（按事件中的 session_id 去重） */
-    @Query(value = "SELECT COUNT(DISTINCT session_id) FROM trace_event WHERE created_at BETWEEN :start AND :end", nativeQuery = true)
+    @Query(value = "SELECT COUNT(DISTINCT session_id) FROM trace_event WHERE created_at >= :start AND created_at < :end", nativeQuery = true)
     long countDistinctSessionIdBetween(@Param("start") Date start, @Param("end") Date end);
 
     /** 统计时间范围内的设备数量（从 payload 提取 deviceId 去重） */
-    @Query(value = "SELECT COUNT(DISTINCT JSON_UNQUOTE(JSON_EXTRACT(payload, '$.deviceId'))) FROM trace_event WHERE created_at BETWEEN :start AND :end", nativeQuery = true)
+    @Query(value = "SELECT COUNT(DISTINCT JSON_UNQUOTE(JSON_EXTRACT(payload, '$.deviceId'))) FROM trace_event WHERE created_at >= :start AND created_at < :end", nativeQuery = true)
     long countDistinctDeviceIdBetween(@Param("start") Date start, @Param("end") Date end);
 
     /** 统计时间范围内的用户数量（从 payload 提取 sdkUserUuid 去重） */
-    @Query(value = "SELECT COUNT(DISTINCT JSON_UNQUOTE(JSON_EXTRACT(payload, '$.sdkUserUuid'))) FROM trace_event WHERE created_at BETWEEN :start AND :end", nativeQuery = true)
+    @Query(value = "SELECT COUNT(DISTINCT JSON_UNQUOTE(JSON_EXTRACT(payload, '$.sdkUserUuid'))) FROM trace_event WHERE created_at >= :start AND created_at < :end", nativeQuery = true)
     long countDistinctSdkUserUuidBetween(@Param("start") Date start, @Param("end") Date end);
 
     /** 统计应用在时间范围内的会话数量（按事件中的 session_id 去重） */
-    @Query(value = "SELECT COUNT(DISTINCT session_id) FROM trace_event WHERE app_code = :appCode AND created_at BETWEEN :start AND :end", nativeQuery = true)
+    @Query(value = "SELECT COUNT(DISTINCT session_id) FROM trace_event WHERE app_code = :appCode AND created_at >= :start AND created_at < :end", nativeQuery = true)
     long countDistinctSessionIdForAppBetween(@Param("appCode") String appCode, @Param("start") Date start, @Param("end") Date end);
 
     /** 统计应用在时间范围内的设备数量（从 payload 提取 deviceId 去重） */
-    @Query(value = "SELECT COUNT(DISTINCT JSON_UNQUOTE(JSON_EXTRACT(payload, '$.deviceId'))) FROM trace_event WHERE app_code = :appCode AND created_at BETWEEN :start AND :end", nativeQuery = true)
+    @Query(value = "SELECT COUNT(DISTINCT JSON_UNQUOTE(JSON_EXTRACT(payload, '$.deviceId'))) FROM trace_event WHERE app_code = :appCode AND created_at >= :start AND created_at < :end", nativeQuery = true)
     long countDistinctDeviceIdForAppBetween(@Param("appCode") String appCode, @Param("start") Date start, @Param("end") Date end);
 
     /** 统计应用在时间范围内的用户数量（从 payload 提取 sdkUserUuid 去重） */
-    @Query(value = "SELECT COUNT(DISTINCT JSON_UNQUOTE(JSON_EXTRACT(payload, '$.sdkUserUuid'))) FROM trace_event WHERE app_code = :appCode AND created_at BETWEEN :start AND :end", nativeQuery = true)
+    @Query(value = "SELECT COUNT(DISTINCT JSON_UNQUOTE(JSON_EXTRACT(payload, '$.sdkUserUuid'))) FROM trace_event WHERE app_code = :appCode AND created_at >= :start AND created_at < :end", nativeQuery = true)
     long countDistinctSdkUserUuidForAppBetween(@Param("appCode") String appCode, @Param("start") Date start, @Param("end") Date end);
     /**
      * 统计日期范围内每日按应用的 PV 数。
      * 返回 [day(yyyy-MM-dd), app_code, pv_count]
      */
-    @Query(value = "SELECT DATE_FORMAT(created_at, '%Y-%m-%d') AS day, app_code AS code, COUNT(*) AS pv\n"
+    @Query(value = "SELECT DATE_FORMAT(created_at, '%Y-%m-%d') AS day, app_code AS code, CAST(ROUND(SUM(1 / COALESCE(sample_rate, 1))) AS SIGNED) AS pv\n"
             + "FROM trace_event\n"
-            + "WHERE event_type = 'PV' AND created_at BETWEEN :start AND :end\n"
+            + "WHERE event_type = 'PV' AND created_at >= :start AND created_at < :end\n"
             + "GROUP BY day, code\n"
             + "ORDER BY day ASC", nativeQuery = true)
     java.util.List<Object[]> countDailyPvByApp(@Param("start") Date start, @Param("end") Date end);
 
     /** 按天统计事件类型（全量） */
-    @Query(value = "SELECT DATE_FORMAT(created_at, '%Y-%m-%d') AS day, COUNT(*) AS cnt\n"
+    @Query(value = "SELECT DATE_FORMAT(created_at, '%Y-%m-%d') AS day, CAST(ROUND(SUM(1 / COALESCE(sample_rate, 1))) AS SIGNED) AS cnt\n"
             + "FROM trace_event\n"
-            + "WHERE event_type = :eventType AND created_at BETWEEN :start AND :end\n"
+            + "WHERE event_type = :eventType AND created_at >= :start AND created_at < :end\n"
             + "GROUP BY day\n"
             + "ORDER BY day ASC", nativeQuery = true)
     java.util.List<Object[]> countDailyByEventType(@Param("eventType") String eventType, @Param("start") Date start, @Param("end") Date end);
 
     /** 按天按应用统计事件类型（全量） */
-    @Query(value = "SELECT DATE_FORMAT(created_at, '%Y-%m-%d') AS day, app_code AS code, COUNT(*) AS cnt\n"
+    @Query(value = "SELECT DATE_FORMAT(created_at, '%Y-%m-%d') AS day, app_code AS code, CAST(ROUND(SUM(1 / COALESCE(sample_rate, 1))) AS SIGNED) AS cnt\n"
             + "FROM trace_event\n"
-            + "WHERE event_type = :eventType AND created_at BETWEEN :start AND :end\n"
+            + "WHERE event_type = :eventType AND created_at >= :start AND created_at < :end\n"
             + "GROUP BY day, code\n"
             + "ORDER BY day ASC", nativeQuery = true)
     java.util.List<Object[]> countDailyByEventTypeByApp(@Param("eventType") String eventType, @Param("start") Date start, @Param("end") Date end);
 
     /** 按天统计事件类型（限定 appCodes） */
-    @Query(value = "SELECT DATE_FORMAT(created_at, '%Y-%m-%d') AS day, COUNT(*) AS cnt\n"
+    @Query(value = "SELECT DATE_FORMAT(created_at, '%Y-%m-%d') AS day, CAST(ROUND(SUM(1 / COALESCE(sample_rate, 1))) AS SIGNED) AS cnt\n"
             + "FROM trace_event\n"
-            + "WHERE event_type = :eventType AND created_at BETWEEN :start AND :end AND app_code IN (:appCodes)\n"
+            + "WHERE event_type = :eventType AND created_at >= :start AND created_at < :end AND app_code IN (:appCodes)\n"
             + "GROUP BY day\n"
             + "ORDER BY day ASC", nativeQuery = true)
     java.util.List<Object[]> countDailyByEventTypeAndAppCodes(@Param("eventType") String eventType, @Param("start") Date start, @Param("end") Date end, @Param("appCodes") java.util.Set<String> appCodes);
 
     /** 按天按应用统计事件类型（限定 appCodes） */
-    @Query(value = "SELECT DATE_FORMAT(created_at, '%Y-%m-%d') AS day, app_code AS code, COUNT(*) AS cnt\n"
+    @Query(value = "SELECT DATE_FORMAT(created_at, '%Y-%m-%d') AS day, app_code AS code, CAST(ROUND(SUM(1 / COALESCE(sample_rate, 1))) AS SIGNED) AS cnt\n"
             + "FROM trace_event\n"
-            + "WHERE event_type = :eventType AND created_at BETWEEN :start AND :end AND app_code IN (:appCodes)\n"
+            + "WHERE event_type = :eventType AND created_at >= :start AND created_at < :end AND app_code IN (:appCodes)\n"
             + "GROUP BY day, code\n"
             + "ORDER BY day ASC", nativeQuery = true)
     java.util.List<Object[]> countDailyByEventTypeByAppAndAppCodes(@Param("eventType") String eventType, @Param("start") Date start, @Param("end") Date end, @Param("appCodes") java.util.Set<String> appCodes);
@@ -111,29 +128,29 @@ public interface TracingEventRepository extends JpaRepository<TracingEvent, Long
     long countByEventTypeAndAppCodes(@Param("eventType") String eventType, @Param("appCodes") java.util.Set<String> appCodes);
 
     /** 统计指定应用代码集合在时间范围内的事件数量 */
-    @Query(value = "SELECT COUNT(*) FROM trace_event WHERE event_type = :eventType AND created_at BETWEEN :start AND :end AND app_code IN (:appCodes)", nativeQuery = true)
+    @Query(value = "SELECT COUNT(*) FROM trace_event WHERE event_type = :eventType AND created_at >= :start AND created_at < :end AND app_code IN (:appCodes)", nativeQuery = true)
     long countByEventTypeAndCreatedAtBetweenAndAppCodes(@Param("eventType") String eventType, @Param("start") Date start, @Param("end") Date end, @Param("appCodes") java.util.Set<String> appCodes);
 
     /** 统计指定应用代码集合在时间范围内的去重应用数 */
-    @Query(value = "SELECT COUNT(DISTINCT app_code) FROM trace_event WHERE created_at BETWEEN :start AND :end AND app_code IN (:appCodes)", nativeQuery = true)
+    @Query(value = "SELECT COUNT(DISTINCT app_code) FROM trace_event WHERE created_at >= :start AND created_at < :end AND app_code IN (:appCodes)", nativeQuery = true)
     long countDistinctAppCodeBetweenAndAppCodes(@Param("start") Date start, @Param("end") Date end, @Param("appCodes") java.util.Set<String> appCodes);
 
     /** 统计指定应用代码集合在时间范围内的去重用户数 */
-    @Query(value = "SELECT COUNT(DISTINCT JSON_UNQUOTE(JSON_EXTRACT(payload, '$.sdkUserUuid'))) FROM trace_event WHERE created_at BETWEEN :start AND :end AND app_code IN (:appCodes)", nativeQuery = true)
+    @Query(value = "SELECT COUNT(DISTINCT JSON_UNQUOTE(JSON_EXTRACT(payload, '$.sdkUserUuid'))) FROM trace_event WHERE created_at >= :start AND created_at < :end AND app_code IN (:appCodes)", nativeQuery = true)
     long countDistinctSdkUserUuidBetweenAndAppCodes(@Param("start") Date start, @Param("end") Date end, @Param("appCodes") java.util.Set<String> appCodes);
 
     /** 统计指定应用代码集合在时间范围内的去重设备数 */
-    @Query(value = "SELECT COUNT(DISTINCT JSON_UNQUOTE(JSON_EXTRACT(payload, '$.deviceId'))) FROM trace_event WHERE created_at BETWEEN :start AND :end AND app_code IN (:appCodes)", nativeQuery = true)
+    @Query(value = "SELECT COUNT(DISTINCT JSON_UNQUOTE(JSON_EXTRACT(payload, '$.deviceId'))) FROM trace_event WHERE created_at >= :start AND created_at < :end AND app_code IN (:appCodes)", nativeQuery = true)
     long countDistinctDeviceIdBetweenAndAppCodes(@Param("start") Date start, @Param("end") Date end, @Param("appCodes") java.util.Set<String> appCodes);
 
     /** 统计指定应用代码集合在时间范围内的去重会话数 */
-    @Query(value = "SELECT COUNT(DISTINCT session_id) FROM trace_event WHERE created_at BETWEEN :start AND :end AND app_code IN (:appCodes)", nativeQuery = true)
+    @Query(value = "SELECT COUNT(DISTINCT session_id) FROM trace_event WHERE created_at >= :start AND created_at < :end AND app_code IN (:appCodes)", nativeQuery = true)
     long countDistinctSessionIdBetweenAndAppCodes(@Param("start") Date start, @Param("end") Date end, @Param("appCodes") java.util.Set<String> appCodes);
 
     /** 统计指定应用代码集合的每日PV数 */
-    @Query(value = "SELECT DATE_FORMAT(created_at, '%Y-%m-%d') AS day, app_code AS code, COUNT(*) AS pv\n"
+    @Query(value = "SELECT DATE_FORMAT(created_at, '%Y-%m-%d') AS day, app_code AS code, CAST(ROUND(SUM(1 / COALESCE(sample_rate, 1))) AS SIGNED) AS pv\n"
             + "FROM trace_event\n"
-            + "WHERE event_type = 'PV' AND created_at BETWEEN :start AND :end AND app_code IN (:appCodes)\n"
+            + "WHERE event_type = 'PV' AND created_at >= :start AND created_at < :end AND app_code IN (:appCodes)\n"
             + "GROUP BY day, code\n"
             + "ORDER BY day ASC", nativeQuery = true)
     java.util.List<Object[]> countDailyPvByAppAndAppCodes(@Param("start") Date start, @Param("end") Date end, @Param("appCodes") java.util.Set<String> appCodes);
@@ -162,131 +179,34 @@ public interface TracingEventRepository extends JpaRepository<TracingEvent, Long
     @Query(value = "SELECT id, event_type, app_code, app_name, session_id, payload, created_at FROM trace_event WHERE event_type = 'ERROR' AND app_code = :appCode ORDER BY created_at DESC", nativeQuery = true)
     java.util.List<Object[]> findRecentErrorsByAppCode(@Param("appCode") String appCode, Pageable pageable);
 
-    @Query(value = "SELECT id, app_code, app_name, session_id, created_at,\n"
-                    + "JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errorCode'), JSON_EXTRACT(payload, '$.code'), JSON_EXTRACT(payload, '$.eventId'))) AS event_id,\n"
-                    + "JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))) AS err_message,\n"
-                    + "CASE\n"
-                    + "  WHEN COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.severity'), JSON_EXTRACT(payload, '$.level'), JSON_EXTRACT(payload, '$.errLevel'))), '') <> '' THEN\n"
-                    + "    CASE\n"
-                    + "      WHEN UPPER(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.severity'), JSON_EXTRACT(payload, '$.level'), JSON_EXTRACT(payload, '$.errLevel')))) IN ('CRIT', 'CRITICAL') THEN 'CRITICAL'\n"
-                    + "      WHEN UPPER(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.severity'), JSON_EXTRACT(payload, '$.level'), JSON_EXTRACT(payload, '$.errLevel')))) IN ('FATAL') THEN 'FATAL'\n"
-                    + "      WHEN UPPER(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.severity'), JSON_EXTRACT(payload, '$.level'), JSON_EXTRACT(payload, '$.errLevel')))) IN ('ERROR', 'ERR') THEN 'ERROR'\n"
-                    + "      WHEN UPPER(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.severity'), JSON_EXTRACT(payload, '$.level'), JSON_EXTRACT(payload, '$.errLevel')))) IN ('WARN', 'WARNING') THEN 'WARN'\n"
-                    + "      WHEN UPPER(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.severity'), JSON_EXTRACT(payload, '$.level'), JSON_EXTRACT(payload, '$.errLevel')))) IN ('INFO') THEN 'INFO'\n"
-                    + "      ELSE UPPER(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.severity'), JSON_EXTRACT(payload, '$.level'), JSON_EXTRACT(payload, '$.errLevel'))))\n"
-                    + "    END\n"
-                    + "  WHEN LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%out of memory%'\n"
-                    + "    OR LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%heap%'\n"
-                    + "    OR LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%stack overflow%'\n"
-                    + "    OR LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%maximum call stack%'\n"
-                    + "    THEN 'CRITICAL'\n"
-                    + "  WHEN LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%chunkloaderror%'\n"
-                    + "    OR LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%loading chunk%'\n"
-                    + "    OR LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%failed to fetch dynamically imported module%'\n"
-                    + "    THEN 'CRITICAL'\n"
-                    + "  WHEN LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%fatal%'\n"
-                    + "    THEN 'FATAL'\n"
-                    + "  WHEN JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errorCode'), JSON_EXTRACT(payload, '$.code'), JSON_EXTRACT(payload, '$.eventId'))) REGEXP '^(5[0-9]{2})'\n"
-                    + "    THEN 'ERROR'\n"
-                    + "  WHEN JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errorCode'), JSON_EXTRACT(payload, '$.code'), JSON_EXTRACT(payload, '$.eventId'))) REGEXP '^(4[0-9]{2})'\n"
-                    + "    THEN 'WARN'\n"
-                    + "  WHEN LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%timeout%'\n"
-                    + "    OR LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%timed out%'\n"
-                    + "    OR LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%network error%'\n"
-                    + "    OR LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%networkerror%'\n"
-                    + "    OR LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%failed to fetch%'\n"
-                    + "    THEN 'WARN'\n"
-                    + "  ELSE 'ERROR'\n"
-                    + "END AS severity,\n"
-                    + "JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.triggerPageUrl'), JSON_EXTRACT(payload, '$.requestUri'), JSON_EXTRACT(payload, '$.pageUrl'), JSON_EXTRACT(payload, '$.url'))) AS request_uri\n"
+    /** 错误列表的轻量投影列（不含 payload） */
+    String ERROR_LITE_COLUMNS = "SELECT id, app_code, app_name, session_id, created_at,\n"
+                    + "error_code AS event_id,\n"
+                    + "error_message AS err_message,\n"
+                    + "severity,\n"
+                    + "request_uri\n";
+
+    /** 错误列表过滤条件：错误码与等级走索引等值匹配，地址为可选模糊过滤 */
+    String ERROR_FILTERS_SQL = "AND (:errorCode IS NULL OR :errorCode = '' OR error_code = :errorCode)\n"
+                    + "AND (:severity IS NULL OR :severity = '' OR severity = :severity)\n"
+                    + "AND (:requestUri IS NULL OR :requestUri = '' OR request_uri LIKE CONCAT('%', :requestUri, '%'))\n";
+
+    @Query(value = ERROR_LITE_COLUMNS
                     + "FROM trace_event\n"
                     + "WHERE event_type = 'ERROR'\n"
                     + "ORDER BY created_at DESC", nativeQuery = true)
     java.util.List<Object[]> findRecentErrorsLite(Pageable pageable);
 
-    @Query(value = "SELECT id, app_code, app_name, session_id, created_at,\n"
-                    + "JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errorCode'), JSON_EXTRACT(payload, '$.code'), JSON_EXTRACT(payload, '$.eventId'))) AS event_id,\n"
-                    + "JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))) AS err_message,\n"
-                    + "CASE\n"
-                    + "  WHEN COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.severity'), JSON_EXTRACT(payload, '$.level'), JSON_EXTRACT(payload, '$.errLevel'))), '') <> '' THEN\n"
-                    + "    CASE\n"
-                    + "      WHEN UPPER(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.severity'), JSON_EXTRACT(payload, '$.level'), JSON_EXTRACT(payload, '$.errLevel')))) IN ('CRIT', 'CRITICAL') THEN 'CRITICAL'\n"
-                    + "      WHEN UPPER(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.severity'), JSON_EXTRACT(payload, '$.level'), JSON_EXTRACT(payload, '$.errLevel')))) IN ('FATAL') THEN 'FATAL'\n"
-                    + "      WHEN UPPER(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.severity'), JSON_EXTRACT(payload, '$.level'), JSON_EXTRACT(payload, '$.errLevel')))) IN ('ERROR', 'ERR') THEN 'ERROR'\n"
-                    + "      WHEN UPPER(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.severity'), JSON_EXTRACT(payload, '$.level'), JSON_EXTRACT(payload, '$.errLevel')))) IN ('WARN', 'WARNING') THEN 'WARN'\n"
-                    + "      WHEN UPPER(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.severity'), JSON_EXTRACT(payload, '$.level'), JSON_EXTRACT(payload, '$.errLevel')))) IN ('INFO') THEN 'INFO'\n"
-                    + "      ELSE UPPER(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.severity'), JSON_EXTRACT(payload, '$.level'), JSON_EXTRACT(payload, '$.errLevel'))))\n"
-                    + "    END\n"
-                    + "  WHEN LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%out of memory%'\n"
-                    + "    OR LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%heap%'\n"
-                    + "    OR LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%stack overflow%'\n"
-                    + "    OR LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%maximum call stack%'\n"
-                    + "    THEN 'CRITICAL'\n"
-                    + "  WHEN LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%chunkloaderror%'\n"
-                    + "    OR LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%loading chunk%'\n"
-                    + "    OR LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%failed to fetch dynamically imported module%'\n"
-                    + "    THEN 'CRITICAL'\n"
-                    + "  WHEN LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%fatal%'\n"
-                    + "    THEN 'FATAL'\n"
-                    + "  WHEN JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errorCode'), JSON_EXTRACT(payload, '$.code'), JSON_EXTRACT(payload, '$.eventId'))) REGEXP '^(5[0-9]{2})'\n"
-                    + "    THEN 'ERROR'\n"
-                    + "  WHEN JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errorCode'), JSON_EXTRACT(payload, '$.code'), JSON_EXTRACT(payload, '$.eventId'))) REGEXP '^(4[0-9]{2})'\n"
-                    + "    THEN 'WARN'\n"
-                    + "  WHEN LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%timeout%'\n"
-                    + "    OR LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%timed out%'\n"
-                    + "    OR LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%network error%'\n"
-                    + "    OR LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%networkerror%'\n"
-                    + "    OR LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%failed to fetch%'\n"
-                    + "    THEN 'WARN'\n"
-                    + "  ELSE 'ERROR'\n"
-                    + "END AS severity,\n"
-                    + "JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.triggerPageUrl'), JSON_EXTRACT(payload, '$.requestUri'), JSON_EXTRACT(payload, '$.pageUrl'), JSON_EXTRACT(payload, '$.url'))) AS request_uri\n"
+    @Query(value = ERROR_LITE_COLUMNS
                     + "FROM trace_event\n"
                     + "WHERE event_type = 'ERROR' AND app_code IN (:appCodes)\n"
                     + "ORDER BY created_at DESC", nativeQuery = true)
     java.util.List<Object[]> findRecentErrorsLiteByAppCodes(@Param("appCodes") java.util.Set<String> appCodes,
                     Pageable pageable);
 
-    @Query(value = "SELECT id, app_code, app_name, session_id, created_at,\n"
-                    + "JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errorCode'), JSON_EXTRACT(payload, '$.code'), JSON_EXTRACT(payload, '$.eventId'))) AS event_id,\n"
-                    + "JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))) AS err_message,\n"
-                    + "CASE\n"
-                    + "  WHEN COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.severity'), JSON_EXTRACT(payload, '$.level'), JSON_EXTRACT(payload, '$.errLevel'))), '') <> '' THEN\n"
-                    + "    CASE\n"
-                    + "      WHEN UPPER(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.severity'), JSON_EXTRACT(payload, '$.level'), JSON_EXTRACT(payload, '$.errLevel')))) IN ('CRIT', 'CRITICAL') THEN 'CRITICAL'\n"
-                    + "      WHEN UPPER(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.severity'), JSON_EXTRACT(payload, '$.level'), JSON_EXTRACT(payload, '$.errLevel')))) IN ('FATAL') THEN 'FATAL'\n"
-                    + "      WHEN UPPER(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.severity'), JSON_EXTRACT(payload, '$.level'), JSON_EXTRACT(payload, '$.errLevel')))) IN ('ERROR', 'ERR') THEN 'ERROR'\n"
-                    + "      WHEN UPPER(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.severity'), JSON_EXTRACT(payload, '$.level'), JSON_EXTRACT(payload, '$.errLevel')))) IN ('WARN', 'WARNING') THEN 'WARN'\n"
-                    + "      WHEN UPPER(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.severity'), JSON_EXTRACT(payload, '$.level'), JSON_EXTRACT(payload, '$.errLevel')))) IN ('INFO') THEN 'INFO'\n"
-                    + "      ELSE UPPER(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.severity'), JSON_EXTRACT(payload, '$.level'), JSON_EXTRACT(payload, '$.errLevel'))))\n"
-                    + "    END\n"
-                    + "  WHEN LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%out of memory%'\n"
-                    + "    OR LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%heap%'\n"
-                    + "    OR LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%stack overflow%'\n"
-                    + "    OR LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%maximum call stack%'\n"
-                    + "    THEN 'CRITICAL'\n"
-                    + "  WHEN LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%chunkloaderror%'\n"
-                    + "    OR LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%loading chunk%'\n"
-                    + "    OR LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%failed to fetch dynamically imported module%'\n"
-                    + "    THEN 'CRITICAL'\n"
-                    + "  WHEN LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%fatal%'\n"
-                    + "    THEN 'FATAL'\n"
-                    + "  WHEN JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errorCode'), JSON_EXTRACT(payload, '$.code'), JSON_EXTRACT(payload, '$.eventId'))) REGEXP '^(5[0-9]{2})'\n"
-                    + "    THEN 'ERROR'\n"
-                    + "  WHEN JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errorCode'), JSON_EXTRACT(payload, '$.code'), JSON_EXTRACT(payload, '$.eventId'))) REGEXP '^(4[0-9]{2})'\n"
-                    + "    THEN 'WARN'\n"
-                    + "  WHEN LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%timeout%'\n"
-                    + "    OR LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%timed out%'\n"
-                    + "    OR LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%network error%'\n"
-                    + "    OR LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%networkerror%'\n"
-                    + "    OR LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%failed to fetch%'\n"
-                    + "    THEN 'WARN'\n"
-                    + "  ELSE 'ERROR'\n"
-                    + "END AS severity,\n"
-                    + "JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.triggerPageUrl'), JSON_EXTRACT(payload, '$.requestUri'), JSON_EXTRACT(payload, '$.pageUrl'), JSON_EXTRACT(payload, '$.url'))) AS request_uri\n"
+    @Query(value = ERROR_LITE_COLUMNS
                     + "FROM trace_event FORCE INDEX (idx_appcode_created_at)\n"
                     + "WHERE app_code = :appCode AND event_type = 'ERROR'\n"
-                    + "AND (payload IS NULL OR JSON_VALID(payload))\n"
                     + "ORDER BY created_at DESC", nativeQuery = true)
     java.util.List<Object[]> findRecentErrorsLiteByAppCode(@Param("appCode") String appCode, Pageable pageable);
 
@@ -294,46 +214,9 @@ public interface TracingEventRepository extends JpaRepository<TracingEvent, Long
     long countErrorsByAppCode(@Param("appCode") String appCode);
 
     @Query(value = "SELECT COUNT(*)\n"
-                    + "FROM trace_event FORCE INDEX (idx_appcode_created_at)\n"
+                    + "FROM trace_event\n"
                     + "WHERE app_code = :appCode AND event_type = 'ERROR'\n"
-                    + "AND (payload IS NULL OR JSON_VALID(payload))\n"
-                    + "AND (:errorCode IS NULL OR :errorCode = '' OR JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errorCode'), JSON_EXTRACT(payload, '$.code'), JSON_EXTRACT(payload, '$.eventId'))) = :errorCode)\n"
-                    + "AND (:severity IS NULL OR :severity = '' OR (\n"
-                    + "  CASE\n"
-                    + "    WHEN COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.severity'), JSON_EXTRACT(payload, '$.level'), JSON_EXTRACT(payload, '$.errLevel'))), '') <> '' THEN\n"
-                    + "      CASE\n"
-                    + "        WHEN UPPER(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.severity'), JSON_EXTRACT(payload, '$.level'), JSON_EXTRACT(payload, '$.errLevel')))) IN ('CRIT', 'CRITICAL') THEN 'CRITICAL'\n"
-                    + "        WHEN UPPER(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.severity'), JSON_EXTRACT(payload, '$.level'), JSON_EXTRACT(payload, '$.errLevel')))) IN ('FATAL') THEN 'FATAL'\n"
-                    + "        WHEN UPPER(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.severity'), JSON_EXTRACT(payload, '$.level'), JSON_EXTRACT(payload, '$.errLevel')))) IN ('ERROR', 'ERR') THEN 'ERROR'\n"
-                    + "        WHEN UPPER(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.severity'), JSON_EXTRACT(payload, '$.level'), JSON_EXTRACT(payload, '$.errLevel')))) IN ('WARN', 'WARNING') THEN 'WARN'\n"
-                    + "        WHEN UPPER(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.severity'), JSON_EXTRACT(payload, '$.level'), JSON_EXTRACT(payload, '$.errLevel')))) IN ('INFO') THEN 'INFO'\n"
-                    + "        ELSE UPPER(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.severity'), JSON_EXTRACT(payload, '$.level'), JSON_EXTRACT(payload, '$.errLevel'))))\n"
-                    + "      END\n"
-                    + "    WHEN LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%out of memory%'\n"
-                    + "      OR LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%heap%'\n"
-                    + "      OR LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%stack overflow%'\n"
-                    + "      OR LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%maximum call stack%'\n"
-                    + "      THEN 'CRITICAL'\n"
-                    + "    WHEN LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%chunkloaderror%'\n"
-                    + "      OR LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%loading chunk%'\n"
-                    + "      OR LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%failed to fetch dynamically imported module%'\n"
-                    + "      THEN 'CRITICAL'\n"
-                    + "    WHEN LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%fatal%'\n"
-                    + "      THEN 'FATAL'\n"
-                    + "    WHEN JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errorCode'), JSON_EXTRACT(payload, '$.code'), JSON_EXTRACT(payload, '$.eventId'))) REGEXP '^(5[0-9]{2})'\n"
-                    + "      THEN 'ERROR'\n"
-                    + "    WHEN JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errorCode'), JSON_EXTRACT(payload, '$.code'), JSON_EXTRACT(payload, '$.eventId'))) REGEXP '^(4[0-9]{2})'\n"
-                    + "      THEN 'WARN'\n"
-                    + "    WHEN LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%timeout%'\n"
-                    + "      OR LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%timed out%'\n"
-                    + "      OR LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%network error%'\n"
-                    + "      OR LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%networkerror%'\n"
-                    + "      OR LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%failed to fetch%'\n"
-                    + "      THEN 'WARN'\n"
-                    + "    ELSE 'ERROR'\n"
-                    + "  END\n"
-                    + ") = :severity)\n"
-                    + "AND (:requestUri IS NULL OR :requestUri = '' OR JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.triggerPageUrl'), JSON_EXTRACT(payload, '$.requestUri'), JSON_EXTRACT(payload, '$.pageUrl'), JSON_EXTRACT(payload, '$.url'))) LIKE CONCAT('%', :requestUri, '%'))",
+                    + ERROR_FILTERS_SQL,
             nativeQuery = true)
     long countErrorsByAppCodeWithFilters(@Param("appCode") String appCode,
                     @Param("errorCode") String errorCode,
@@ -343,126 +226,16 @@ public interface TracingEventRepository extends JpaRepository<TracingEvent, Long
     @Query(value = "SELECT id, event_type, app_code, app_name, session_id, payload, created_at FROM trace_event WHERE event_type = 'ERROR' AND app_code = :appCode ORDER BY created_at DESC", nativeQuery = true)
     java.util.List<Object[]> findErrorPageByAppCode(@Param("appCode") String appCode, Pageable pageable);
 
-    @Query(value = "SELECT id, app_code, app_name, session_id, created_at,\n"
-                    + "JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errorCode'), JSON_EXTRACT(payload, '$.code'), JSON_EXTRACT(payload, '$.eventId'))) AS event_id,\n"
-                    + "JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))) AS err_message,\n"
-                    + "CASE\n"
-                    + "  WHEN COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.severity'), JSON_EXTRACT(payload, '$.level'), JSON_EXTRACT(payload, '$.errLevel'))), '') <> '' THEN\n"
-                    + "    CASE\n"
-                    + "      WHEN UPPER(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.severity'), JSON_EXTRACT(payload, '$.level'), JSON_EXTRACT(payload, '$.errLevel')))) IN ('CRIT', 'CRITICAL') THEN 'CRITICAL'\n"
-                    + "      WHEN UPPER(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.severity'), JSON_EXTRACT(payload, '$.level'), JSON_EXTRACT(payload, '$.errLevel')))) IN ('FATAL') THEN 'FATAL'\n"
-                    + "      WHEN UPPER(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.severity'), JSON_EXTRACT(payload, '$.level'), JSON_EXTRACT(payload, '$.errLevel')))) IN ('ERROR', 'ERR') THEN 'ERROR'\n"
-                    + "      WHEN UPPER(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.severity'), JSON_EXTRACT(payload, '$.level'), JSON_EXTRACT(payload, '$.errLevel')))) IN ('WARN', 'WARNING') THEN 'WARN'\n"
-                    + "      WHEN UPPER(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.severity'), JSON_EXTRACT(payload, '$.level'), JSON_EXTRACT(payload, '$.errLevel')))) IN ('INFO') THEN 'INFO'\n"
-                    + "      ELSE UPPER(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.severity'), JSON_EXTRACT(payload, '$.level'), JSON_EXTRACT(payload, '$.errLevel'))))\n"
-                    + "    END\n"
-                    + "  WHEN LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%out of memory%'\n"
-                    + "    OR LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%heap%'\n"
-                    + "    OR LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%stack overflow%'\n"
-                    + "    OR LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%maximum call stack%'\n"
-                    + "    THEN 'CRITICAL'\n"
-                    + "  WHEN LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%chunkloaderror%'\n"
-                    + "    OR LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%loading chunk%'\n"
-                    + "    OR LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%failed to fetch dynamically imported module%'\n"
-                    + "    THEN 'CRITICAL'\n"
-                    + "  WHEN LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%fatal%'\n"
-                    + "    THEN 'FATAL'\n"
-                    + "  WHEN JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errorCode'), JSON_EXTRACT(payload, '$.code'), JSON_EXTRACT(payload, '$.eventId'))) REGEXP '^(5[0-9]{2})'\n"
-                    + "    THEN 'ERROR'\n"
-                    + "  WHEN JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errorCode'), JSON_EXTRACT(payload, '$.code'), JSON_EXTRACT(payload, '$.eventId'))) REGEXP '^(4[0-9]{2})'\n"
-                    + "    THEN 'WARN'\n"
-                    + "  WHEN LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%timeout%'\n"
-                    + "    OR LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%timed out%'\n"
-                    + "    OR LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%network error%'\n"
-                    + "    OR LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%networkerror%'\n"
-                    + "    OR LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%failed to fetch%'\n"
-                    + "    THEN 'WARN'\n"
-                    + "  ELSE 'ERROR'\n"
-                    + "END AS severity,\n"
-                    + "JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.triggerPageUrl'), JSON_EXTRACT(payload, '$.requestUri'), JSON_EXTRACT(payload, '$.pageUrl'), JSON_EXTRACT(payload, '$.url'))) AS request_uri\n"
+    @Query(value = ERROR_LITE_COLUMNS
                     + "FROM trace_event FORCE INDEX (idx_appcode_created_at)\n"
                     + "WHERE app_code = :appCode AND event_type = 'ERROR'\n"
-                    + "AND (payload IS NULL OR JSON_VALID(payload))\n"
                     + "ORDER BY created_at DESC", nativeQuery = true)
     java.util.List<Object[]> findErrorPageLiteByAppCode(@Param("appCode") String appCode, Pageable pageable);
 
-    @Query(value = "SELECT id, app_code, app_name, session_id, created_at,\n"
-                    + "JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errorCode'), JSON_EXTRACT(payload, '$.code'), JSON_EXTRACT(payload, '$.eventId'))) AS event_id,\n"
-                    + "JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))) AS err_message,\n"
-                    + "CASE\n"
-                    + "  WHEN COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.severity'), JSON_EXTRACT(payload, '$.level'), JSON_EXTRACT(payload, '$.errLevel'))), '') <> '' THEN\n"
-                    + "    CASE\n"
-                    + "      WHEN UPPER(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.severity'), JSON_EXTRACT(payload, '$.level'), JSON_EXTRACT(payload, '$.errLevel')))) IN ('CRIT', 'CRITICAL') THEN 'CRITICAL'\n"
-                    + "      WHEN UPPER(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.severity'), JSON_EXTRACT(payload, '$.level'), JSON_EXTRACT(payload, '$.errLevel')))) IN ('FATAL') THEN 'FATAL'\n"
-                    + "      WHEN UPPER(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.severity'), JSON_EXTRACT(payload, '$.level'), JSON_EXTRACT(payload, '$.errLevel')))) IN ('ERROR', 'ERR') THEN 'ERROR'\n"
-                    + "      WHEN UPPER(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.severity'), JSON_EXTRACT(payload, '$.level'), JSON_EXTRACT(payload, '$.errLevel')))) IN ('WARN', 'WARNING') THEN 'WARN'\n"
-                    + "      WHEN UPPER(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.severity'), JSON_EXTRACT(payload, '$.level'), JSON_EXTRACT(payload, '$.errLevel')))) IN ('INFO') THEN 'INFO'\n"
-                    + "      ELSE UPPER(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.severity'), JSON_EXTRACT(payload, '$.level'), JSON_EXTRACT(payload, '$.errLevel'))))\n"
-                    + "    END\n"
-                    + "  WHEN LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%out of memory%'\n"
-                    + "    OR LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%heap%'\n"
-                    + "    OR LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%stack overflow%'\n"
-                    + "    OR LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%maximum call stack%'\n"
-                    + "    THEN 'CRITICAL'\n"
-                    + "  WHEN LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%chunkloaderror%'\n"
-                    + "    OR LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%loading chunk%'\n"
-                    + "    OR LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%failed to fetch dynamically imported module%'\n"
-                    + "    THEN 'CRITICAL'\n"
-                    + "  WHEN LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%fatal%'\n"
-                    + "    THEN 'FATAL'\n"
-                    + "  WHEN JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errorCode'), JSON_EXTRACT(payload, '$.code'), JSON_EXTRACT(payload, '$.eventId'))) REGEXP '^(5[0-9]{2})'\n"
-                    + "    THEN 'ERROR'\n"
-                    + "  WHEN JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errorCode'), JSON_EXTRACT(payload, '$.code'), JSON_EXTRACT(payload, '$.eventId'))) REGEXP '^(4[0-9]{2})'\n"
-                    + "    THEN 'WARN'\n"
-                    + "  WHEN LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%timeout%'\n"
-                    + "    OR LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%timed out%'\n"
-                    + "    OR LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%network error%'\n"
-                    + "    OR LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%networkerror%'\n"
-                    + "    OR LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%failed to fetch%'\n"
-                    + "    THEN 'WARN'\n"
-                    + "  ELSE 'ERROR'\n"
-                    + "END AS severity,\n"
-                    + "JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.triggerPageUrl'), JSON_EXTRACT(payload, '$.requestUri'), JSON_EXTRACT(payload, '$.pageUrl'), JSON_EXTRACT(payload, '$.url'))) AS request_uri\n"
-                    + "FROM trace_event FORCE INDEX (idx_appcode_created_at)\n"
+    @Query(value = ERROR_LITE_COLUMNS
+                    + "FROM trace_event\n"
                     + "WHERE app_code = :appCode AND event_type = 'ERROR'\n"
-                    + "AND (payload IS NULL OR JSON_VALID(payload))\n"
-                    + "AND (:errorCode IS NULL OR :errorCode = '' OR JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errorCode'), JSON_EXTRACT(payload, '$.code'), JSON_EXTRACT(payload, '$.eventId'))) = :errorCode)\n"
-                    + "AND (:severity IS NULL OR :severity = '' OR (\n"
-                    + "  CASE\n"
-                    + "    WHEN COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.severity'), JSON_EXTRACT(payload, '$.level'), JSON_EXTRACT(payload, '$.errLevel'))), '') <> '' THEN\n"
-                    + "      CASE\n"
-                    + "        WHEN UPPER(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.severity'), JSON_EXTRACT(payload, '$.level'), JSON_EXTRACT(payload, '$.errLevel')))) IN ('CRIT', 'CRITICAL') THEN 'CRITICAL'\n"
-                    + "        WHEN UPPER(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.severity'), JSON_EXTRACT(payload, '$.level'), JSON_EXTRACT(payload, '$.errLevel')))) IN ('FATAL') THEN 'FATAL'\n"
-                    + "        WHEN UPPER(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.severity'), JSON_EXTRACT(payload, '$.level'), JSON_EXTRACT(payload, '$.errLevel')))) IN ('ERROR', 'ERR') THEN 'ERROR'\n"
-                    + "        WHEN UPPER(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.severity'), JSON_EXTRACT(payload, '$.level'), JSON_EXTRACT(payload, '$.errLevel')))) IN ('WARN', 'WARNING') THEN 'WARN'\n"
-                    + "        WHEN UPPER(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.severity'), JSON_EXTRACT(payload, '$.level'), JSON_EXTRACT(payload, '$.errLevel')))) IN ('INFO') THEN 'INFO'\n"
-                    + "        ELSE UPPER(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.severity'), JSON_EXTRACT(payload, '$.level'), JSON_EXTRACT(payload, '$.errLevel'))))\n"
-                    + "      END\n"
-                    + "    WHEN LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%out of memory%'\n"
-                    + "      OR LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%heap%'\n"
-                    + "      OR LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%stack overflow%'\n"
-                    + "      OR LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%maximum call stack%'\n"
-                    + "      THEN 'CRITICAL'\n"
-                    + "    WHEN LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%chunkloaderror%'\n"
-                    + "      OR LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%loading chunk%'\n"
-                    + "      OR LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%failed to fetch dynamically imported module%'\n"
-                    + "      THEN 'CRITICAL'\n"
-                    + "    WHEN LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%fatal%'\n"
-                    + "      THEN 'FATAL'\n"
-                    + "    WHEN JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errorCode'), JSON_EXTRACT(payload, '$.code'), JSON_EXTRACT(payload, '$.eventId'))) REGEXP '^(5[0-9]{2})'\n"
-                    + "      THEN 'ERROR'\n"
-                    + "    WHEN JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errorCode'), JSON_EXTRACT(payload, '$.code'), JSON_EXTRACT(payload, '$.eventId'))) REGEXP '^(4[0-9]{2})'\n"
-                    + "      THEN 'WARN'\n"
-                    + "    WHEN LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%timeout%'\n"
-                    + "      OR LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%timed out%'\n"
-                    + "      OR LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%network error%'\n"
-                    + "      OR LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%networkerror%'\n"
-                    + "      OR LOWER(COALESCE(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), '')) LIKE '%failed to fetch%'\n"
-                    + "      THEN 'WARN'\n"
-                    + "    ELSE 'ERROR'\n"
-                    + "  END\n"
-                    + ") = :severity)\n"
-                    + "AND (:requestUri IS NULL OR :requestUri = '' OR JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.triggerPageUrl'), JSON_EXTRACT(payload, '$.requestUri'), JSON_EXTRACT(payload, '$.pageUrl'), JSON_EXTRACT(payload, '$.url'))) LIKE CONCAT('%', :requestUri, '%'))\n"
+                    + ERROR_FILTERS_SQL
                     + "ORDER BY created_at DESC", nativeQuery = true)
     java.util.List<Object[]> findErrorPageLiteByAppCodeWithFilters(@Param("appCode") String appCode,
                     @Param("errorCode") String errorCode,
@@ -470,6 +243,44 @@ public interface TracingEventRepository extends JpaRepository<TracingEvent, Long
                     @Param("requestUri") String requestUri,
                     Pageable pageable);
 
+    @Query(value = "SELECT COUNT(*) FROM trace_event WHERE app_code = :appCode AND fingerprint = :fingerprint", nativeQuery = true)
+    long countErrorsByAppCodeAndFingerprint(@Param("appCode") String appCode, @Param("fingerprint") long fingerprint);
+
+    /** 指定错误聚合下的事件（按指纹索引倒序分页） */
+    @Query(value = ERROR_LITE_COLUMNS
+                    + "FROM trace_event\n"
+                    + "WHERE app_code = :appCode AND fingerprint = :fingerprint\n"
+                    + "ORDER BY created_at DESC", nativeQuery = true)
+    java.util.List<Object[]> findErrorPageLiteByAppCodeAndFingerprint(@Param("appCode") String appCode,
+                    @Param("fingerprint") long fingerprint, Pageable pageable);
+
+    /**
+     * 回填历史 ERROR 事件的结构化错误列（按主键区间分批执行）。
+     * 仅处理四列均为空的行，重复执行无副作用。
+     */
+    @org.springframework.data.jpa.repository.Modifying
+    @org.springframework.transaction.annotation.Transactional
+    @Query(value = "UPDATE trace_event SET\n"
+                    + "error_code = LEFT(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errorCode'), JSON_EXTRACT(payload, '$.code'), JSON_EXTRACT(payload, '$.eventId'))), 128),\n"
+                    + "error_message = LEFT(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.errMessage'), JSON_EXTRACT(payload, '$.message'), JSON_EXTRACT(payload, '$.msg'), JSON_EXTRACT(payload, '$.errorMsg'), JSON_EXTRACT(payload, '$.errorMessage'))), 1024),\n"
+                    + "request_uri = LEFT(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.triggerPageUrl'), JSON_EXTRACT(payload, '$.requestUri'), JSON_EXTRACT(payload, '$.pageUrl'), JSON_EXTRACT(payload, '$.url'))), 1024),\n"
+                    + "error_level = LEFT(JSON_UNQUOTE(COALESCE(JSON_EXTRACT(payload, '$.severity'), JSON_EXTRACT(payload, '$.level'), JSON_EXTRACT(payload, '$.errLevel'))), 32)\n"
+                    + "WHERE id >= :fromId AND id < :toId AND event_type = 'ERROR'\n"
+                    + "AND error_code IS NULL AND error_message IS NULL AND request_uri IS NULL AND error_level IS NULL\n"
+                    + "AND payload IS NOT NULL AND JSON_VALID(payload)", nativeQuery = true)
+    int backfillErrorColumns(@Param("fromId") long fromId, @Param("toId") long toId);
+
+    /** 尚未计算等级的 ERROR 事件（id, error_code, error_message, error_level），用于回填 */
+    @Query(value = "SELECT id, error_code, error_message, error_level FROM trace_event\n"
+                    + "WHERE id >= :fromId AND id < :toId AND event_type = 'ERROR' AND severity IS NULL", nativeQuery = true)
+    java.util.List<Object[]> findErrorsWithoutSeverity(@Param("fromId") long fromId, @Param("toId") long toId);
+
+    @Query(value = "SELECT MIN(id) FROM trace_event", nativeQuery = true)
+    Long findMinId();
+
+    @Query(value = "SELECT MAX(id) FROM trace_event", nativeQuery = true)
+    Long findMaxId();
+
     @Query(value = "SELECT payload FROM trace_event WHERE id = :id AND event_type = 'ERROR'", nativeQuery = true)
     String findErrorPayloadById(@Param("id") long id);
 
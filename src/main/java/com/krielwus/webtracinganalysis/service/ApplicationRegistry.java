@@ -0,0 +1,286 @@
+package com.krielwus.webtracinganalysis.service;
+
+import com.krielwus.webtracinganalysis.info.IngestEvent;
+import com.krielwus.webtracinganalysis.info.IngestPayload;
+import com.krielwus.webtracinganalysis.repository.ApplicationInfoRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 已登记应用编码的内存注册表。
+ * 启动时整表加载 application_info.app_code，应用增删改在事务提交后增量更新，另有后台线程按 refreshSeconds 全量刷新，
+ * 多实例部署时其他实例上的变更在一个刷新周期内可见。上报链路只做一次 HashSet 查找，不访问数据库。
+ * mode 为 reject 时未登记应用的上报直接拒绝；quarantine 时按 appCode 计入隔离统计并写入 QuarantineStore（有大小上限），
+ * 对客户端仍返回成功，应用登记后隔离的载荷回放入库；off 不校验。
+ * 注册表尚未加载成功或为空（全新部署尚未创建应用）时不校验，避免误拒全部流量。
+ */
+@Component
+public class ApplicationRegistry {
+    private static final Logger log = LoggerFactory.getLogger(ApplicationRegistry.class);
+    /** 隔离统计中超出上限后的归并键 */
+    private static final String OTHER = "_other";
+    private static final int MAX_CODE_LENGTH = 64;
+
+    private final ApplicationInfoRepository applicationInfoRepository;
+    private final QuarantineStore quarantineStore;
+    /** 隔离载荷回放的去向（入库管线），由 TracingService 启动时设置 */
+    private volatile Consumer<byte[]> releaseTarget;
+
+    /** 校验模式：off、reject、quarantine */
+    @Value("${tracing.ingest.appRegistry.mode:quarantine}")
+    private String mode;
+    @Value("${tracing.ingest.appRegistry.refreshSeconds:10}")
+    private long refreshSeconds;
+    /** 隔离统计最多跟踪的未登记 appCode 数 */
+    @Value("${tracing.ingest.appRegistry.maxQuarantinedCodes:1000}")
+    private int maxQuarantinedCodes;
+
+    private volatile Set<String> codes = Collections.emptySet();
+    private volatile boolean loaded;
+    private volatile long loadedAt;
+    private final ConcurrentHashMap<String, Quarantined> quarantined = new ConcurrentHashMap<>();
+    private final LongAdder refreshFailures = new LongAdder();
+    private ScheduledExecutorService scheduler;
+
+    public ApplicationRegistry(ApplicationInfoRepository applicationInfoRepository, QuarantineStore quarantineStore) {
+        this.applicationInfoRepository = applicationInfoRepository;
+        this.quarantineStore = quarantineStore;
+    }
+
+    @PostConstruct
+    public void start() {
+        if ("off".equalsIgnoreCase(mode)) return;
+        refreshQuietly();
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "app-registry-refresh");
+            t.setDaemon(true);
+            return t;
+        });
+        long interval = Math.max(1, refreshSeconds);
+        scheduler.scheduleWithFixedDelay(this::refreshQuietly, interval, interval, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) scheduler.shutdownNow();
+    }
+
+    /**
+     * 全量刷新。与增量更新互斥：增量更新在事务提交后执行，持锁期间的查询必然能看到此前已提交的变更。
+     */
+    public synchronized void refresh() {
+        Set<String> fresh = new HashSet<>(applicationInfoRepository.findAllAppCodes());
+        fresh.remove(null);
+        Set<String> previous = codes;
+        codes = Collections.unmodifiableSet(fresh);
+        loaded = true;
+        loadedAt = System.currentTimeMillis();
+        // 其他实例上新登记的应用：回放本实例隔离的载荷
+        for (String code : fresh) {
+            if (!previous.contains(code) && quarantineStore.has(code)) releaseAsync(code);
+        }
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (RuntimeException e) {
+            refreshFailures.increment();
+            log.warn("Failed to refresh application registry: {}", e.getMessage());
+        }
+    }
+
+    /** 登记应用编码；处于事务中时在提交后生效 */
+    public void register(String appCode) {
+        if (appCode == null) return;
+        afterCommit(() -> {
+            synchronized (this) {
+                if (codes.contains(appCode)) return;
+                Set<String> next = new HashSet<>(codes);
+                next.add(appCode);
+                codes = Collections.unmodifiableSet(next);
+            }
+            quarantined.remove(appCode);
+            if (quarantineStore.has(appCode)) releaseAsync(appCode);
+        });
+    }
+
+    /**
+     * 设置隔离载荷的回放去向，并回放已登记应用遗留的隔离数据（如上次运行期间登记、尚未回放）。
+     */
+    public void setReleaseTarget(Consumer<byte[]> target) {
+        this.releaseTarget = target;
+        for (String code : codes) {
+            if (quarantineStore.has(code)) releaseAsync(code);
+        }
+    }
+
+    /** 在后台线程回放，避免占用控制台请求或持有注册表锁 */
+    private void releaseAsync(String appCode) {
+        Runnable task = () -> {
+            Consumer<byte[]> target = releaseTarget;
+            if (target == null || !isRegistered(appCode)) return;
+            try {
+                quarantineStore.release(appCode, target);
+            } catch (RuntimeException e) {
+                log.warn("Failed to release quarantined payloads for {}: {}", appCode, e.getMessage());
+            }
+        };
+        ScheduledExecutorService s = scheduler;
+        if (s != null && !s.isShutdown()) s.execute(task);
+        else task.run();
+    }
+
+    /** 注销应用编码；处于事务中时在提交后生效 */
+    public void unregister(String appCode) {
+        if (appCode == null) return;
+        afterCommit(() -> {
+            synchronized (this) {
+                if (!codes.contains(appCode)) return;
+                Set<String> next = new HashSet<>(codes);
+                next.remove(appCode);
+                codes = Collections.unmodifiableSet(next);
+            }
+        });
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /** 当前是否执行校验 */
+    public boolean isEnforcing() {
+        return !"off".equalsIgnoreCase(mode) && loaded && !codes.isEmpty();
+    }
+
+    /** 未登记应用是否直接拒绝（否则隔离） */
+    public boolean isRejecting() {
+        return "reject".equalsIgnoreCase(mode);
+    }
+
+    public boolean isRegistered(String appCode) {
+        return appCode != null && codes.contains(appCode);
+    }
+
+    /**
+     * 过滤未登记应用的上报并计入隔离统计。
+     * 存在 baseInfo 时按其 appCode 整条判定，未登记返回 -1（事件保持不变）；
+     * 否则逐条移除 appCode 未登记的事件，返回移除条数。
+     */
+    public int filterUnregistered(IngestPayload payload) {
+        if (payload.hasBaseInfo()) {
+            if (isRegistered(payload.getAppCode())) return 0;
+            quarantine(payload.getAppCode(), payload.getEvents().size());
+            if (!isRejecting()) quarantineStore.store(payload.getAppCode(), payload.getSource());
+            return -1;
+        }
+        int before = payload.getEvents().size();
+        if (before == 0) return 0;
+        Map<String, List<IngestEvent>> removed = null;
+        for (int i = 0; i < payload.getEvents().size(); i++) {
+            IngestEvent e = payload.getEvents().get(i);
+            if (isRegistered(e.getAppCode())) continue;
+            if (removed == null) removed = new LinkedHashMap<>();
+            removed.computeIfAbsent(e.getAppCode() == null ? IngestMetrics.UNKNOWN_APP : e.getAppCode(),
+                    k -> new ArrayList<>()).add(e);
+        }
+        if (removed == null) return 0;
+        Set<IngestEvent> drop = Collections.newSetFromMap(new java.util.IdentityHashMap<>());
+        removed.values().forEach(drop::addAll);
+        payload.getEvents().removeIf(drop::contains);
+        for (Map.Entry<String, List<IngestEvent>> entry : removed.entrySet()) {
+            quarantine(entry.getKey(), entry.getValue().size());
+            // 只有携带 appCode 的事件才可能在登记后回放
+            if (!isRejecting() && !IngestMetrics.UNKNOWN_APP.equals(entry.getKey())) {
+                quarantineStore.store(entry.getKey(), wrapEvents(entry.getValue()));
+            }
+        }
+        return before - payload.getEvents().size();
+    }
+
+    /** 将事件切片拼成只含 eventInfo 的上报文档 */
+    private static byte[] wrapEvents(List<IngestEvent> events) {
+        java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
+        out.writeBytes("{\"eventInfo\":[".getBytes(StandardCharsets.UTF_8));
+        for (int i = 0; i < events.size(); i++) {
+            IngestEvent e = events.get(i);
+            if (i > 0) out.write(',');
+            out.write(e.getSource(), e.getOffset(), e.getLength());
+        }
+        out.writeBytes("]}".getBytes(StandardCharsets.UTF_8));
+        return out.toByteArray();
+    }
+
+    private void quarantine(String appCode, int events) {
+        String key = appCode == null || appCode.isEmpty() ? IngestMetrics.UNKNOWN_APP
+                : appCode.length() > MAX_CODE_LENGTH ? appCode.substring(0, MAX_CODE_LENGTH) : appCode;
+        Quarantined q = quarantined.get(key);
+        if (q == null) {
+            if (quarantined.size() >= maxQuarantinedCodes) key = OTHER;
+            q = quarantined.computeIfAbsent(key, k -> new Quarantined());
+        }
+        q.payloads.increment();
+        q.events.add(events);
+        q.lastSeen = System.currentTimeMillis();
+    }
+
+    /** 注册表状态与隔离统计（按事件数倒序） */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("mode", mode);
+        m.put("enforcing", isEnforcing());
+        m.put("registered", codes.size());
+        m.put("loadedAt", loadedAt);
+        m.put("refreshSeconds", refreshSeconds);
+        m.put("refreshFailures", refreshFailures.sum());
+        List<Map<String, Object>> list = new ArrayList<>();
+        quarantined.forEach((code, q) -> {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("appCode", code);
+            item.put("payloads", q.payloads.sum());
+            item.put("events", q.events.sum());
+            item.put("lastSeen", q.lastSeen);
+            list.add(item);
+        });
+        list.sort((a, b) -> Long.compare((Long) b.get("events"), (Long) a.get("events")));
+        m.put("quarantined", list);
+        m.put("quarantineStore", quarantineStore.snapshot());
+        return m;
+    }
+
+    private static final class Quarantined {
+        final LongAdder payloads = new LongAdder();
+        final LongAdder events = new LongAdder();
+        volatile long lastSeen;
+    }
+}
@@ -18,10 +18,18 @@ import java.util.regex.Pattern;
 public class ApplicationService {
     private final ApplicationInfoRepository repo;
     private final TracingService tracingService;
+    private final IngestAdmissionControl admissionControl;
+    private final ApplicationRegistry appRegistry;
     private static final Pattern NAME_RULE = Pattern.compile("^.{2,50}$");
     private static final Pattern PREFIX_RULE = Pattern.compile("^[A-Za-z0-9_]{2,50}$");
 
-    public ApplicationService(ApplicationInfoRepository repo, TracingService tracingService) { this.repo = repo; this.tracingService = tracingService; }
+    public ApplicationService(ApplicationInfoRepository repo, TracingService tracingService,
+            IngestAdmissionControl admissionControl, ApplicationRegistry appRegistry) {
+        this.repo = repo;
+        this.tracingService = tracingService;
+        this.admissionControl = admissionControl;
+        this.appRegistry = appRegistry;
+    }
 
     public List<ApplicationInfo> listAll() { return repo.findAll(); }
 
@@ -68,7 +76,9 @@ public class ApplicationService {
         if (creator != null && !creator.trim().isEmpty()) set.add(creator.trim());
         if (managers != null) for (String m : managers) { if (m != null && !m.trim().isEmpty()) set.add(m.trim()); }
         ai.setAppManagers(JSON.toJSONString(new java.util.ArrayList<>(set)));
-        return repo.save(ai);
+        ApplicationInfo saved = repo.save(ai);
+        appRegistry.register(saved.getAppCode());
+        return saved;
     }
 
     @Transactional
@@ -86,7 +96,31 @@ public class ApplicationService {
             for (String m : managers) { if (m != null && !m.trim().isEmpty()) set.add(m.trim()); }
             ai.setAppManagers(JSON.toJSONString(new java.util.ArrayList<>(set)));
         }
-        return repo.save(ai);
+        ApplicationInfo saved = repo.save(ai);
+        appRegistry.register(saved.getAppCode());
+        return saved;
+    }
+
+    /**
+     * 更新应用上报策略：限流（每秒事件数、突发容量）与按事件类型的采样率；传空表示沿用全局配置。
+     */
+    @Transactional
+    public ApplicationInfo updateIngestPolicy(Long id, Integer rateLimit, Integer burst, String sampleRates, String operator) {
+        Optional<ApplicationInfo> opt = repo.findById(id);
+        if (!opt.isPresent()) throw new IllegalArgumentException("not found");
+        ApplicationInfo ai = opt.get();
+        if (!canOperate(ai, operator)) throw new IllegalArgumentException("forbidden");
+        if ((rateLimit != null && rateLimit < 0) || (burst != null && burst < 0))
+            throw new IllegalArgumentException("rate limit invalid");
+        String rates = sampleRates == null || sampleRates.trim().isEmpty() ? null : sampleRates.trim();
+        if (rates != null && IngestAdmissionControl.parseSampleRates(rates).isEmpty())
+            throw new IllegalArgumentException("sample_rates invalid");
+        ai.setIngestRateLimit(rateLimit);
+        ai.setIngestBurst(burst);
+        ai.setSampleRates(rates);
+        ApplicationInfo saved = repo.save(ai);
+        admissionControl.invalidate();
+        return saved;
     }
 
     @Transactional
@@ -95,6 +129,7 @@ public class ApplicationService {
         if (!opt.isPresent()) return;
         if (!canOperate(opt.get(), operator)) throw new IllegalArgumentException("forbidden");
         repo.deleteById(id);
+        appRegistry.unregister(opt.get().getAppCode());
     }
 
     private boolean canOperate(ApplicationInfo ai, String operator) {
@@ -223,6 +258,15 @@ public class ApplicationService {
                 requestUri);
     }
 
+    public Map<String, Object> pageErrorIssuesByApp(String appCode, int pageNo, int pageSize, String severity,
+            String sort) {
+        return tracingService.pageErrorIssuesByApp(appCode, pageNo, pageSize, severity, sort);
+    }
+
+    public Map<String, Object> pageErrorsByFingerprint(String appCode, String fingerprint, int pageNo, int pageSize) {
+        return tracingService.pageErrorsByFingerprint(appCode, fingerprint, pageNo, pageSize);
+    }
+
     public String getErrorPayloadByApp(String appCode, long id) {
         return tracingService.getErrorPayloadByApp(appCode, id);
     }
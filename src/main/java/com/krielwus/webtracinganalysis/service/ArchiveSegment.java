@@ -0,0 +1,691 @@
+package com.krielwus.webtracinganalysis.service;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 归档段文件的列式格式（一张表一天一个文件）。
+ * 行按 blockRows 分块，块内每列单独编码：主键与时间戳差分后 zigzag 变长编码，低基数字符串（appCode/eventType/路由等）
+ * 为段内字典编号，长文本（payload 等）按块 Deflate 压缩。文件尾部是元数据：各列字典、每块的行数、时间 min/max 与列偏移，
+ * 读取时先按段与块的时间范围、字典是否包含目标值跳过，再只读取查询涉及的列。
+ * 版本 2 起块目录中每个列块带 CRC32；写入完成时文件已 fsync，移除库中数据前由 Meta.verify 完整读回校验。
+ */
+public final class ArchiveSegment {
+    private static final int MAGIC = 0x57544152; // "WTAR"
+    private static final int VERSION = 2;
+
+    /** 列编码方式 */
+    public enum Kind {
+        /** 非空 long，块内差分 */
+        DELTA,
+        /** 可空 long */
+        LONG,
+        /** 可空 double */
+        DOUBLE,
+        /** 可空字符串，段内字典编码 */
+        DICT,
+        /** 可空字符串，块内压缩 */
+        TEXT
+    }
+
+    public static final class Column {
+        final String name;
+        final Kind kind;
+
+        public Column(String name, Kind kind) {
+            this.name = name;
+            this.kind = kind;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+    }
+
+    private ArchiveSegment() {
+    }
+
+    /** 创建写入器；timeColumn 为参与块 min/max 索引的时间列（DELTA 类型，毫秒） */
+    public static Writer create(Path file, String table, long day, List<Column> columns, String timeColumn, int blockRows)
+            throws IOException {
+        return new Writer(file, table, day, columns, timeColumn, blockRows);
+    }
+
+    /** 读取段元数据（只读文件头与尾部） */
+    public static Meta open(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size < 16) throw new IOException("Truncated archive segment " + file);
+            ByteBuffer header = ByteBuffer.allocate(8);
+            readFully(ch, header, 0);
+            header.flip();
+            if (header.getInt() != MAGIC) throw new IOException("Not an archive segment: " + file);
+            int version = header.getInt();
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Unsupported archive segment version " + version + ": " + file);
+            }
+            ByteBuffer tail = ByteBuffer.allocate(8);
+            readFully(ch, tail, size - 8);
+            tail.flip();
+            int footerLength = tail.getInt();
+            if (tail.getInt() != MAGIC || footerLength <= 0 || footerLength > size - 16) {
+                throw new IOException("Not an archive segment: " + file);
+            }
+            ByteBuffer footer = ByteBuffer.allocate(footerLength);
+            readFully(ch, footer, size - 8 - footerLength);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(footer.array()));
+            Meta m = new Meta(file, size);
+            m.version = version;
+            m.table = in.readUTF();
+            m.day = in.readLong();
+            m.rows = in.readLong();
+            m.minTime = in.readLong();
+            m.maxTime = in.readLong();
+            int ncols = in.readInt();
+            for (int i = 0; i < ncols; i++) {
+                String name = in.readUTF();
+                Kind kind = Kind.values()[in.readByte()];
+                m.columns.add(new Column(name, kind));
+                List<String> dict = Collections.emptyList();
+                if (kind == Kind.DICT) {
+                    int n = in.readInt();
+                    dict = new ArrayList<>(n);
+                    for (int j = 0; j < n; j++) dict.add(in.readUTF());
+                }
+                m.dictionaries.add(dict);
+            }
+            m.timeIndex = version >= 2 ? in.readInt() : -1;
+            int nblocks = in.readInt();
+            for (int b = 0; b < nblocks; b++) {
+                BlockMeta bm = new BlockMeta(in.readInt(), in.readLong(), in.readLong(), ncols);
+                for (int c = 0; c < ncols; c++) {
+                    bm.offsets[c] = in.readLong();
+                    bm.lengths[c] = in.readInt();
+                    if (version >= 2) bm.checksums[c] = in.readInt();
+                    if (bm.offsets[c] < 8 || bm.lengths[c] < 0 || bm.offsets[c] + bm.lengths[c] > size - 8 - footerLength) {
+                        throw new IOException("Corrupt block directory in archive segment " + file);
+                    }
+                }
+                m.blocks.add(bm);
+            }
+            return m;
+        }
+    }
+
+    /**
+     * 将目录项（新建、改名）落盘。部分平台不支持对目录 fsync，此时忽略。
+     */
+    public static void syncDirectory(Path dir) throws IOException {
+        try (FileChannel ch = FileChannel.open(dir, StandardOpenOption.READ)) {
+            ch.force(true);
+        } catch (java.nio.file.AccessDeniedException | UnsupportedOperationException e) {
+            // Windows 无法以读方式打开目录
+        }
+    }
+
+    private static void readFully(FileChannel ch, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            int n = ch.read(buf, position + buf.position());
+            if (n < 0) throw new IOException("Unexpected end of archive segment");
+        }
+    }
+
+    /** 流式写入：块满即落盘，内存中只保留当前块与各列字典 */
+    public static final class Writer implements AutoCloseable {
+        private final FileChannel channel;
+        private final OutputStream file;
+        private final String table;
+        private final long day;
+        private final List<Column> columns;
+        private final int timeIndex;
+        private final int blockRows;
+        private final ByteArrayOutputStream[] buffers;
+        private final DataOutputStream[] outs;
+        private final long[] previous;
+        private final List<Map<String, Integer>> dictIndex = new ArrayList<>();
+        private final List<List<String>> dictValues = new ArrayList<>();
+        private final List<BlockMeta> blocks = new ArrayList<>();
+        private long position;
+        private int blockCount;
+        private long blockMin = Long.MAX_VALUE;
+        private long blockMax = Long.MIN_VALUE;
+        private long rows;
+        private long minTime = Long.MAX_VALUE;
+        private long maxTime = Long.MIN_VALUE;
+        private boolean finished;
+
+        Writer(Path path, String table, long day, List<Column> columns, String timeColumn, int blockRows) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE);
+            this.file = new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16);
+            this.table = table;
+            this.day = day;
+            this.columns = columns;
+            this.blockRows = Math.max(1, blockRows);
+            int t = -1;
+            int n = columns.size();
+            buffers = new ByteArrayOutputStream[n];
+            outs = new DataOutputStream[n];
+            previous = new long[n];
+            for (int i = 0; i < n; i++) {
+                buffers[i] = new ByteArrayOutputStream();
+                outs[i] = new DataOutputStream(buffers[i]);
+                dictIndex.add(new HashMap<>());
+                dictValues.add(new ArrayList<>());
+                if (columns.get(i).name.equals(timeColumn)) t = i;
+            }
+            if (t < 0 || columns.get(t).kind != Kind.DELTA) {
+                throw new IllegalArgumentException("Time column must be a DELTA column: " + timeColumn);
+            }
+            timeIndex = t;
+            DataOutputStream header = new DataOutputStream(file);
+            header.writeInt(MAGIC);
+            header.writeInt(VERSION);
+            position = 8;
+        }
+
+        /** 追加一行，值顺序与列定义一致 */
+        public void append(Object[] row) throws IOException {
+            for (int i = 0; i < columns.size(); i++) {
+                Object v = row[i];
+                DataOutputStream out = outs[i];
+                switch (columns.get(i).kind) {
+                    case DELTA: {
+                        long x = asLong(v);
+                        writeVarLong(out, zigzag(x - previous[i]));
+                        previous[i] = x;
+                        break;
+                    }
+                    case LONG:
+                        if (v == null) {
+                            out.writeByte(0);
+                        } else {
+                            out.writeByte(1);
+                            writeVarLong(out, zigzag(asLong(v)));
+                        }
+                        break;
+                    case DOUBLE:
+                        if (v == null) {
+                            out.writeByte(0);
+                        } else {
+                            out.writeByte(1);
+                            out.writeDouble(((Number) v).doubleValue());
+                        }
+                        break;
+                    case DICT:
+                        writeVarLong(out, v == null ? 0 : code(i, v.toString()) + 1L);
+                        break;
+                    default:
+                        if (v == null) {
+                            writeVarLong(out, 0);
+                        } else {
+                            byte[] b = v.toString().getBytes(StandardCharsets.UTF_8);
+                            writeVarLong(out, b.length + 1L);
+                            out.write(b);
+                        }
+                }
+            }
+            long t = asLong(row[timeIndex]);
+            blockMin = Math.min(blockMin, t);
+            blockMax = Math.max(blockMax, t);
+            rows++;
+            if (++blockCount >= blockRows) flushBlock();
+        }
+
+        private int code(int column, String value) {
+            Map<String, Integer> idx = dictIndex.get(column);
+            Integer c = idx.get(value);
+            if (c == null) {
+                c = idx.size();
+                idx.put(value, c);
+                dictValues.get(column).add(value);
+            }
+            return c;
+        }
+
+        private void flushBlock() throws IOException {
+            if (blockCount == 0) return;
+            BlockMeta bm = new BlockMeta(blockCount, blockMin, blockMax, columns.size());
+            for (int i = 0; i < columns.size(); i++) {
+                outs[i].flush();
+                byte[] data = buffers[i].toByteArray();
+                if (columns.get(i).kind == Kind.TEXT) data = deflate(data);
+                bm.offsets[i] = position;
+                bm.lengths[i] = data.length;
+                bm.checksums[i] = checksum(data);
+                file.write(data);
+                position += data.length;
+                buffers[i].reset();
+                previous[i] = 0;
+            }
+            blocks.add(bm);
+            minTime = Math.min(minTime, blockMin);
+            maxTime = Math.max(maxTime, blockMax);
+            blockCount = 0;
+            blockMin = Long.MAX_VALUE;
+            blockMax = Long.MIN_VALUE;
+        }
+
+        /** 写入尾部元数据、fsync 并关闭，返回总行数 */
+        public long finish() throws IOException {
+            flushBlock();
+            ByteArrayOutputStream footerBytes = new ByteArrayOutputStream();
+            DataOutputStream f = new DataOutputStream(footerBytes);
+            f.writeUTF(table);
+            f.writeLong(day);
+            f.writeLong(rows);
+            f.writeLong(rows == 0 ? 0 : minTime);
+            f.writeLong(rows == 0 ? 0 : maxTime);
+            f.writeInt(columns.size());
+            for (int i = 0; i < columns.size(); i++) {
+                Column c = columns.get(i);
+                f.writeUTF(c.name);
+                f.writeByte(c.kind.ordinal());
+                if (c.kind == Kind.DICT) {
+                    List<String> values = dictValues.get(i);
+                    f.writeInt(values.size());
+                    for (String v : values) f.writeUTF(v);
+                }
+            }
+            f.writeInt(timeIndex);
+            f.writeInt(blocks.size());
+            for (BlockMeta bm : blocks) {
+                f.writeInt(bm.rows);
+                f.writeLong(bm.minTime);
+                f.writeLong(bm.maxTime);
+                for (int i = 0; i < columns.size(); i++) {
+                    f.writeLong(bm.offsets[i]);
+                    f.writeInt(bm.lengths[i]);
+                    f.writeInt(bm.checksums[i]);
+                }
+            }
+            f.flush();
+            DataOutputStream out = new DataOutputStream(file);
+            out.write(footerBytes.toByteArray());
+            out.writeInt(footerBytes.size());
+            out.writeInt(MAGIC);
+            out.flush();
+            channel.force(true);
+            finished = true;
+            file.close();
+            return rows;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!finished) file.close();
+        }
+    }
+
+    /** 段元数据：时间范围、列字典与块目录 */
+    public static final class Meta {
+        final Path file;
+        final long size;
+        int version;
+        /** 时间列下标，版本 1 的段未记录为 -1 */
+        int timeIndex;
+        String table;
+        long day;
+        long rows;
+        long minTime;
+        long maxTime;
+        final List<Column> columns = new ArrayList<>();
+        final List<List<String>> dictionaries = new ArrayList<>();
+        final List<BlockMeta> blocks = new ArrayList<>();
+
+        Meta(Path file, long size) {
+            this.file = file;
+            this.size = size;
+        }
+
+        public Path getFile() {
+            return file;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public String getTable() {
+            return table;
+        }
+
+        /** 段对应的日期（epochDay） */
+        public long getDay() {
+            return day;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        public long getMinTime() {
+            return minTime;
+        }
+
+        public long getMaxTime() {
+            return maxTime;
+        }
+
+        /** 段是否包含该列（schema 新增列之前写出的段没有） */
+        public boolean hasColumn(String name) {
+            for (Column c : columns) {
+                if (c.name.equals(name)) return true;
+            }
+            return false;
+        }
+
+        public int columnIndex(String name) {
+            for (int i = 0; i < columns.size(); i++) {
+                if (columns.get(i).name.equals(name)) return i;
+            }
+            throw new IllegalArgumentException("Unknown archive column " + name);
+        }
+
+        /** 字典列的取值列表，编号即下标 */
+        public List<String> dictionary(String column) {
+            return dictionaries.get(columnIndex(column));
+        }
+
+        /** 值在字典列中的编号，不存在返回 -1（整个段可跳过） */
+        public int dictCode(String column, String value) {
+            return value == null ? -1 : dictionary(column).indexOf(value);
+        }
+
+        /**
+         * 逐块读取指定列；时间范围 [fromMs, toMs) 与块的 min/max 不相交的块直接跳过。
+         */
+        public void scan(String[] names, long fromMs, long toMs, BlockVisitor visitor) throws IOException {
+            if (rows == 0 || maxTime < fromMs || minTime >= toMs) return;
+            int[] idx = new int[names.length];
+            for (int i = 0; i < names.length; i++) idx[i] = columnIndex(names[i]);
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+                for (BlockMeta bm : blocks) {
+                    if (bm.maxTime < fromMs || bm.minTime >= toMs) continue;
+                    Block block = new Block(this, bm.rows, names.length);
+                    for (int i = 0; i < idx.length; i++) {
+                        int c = idx[i];
+                        ByteBuffer buf = ByteBuffer.allocate(bm.lengths[c]);
+                        readFully(ch, buf, bm.offsets[c]);
+                        byte[] data = buf.array();
+                        Kind kind = columns.get(c).kind;
+                        if (kind == Kind.TEXT) data = inflate(data);
+                        block.decode(i, c, kind, data);
+                    }
+                    visitor.visit(block);
+                }
+            }
+        }
+
+        /**
+         * 完整读回校验：逐块核对列块校验和（版本 2 起）、解码全部列、检查时间列落在块的 min/max 内与字典编号有效，
+         * 返回实际读出的行数；任何不一致抛出 IOException。
+         */
+        public long verify() throws IOException {
+            long total = 0;
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+                for (BlockMeta bm : blocks) {
+                    Block block = new Block(this, bm.rows, columns.size());
+                    for (int c = 0; c < columns.size(); c++) {
+                        ByteBuffer buf = ByteBuffer.allocate(bm.lengths[c]);
+                        readFully(ch, buf, bm.offsets[c]);
+                        byte[] data = buf.array();
+                        if (version >= 2 && checksum(data) != bm.checksums[c]) {
+                            throw new IOException("Checksum mismatch in column " + columns.get(c).name + " of " + file);
+                        }
+                        Kind kind = columns.get(c).kind;
+                        block.decode(c, c, kind, kind == Kind.TEXT ? inflate(data) : data);
+                        if (kind == Kind.DICT) {
+                            int limit = dictionaries.get(c).size();
+                            for (int r = 0; r < bm.rows; r++) {
+                                if (block.code(c, r) >= limit) throw new IOException("Dictionary code out of range in " + file);
+                            }
+                        }
+                    }
+                    if (timeIndex >= 0) {
+                        for (int r = 0; r < bm.rows; r++) {
+                            long t = block.getLong(timeIndex, r);
+                            if (t < bm.minTime || t > bm.maxTime) throw new IOException("Block time range mismatch in " + file);
+                        }
+                    }
+                    total += bm.rows;
+                }
+            }
+            if (total != rows) throw new IOException("Row count mismatch in " + file + ": footer " + rows + ", blocks " + total);
+            return total;
+        }
+    }
+
+    public interface BlockVisitor {
+        void visit(Block block) throws IOException;
+    }
+
+    /** 解码后的一块数据，列下标对应 scan 时传入的列名顺序 */
+    public static final class Block {
+        private final Meta meta;
+        private final int rows;
+        private final long[][] longs;
+        private final int[][] codes;
+        private final double[][] doubles;
+        private final boolean[][] nulls;
+        private final String[][] texts;
+        private final int[] columnOf;
+
+        Block(Meta meta, int rows, int n) {
+            this.meta = meta;
+            this.rows = rows;
+            longs = new long[n][];
+            codes = new int[n][];
+            doubles = new double[n][];
+            nulls = new boolean[n][];
+            texts = new String[n][];
+            columnOf = new int[n];
+        }
+
+        public int rows() {
+            return rows;
+        }
+
+        public boolean isNull(int col, int row) {
+            if (codes[col] != null) return codes[col][row] < 0;
+            if (texts[col] != null) return texts[col][row] == null;
+            return nulls[col] != null && nulls[col][row];
+        }
+
+        public long getLong(int col, int row) {
+            return longs[col][row];
+        }
+
+        public double getDouble(int col, int row) {
+            return doubles[col][row];
+        }
+
+        /** 字典列的编号，空值为 -1 */
+        public int code(int col, int row) {
+            return codes[col][row];
+        }
+
+        public String getString(int col, int row) {
+            if (texts[col] != null) return texts[col][row];
+            int c = codes[col][row];
+            return c < 0 ? null : meta.dictionaries.get(columnOf[col]).get(c);
+        }
+
+        void decode(int i, int column, Kind kind, byte[] data) throws IOException {
+            columnOf[i] = column;
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+            switch (kind) {
+                case DELTA: {
+                    long[] v = new long[rows];
+                    long prev = 0;
+                    for (int r = 0; r < rows; r++) {
+                        prev += unzigzag(readVarLong(in));
+                        v[r] = prev;
+                    }
+                    longs[i] = v;
+                    break;
+                }
+                case LONG: {
+                    long[] v = new long[rows];
+                    boolean[] n = new boolean[rows];
+                    for (int r = 0; r < rows; r++) {
+                        if (in.readByte() == 0) n[r] = true;
+                        else v[r] = unzigzag(readVarLong(in));
+                    }
+                    longs[i] = v;
+                    nulls[i] = n;
+                    break;
+                }
+                case DOUBLE: {
+                    double[] v = new double[rows];
+                    boolean[] n = new boolean[rows];
+                    for (int r = 0; r < rows; r++) {
+                        if (in.readByte() == 0) n[r] = true;
+                        else v[r] = in.readDouble();
+                    }
+                    doubles[i] = v;
+                    nulls[i] = n;
+                    break;
+                }
+                case DICT: {
+                    int[] v = new int[rows];
+                    for (int r = 0; r < rows; r++) v[r] = (int) readVarLong(in) - 1;
+                    codes[i] = v;
+                    break;
+                }
+                default: {
+                    String[] v = new String[rows];
+                    for (int r = 0; r < rows; r++) {
+                        int len = (int) readVarLong(in);
+                        if (len == 0) continue;
+                        byte[] b = new byte[len - 1];
+                        in.readFully(b);
+                        v[r] = new String(b, StandardCharsets.UTF_8);
+                    }
+                    texts[i] = v;
+                }
+            }
+            if (in.available() != 0) throw new IOException("Trailing bytes in archive column block");
+        }
+    }
+
+    private static final class BlockMeta {
+        final int rows;
+        final long minTime;
+        final long maxTime;
+        final long[] offsets;
+        final int[] lengths;
+        final int[] checksums;
+
+        BlockMeta(int rows, long minTime, long maxTime, int columns) {
+            this.rows = rows;
+            this.minTime = minTime;
+            this.maxTime = maxTime;
+            this.offsets = new long[columns];
+            this.lengths = new int[columns];
+            this.checksums = new int[columns];
+        }
+    }
+
+    private static int checksum(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length);
+        return (int) crc.getValue();
+    }
+
+    private static long asLong(Object v) {
+        if (v instanceof java.util.Date) return ((java.util.Date) v).getTime();
+        if (v instanceof java.time.LocalDateTime) {
+            return ((java.time.LocalDateTime) v).atZone(java.time.ZoneId.systemDefault()).toInstant().toEpochMilli();
+        }
+        return v == null ? 0 : ((Number) v).longValue();
+    }
+
+    private static long zigzag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    private static long unzigzag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private static void writeVarLong(DataOutputStream out, long v) throws IOException {
+        while ((v & ~0x7FL) != 0) {
+            out.writeByte((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.writeByte((int) v);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return v;
+        }
+        throw new IOException("Malformed varint in archive segment");
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+            byte[] buf = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buf, 0, deflater.deflate(buf));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] data) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4);
+            byte[] buf = new byte[8192];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buf);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Truncated compressed block in archive segment");
+                }
+                out.write(buf, 0, n);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt compressed block in archive segment", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.krielwus.webtracinganalysis.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * baseInfo 标识哈希热缓存。
+ * 同一会话内每次上报的 baseInfo（设备、UA、应用、用户、会话）除 sendTime 外完全相同，按标识哈希每天只需存一行；
+ * 缓存最近写入过的哈希及写入时间，touchIntervalMs 内重复出现的直接跳过，超过后再写一次以推进 last_seen。
+ * 哈希本身已包含 sessionId/deviceId，因此按哈希缓存即等同于按会话/设备缓存。容量固定，按最近访问淘汰。
+ * 仅在批次提交后标记已写入，回滚的批次下次仍会写入。
+ */
+@Component
+public class BaseInfoDedupCache {
+    @Value("${tracing.ingest.baseInfo.dedup.enabled:true}")
+    private boolean enabled;
+    @Value("${tracing.ingest.baseInfo.dedup.maxEntries:100000}")
+    private int maxEntries;
+    /** 已写入的哈希在该间隔内不再写入，即 last_seen 的精度 */
+    @Value("${tracing.ingest.baseInfo.dedup.touchIntervalMs:60000}")
+    private long touchIntervalMs;
+
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private Map<Long, Long> lastWritten;
+
+    @jakarta.annotation.PostConstruct
+    public void init() {
+        final int capacity = Math.max(1, maxEntries);
+        lastWritten = new LinkedHashMap<Long, Long>(Math.min(capacity, 4096), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Long> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /** 该哈希是否需要写入（未缓存或距上次写入已超过 touchIntervalMs） */
+    public boolean needsWrite(long hash, long now) {
+        if (!enabled) return true;
+        Long at;
+        synchronized (this) {
+            at = lastWritten.get(hash);
+        }
+        if (at != null && now - at < touchIntervalMs) {
+            skipped.increment();
+            return false;
+        }
+        return true;
+    }
+
+    /** 批次提交后标记已写入 */
+    public void markWritten(Collection<Long> hashes, long now) {
+        if (hashes.isEmpty()) return;
+        written.add(hashes.size());
+        if (!enabled) return;
+        synchronized (this) {
+            for (Long h : hashes) lastWritten.put(h, now);
+        }
+    }
+
+    /** 清空缓存（基线表被清空时调用） */
+    public synchronized void clear() {
+        lastWritten.clear();
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        int size;
+        synchronized (this) {
+            size = lastWritten.size();
+        }
+        m.put("enabled", enabled);
+        m.put("size", size);
+        m.put("maxEntries", maxEntries);
+        m.put("touchIntervalMs", touchIntervalMs);
+        m.put("skipped", skipped.sum());
+        m.put("written", written.sum());
+        return m;
+    }
+}
@@ -0,0 +1,1268 @@
+package com.krielwus.webtracinganalysis.service;
+
+import com.krielwus.webtracinganalysis.util.Hash64;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * 嵌入式列式分析存储（tracing.analytics.backend=embedded 时启用）。
+ * 每天一个分区目录，结构化字段各存一个定长列文件（时间、appCode、eventType、路由、会话/用户/设备、采样权重），只追加写入；
+ * appCode/eventType/路由为全局字典编号，会话/用户/设备存 64 位哈希，按哈希去重计数。
+ * 查询时列文件以只读方式内存映射，按天并行扫描，每批 VECTOR 行先生成选择向量逐列过滤，再对选中行分组聚合，只触及查询涉及的列。
+ * 过去的分区封存后由后台按 appCode 聚簇重排，单应用查询只顺序读取一段连续行；当天分区用内存中的 appCode 倒排。
+ * 数据在入库事务提交后追加；首次启用时后台从 MySQL 回灌最近 bootstrapDays 天（回灌期间查询仍走 MySQL）。
+ * 覆盖起始日期（coverage.txt）之前的日期本存储没有完整数据，调用方按 covers/coverageStart 回落 MySQL 与归档。
+ * 保留策略与 RetentionService 相同（按应用/事件类型规则逐行过期）；最近 reconcileDays 个已封存日期每小时与 MySQL 比对行数，
+ * 不一致时按 MySQL 重建，当天因追加失败或进程退出造成的偏差在次日修正。
+ * 原始载荷与明细查询仍在 MySQL，本存储只服务看板聚合，损坏或缺失时可删除目录后重新回灌。
+ */
+@Component
+public class EmbeddedAnalyticsStore {
+    private static final Logger log = LoggerFactory.getLogger(EmbeddedAnalyticsStore.class);
+    private static final DateTimeFormatter NAME = DateTimeFormatter.ofPattern("yyyyMMdd");
+    private static final DateTimeFormatter DAY = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    /** 回灌未完成的分区标记，启动时清空重灌 */
+    private static final String BOOTSTRAP_MARKER = ".bootstrap";
+    /** 每批过滤的行数 */
+    private static final int VECTOR = 4096;
+    /** 倒排之后未覆盖的尾部超过该行数时重建倒排 */
+    private static final int REINDEX_TAIL = 1 << 16;
+    private static final String INDEX_FILE = "app.idx";
+    /** 覆盖起始日期：自该日起（含）每天的数据都完整在本存储中 */
+    private static final String COVERAGE_FILE = "coverage.txt";
+
+    private static final int TIME = 0;
+    private static final int APP = 1;
+    private static final int TYPE = 2;
+    private static final int ROUTE = 3;
+    private static final int SESSION = 4;
+    private static final int USER = 5;
+    private static final int DEVICE = 6;
+    private static final int WEIGHT = 7;
+    private static final String[] COLUMN_FILES = { "time.bin", "app.bin", "type.bin", "route.bin", "session.bin",
+            "user.bin", "device.bin", "weight.bin" };
+    private static final int[] WIDTHS = { 8, 4, 4, 4, 8, 8, 8, 4 };
+    private static final int ROW_BYTES = 48;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final RetentionPolicy retentionPolicy;
+    private final EventArchive eventArchive;
+
+    /** 看板聚合后端：mysql 或 embedded */
+    @Value("${tracing.analytics.backend:mysql}")
+    private String backend;
+    @Value("${tracing.analytics.embedded.dir:data/analytics}")
+    private String dir;
+    /** 首次启用时从 MySQL 回灌的天数（含当天） */
+    @Value("${tracing.analytics.embedded.bootstrapDays:30}")
+    private int bootstrapDays;
+    /** 并行扫描线程数，0 为 CPU 核数 */
+    @Value("${tracing.analytics.embedded.scanThreads:0}")
+    private int scanThreads;
+    /** 每小时与 MySQL 比对行数的最近已封存天数（昨天起往前），不一致时按 MySQL 重建该天；0 为不比对 */
+    @Value("${tracing.analytics.embedded.reconcileDays:2}")
+    private int reconcileDays;
+
+    private final Dictionary apps = new Dictionary("app");
+    private final Dictionary types = new Dictionary("type");
+    private final Dictionary routes = new Dictionary("route");
+    private final NavigableMap<LocalDate, Partition> partitions = new ConcurrentSkipListMap<>();
+    private volatile boolean opened;
+    private volatile boolean ready;
+    private volatile LocalDate coverageStart;
+    /** 本次回灌完成后生效的覆盖起始日期 */
+    private LocalDate pendingCoverage;
+    private volatile String lastError;
+    private volatile long bootstrappedRows;
+    private volatile long appendFailures;
+    private volatile long expiredRows;
+    private volatile long reconciledDays;
+    private ExecutorService scanPool;
+    private ScheduledExecutorService maintenance;
+
+    public EmbeddedAnalyticsStore(JdbcTemplate jdbcTemplate, RetentionPolicy retentionPolicy, EventArchive eventArchive) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.retentionPolicy = retentionPolicy;
+        this.eventArchive = eventArchive;
+    }
+
+    /** 一条待写入的分析行 */
+    public static final class Row {
+        final long time;
+        final String appCode;
+        final String eventType;
+        final String routePath;
+        final String sessionId;
+        final String userId;
+        final String deviceId;
+        final float weight;
+
+        public Row(long time, String appCode, String eventType, String routePath, String sessionId, String userId,
+                String deviceId, Double sampleRate) {
+            this.time = time;
+            this.appCode = appCode;
+            this.eventType = eventType;
+            this.routePath = routePath;
+            this.sessionId = sessionId;
+            this.userId = userId;
+            this.deviceId = deviceId;
+            this.weight = sampleRate == null || sampleRate <= 0 ? 1f : (float) (1 / sampleRate);
+        }
+    }
+
+    /** 是否配置为嵌入式后端（决定是否写入） */
+    public boolean isEnabled() {
+        return "embedded".equalsIgnoreCase(backend);
+    }
+
+    /** 是否由本存储服务查询：已启用且回灌完成 */
+    public boolean isActive() {
+        return ready;
+    }
+
+    /**
+     * 能否服务自 from 起的查询：回灌完成且 from 不早于覆盖起始日期。
+     * 覆盖之前的日期（启用前、超出回灌窗口）本存储没有数据，调用方应回落 MySQL 与归档。
+     */
+    public boolean covers(LocalDate from) {
+        LocalDate cs = coverageStart;
+        return ready && cs != null && !from.isBefore(cs);
+    }
+
+    /** 覆盖起始日期；未就绪时为 null */
+    public LocalDate coverageStart() {
+        return ready ? coverageStart : null;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!isEnabled()) return;
+        int threads = scanThreads > 0 ? scanThreads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger seq = new AtomicInteger();
+        scanPool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "analytics-scan-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        maintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "analytics-maintenance");
+            t.setDaemon(true);
+            return t;
+        });
+        List<LocalDate> pending;
+        long cutoff = System.currentTimeMillis();
+        try {
+            Files.createDirectories(root());
+            apps.load();
+            types.load();
+            routes.load();
+            pending = open();
+            opened = true;
+        } catch (IOException e) {
+            lastError = e.getMessage();
+            log.warn("Embedded analytics store unavailable, falling back to MySQL: {}", e.getMessage());
+            return;
+        }
+        maintenance.execute(() -> bootstrap(pending, cutoff));
+        maintenance.scheduleWithFixedDelay(() -> {
+            expireQuietly();
+            applyRetentionQuietly();
+            reconcileQuietly();
+        }, 1, 60, TimeUnit.MINUTES);
+        maintenance.scheduleWithFixedDelay(this::clusterQuietly, 1, 10, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (maintenance != null) maintenance.shutdownNow();
+        if (scanPool != null) scanPool.shutdownNow();
+        for (Partition p : partitions.values()) p.close();
+    }
+
+    private Path root() {
+        return Paths.get(dir);
+    }
+
+    /**
+     * 打开已有分区，返回需要回灌的日期：窗口内缺失的日期，以及上次回灌未完成的分区（清空后重灌）。
+     * 回灌标记在此同步写入，当天分区随后即可接收实时写入，回灌只补启动时刻之前的数据。
+     * 覆盖起始日期：上次的覆盖与本次回灌窗口相连（期间停用不超过回灌窗口）时沿用，否则从窗口起点重新计算。
+     */
+    private List<LocalDate> open() throws IOException {
+        List<LocalDate> wiped = new ArrayList<>();
+        // 聚簇替换中断：原目录已改名为 .old 而新目录未就位时恢复原目录，其余临时目录删除
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(root())) {
+            for (Path p : ds) {
+                String name = p.getFileName().toString();
+                if (name.endsWith(".old")) {
+                    Path target = p.resolveSibling(name.substring(0, name.length() - 4));
+                    if (Files.exists(target)) deleteDirectory(p);
+                    else Files.move(p, target, java.nio.file.StandardCopyOption.ATOMIC_MOVE);
+                } else if (name.endsWith(".tmp") && Files.isDirectory(p)) {
+                    deleteDirectory(p);
+                }
+            }
+        }
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(root())) {
+            for (Path p : ds) {
+                if (!Files.isDirectory(p)) continue;
+                LocalDate day;
+                try {
+                    day = LocalDate.parse(p.getFileName().toString(), NAME);
+                } catch (RuntimeException e) {
+                    continue;
+                }
+                if (Files.exists(p.resolve(BOOTSTRAP_MARKER))) {
+                    deleteDirectory(p);
+                    wiped.add(day);
+                    continue;
+                }
+                partitions.put(day, new Partition(day, p));
+            }
+        }
+        LocalDate today = LocalDate.now();
+        LocalDate windowStart = today.minusDays(Math.max(1, bootstrapDays) - 1L);
+        LocalDate stored = readCoverage();
+        boolean contiguous = stored != null && !partitions.isEmpty()
+                && !partitions.lastKey().isBefore(windowStart.minusDays(1));
+        pendingCoverage = contiguous && stored.isBefore(windowStart) ? stored : windowStart;
+        List<LocalDate> pending = new ArrayList<>();
+        for (LocalDate d : wiped) {
+            if (d.isBefore(windowStart) && !d.isBefore(pendingCoverage)) pending.add(d);
+        }
+        for (LocalDate d = pending.isEmpty() ? windowStart : java.util.Collections.min(pending); !d.isAfter(today); d = d.plusDays(1)) {
+            if (partitions.containsKey(d)) continue;
+            Path p = root().resolve(d.format(NAME));
+            Files.createDirectories(p);
+            Files.write(p.resolve(BOOTSTRAP_MARKER), new byte[0]);
+            partitions.put(d, new Partition(d, p));
+            if (!pending.contains(d)) pending.add(d);
+        }
+        pending.sort(null);
+        return pending;
+    }
+
+    private void bootstrap(List<LocalDate> pending, long cutoff) {
+        try {
+            for (LocalDate d : pending) {
+                if (Thread.currentThread().isInterrupted()) return;
+                long start = d.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+                long end = Math.min(cutoff, d.plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli());
+                bootstrapRange(new Timestamp(start), new Timestamp(end), this::append);
+                Files.deleteIfExists(root().resolve(d.format(NAME)).resolve(BOOTSTRAP_MARKER));
+            }
+            writeCoverage(pendingCoverage);
+            coverageStart = pendingCoverage;
+            ready = true;
+            if (!pending.isEmpty()) log.info("Embedded analytics store loaded {} rows for {} days", bootstrappedRows, pending.size());
+        } catch (IOException | RuntimeException e) {
+            lastError = e.getMessage();
+            log.warn("Embedded analytics bootstrap failed, queries stay on MySQL: {}", e.getMessage());
+        }
+    }
+
+    private LocalDate readCoverage() {
+        Path p = root().resolve(COVERAGE_FILE);
+        try {
+            return Files.exists(p) ? LocalDate.parse(new String(Files.readAllBytes(p), StandardCharsets.UTF_8).trim(), NAME) : null;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private void writeCoverage(LocalDate day) throws IOException {
+        Path tmp = root().resolve(COVERAGE_FILE + ".tmp");
+        Files.write(tmp, day.format(NAME).getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp, root().resolve(COVERAGE_FILE), java.nio.file.StandardCopyOption.ATOMIC_MOVE,
+                java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * 从 MySQL 回灌一段时间：非 PV 事件取自 trace_event（用户/设备经 base_hash 关联基线表），
+     * PV 取自 page_view_route 以带上路由，权重取该表的 sample_rate（历史数据为空按 1 计）。
+     */
+    private void bootstrapRange(Timestamp start, Timestamp end, java.util.function.Consumer<List<Row>> sink) {
+        loadQuery("SELECT e.created_at, e.app_code, e.event_type, NULL, e.session_id, b.sdk_user_uuid, b.device_id, "
+                + "e.sample_rate FROM trace_event e LEFT JOIN base_info_record b ON b.content_hash = e.base_hash "
+                + "WHERE e.created_at >= ? AND e.created_at < ? AND (e.event_type IS NULL OR e.event_type <> 'PV')",
+                start, end, sink);
+        loadQuery("SELECT created_at, app_code, 'PV', route_path, session_id, sdk_user_uuid, device_id, sample_rate "
+                + "FROM page_view_route WHERE created_at >= ? AND created_at < ?", start, end, sink);
+    }
+
+    private void loadQuery(String sql, Timestamp start, Timestamp end, java.util.function.Consumer<List<Row>> sink) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) con -> {
+            try (PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                ps.setFetchSize(Integer.MIN_VALUE);
+                ps.setTimestamp(1, start);
+                ps.setTimestamp(2, end);
+                try (ResultSet rs = ps.executeQuery()) {
+                    List<Row> batch = new ArrayList<>(VECTOR);
+                    while (rs.next()) {
+                        Timestamp t = rs.getTimestamp(1);
+                        if (t == null) continue;
+                        double rate = rs.getDouble(8);
+                        batch.add(new Row(t.getTime(), rs.getString(2), rs.getString(3), rs.getString(4),
+                                rs.getString(5), rs.getString(6), rs.getString(7), rs.wasNull() ? null : rate));
+                        if (batch.size() >= VECTOR) {
+                            sink.accept(batch);
+                            bootstrappedRows += batch.size();
+                            batch.clear();
+                        }
+                    }
+                    sink.accept(batch);
+                    bootstrappedRows += batch.size();
+                }
+            }
+            return null;
+        });
+    }
+
+    /** 事务提交后追加；不在事务中时立即追加 */
+    public void appendAfterCommit(List<Row> rows) {
+        if (!isEnabled() || rows == null || rows.isEmpty()) return;
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    appendQuietly(rows);
+                }
+            });
+        } else {
+            appendQuietly(rows);
+        }
+    }
+
+    private void appendQuietly(List<Row> rows) {
+        try {
+            append(rows);
+        } catch (RuntimeException e) {
+            // 丢失的行已在 MySQL 中，日期封存后由 reconcile 按 MySQL 重建
+            appendFailures += rows.size();
+            lastError = e.getMessage();
+            log.warn("Failed to append {} rows to embedded analytics store: {}", rows.size(), e.getMessage());
+        }
+    }
+
+    /** 按天分组追加到各分区 */
+    public void append(List<Row> rows) {
+        if (rows.isEmpty() || !opened) return;
+        Map<LocalDate, List<Row>> byDay = new HashMap<>();
+        for (Row r : rows) {
+            LocalDate d = Instant.ofEpochMilli(r.time).atZone(ZoneId.systemDefault()).toLocalDate();
+            byDay.computeIfAbsent(d, k -> new ArrayList<>()).add(r);
+        }
+        try {
+            for (Map.Entry<LocalDate, List<Row>> e : byDay.entrySet()) {
+                partition(e.getKey()).append(e.getValue());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Partition partition(LocalDate day) throws IOException {
+        Partition p = partitions.get(day);
+        if (p != null) return p;
+        synchronized (partitions) {
+            p = partitions.get(day);
+            if (p == null) {
+                Path path = root().resolve(day.format(NAME));
+                Files.createDirectories(path);
+                p = new Partition(day, path);
+                partitions.put(day, p);
+            }
+            return p;
+        }
+    }
+
+    private void expireQuietly() {
+        int retention = retentionPolicy.maxRetentionDays();
+        if (retention <= 0) return;
+        LocalDate cutoff = LocalDate.now().minusDays(retention);
+        LocalDate cs = coverageStart;
+        if (cs != null && cs.isBefore(cutoff)) {
+            try {
+                writeCoverage(cutoff);
+                coverageStart = cutoff;
+            } catch (IOException e) {
+                log.warn("Failed to update analytics coverage: {}", e.getMessage());
+            }
+        }
+        for (Partition p : new ArrayList<>(partitions.headMap(cutoff, false).values())) {
+            partitions.remove(p.day);
+            p.close();
+            try {
+                deleteDirectory(p.dir);
+            } catch (IOException e) {
+                log.warn("Failed to delete expired analytics partition {}: {}", p.dir, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 按 RetentionPolicy 的应用/事件类型规则删除过期行，与 RetentionService 对 MySQL 的删除条件一致
+     * （created_at 早于 now - 保留天数）；只重写含过期行的分区。
+     */
+    private void applyRetentionQuietly() {
+        if (!ready) return;
+        long now = System.currentTimeMillis();
+        // 规则按字典编号展开：cutoff[app + 1][type + 1]，永久保留的组合为 Long.MIN_VALUE
+        int appCount = apps.size();
+        int typeCount = types.size();
+        long[][] cutoff = new long[appCount + 1][typeCount + 1];
+        long earliest = Long.MAX_VALUE;
+        for (int a = -1; a < appCount; a++) {
+            for (int t = -1; t < typeCount; t++) {
+                int days = retentionPolicy.retentionDays(a < 0 ? null : apps.valueOf(a), t < 0 ? null : types.valueOf(t));
+                cutoff[a + 1][t + 1] = days > 0 ? now - days * 86_400_000L : Long.MIN_VALUE;
+                if (days > 0) earliest = Math.min(earliest, cutoff[a + 1][t + 1]);
+            }
+        }
+        if (earliest == Long.MAX_VALUE) return;
+        for (Partition p : new ArrayList<>(partitions.values())) {
+            // 当天零点不早于最早的截止时间时，该分区没有任何组合过期
+            if (p.day.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli() >= earliest) continue;
+            try {
+                int removed = p.rewrite((app, type, time) -> {
+                    if (app + 1 >= cutoff.length || type + 1 >= cutoff[0].length) return true;
+                    return time >= cutoff[app + 1][type + 1];
+                });
+                expiredRows += removed;
+            } catch (IOException | RuntimeException e) {
+                lastError = e.getMessage();
+                log.warn("Failed to apply retention to analytics partition {}: {}", p.dir, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 与 MySQL 比对最近 reconcileDays 个已封存日期的行数（trace_event 的非 PV 事件 + page_view_route），
+     * 不一致时按 MySQL 重建该天，修复追加失败、提交与追加之间进程退出等造成的偏差。
+     * 已归档的日期库中已无数据，跳过。
+     */
+    private void reconcileQuietly() {
+        if (!ready || reconcileDays <= 0) return;
+        LocalDate today = LocalDate.now();
+        for (LocalDate d = today.minusDays(reconcileDays); d.isBefore(today); d = d.plusDays(1)) {
+            if (!covers(d) || eventArchive.isArchived(EventArchive.TRACE_EVENT, d)) continue;
+            try {
+                reconcileDay(d);
+            } catch (IOException | RuntimeException e) {
+                lastError = e.getMessage();
+                log.warn("Failed to reconcile analytics partition {}: {}", d, e.getMessage());
+            }
+        }
+    }
+
+    private void reconcileDay(LocalDate d) throws IOException {
+        Timestamp start = Timestamp.from(d.atStartOfDay(ZoneId.systemDefault()).toInstant());
+        Timestamp end = Timestamp.from(d.plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant());
+        Long events = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM trace_event WHERE created_at >= ? AND created_at < ? "
+                + "AND (event_type IS NULL OR event_type <> 'PV')", Long.class, start, end);
+        Long pvs = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM page_view_route WHERE created_at >= ? AND created_at < ?",
+                Long.class, start, end);
+        long expected = (events == null ? 0 : events) + (pvs == null ? 0 : pvs);
+        Partition p = partitions.get(d);
+        if ((p == null ? 0 : p.rows) == expected) return;
+        log.info("Rebuilding analytics partition {} from MySQL: {} rows, expected {}", d, p == null ? 0 : p.rows, expected);
+        if (p == null) p = partition(d);
+        Path tmp = root().resolve(d.format(NAME) + ".rebuild.tmp");
+        deleteDirectory(tmp);
+        Files.createDirectories(tmp);
+        Partition rebuilt = new Partition(d, tmp);
+        try {
+            bootstrapRange(start, end, batch -> {
+                try {
+                    rebuilt.append(batch);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            bootstrappedRows -= rebuilt.rows;
+        } finally {
+            rebuilt.close();
+        }
+        p.replaceWith(tmp);
+        p.cluster();
+        reconciledDays++;
+    }
+
+    /** 将已封存（早于今天）且回灌完成的分区按应用聚簇；回灌期间跳过 */
+    private void clusterQuietly() {
+        if (!ready) return;
+        for (Partition p : new ArrayList<>(partitions.headMap(LocalDate.now(), false).values())) {
+            if (p.clustered()) continue;
+            try {
+                p.cluster();
+            } catch (IOException | RuntimeException e) {
+                lastError = e.getMessage();
+                log.warn("Failed to cluster analytics partition {}: {}", p.dir, e.getMessage());
+            }
+        }
+    }
+
+    /** 清空所有分区（清除全部数据时调用）；字典保留 */
+    public void deleteAll() {
+        if (!isEnabled()) return;
+        for (Partition p : new ArrayList<>(partitions.values())) {
+            partitions.remove(p.day);
+            p.close();
+            try {
+                deleteDirectory(p.dir);
+            } catch (IOException e) {
+                log.warn("Failed to delete analytics partition {}: {}", p.dir, e.getMessage());
+            }
+        }
+    }
+
+    private static void deleteDirectory(Path path) throws IOException {
+        if (!Files.exists(path)) return;
+        try (java.util.stream.Stream<Path> walk = Files.walk(path)) {
+            for (Path p : (Iterable<Path>) walk.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------- 查询
+
+    /**
+     * 日期范围内某事件类型按采样率加权的每日数量，行格式与 TracingEventRepository 的按日统计一致：
+     * byApp 时为 [day, app_code, cnt]，否则为 [day, cnt]；appCodes 为空表示全部应用。
+     */
+    public List<Object[]> countDaily(String eventType, Collection<String> appCodes, LocalDate startDate,
+            LocalDate endDate, boolean byApp) {
+        int typeId = types.idOf(eventType);
+        boolean[] appMask = appMask(appCodes);
+        List<Object[]> out = new ArrayList<>();
+        if (typeId < 0 || (appMask != null && appMask.length == 0)) return out;
+        int slots = byApp ? Math.max(1, apps.size()) : 1;
+        for (Map.Entry<LocalDate, double[]> e : scanDays(startDate, endDate, p -> {
+            double[] sums = new double[slots + 1];
+            p.select(new int[] { APP, TYPE, WEIGHT }, appMask, (v, sel, n) -> {
+                int m = filterEquals(v.type, sel, n, typeId);
+                for (int j = 0; j < m; j++) {
+                    int i = sel[j];
+                    int slot = byApp ? v.app.get(i) + 1 : 0;
+                    if (slot >= sums.length) continue;
+                    sums[slot] += v.weight.get(i);
+                }
+            });
+            return sums;
+        }).entrySet()) {
+            String day = e.getKey().format(DAY);
+            double[] sums = e.getValue();
+            if (!byApp) {
+                if (sums[0] > 0) out.add(new Object[] { day, Math.round(sums[0]) });
+                continue;
+            }
+            for (int slot = 0; slot < sums.length; slot++) {
+                if (sums[slot] <= 0) continue;
+                out.add(new Object[] { day, slot == 0 ? null : apps.valueOf(slot - 1), Math.round(sums[slot]) });
+            }
+        }
+        return out;
+    }
+
+    /** 单个应用单日的加权事件数 */
+    public long weightedCount(String eventType, String appCode, LocalDate day) {
+        long total = 0;
+        for (Object[] r : countDaily(eventType, java.util.Collections.singleton(appCode), day, day, false)) {
+            total += ((Number) r[1]).longValue();
+        }
+        return total;
+    }
+
+    /**
+     * 日期范围内的去重计数 [apps, users, devices, sessions]，与 TracingService.identityCounts 的下标一致；
+     * appCodes 为空表示全部应用。用户/设备/会话按 64 位哈希去重。
+     */
+    public int[] identityCounts(Collection<String> appCodes, LocalDate startDate, LocalDate endDate) {
+        boolean[] appMask = appMask(appCodes);
+        if (appMask != null && appMask.length == 0) return new int[4];
+        boolean[] seenApps = new boolean[Math.max(1, apps.size())];
+        LongHashSet users = new LongHashSet();
+        LongHashSet devices = new LongHashSet();
+        LongHashSet sessions = new LongHashSet();
+        for (Object[] part : scanDays(startDate, endDate, p -> {
+            boolean[] a = new boolean[seenApps.length];
+            LongHashSet u = new LongHashSet();
+            LongHashSet d = new LongHashSet();
+            LongHashSet s = new LongHashSet();
+            p.select(new int[] { APP, USER, DEVICE, SESSION }, appMask, (v, sel, n) -> {
+                for (int j = 0; j < n; j++) {
+                    int i = sel[j];
+                    int app = v.app.get(i);
+                    if (app >= 0 && app < a.length) a[app] = true;
+                    u.add(v.user.get(i));
+                    d.add(v.device.get(i));
+                    s.add(v.session.get(i));
+                }
+            });
+            return new Object[] { a, u, d, s };
+        }).values()) {
+            boolean[] a = (boolean[]) part[0];
+            for (int i = 0; i < a.length; i++) seenApps[i] |= a[i];
+            users = LongHashSet.union(users, (LongHashSet) part[1]);
+            devices = LongHashSet.union(devices, (LongHashSet) part[2]);
+            sessions = LongHashSet.union(sessions, (LongHashSet) part[3]);
+        }
+        int appCount = 0;
+        for (boolean b : seenApps) if (b) appCount++;
+        return new int[] { appCount, users.size(), devices.size(), sessions.size() };
+    }
+
+    /**
+     * 应用在日期范围内各路由的访问量 [route_path, pv, session_num, user_num]，按 PV 倒序；
+     * 与 page_view_route 的统计一致，PV 按采样率加权后取整。
+     */
+    public List<Object[]> countRoutePv(String appCode, LocalDate startDate, LocalDate endDate) {
+        int appId = apps.idOf(appCode);
+        int pvId = types.idOf("PV");
+        List<Object[]> out = new ArrayList<>();
+        if (appId < 0 || pvId < 0) return out;
+        boolean[] appMask = new boolean[appId + 1];
+        appMask[appId] = true;
+        Map<Integer, double[]> pv = new HashMap<>();
+        Map<Integer, LongHashSet> sessions = new HashMap<>();
+        Map<Integer, LongHashSet> users = new HashMap<>();
+        for (Object[] part : scanDays(startDate, endDate, p -> {
+            Map<Integer, double[]> c = new HashMap<>();
+            Map<Integer, LongHashSet> s = new HashMap<>();
+            Map<Integer, LongHashSet> u = new HashMap<>();
+            p.select(new int[] { APP, TYPE, ROUTE, SESSION, USER, WEIGHT }, appMask, (v, sel, n) -> {
+                int m = filterEquals(v.type, sel, n, pvId);
+                for (int j = 0; j < m; j++) {
+                    int i = sel[j];
+                    int route = v.route.get(i);
+                    c.computeIfAbsent(route, k -> new double[1])[0] += v.weight.get(i);
+                    long session = v.session.get(i);
+                    if (session != 0) s.computeIfAbsent(route, k -> new LongHashSet()).add(session);
+                    long user = v.user.get(i);
+                    if (user != 0) u.computeIfAbsent(route, k -> new LongHashSet()).add(user);
+                }
+            });
+            return new Object[] { c, s, u };
+        }).values()) {
+            @SuppressWarnings("unchecked") Map<Integer, double[]> c = (Map<Integer, double[]>) part[0];
+            @SuppressWarnings("unchecked") Map<Integer, LongHashSet> s = (Map<Integer, LongHashSet>) part[1];
+            @SuppressWarnings("unchecked") Map<Integer, LongHashSet> u = (Map<Integer, LongHashSet>) part[2];
+            c.forEach((route, n) -> pv.computeIfAbsent(route, k -> new double[1])[0] += n[0]);
+            s.forEach((route, set) -> sessions.computeIfAbsent(route, k -> new LongHashSet()).addAll(set));
+            u.forEach((route, set) -> users.computeIfAbsent(route, k -> new LongHashSet()).addAll(set));
+        }
+        pv.forEach((route, n) -> {
+            LongHashSet s = sessions.get(route);
+            LongHashSet u = users.get(route);
+            out.add(new Object[] { route < 0 ? null : routes.valueOf(route), Math.round(n[0]),
+                    s == null ? 0L : (long) s.size(), u == null ? 0L : (long) u.size() });
+        });
+        out.sort((a, b) -> Long.compare((Long) b[1], (Long) a[1]));
+        return out;
+    }
+
+    /** 应用集合对应的字典编号掩码；null 表示不过滤，长度为 0 表示无匹配 */
+    private boolean[] appMask(Collection<String> appCodes) {
+        if (appCodes == null) return null;
+        int max = -1;
+        List<Integer> ids = new ArrayList<>();
+        for (String code : appCodes) {
+            int id = apps.idOf(code);
+            if (id < 0) continue;
+            ids.add(id);
+            max = Math.max(max, id);
+        }
+        boolean[] mask = new boolean[max + 1];
+        for (int id : ids) mask[id] = true;
+        return mask;
+    }
+
+    /** 按应用过滤 [base, base + n) 行，选中行号写入 sel，返回选中数；mask 为 null 时全选 */
+    private static int filterApps(IntBuffer app, int base, int n, boolean[] mask, int[] sel) {
+        int m = 0;
+        if (mask == null) {
+            for (int i = 0; i < n; i++) sel[i] = base + i;
+            return n;
+        }
+        for (int i = base, end = base + n; i < end; i++) {
+            int a = app.get(i);
+            if (a >= 0 && a < mask.length && mask[a]) sel[m++] = i;
+        }
+        return m;
+    }
+
+    /** 在选择向量上按列值相等继续过滤 */
+    private static int filterEquals(IntBuffer column, int[] sel, int n, int value) {
+        int m = 0;
+        for (int j = 0; j < n; j++) {
+            int i = sel[j];
+            if (column.get(i) == value) sel[m++] = i;
+        }
+        return m;
+    }
+
+    /** 并行扫描日期范围内的分区，按日期返回各分区的局部结果 */
+    private <T> NavigableMap<LocalDate, T> scanDays(LocalDate startDate, LocalDate endDate, Function<Partition, T> task) {
+        List<Partition> parts = new ArrayList<>(partitions.subMap(startDate, true, endDate, true).values());
+        List<Callable<T>> calls = new ArrayList<>(parts.size());
+        for (Partition p : parts) calls.add(() -> task.apply(p));
+        NavigableMap<LocalDate, T> out = new java.util.TreeMap<>();
+        try {
+            List<Future<T>> futures = scanPool.invokeAll(calls);
+            for (int i = 0; i < parts.size(); i++) out.put(parts.get(i).day, futures.get(i).get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Analytics scan interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IllegalStateException(cause);
+        }
+        return out;
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("backend", isEnabled() ? "embedded" : "mysql");
+        m.put("ready", ready);
+        if (!isEnabled()) return m;
+        m.put("coverageStart", coverageStart == null ? null : coverageStart.format(DAY));
+        long rows = 0;
+        for (Partition p : partitions.values()) rows += p.rows;
+        m.put("dir", root().toAbsolutePath().toString());
+        m.put("partitions", partitions.size());
+        m.put("rows", rows);
+        m.put("bytes", rows * ROW_BYTES);
+        m.put("firstDay", partitions.isEmpty() ? null : partitions.firstKey().format(DAY));
+        m.put("lastDay", partitions.isEmpty() ? null : partitions.lastKey().format(DAY));
+        m.put("bootstrappedRows", bootstrappedRows);
+        m.put("appendFailures", appendFailures);
+        m.put("expiredRows", expiredRows);
+        m.put("reconciledDays", reconciledDays);
+        Map<String, Object> dict = new LinkedHashMap<>();
+        dict.put("apps", apps.size());
+        dict.put("eventTypes", types.size());
+        dict.put("routes", routes.size());
+        m.put("dictionaries", dict);
+        m.put("lastError", lastError);
+        return m;
+    }
+
+    // ---------------------------------------------------------------- 分区
+
+    private interface VectorConsumer {
+        /** 处理选择向量 sel 中的前 n 行（已按应用过滤） */
+        void accept(Vectors v, int[] sel, int n);
+    }
+
+    /**
+     * appCode 倒排：slot（应用编号 + 1，0 为空值）对应 [offsets[slot], offsets[slot + 1])；
+     * rowIds 为 null 时分区已按应用聚簇，区间即行号，否则区间指向 rowIds 中的行号。
+     */
+    private static final class AppIndex {
+        final int rows;
+        final int slots;
+        final IntBuffer offsets;
+        final IntBuffer rowIds;
+
+        AppIndex(int rows, int slots, IntBuffer offsets, IntBuffer rowIds) {
+            this.rows = rows;
+            this.slots = slots;
+            this.offsets = offsets;
+            this.rowIds = rowIds;
+        }
+    }
+
+    /** 一次扫描映射出的列视图 */
+    private static final class Vectors {
+        int rows;
+        AppIndex index;
+        IntBuffer app;
+        IntBuffer type;
+        IntBuffer route;
+        LongBuffer session;
+        LongBuffer user;
+        LongBuffer device;
+        FloatBuffer weight;
+    }
+
+    private final class Partition {
+        final LocalDate day;
+        final Path dir;
+        final FileChannel[] channels = new FileChannel[COLUMN_FILES.length];
+        final MappedByteBuffer[] mapped = new MappedByteBuffer[COLUMN_FILES.length];
+        final int[] mappedRows = new int[COLUMN_FILES.length];
+        /** 已完整写入所有列的行数，读取只看这部分 */
+        volatile int rows;
+        private AppIndex index;
+
+        Partition(LocalDate day, Path dir) throws IOException {
+            this.day = day;
+            this.dir = dir;
+            openColumns();
+        }
+
+        private void openColumns() throws IOException {
+            // 各列长度取最小行数，截断中断写入留下的半行
+            long n = Long.MAX_VALUE;
+            for (int c = 0; c < COLUMN_FILES.length; c++) {
+                Path f = dir.resolve(COLUMN_FILES[c]);
+                n = Math.min(n, Files.exists(f) ? Files.size(f) / WIDTHS[c] : 0);
+            }
+            for (int c = 0; c < COLUMN_FILES.length; c++) {
+                channels[c] = FileChannel.open(dir.resolve(COLUMN_FILES[c]), StandardOpenOption.CREATE,
+                        StandardOpenOption.READ, StandardOpenOption.WRITE);
+                channels[c].truncate(n * WIDTHS[c]);
+                channels[c].position(n * WIDTHS[c]);
+            }
+            rows = (int) n;
+            Path file = dir.resolve(INDEX_FILE);
+            AppIndex loaded = Files.exists(file) ? loadIndex(file) : null;
+            index = loaded != null && loaded.rows <= n ? loaded : null;
+        }
+
+        synchronized void append(List<Row> batch) throws IOException {
+            if (channels[0] == null) throw new IOException("Partition " + day + " is closed");
+            int n = batch.size();
+            ByteBuffer[] bufs = new ByteBuffer[COLUMN_FILES.length];
+            for (int c = 0; c < bufs.length; c++) {
+                bufs[c] = ByteBuffer.allocate(n * WIDTHS[c]).order(ByteOrder.LITTLE_ENDIAN);
+            }
+            for (Row r : batch) {
+                bufs[TIME].putLong(r.time);
+                bufs[APP].putInt(apps.intern(r.appCode));
+                bufs[TYPE].putInt(types.intern(r.eventType));
+                bufs[ROUTE].putInt(routes.intern(r.routePath));
+                bufs[SESSION].putLong(identity(r.sessionId));
+                bufs[USER].putLong(identity(r.userId));
+                bufs[DEVICE].putLong(identity(r.deviceId));
+                bufs[WEIGHT].putFloat(r.weight);
+            }
+            for (int c = 0; c < bufs.length; c++) {
+                bufs[c].flip();
+                while (bufs[c].hasRemaining()) channels[c].write(bufs[c]);
+            }
+            rows += n;
+        }
+
+        /** 映射到当前行数；历史分区映射一次后复用，当天分区在行数增长后重新映射 */
+        private synchronized ByteBuffer map(int column, int n) throws IOException {
+            if (channels[column] == null) throw new IOException("Partition " + day + " is closed");
+            if (mapped[column] == null || mappedRows[column] < n) {
+                mapped[column] = channels[column].map(FileChannel.MapMode.READ_ONLY, 0, (long) n * WIDTHS[column]);
+                mappedRows[column] = n;
+            }
+            return mapped[column].duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        /** 在锁内取行数、列映射与倒排，保证三者来自同一版本（聚簇替换文件时不会读到新旧混合） */
+        private synchronized Vectors view(int[] columns, boolean indexed) {
+            Vectors v = new Vectors();
+            int n = rows;
+            v.rows = n;
+            if (n == 0) return v;
+            try {
+                v.app = map(APP, n).asIntBuffer();
+                for (int c : columns) {
+                    ByteBuffer b = c == APP ? null : map(c, n);
+                    switch (c) {
+                        case TYPE: v.type = b.asIntBuffer(); break;
+                        case ROUTE: v.route = b.asIntBuffer(); break;
+                        case SESSION: v.session = b.asLongBuffer(); break;
+                        case USER: v.user = b.asLongBuffer(); break;
+                        case DEVICE: v.device = b.asLongBuffer(); break;
+                        case WEIGHT: v.weight = b.asFloatBuffer(); break;
+                        default: break;
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to map analytics partition " + dir, e);
+            }
+            v.index = indexed ? index(n, v.app) : null;
+            return v;
+        }
+
+        /**
+         * 按应用选择行并分批交给 consumer：有倒排时只读取目标应用的行（聚簇分区为连续区间），
+         * 倒排之后新追加的尾部按列扫描过滤；appMask 为 null 时全表扫描。
+         */
+        void select(int[] columns, boolean[] appMask, VectorConsumer consumer) {
+            Vectors v = view(columns, appMask != null);
+            int n = v.rows;
+            if (n == 0) return;
+            AppIndex idx = v.index;
+            int[] sel = new int[VECTOR];
+            int from = 0;
+            if (idx != null) {
+                for (int app = 0; app < appMask.length; app++) {
+                    if (!appMask[app] || app + 1 >= idx.slots) continue;
+                    int end = idx.offsets.get(app + 2);
+                    for (int pos = idx.offsets.get(app + 1); pos < end; pos += VECTOR) {
+                        int m = Math.min(VECTOR, end - pos);
+                        if (idx.rowIds == null) {
+                            for (int k = 0; k < m; k++) sel[k] = pos + k;
+                        } else {
+                            idx.rowIds.get(pos, sel, 0, m);
+                        }
+                        consumer.accept(v, sel, m);
+                    }
+                }
+                from = idx.rows;
+            }
+            for (int base = from; base < n; base += VECTOR) {
+                int m = filterApps(v.app, base, Math.min(VECTOR, n - base), appMask, sel);
+                if (m > 0) consumer.accept(v, sel, m);
+            }
+        }
+
+        /**
+         * 取覆盖当前行数的倒排：未覆盖的尾部不超过 REINDEX_TAIL 行时沿用已有倒排（含聚簇区间），
+         * 否则在内存中按行号重建，当天分区与尚未聚簇的历史分区走这条路径。
+         */
+        private AppIndex index(int n, IntBuffer app) {
+            if (index != null && index.rows <= n && n - index.rows <= REINDEX_TAIL) return index;
+            int[] offsets = countByApp(n, app);
+            int slots = offsets.length - 1;
+            int[] cursor = java.util.Arrays.copyOf(offsets, slots);
+            int[] rowIds = new int[n];
+            for (int i = 0; i < n; i++) rowIds[cursor[app.get(i) + 1]++] = i;
+            index = new AppIndex(n, slots, IntBuffer.wrap(offsets), IntBuffer.wrap(rowIds));
+            return index;
+        }
+
+        /** 是否已按应用聚簇且覆盖全部行 */
+        synchronized boolean clustered() {
+            return index != null && index.rowIds == null && index.rows == rows;
+        }
+
+        /**
+         * 按应用聚簇已封存的分区：各列按 appCode 稳定重排（同一应用内保持写入顺序）后整体替换原目录，
+         * 倒排只需记录各应用的行区间；之后单应用查询只顺序读取一段连续的行。
+         */
+        synchronized void cluster() throws IOException {
+            if (rows == 0 || clustered()) return;
+            rewrite(null);
+        }
+
+        /**
+         * 重写分区：保留 keep 接受的行（null 为全部），按 appCode 稳定重排后写入 &lt;dir&gt;.tmp，
+         * 连同只含区间的 app.idx 一起整体替换原目录。持锁期间追加等待；正在扫描旧映射的查询不受影响。
+         * 返回删除的行数。
+         */
+        synchronized int rewrite(RowFilter keep) throws IOException {
+            int n = rows;
+            if (n == 0) return 0;
+            IntBuffer app = map(APP, n).asIntBuffer();
+            IntBuffer type = keep == null ? null : map(TYPE, n).asIntBuffer();
+            LongBuffer time = keep == null ? null : map(TIME, n).asLongBuffer();
+            int[] kept = null;
+            int m = n;
+            if (keep != null) {
+                kept = new int[n];
+                m = 0;
+                for (int i = 0; i < n; i++) {
+                    if (keep.accept(app.get(i), type.get(i), time.get(i))) kept[m++] = i;
+                }
+                if (m == n) return 0;
+            }
+            int[] offsets = new int[Math.max(1, maxApp(app, n) + 2) + 1];
+            for (int k = 0; k < m; k++) offsets[app.get(kept == null ? k : kept[k]) + 2]++;
+            for (int s = 1; s < offsets.length; s++) offsets[s] += offsets[s - 1];
+            int slots = offsets.length - 1;
+            int[] cursor = java.util.Arrays.copyOf(offsets, slots);
+            int[] order = new int[m];
+            for (int k = 0; k < m; k++) {
+                int i = kept == null ? k : kept[k];
+                order[cursor[app.get(i) + 1]++] = i;
+            }
+            Path tmp = dir.resolveSibling(dir.getFileName() + ".tmp");
+            deleteDirectory(tmp);
+            Files.createDirectories(tmp);
+            for (int c = 0; c < COLUMN_FILES.length; c++) {
+                writeColumn(tmp.resolve(COLUMN_FILES[c]), map(c, n), WIDTHS[c], order);
+            }
+            // app.idx 最后写入：[rows, slots, offsets...]
+            ByteBuffer b = ByteBuffer.allocate(8 + 4 * offsets.length).order(ByteOrder.LITTLE_ENDIAN);
+            b.putInt(m).putInt(slots);
+            for (int o : offsets) b.putInt(o);
+            b.flip();
+            try (FileChannel ch = FileChannel.open(tmp.resolve(INDEX_FILE), StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.WRITE)) {
+                while (b.hasRemaining()) ch.write(b);
+                ch.force(true);
+            }
+            replaceWith(tmp);
+            return n - m;
+        }
+
+        /**
+         * 用 source 目录（完整的分区文件）整体替换本分区：原目录先改名为 .old，新目录改名就位后删除 .old；
+         * 中途失败时恢复原目录，进程在两次改名之间退出由 open() 恢复。
+         */
+        synchronized void replaceWith(Path source) throws IOException {
+            Path old = dir.resolveSibling(dir.getFileName() + ".old");
+            close();
+            try {
+                Files.move(dir, old, java.nio.file.StandardCopyOption.ATOMIC_MOVE);
+                try {
+                    Files.move(source, dir, java.nio.file.StandardCopyOption.ATOMIC_MOVE);
+                } catch (IOException e) {
+                    Files.move(old, dir, java.nio.file.StandardCopyOption.ATOMIC_MOVE);
+                    throw e;
+                }
+            } finally {
+                openColumns();
+            }
+            deleteDirectory(old);
+        }
+
+        private AppIndex loadIndex(Path file) throws IOException {
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+                if (ch.size() < 8) return null;
+                ByteBuffer b = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()).order(ByteOrder.LITTLE_ENDIAN);
+                int n = b.getInt(0);
+                int slots = b.getInt(4);
+                if (slots < 1 || ch.size() != 8L + 4L * (slots + 1)) return null;
+                IntBuffer offsets = b.position(8).slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+                return new AppIndex(n, slots, offsets, null);
+            }
+        }
+
+        synchronized void close() {
+            for (int c = 0; c < channels.length; c++) {
+                if (channels[c] == null) continue;
+                try {
+                    channels[c].close();
+                } catch (IOException ignored) {
+                }
+                channels[c] = null;
+                mapped[c] = null;
+                mappedRows[c] = 0;
+            }
+            index = null;
+        }
+    }
+
+    /** 行过滤条件（按字典编号与时间） */
+    private interface RowFilter {
+        boolean accept(int app, int type, long time);
+    }
+
+    private static int maxApp(IntBuffer app, int n) {
+        int max = -1;
+        for (int i = 0; i < n; i++) max = Math.max(max, app.get(i));
+        return max;
+    }
+
+    /** 按 order 中的行号顺序写出一列并刷盘 */
+    private static void writeColumn(Path file, ByteBuffer src, int width, int[] order) throws IOException {
+        ByteBuffer out = ByteBuffer.allocate(VECTOR * width).order(ByteOrder.LITTLE_ENDIAN);
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            for (int k = 0; k < order.length; k++) {
+                if (width == 8) out.putLong(src.getLong(order[k] * 8)); else out.putInt(src.getInt(order[k] * 4));
+                if (!out.hasRemaining() || k == order.length - 1) {
+                    out.flip();
+                    while (out.hasRemaining()) ch.write(out);
+                    out.clear();
+                }
+            }
+            ch.force(true);
+        }
+    }
+
+    /** 计数排序的区间表：offsets[slot + 1] 起为各 slot（应用编号 + 1）的累计行数 */
+    private static int[] countByApp(int n, IntBuffer app) {
+        int slots = maxApp(app, n) + 2;
+        int[] offsets = new int[slots + 1];
+        for (int i = 0; i < n; i++) offsets[app.get(i) + 2]++;
+        for (int s = 1; s <= slots; s++) offsets[s] += offsets[s - 1];
+        return offsets;
+    }
+
+    /** 标识哈希，0 表示缺失 */
+    private static long identity(String value) {
+        if (value == null || value.isEmpty()) return 0;
+        long h = Hash64.hash(value);
+        return h == 0 ? 1 : h;
+    }
+
+    /** 全局字符串字典，追加写入 dict-<name>.txt，行号即编号 */
+    private final class Dictionary {
+        final String name;
+        final Map<String, Integer> ids = new java.util.concurrent.ConcurrentHashMap<>();
+        volatile List<String> values = new ArrayList<>();
+        FileChannel file;
+
+        Dictionary(String name) {
+            this.name = name;
+        }
+
+        synchronized void load() throws IOException {
+            Path p = root().resolve("dict-" + name + ".txt");
+            List<String> loaded = new ArrayList<>();
+            if (Files.exists(p)) {
+                for (String line : Files.readAllLines(p, StandardCharsets.UTF_8)) {
+                    String v = unescape(line);
+                    ids.put(v, loaded.size());
+                    loaded.add(v);
+                }
+            }
+            values = loaded;
+            file = FileChannel.open(p, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+
+        int size() {
+            return values.size();
+        }
+
+        int idOf(String value) {
+            if (value == null) return -1;
+            Integer id = ids.get(value);
+            return id == null ? -1 : id;
+        }
+
+        String valueOf(int id) {
+            List<String> v = values;
+            return id >= 0 && id < v.size() ? v.get(id) : null;
+        }
+
+        /** 取编号，不存在时先落盘再分配；空值为 -1 */
+        int intern(String value) {
+            if (value == null) return -1;
+            Integer id = ids.get(value);
+            if (id != null) return id;
+            synchronized (this) {
+                id = ids.get(value);
+                if (id != null) return id;
+                try {
+                    ByteBuffer line = ByteBuffer.wrap((escape(value) + "\n").getBytes(StandardCharsets.UTF_8));
+                    while (line.hasRemaining()) file.write(line);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                List<String> next = new ArrayList<>(values);
+                id = next.size();
+                next.add(value);
+                values = next;
+                ids.put(value, id);
+                return id;
+            }
+        }
+    }
+
+    private static String escape(String s) {
+        return s.replace("\\", "\\\\").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    private static String unescape(String s) {
+        if (s.indexOf('\\') < 0) return s;
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            if (ch == '\\' && i + 1 < s.length()) {
+                char next = s.charAt(++i);
+                sb.append(next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            } else {
+                sb.append(ch);
+            }
+        }
+        return sb.toString();
+    }
+
+    /** 开放寻址的 long 集合（0 视为空槽，调用方保证 0 表示缺失值） */
+    private static final class LongHashSet {
+        private long[] table = new long[64];
+        private int size;
+
+        void add(long v) {
+            if (v == 0) return;
+            if ((size + 1) * 2 > table.length) grow();
+            if (insert(table, v)) size++;
+        }
+
+        void addAll(LongHashSet other) {
+            for (long v : other.table) if (v != 0) add(v);
+        }
+
+        /** 合并两个集合：把较小的并入较大的并返回后者，避免逐个复制大集合 */
+        static LongHashSet union(LongHashSet a, LongHashSet b) {
+            if (a.size < b.size) {
+                b.addAll(a);
+                return b;
+            }
+            a.addAll(b);
+            return a;
+        }
+
+        int size() {
+            return size;
+        }
+
+        private static boolean insert(long[] t, long v) {
+            int mask = t.length - 1;
+            int i = (int) (v ^ (v >>> 32)) & mask;
+            while (t[i] != 0) {
+                if (t[i] == v) return false;
+                i = (i + 1) & mask;
+            }
+            t[i] = v;
+            return true;
+        }
+
+        private void grow() {
+            long[] next = new long[table.length * 2];
+            for (long v : table) if (v != 0) insert(next, v);
+            table = next;
+        }
+    }
+}
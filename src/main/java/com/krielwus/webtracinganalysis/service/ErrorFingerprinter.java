@@ -0,0 +1,151 @@
+package com.krielwus.webtracinganalysis.service;
+
+import com.krielwus.webtracinganalysis.util.Hash64;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * 错误指纹计算。
+ * 对错误信息与堆栈顶部若干帧做归一化（URL 替换为路径、去掉查询串、十六进制哈希与数字替换为占位符），
+ * 再取 64 位哈希，使同一缺陷的不同实例（行列号、资源版本哈希、动态 ID 不同）落到同一指纹。
+ * 信息与堆栈均为空时退化为错误码 + 请求路径。
+ */
+@Component
+public class ErrorFingerprinter {
+    /** 参与指纹计算的堆栈帧数 */
+    @Value("${tracing.errors.fingerprint.frames:3}")
+    private int frames = 3;
+
+    /**
+     * 计算指纹；无任何可用字段时返回 0。
+     */
+    public long fingerprint(String errorCode, String message, String stack, String requestUri) {
+        StringBuilder sb = new StringBuilder(128);
+        if (message != null && !message.isEmpty()) {
+            normalize(firstLine(message), sb);
+        }
+        if (stack != null && !stack.isEmpty()) {
+            appendFrames(stack, sb);
+        }
+        if (sb.length() == 0) {
+            if (errorCode != null) sb.append(errorCode);
+            if (requestUri != null) {
+                sb.append('|');
+                normalize(requestUri, sb);
+            }
+        }
+        if (sb.length() == 0) return 0L;
+        long h = Hash64.hash(sb.toString());
+        return h == 0 ? 1L : h;
+    }
+
+    /** 归一化后的文本（用于展示与排查指纹归并） */
+    public String normalizedMessage(String message) {
+        if (message == null || message.isEmpty()) return message;
+        StringBuilder sb = new StringBuilder(message.length());
+        normalize(firstLine(message), sb);
+        return sb.toString();
+    }
+
+    private void appendFrames(String stack, StringBuilder sb) {
+        int taken = 0;
+        int start = 0;
+        int len = stack.length();
+        while (start < len && taken < frames) {
+            int end = stack.indexOf('\n', start);
+            if (end < 0) end = len;
+            String line = stack.substring(start, end).trim();
+            start = end + 1;
+            // Chrome: "at fn (url:l:c)"；Firefox/Safari: "fn@url:l:c"；首行通常为错误信息，跳过
+            if (line.startsWith("at ") || line.indexOf('@') > 0) {
+                sb.append('\n');
+                normalize(line, sb);
+                taken++;
+            }
+        }
+    }
+
+    private static String firstLine(String s) {
+        int nl = s.indexOf('\n');
+        return nl < 0 ? s : s.substring(0, nl);
+    }
+
+    /**
+     * 归一化：URL 只保留路径；连续数字替换为 #；8 位以上的十六进制串替换为 *；空白折叠为单个空格。
+     */
+    static void normalize(String s, StringBuilder out) {
+        int i = 0;
+        int len = s.length();
+        boolean space = false;
+        while (i < len) {
+            char c = s.charAt(i);
+            if (isUrlStart(s, i)) {
+                int end = i;
+                while (end < len && !isUrlTerminator(s.charAt(end))) end++;
+                appendUrlPath(s, i, end, out);
+                i = end;
+                space = false;
+                continue;
+            }
+            if (Character.isWhitespace(c)) {
+                if (!space && out.length() > 0) out.append(' ');
+                space = true;
+                i++;
+                continue;
+            }
+            space = false;
+            if (isHex(c)) {
+                int end = i;
+                boolean digit = false;
+                while (end < len && isHex(s.charAt(end))) {
+                    if (s.charAt(end) <= '9') digit = true;
+                    end++;
+                }
+                boolean boundary = i == 0 || !Character.isLetterOrDigit(s.charAt(i - 1));
+                if (digit && boundary && end - i >= 8 && (end == len || !Character.isLetterOrDigit(s.charAt(end)))) {
+                    out.append('*');
+                    i = end;
+                    continue;
+                }
+            }
+            if (c >= '0' && c <= '9') {
+                while (i < len && s.charAt(i) >= '0' && s.charAt(i) <= '9') i++;
+                out.append('#');
+                continue;
+            }
+            out.append(c);
+            i++;
+        }
+    }
+
+    private static void appendUrlPath(String s, int from, int to, StringBuilder out) {
+        int scheme = s.indexOf("//", from);
+        int pathStart = scheme < 0 || scheme >= to ? from : s.indexOf('/', scheme + 2);
+        if (pathStart < 0 || pathStart >= to) {
+            out.append('/');
+            return;
+        }
+        int pathEnd = pathStart;
+        while (pathEnd < to) {
+            char c = s.charAt(pathEnd);
+            if (c == '?' || c == '#') break;
+            pathEnd++;
+        }
+        // 去掉末尾的 :line:col
+        String path = s.substring(pathStart, pathEnd).replaceAll("(:\\d+)+$", "");
+        normalize(path, out);
+    }
+
+    private static boolean isUrlStart(String s, int i) {
+        return s.startsWith("http://", i) || s.startsWith("https://", i) || s.startsWith("webpack://", i)
+                || s.startsWith("file://", i);
+    }
+
+    private static boolean isUrlTerminator(char c) {
+        return Character.isWhitespace(c) || c == ')' || c == '(' || c == '"' || c == '\'' || c == ',';
+    }
+
+    private static boolean isHex(char c) {
+        return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+    }
+}
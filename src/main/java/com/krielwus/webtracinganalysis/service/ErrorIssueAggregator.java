@@ -0,0 +1,235 @@
+package com.krielwus.webtracinganalysis.service;
+
+import com.krielwus.webtracinganalysis.config.LaneLimitedDataSource;
+import com.krielwus.webtracinganalysis.entity.TracingEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 错误聚合器。
+ * 入库后的 ERROR 事件按 (appCode, fingerprint) 先在内存中合并（次数累加、首末次时间取极值、样例取最新），
+ * 定时或待合并条目过多时以 INSERT ... ON DUPLICATE KEY UPDATE 批量写入 error_issue，
+ * 高频错误每个周期只产生一次写入。一批写入在同一事务内，失败时整批回滚并把取出的条目合并回待写入集合，
+ * 下个周期重试；进程异常退出时最多丢失一个周期内的计数。
+ */
+@Component
+public class ErrorIssueAggregator {
+    private static final Logger log = LoggerFactory.getLogger(ErrorIssueAggregator.class);
+
+    private static final String UPSERT_SQL = "INSERT INTO error_issue "
+            + "(app_code, fingerprint, error_code, message, severity, first_seen, last_seen, event_count, sample_event_id) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) "
+            + "ON DUPLICATE KEY UPDATE "
+            + "first_seen = LEAST(first_seen, VALUES(first_seen)), "
+            + "last_seen = GREATEST(last_seen, VALUES(last_seen)), "
+            + "event_count = event_count + VALUES(event_count), "
+            + "severity = VALUES(severity), "
+            + "sample_event_id = COALESCE(VALUES(sample_event_id), sample_event_id)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ErrorFingerprinter fingerprinter;
+
+    @Value("${tracing.errors.issue.enabled:true}")
+    private boolean enabled;
+    /** 合并窗口（毫秒） */
+    @Value("${tracing.errors.issue.flushIntervalMs:2000}")
+    private long flushIntervalMs;
+    /** 待写入条目上限，超过时由记录线程立即写入 */
+    @Value("${tracing.errors.issue.maxPending:10000}")
+    private int maxPending;
+
+    private final ConcurrentHashMap<IssueKey, Pending> pending = new ConcurrentHashMap<>();
+    private final AtomicLong upserts = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong flushFailures = new AtomicLong();
+    private ScheduledExecutorService scheduler;
+
+    public ErrorIssueAggregator(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+            ErrorFingerprinter fingerprinter) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.fingerprinter = fingerprinter;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) return;
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(() -> {
+                // 聚合落库属于入库链路，使用入库通道的连接预算
+                LaneLimitedDataSource.markIngestThread();
+                r.run();
+            }, "error-issue-flush");
+            t.setDaemon(true);
+            return t;
+        });
+        long interval = Math.max(100, flushIntervalMs);
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) scheduler.shutdownNow();
+        flushQuietly();
+    }
+
+    /**
+     * 记录已入库的事件（需已回填主键），仅处理带指纹的 ERROR 事件。
+     */
+    public void record(List<TracingEvent> events) {
+        if (!enabled || events == null) return;
+        for (TracingEvent e : events) {
+            if (e.getFingerprint() == null || e.getFingerprint() == 0L || e.getAppCode() == null) continue;
+            IssueKey key = new IssueKey(e.getAppCode(), e.getFingerprint());
+            long weight = e.getSampleRate() == null || e.getSampleRate() <= 0 ? 1L
+                    : Math.max(1L, Math.round(1.0 / e.getSampleRate()));
+            Date at = e.getCreatedAt() == null ? new Date() : e.getCreatedAt();
+            pending.compute(key, (k, p) -> {
+                if (p == null) {
+                    p = new Pending(e.getErrorCode(), fingerprinter.normalizedMessage(e.getErrorMessage()),
+                            e.getSeverity() == null ? null : e.getSeverity().name(), at);
+                } else {
+                    coalesced.incrementAndGet();
+                }
+                p.add(weight, at, e.getId());
+                return p;
+            });
+        }
+        if (pending.size() >= maxPending) flushQuietly();
+    }
+
+    /**
+     * 将当前合并结果写入 error_issue；逐键移除，与并发的 record 互不丢失。
+     * 写入失败时事务回滚，取出的条目合并回 pending（期间新记录的计数一并保留）后抛出异常。
+     */
+    public synchronized int flush() {
+        if (pending.isEmpty()) return 0;
+        Map<IssueKey, Pending> drained = new LinkedHashMap<>();
+        for (IssueKey key : new ArrayList<>(pending.keySet())) {
+            Pending p = pending.remove(key);
+            if (p != null) drained.put(key, p);
+        }
+        if (drained.isEmpty()) return 0;
+        List<Object[]> args = new ArrayList<>(drained.size());
+        drained.forEach((key, p) -> args.add(new Object[] { key.appCode, key.fingerprint, p.errorCode,
+                clip(p.message, 1024), p.severity, new Timestamp(p.firstSeen.getTime()),
+                new Timestamp(p.lastSeen.getTime()), p.count, p.sampleEventId }));
+        try {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(UPSERT_SQL, args));
+        } catch (RuntimeException e) {
+            flushFailures.incrementAndGet();
+            drained.forEach((key, p) -> pending.merge(key, p, Pending::mergeFrom));
+            throw e;
+        }
+        upserts.addAndGet(args.size());
+        return args.size();
+    }
+
+    /** 运行状态快照 */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("enabled", enabled);
+        m.put("pending", pending.size());
+        m.put("upserts", upserts.get());
+        m.put("coalesced", coalesced.get());
+        m.put("flushFailures", flushFailures.get());
+        m.put("flushIntervalMs", flushIntervalMs);
+        return m;
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.warn("Error issue flush failed: {}", e.getMessage());
+        }
+    }
+
+    private static String clip(String s, int max) {
+        return s == null || s.length() <= max ? s : s.substring(0, max);
+    }
+
+    private static final class IssueKey {
+        final String appCode;
+        final long fingerprint;
+
+        IssueKey(String appCode, long fingerprint) {
+            this.appCode = appCode;
+            this.fingerprint = fingerprint;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof IssueKey)) return false;
+            IssueKey k = (IssueKey) o;
+            return fingerprint == k.fingerprint && appCode.equals(k.appCode);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(appCode, fingerprint);
+        }
+    }
+
+    private static final class Pending {
+        final String errorCode;
+        final String message;
+        final String severity;
+        Date firstSeen;
+        Date lastSeen;
+        long count;
+        Long sampleEventId;
+
+        Pending(String errorCode, String message, String severity, Date at) {
+            this.errorCode = errorCode;
+            this.message = message;
+            this.severity = severity;
+            this.firstSeen = at;
+            this.lastSeen = at;
+        }
+
+        void add(long weight, Date at, Long eventId) {
+            count += weight;
+            if (at.before(firstSeen)) firstSeen = at;
+            if (!at.before(lastSeen)) {
+                lastSeen = at;
+                if (eventId != null) sampleEventId = eventId;
+            }
+        }
+
+        /** 合并写入失败退回的条目：计数相加，时间取极值，样例取较新的一方 */
+        Pending mergeFrom(Pending older) {
+            count += older.count;
+            if (older.firstSeen.before(firstSeen)) firstSeen = older.firstSeen;
+            if (older.lastSeen.after(lastSeen)) {
+                lastSeen = older.lastSeen;
+                if (older.sampleEventId != null) sampleEventId = older.sampleEventId;
+            } else if (sampleEventId == null) {
+                sampleEventId = older.sampleEventId;
+            }
+            return this;
+        }
+    }
+}
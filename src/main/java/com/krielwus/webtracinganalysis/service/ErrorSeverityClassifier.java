@@ -0,0 +1,88 @@
+package com.krielwus.webtracinganalysis.service;
+
+import com.krielwus.webtracinganalysis.entity.ErrorSeverity;
+import com.krielwus.webtracinganalysis.util.AhoCorasick;
+import org.springframework.stereotype.Component;
+
+/**
+ * 错误等级分类器，在入库时对每条 ERROR 事件计算一次等级。
+ * 规则依次为：上报的等级字段 → 内存溢出/栈溢出/分包加载失败为 CRITICAL → 含 fatal 为 FATAL
+ * → 5xx 错误码为 ERROR → 4xx 错误码为 WARN → 超时/网络错误为 WARN → 默认 ERROR。
+ * 消息关键字用一个 Aho–Corasick 自动机单遍扫描，命中的关键字类别再按上述优先级取值。
+ */
+@Component
+public class ErrorSeverityClassifier {
+    private static final int K_CRITICAL = 1;
+    private static final int K_FATAL = 1 << 1;
+    private static final int K_WARN = 1 << 2;
+
+    private static final String[] KEYWORDS = {
+            "out of memory", "heap", "stack overflow", "maximum call stack",
+            "chunkloaderror", "loading chunk", "failed to fetch dynamically imported module",
+            "fatal",
+            "timeout", "timed out", "network error", "networkerror", "failed to fetch"
+    };
+    private static final int[] TAGS = {
+            K_CRITICAL, K_CRITICAL, K_CRITICAL, K_CRITICAL,
+            K_CRITICAL, K_CRITICAL, K_CRITICAL,
+            K_FATAL,
+            K_WARN, K_WARN, K_WARN, K_WARN, K_WARN
+    };
+
+    private final AhoCorasick matcher = new AhoCorasick(KEYWORDS, TAGS);
+
+    /**
+     * 计算错误等级。
+     * @param errorCode 错误码（errorCode/code/eventId）
+     * @param message 错误信息
+     * @param level 上报的等级原值（severity/level/errLevel）
+     */
+    public ErrorSeverity classify(String errorCode, String message, String level) {
+        ErrorSeverity declared = fromLevel(level);
+        if (declared != null) return declared;
+        int hits = matcher.scan(message);
+        if ((hits & K_CRITICAL) != 0) return ErrorSeverity.CRITICAL;
+        if ((hits & K_FATAL) != 0) return ErrorSeverity.FATAL;
+        if (isStatusClass(errorCode, '5')) return ErrorSeverity.ERROR;
+        if (isStatusClass(errorCode, '4')) return ErrorSeverity.WARN;
+        if ((hits & K_WARN) != 0) return ErrorSeverity.WARN;
+        return ErrorSeverity.ERROR;
+    }
+
+    /**
+     * 上报等级映射；无法识别的取值返回 null，交由消息与错误码规则判断。
+     */
+    static ErrorSeverity fromLevel(String level) {
+        if (level == null) return null;
+        String v = level.trim().toUpperCase();
+        switch (v) {
+            case "CRIT":
+            case "CRITICAL":
+                return ErrorSeverity.CRITICAL;
+            case "FATAL":
+                return ErrorSeverity.FATAL;
+            case "ERR":
+            case "ERROR":
+                return ErrorSeverity.ERROR;
+            case "WARN":
+            case "WARNING":
+                return ErrorSeverity.WARN;
+            case "INFO":
+            case "DEBUG":
+            case "TRACE":
+                return ErrorSeverity.INFO;
+            default:
+                return null;
+        }
+    }
+
+    /** 错误码以 "Nxx" 开头（N 为状态码类别，xx 为两位数字） */
+    private static boolean isStatusClass(String code, char head) {
+        return code != null && code.length() >= 3 && code.charAt(0) == head
+                && isDigit(code.charAt(1)) && isDigit(code.charAt(2));
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
@@ -0,0 +1,608 @@
+package com.krielwus.webtracinganalysis.service;
+
+import com.krielwus.webtracinganalysis.util.Hash64;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 冷数据列式归档。
+ * 早于 afterDays 天的 trace_event/page_view_route 数据按天写入本地段文件（格式见 ArchiveSegment），
+ * 段文件 fsync 后重新打开完整读回，行数与块校验和一致、改名已落盘后才从库中移除：
+ * 该天恰好是一个日分区时直接 DROP PARTITION，否则分块 DELETE。
+ * 段文件先以 .pending 落盘，库中数据移除完成后才改名为 .seg 并参与查询，因此任一时刻一天的数据只由库或归档中的一方提供；
+ * 进程中断后启动时继续完成 .pending 段的移除。按日统计接口对已归档的日期改为读取段文件，对调用方透明。
+ * 多实例部署时 dir 应指向共享存储；归档过程通过 GET_LOCK 互斥，各实例每个检查周期重新扫描目录。
+ */
+@Component
+public class EventArchive {
+    private static final Logger log = LoggerFactory.getLogger(EventArchive.class);
+    public static final String TRACE_EVENT = "trace_event";
+    public static final String PAGE_VIEW_ROUTE = "page_view_route";
+    private static final String LOCK_NAME = "web_tracing_archive";
+    private static final String SEGMENT = ".seg";
+    private static final String PENDING = ".pending";
+    private static final DateTimeFormatter NAME = DateTimeFormatter.ofPattern("yyyyMMdd");
+    private static final DateTimeFormatter DAY = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final DateTimeFormatter BOUND = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private static final Map<String, List<ArchiveSegment.Column>> SCHEMAS = new LinkedHashMap<>();
+
+    static {
+        SCHEMAS.put(TRACE_EVENT, Arrays.asList(
+                col("id", ArchiveSegment.Kind.DELTA),
+                col("created_at", ArchiveSegment.Kind.DELTA),
+                col("app_code", ArchiveSegment.Kind.DICT),
+                col("app_name", ArchiveSegment.Kind.DICT),
+                col("event_type", ArchiveSegment.Kind.DICT),
+                col("session_id", ArchiveSegment.Kind.TEXT),
+                col("sample_rate", ArchiveSegment.Kind.DOUBLE),
+                col("error_code", ArchiveSegment.Kind.DICT),
+                col("error_level", ArchiveSegment.Kind.DICT),
+                col("severity", ArchiveSegment.Kind.DICT),
+                col("fingerprint", ArchiveSegment.Kind.LONG),
+                col("base_hash", ArchiveSegment.Kind.LONG),
+                col("request_uri", ArchiveSegment.Kind.TEXT),
+                col("error_message", ArchiveSegment.Kind.TEXT),
+                col("payload", ArchiveSegment.Kind.TEXT)));
+        SCHEMAS.put(PAGE_VIEW_ROUTE, Arrays.asList(
+                col("id", ArchiveSegment.Kind.DELTA),
+                col("created_at", ArchiveSegment.Kind.DELTA),
+                col("app_code", ArchiveSegment.Kind.DICT),
+                col("app_name", ArchiveSegment.Kind.DICT),
+                col("session_id", ArchiveSegment.Kind.TEXT),
+                col("sdk_user_uuid", ArchiveSegment.Kind.TEXT),
+                col("device_id", ArchiveSegment.Kind.TEXT),
+                col("route_type", ArchiveSegment.Kind.DICT),
+                col("route_path", ArchiveSegment.Kind.DICT),
+                // 仅历史数据，新写入的行为 NULL
+                col("route_id", ArchiveSegment.Kind.LONG),
+                col("route_params", ArchiveSegment.Kind.TEXT),
+                col("full_url", ArchiveSegment.Kind.TEXT),
+                col("sample_rate", ArchiveSegment.Kind.DOUBLE)));
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final RetentionPolicy retentionPolicy;
+
+    @Value("${tracing.archive.enabled:false}")
+    private boolean enabled;
+    @Value("${tracing.archive.dir:data/archive}")
+    private String dir;
+    /** 早于该天数的整天数据进入归档 */
+    @Value("${tracing.archive.afterDays:30}")
+    private int afterDays;
+    @Value("${tracing.archive.checkIntervalMinutes:60}")
+    private long checkIntervalMinutes;
+    /** 每轮每张表最多归档的天数，避免首次开启时长时间占用数据库 */
+    @Value("${tracing.archive.maxDaysPerRun:3}")
+    private int maxDaysPerRun;
+    @Value("${tracing.archive.blockRows:8192}")
+    private int blockRows;
+    /** 非分区表逐块 DELETE 的行数与间隔 */
+    @Value("${tracing.archive.deleteChunk:5000}")
+    private int deleteChunk;
+    @Value("${tracing.archive.pauseMs:50}")
+    private long pauseMs;
+
+    /** 表 -> 日期 -> 已生效的段 */
+    private final Map<String, NavigableMap<LocalDate, ArchiveSegment.Meta>> segments = new ConcurrentHashMap<>();
+    private volatile long lastRunAt;
+    private volatile String lastError;
+    private volatile int lastArchivedDays;
+    private ScheduledExecutorService worker;
+
+    public EventArchive(JdbcTemplate jdbcTemplate, RetentionPolicy retentionPolicy) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.retentionPolicy = retentionPolicy;
+        for (String table : SCHEMAS.keySet()) segments.put(table, new ConcurrentSkipListMap<>());
+    }
+
+    private static ArchiveSegment.Column col(String name, ArchiveSegment.Kind kind) {
+        return new ArchiveSegment.Column(name, kind);
+    }
+
+    @PostConstruct
+    public void start() {
+        rescanQuietly();
+        if (!enabled) return;
+        worker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "event-archiver");
+            t.setDaemon(true);
+            return t;
+        });
+        long interval = Math.max(1, checkIntervalMinutes);
+        worker.scheduleWithFixedDelay(this::runQuietly, 5, interval, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (worker != null) worker.shutdownNow();
+    }
+
+    private Path root() {
+        return Paths.get(dir);
+    }
+
+    /** 重新扫描归档目录，加载各段元数据 */
+    public synchronized void rescan() throws IOException {
+        for (String table : SCHEMAS.keySet()) {
+            Path tableDir = root().resolve(table);
+            NavigableMap<LocalDate, ArchiveSegment.Meta> fresh = new ConcurrentSkipListMap<>();
+            if (Files.isDirectory(tableDir)) {
+                try (DirectoryStream<Path> ds = Files.newDirectoryStream(tableDir, "*" + SEGMENT)) {
+                    for (Path p : ds) {
+                        try {
+                            ArchiveSegment.Meta m = ArchiveSegment.open(p);
+                            fresh.put(LocalDate.ofEpochDay(m.getDay()), m);
+                        } catch (IOException e) {
+                            log.warn("Skipping unreadable archive segment {}: {}", p, e.getMessage());
+                        }
+                    }
+                }
+            }
+            segments.put(table, fresh);
+        }
+    }
+
+    private void rescanQuietly() {
+        try {
+            rescan();
+        } catch (IOException | RuntimeException e) {
+            lastError = e.getMessage();
+            log.warn("Failed to scan archive directory {}: {}", dir, e.getMessage());
+        }
+    }
+
+    private void runQuietly() {
+        try {
+            rescan();
+            archive();
+        } catch (IOException | RuntimeException e) {
+            lastError = e.getMessage();
+            log.warn("Event archive run failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 执行一轮归档：完成中断的 .pending 段，归档到期日期，删除超出最长保留期的段。其他实例持有锁时直接返回 false。
+     */
+    public boolean archive() {
+        Boolean ran = jdbcTemplate.execute((ConnectionCallback<Boolean>) con -> {
+            if (!tryLock(con)) return false;
+            int archived = 0;
+            try {
+                for (String table : SCHEMAS.keySet()) {
+                    resumePending(con, table);
+                    archived += archiveTable(con, table);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                try (Statement st = con.createStatement()) {
+                    st.execute("DO RELEASE_LOCK('" + LOCK_NAME + "')");
+                }
+            }
+            lastArchivedDays = archived;
+            return true;
+        });
+        expireSegments();
+        lastRunAt = System.currentTimeMillis();
+        lastError = null;
+        return Boolean.TRUE.equals(ran);
+    }
+
+    private static boolean tryLock(Connection con) throws SQLException {
+        try (Statement st = con.createStatement();
+             ResultSet rs = st.executeQuery("SELECT GET_LOCK('" + LOCK_NAME + "', 0)")) {
+            return rs.next() && rs.getInt(1) == 1;
+        }
+    }
+
+    private void resumePending(Connection con, String table) throws SQLException, IOException {
+        Path tableDir = root().resolve(table);
+        if (!Files.isDirectory(tableDir)) return;
+        List<Path> pending = new ArrayList<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(tableDir, "*" + PENDING)) {
+            for (Path p : ds) pending.add(p);
+        }
+        for (Path p : pending) {
+            ArchiveSegment.Meta m;
+            try {
+                m = ArchiveSegment.open(p);
+                m.verify();
+            } catch (IOException e) {
+                // .pending 段在改名前已校验，读不回说明文件在此后受损；库中数据可能已部分删除，保留文件待人工处理
+                Path corrupt = p.resolveSibling(p.getFileName() + ".corrupt");
+                Files.move(p, corrupt, StandardCopyOption.REPLACE_EXISTING);
+                log.error("Pending archive segment {} failed verification, moved to {}: {}", p, corrupt, e.getMessage());
+                continue;
+            }
+            LocalDate day = LocalDate.ofEpochDay(m.getDay());
+            removeFromDatabase(con, table, day);
+            publish(table, p, day);
+        }
+    }
+
+    private int archiveTable(Connection con, String table) throws SQLException, IOException {
+        LocalDate cutoff = LocalDate.now().minusDays(Math.max(1, afterDays));
+        Timestamp oldest;
+        try (Statement st = con.createStatement();
+             ResultSet rs = st.executeQuery("SELECT MIN(created_at) FROM " + table)) {
+            oldest = rs.next() ? rs.getTimestamp(1) : null;
+        }
+        if (oldest == null) return 0;
+        int archived = 0;
+        for (LocalDate day = oldest.toLocalDateTime().toLocalDate();
+                day.isBefore(cutoff) && archived < Math.max(1, maxDaysPerRun); day = day.plusDays(1)) {
+            if (Thread.currentThread().isInterrupted()) break;
+            if (segments.get(table).containsKey(day)) continue;
+            if (archiveDay(con, table, day)) archived++;
+        }
+        return archived;
+    }
+
+    private boolean archiveDay(Connection con, String table, LocalDate day) throws SQLException, IOException {
+        Timestamp start = startOf(day);
+        Timestamp end = startOf(day.plusDays(1));
+        long expected = countRows(con, table, start, end);
+        if (expected == 0) return false;
+        Path tableDir = root().resolve(table);
+        Files.createDirectories(tableDir);
+        Path tmp = tableDir.resolve(day.format(NAME) + ".tmp");
+        Path pending = tableDir.resolve(day.format(NAME) + PENDING);
+        List<ArchiveSegment.Column> columns = SCHEMAS.get(table);
+        StringBuilder select = new StringBuilder("SELECT ");
+        for (int i = 0; i < columns.size(); i++) select.append(i == 0 ? "" : ", ").append(columns.get(i).getName());
+        select.append(" FROM ").append(table).append(" WHERE created_at >= ? AND created_at < ?");
+        long written;
+        try (ArchiveSegment.Writer w = ArchiveSegment.create(tmp, table, day.toEpochDay(), columns, "created_at", blockRows);
+             PreparedStatement ps = con.prepareStatement(select.toString(), ResultSet.TYPE_FORWARD_ONLY,
+                     ResultSet.CONCUR_READ_ONLY)) {
+            // MySQL 驱动按行流式返回，避免整天数据进入内存
+            ps.setFetchSize(Integer.MIN_VALUE);
+            ps.setTimestamp(1, start);
+            ps.setTimestamp(2, end);
+            try (ResultSet rs = ps.executeQuery()) {
+                Object[] row = new Object[columns.size()];
+                while (rs.next()) {
+                    for (int i = 0; i < row.length; i++) row[i] = rs.getObject(i + 1);
+                    w.append(row);
+                }
+            }
+            written = w.finish();
+        } catch (SQLException | IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        // 写入期间该日不应再有新数据（created_at 为服务端接收时间）；行数不一致说明读取不完整，放弃本次归档
+        if (written != expected || countRows(con, table, start, end) != expected) {
+            Files.deleteIfExists(tmp);
+            log.warn("Archive of {} {} skipped: wrote {} rows, expected {}", table, day, written, expected);
+            return false;
+        }
+        // 段文件已 fsync；移除库中数据前重新打开并完整读回，行数与校验和都一致才继续
+        long verified;
+        try {
+            ArchiveSegment.Meta m = ArchiveSegment.open(tmp);
+            verified = m.getRows() == expected ? m.verify() : -1;
+        } catch (IOException e) {
+            verified = -1;
+            log.warn("Archive of {} {} failed verification: {}", table, day, e.getMessage());
+        }
+        if (verified != expected) {
+            Files.deleteIfExists(tmp);
+            log.warn("Archive of {} {} skipped: segment does not read back {} rows", table, day, expected);
+            return false;
+        }
+        Files.move(tmp, pending, StandardCopyOption.ATOMIC_MOVE);
+        // 改名落盘后才移除库中数据，掉电后 .pending 段仍在，重启时按 resumePending 继续
+        ArchiveSegment.syncDirectory(tableDir);
+        removeFromDatabase(con, table, day);
+        publish(table, pending, day);
+        log.info("Archived {} rows of {} for {}", written, table, day);
+        return true;
+    }
+
+    private void publish(String table, Path pending, LocalDate day) throws IOException {
+        Path seg = pending.resolveSibling(day.format(NAME) + SEGMENT);
+        Files.move(pending, seg, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        ArchiveSegment.syncDirectory(seg.getParent());
+        segments.get(table).put(day, ArchiveSegment.open(seg));
+    }
+
+    /** 日分区恰好覆盖该天时整块删除分区，否则分块 DELETE */
+    private void removeFromDatabase(Connection con, String table, LocalDate day) throws SQLException {
+        String partition = "p" + day.format(NAME);
+        String bound = "'" + day.plusDays(1).atStartOfDay().format(BOUND) + "'";
+        boolean exact = false;
+        try (PreparedStatement ps = con.prepareStatement("SELECT PARTITION_DESCRIPTION FROM information_schema.PARTITIONS "
+                + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND PARTITION_NAME = ?")) {
+            ps.setString(1, table);
+            ps.setString(2, partition);
+            try (ResultSet rs = ps.executeQuery()) {
+                exact = rs.next() && bound.equals(rs.getString(1)) && previousBoundIs(con, table, partition, day);
+            }
+        }
+        if (exact) {
+            try (Statement st = con.createStatement()) {
+                st.execute("ALTER TABLE " + table + " DROP PARTITION " + partition);
+            }
+            return;
+        }
+        Timestamp start = startOf(day);
+        Timestamp end = startOf(day.plusDays(1));
+        try (PreparedStatement ps = con.prepareStatement("DELETE FROM " + table
+                + " WHERE created_at >= ? AND created_at < ? LIMIT " + Math.max(1, deleteChunk))) {
+            ps.setTimestamp(1, start);
+            ps.setTimestamp(2, end);
+            while (ps.executeUpdate() > 0) {
+                if (pauseMs > 0) {
+                    try {
+                        Thread.sleep(pauseMs);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLException("Interrupted while removing archived rows");
+                    }
+                }
+            }
+        }
+    }
+
+    /** 前一个分区的上界应为该天零点，即分区只包含这一天 */
+    private static boolean previousBoundIs(Connection con, String table, String partition, LocalDate day) throws SQLException {
+        try (PreparedStatement ps = con.prepareStatement("SELECT p.PARTITION_DESCRIPTION FROM information_schema.PARTITIONS p "
+                + "JOIN information_schema.PARTITIONS c ON c.TABLE_SCHEMA = p.TABLE_SCHEMA AND c.TABLE_NAME = p.TABLE_NAME "
+                + "AND c.PARTITION_ORDINAL_POSITION = p.PARTITION_ORDINAL_POSITION + 1 "
+                + "WHERE p.TABLE_SCHEMA = DATABASE() AND p.TABLE_NAME = ? AND c.PARTITION_NAME = ?")) {
+            ps.setString(1, table);
+            ps.setString(2, partition);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() && ("'" + day.atStartOfDay().format(BOUND) + "'").equals(rs.getString(1));
+            }
+        }
+    }
+
+    private static long countRows(Connection con, String table, Timestamp start, Timestamp end) throws SQLException {
+        try (PreparedStatement ps = con.prepareStatement("SELECT COUNT(*) FROM " + table
+                + " WHERE created_at >= ? AND created_at < ?")) {
+            ps.setTimestamp(1, start);
+            ps.setTimestamp(2, end);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        }
+    }
+
+    /** 删除超出最长保留期的段（按应用/类型更短的保留期不作用于归档） */
+    private void expireSegments() {
+        int retention = retentionPolicy.maxRetentionDays();
+        if (retention <= 0) return;
+        LocalDate cutoff = LocalDate.now().minusDays(retention);
+        for (NavigableMap<LocalDate, ArchiveSegment.Meta> bySegment : segments.values()) {
+            for (ArchiveSegment.Meta m : new ArrayList<>(bySegment.headMap(cutoff, false).values())) {
+                try {
+                    Files.deleteIfExists(m.getFile());
+                    bySegment.remove(LocalDate.ofEpochDay(m.getDay()));
+                } catch (IOException e) {
+                    log.warn("Failed to delete expired archive segment {}: {}", m.getFile(), e.getMessage());
+                }
+            }
+        }
+    }
+
+    /** 删除全部归档段（清除全部数据时调用） */
+    public synchronized void deleteAll() {
+        for (NavigableMap<LocalDate, ArchiveSegment.Meta> bySegment : segments.values()) {
+            for (ArchiveSegment.Meta m : new ArrayList<>(bySegment.values())) {
+                try {
+                    Files.deleteIfExists(m.getFile());
+                } catch (IOException e) {
+                    log.warn("Failed to delete archive segment {}: {}", m.getFile(), e.getMessage());
+                }
+            }
+            bySegment.clear();
+        }
+    }
+
+    private static Timestamp startOf(LocalDate day) {
+        return Timestamp.valueOf(day.atStartOfDay());
+    }
+
+    private static long millis(LocalDate day) {
+        return day.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /** 该表该日是否已由归档提供 */
+    public boolean isArchived(String table, LocalDate day) {
+        return segments.get(table).containsKey(day);
+    }
+
+    /** 日期范围内是否有任一天已归档 */
+    public boolean hasArchived(String table, LocalDate startDate, LocalDate endDate) {
+        return !segments.get(table).subMap(startDate, true, endDate, true).isEmpty();
+    }
+
+    /**
+     * 从归档统计日期范围内某事件类型的按采样率加权数量（SUM(1/sample_rate) 后取整，与库内统计口径一致）。
+     * appCodes 为空表示全部应用；byApp 时返回 [day, app_code, cnt]，否则返回 [day, cnt]。
+     */
+    public List<Object[]> countDaily(String eventType, Collection<String> appCodes, LocalDate startDate,
+            LocalDate endDate, boolean byApp) {
+        List<Object[]> out = new ArrayList<>();
+        for (ArchiveSegment.Meta m : segments.get(TRACE_EVENT).subMap(startDate, true, endDate, true).values()) {
+            int typeCode = m.dictCode("event_type", eventType);
+            if (typeCode < 0) continue;
+            Set<Integer> appFilter = null;
+            if (appCodes != null) {
+                appFilter = new HashSet<>();
+                for (String code : appCodes) {
+                    int c = m.dictCode("app_code", code);
+                    if (c >= 0) appFilter.add(c);
+                }
+                if (appFilter.isEmpty()) continue;
+            }
+            Map<Integer, double[]> sums = new HashMap<>();
+            Set<Integer> filter = appFilter;
+            scan(m, new String[] { "event_type", "app_code", "sample_rate" }, b -> {
+                for (int r = 0; r < b.rows(); r++) {
+                    if (b.code(0, r) != typeCode) continue;
+                    int app = b.code(1, r);
+                    if (filter != null && !filter.contains(app)) continue;
+                    double rate = b.isNull(2, r) ? 1 : b.getDouble(2, r);
+                    sums.computeIfAbsent(byApp ? app : 0, k -> new double[1])[0] += 1 / rate;
+                }
+            });
+            String day = LocalDate.ofEpochDay(m.getDay()).format(DAY);
+            List<String> apps = m.dictionary("app_code");
+            sums.forEach((app, sum) -> out.add(byApp
+                    ? new Object[] { day, app < 0 ? null : apps.get(app), Math.round(sum[0]) }
+                    : new Object[] { day, Math.round(sum[0]) }));
+        }
+        return out;
+    }
+
+    /** 单个应用单日的加权事件数 */
+    public long sumWeighted(String eventType, String appCode, LocalDate day) {
+        long total = 0;
+        for (Object[] r : countDaily(eventType, java.util.Collections.singleton(appCode), day, day, false)) {
+            total += ((Number) r[1]).longValue();
+        }
+        return total;
+    }
+
+    /**
+     * 从归档统计应用在日期范围内各路由的访问量：[route_path, pv, session_num, user_num]，会话与用户在归档范围内去重。
+     * PV 按采样率加权后取整；早期段没有 sample_rate 列，按权重 1 计。
+     */
+    public List<Object[]> countRoutePv(String appCode, LocalDate startDate, LocalDate endDate) {
+        return routePvRows(routeVisits(appCode, startDate, endDate));
+    }
+
+    /**
+     * 归档中各路由的访问量累加器（按路由插入顺序），会话与用户保留标识哈希，
+     * 与库内数据合并后再计数，跨归档边界活跃的会话与用户只计一次。
+     */
+    public Map<String, RouteVisits> routeVisits(String appCode, LocalDate startDate, LocalDate endDate) {
+        Map<String, RouteVisits> byRoute = new LinkedHashMap<>();
+        for (ArchiveSegment.Meta m : segments.get(PAGE_VIEW_ROUTE).subMap(startDate, true, endDate, true).values()) {
+            int appCodeId = m.dictCode("app_code", appCode);
+            if (appCodeId < 0) continue;
+            boolean weighted = m.hasColumn("sample_rate");
+            String[] columns = weighted
+                    ? new String[] { "app_code", "route_path", "session_id", "sdk_user_uuid", "sample_rate" }
+                    : new String[] { "app_code", "route_path", "session_id", "sdk_user_uuid" };
+            scan(m, columns, b -> {
+                for (int r = 0; r < b.rows(); r++) {
+                    if (b.code(0, r) != appCodeId) continue;
+                    double rate = !weighted || b.isNull(4, r) ? 1 : b.getDouble(4, r);
+                    byRoute.computeIfAbsent(String.valueOf(b.getString(1, r)), k -> new RouteVisits())
+                            .add(1 / rate, b.getString(2, r), b.getString(3, r));
+                }
+            });
+        }
+        return byRoute;
+    }
+
+    /** 累加器转为 [route_path, pv, session_num, user_num] 行，顺序与传入的 Map 一致 */
+    public static List<Object[]> routePvRows(Map<String, RouteVisits> byRoute) {
+        List<Object[]> out = new ArrayList<>(byRoute.size());
+        byRoute.forEach((route, v) -> out.add(new Object[] { route, v.pv(), (long) v.sessions.size(), (long) v.users.size() }));
+        return out;
+    }
+
+    /**
+     * 单个路由的访问量累加器：PV 按权重累加，会话与用户按标识哈希去重（空标识不计）。
+     */
+    public static final class RouteVisits {
+        private double pv;
+        private final Set<Long> sessions = new HashSet<>();
+        private final Set<Long> users = new HashSet<>();
+
+        /** 累加一组访问：weight 为加权 PV，session/user 为该组的会话与用户标识 */
+        public void add(double weight, String session, String user) {
+            pv += weight;
+            if (session != null) sessions.add(Hash64.hash(session));
+            if (user != null) users.add(Hash64.hash(user));
+        }
+
+        /** 加权 PV 取整 */
+        public long pv() {
+            return Math.round(pv);
+        }
+    }
+
+    private void scan(ArchiveSegment.Meta m, String[] columns, ArchiveSegment.BlockVisitor visitor) {
+        LocalDate day = LocalDate.ofEpochDay(m.getDay());
+        try {
+            m.scan(columns, millis(day), millis(day.plusDays(1)), visitor);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read archive segment " + m.getFile(), e);
+        }
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("enabled", enabled);
+        m.put("dir", root().toAbsolutePath().toString());
+        m.put("afterDays", afterDays);
+        m.put("lastRunAt", lastRunAt);
+        m.put("lastArchivedDays", lastArchivedDays);
+        m.put("lastError", lastError);
+        Map<String, Object> tables = new LinkedHashMap<>();
+        segments.forEach((table, bySegment) -> {
+            Map<String, Object> t = new LinkedHashMap<>();
+            long rows = 0;
+            long bytes = 0;
+            for (ArchiveSegment.Meta s : bySegment.values()) {
+                rows += s.getRows();
+                bytes += s.getSize();
+            }
+            t.put("segments", bySegment.size());
+            t.put("rows", rows);
+            t.put("bytes", bytes);
+            t.put("firstDay", bySegment.isEmpty() ? null : bySegment.firstKey().format(DAY));
+            t.put("lastDay", bySegment.isEmpty() ? null : bySegment.lastKey().format(DAY));
+            tables.put(table, t);
+        });
+        m.put("tables", tables);
+        return m;
+    }
+}
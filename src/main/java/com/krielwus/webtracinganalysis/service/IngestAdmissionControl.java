@@ -0,0 +1,268 @@
+package com.krielwus.webtracinganalysis.service;
+
+import com.krielwus.webtracinganalysis.entity.ApplicationInfo;
+import com.krielwus.webtracinganalysis.info.IngestEvent;
+import com.krielwus.webtracinganalysis.info.IngestPayload;
+import com.krielwus.webtracinganalysis.repository.ApplicationInfoRepository;
+import com.krielwus.webtracinganalysis.util.Hash64;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 上报准入控制：按 appCode 限流与按事件类型采样。
+ * 限流为每应用一个令牌桶（GCRA 实现，单个 AtomicLong 上 CAS，无锁），令牌按事件条数足额消耗；
+ * appCode 来自客户端，令牌桶数有上限，超出后没有应用级策略的新 appCode 共用一个 _other 桶；
+ * 采样率按事件类型配置，应用级配置（application_info.sample_rates）优先于全局配置，
+ * 采样判定基于事件哈希，同一事件重试时结论一致；保留的事件记录其采样率以便聚合时还原计数。
+ * 应用级限额由后台线程每 cacheTtlSeconds 整表加载一次，上报线程只读内存快照，不访问数据库。
+ */
+@Component
+public class IngestAdmissionControl {
+    private static final Logger log = LoggerFactory.getLogger(IngestAdmissionControl.class);
+
+    private final ApplicationInfoRepository applicationInfoRepository;
+
+    /** 默认每应用每秒事件数，0 表示不限流 */
+    @Value("${tracing.ingest.rateLimit.eventsPerSecond:0}")
+    private int defaultRate;
+    /** 默认突发容量（事件数），0 表示取 eventsPerSecond */
+    @Value("${tracing.ingest.rateLimit.burst:0}")
+    private int defaultBurst;
+    /** 令牌桶数上限，配置了应用级策略的应用不受限 */
+    @Value("${tracing.ingest.rateLimit.maxBuckets:1000}")
+    private int maxBuckets;
+    /** 全局采样率，格式 TYPE:rate,TYPE:rate，如 CLICK:0.1,PERFORMANCE:0.5 */
+    @Value("${tracing.ingest.sampling.rates:}")
+    private String defaultSampleRates;
+    @Value("${tracing.ingest.admission.cacheTtlSeconds:30}")
+    private long cacheTtlSeconds;
+
+    private final ConcurrentHashMap<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private volatile Map<String, AppPolicy> policies = Collections.emptyMap();
+    private volatile long policiesLoadedAt;
+    private volatile Map<String, Double> globalRates;
+    private final LongAdder reloadFailures = new LongAdder();
+    private ScheduledExecutorService scheduler;
+
+    public IngestAdmissionControl(ApplicationInfoRepository applicationInfoRepository) {
+        this.applicationInfoRepository = applicationInfoRepository;
+    }
+
+    @PostConstruct
+    public void start() {
+        reloadQuietly();
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "admission-policy-refresh");
+            t.setDaemon(true);
+            return t;
+        });
+        long interval = Math.max(1, cacheTtlSeconds);
+        scheduler.scheduleWithFixedDelay(this::reloadQuietly, interval, interval, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) scheduler.shutdownNow();
+    }
+
+    /**
+     * 对载荷按事件类型采样，移除未命中的事件并在保留事件上记录采样率，返回移除条数。
+     */
+    public int sample(IngestPayload payload) {
+        if (payload.getEvents().isEmpty()) return 0;
+        AppPolicy policy = policyOf(payload.resolveAppCode());
+        Map<String, Double> global = globalRates();
+        int before = payload.getEvents().size();
+        payload.getEvents().removeIf(e -> {
+            double rate = rateFor(policy, global, e.getEventType());
+            e.setSampleRate(rate);
+            if (rate >= 1.0) return false;
+            long h = e.getDedupKey() != 0 ? e.getDedupKey() : Hash64.hash(e.getSource(), e.getOffset(), e.getLength());
+            return (h >>> 11) * 0x1.0p-53 >= rate;
+        });
+        return before - payload.getEvents().size();
+    }
+
+    /**
+     * 令牌桶准入：按事件条数（至少 1）足额扣减令牌，令牌不足返回 false。
+     * 超过突发容量的大批量只在令牌满时放行，超出部分记为欠额，后续上报需等令牌补足后才能通过。
+     */
+    public boolean tryAcquire(IngestPayload payload) {
+        String appCode = payload.resolveAppCode();
+        AppPolicy policy = policyOf(appCode);
+        int rate = policy != null && policy.rate != null ? policy.rate : defaultRate;
+        if (rate <= 0) return true;
+        int burst = policy != null && policy.burst != null && policy.burst > 0 ? policy.burst
+                : (defaultBurst > 0 ? defaultBurst : rate);
+        String key = appCode == null || appCode.isEmpty() ? IngestMetrics.UNKNOWN_APP : appCode;
+        TokenBucket bucket = buckets.get(key);
+        if (bucket == null) {
+            if (policy == null && buckets.size() >= maxBuckets) key = IngestMetrics.OTHER;
+            bucket = buckets.computeIfAbsent(key, k -> new TokenBucket());
+        }
+        return bucket.tryAcquire(Math.max(1, payload.getEvents().size()), rate, burst);
+    }
+
+    /** 应用级策略缓存与默认配置快照 */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("defaultEventsPerSecond", defaultRate);
+        m.put("defaultBurst", defaultBurst);
+        m.put("buckets", buckets.size());
+        m.put("maxBuckets", maxBuckets);
+        m.put("defaultSampleRates", globalRates());
+        Map<String, Object> apps = new LinkedHashMap<>();
+        for (Map.Entry<String, AppPolicy> e : policies.entrySet()) {
+            Map<String, Object> p = new LinkedHashMap<>();
+            p.put("eventsPerSecond", e.getValue().rate);
+            p.put("burst", e.getValue().burst);
+            p.put("sampleRates", e.getValue().sampleRates);
+            apps.put(e.getKey(), p);
+        }
+        m.put("apps", apps);
+        m.put("policiesLoadedAt", policiesLoadedAt);
+        m.put("reloadFailures", reloadFailures.sum());
+        return m;
+    }
+
+    /** 应用级策略变更后在后台线程重新加载，不阻塞调用方；处于事务中时在提交后触发 */
+    public void invalidate() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    scheduleReload();
+                }
+            });
+        } else {
+            scheduleReload();
+        }
+    }
+
+    private void scheduleReload() {
+        ScheduledExecutorService s = scheduler;
+        if (s == null) return;
+        try {
+            s.execute(this::reloadQuietly);
+        } catch (RejectedExecutionException ignored) {
+            // 已停止
+        }
+    }
+
+    /** 整表加载应用级策略，只保留配置了限额或采样率的应用 */
+    void reload() {
+        Map<String, AppPolicy> next = new HashMap<>();
+        for (ApplicationInfo ai : applicationInfoRepository.findAll()) {
+            if (ai.getAppCode() == null) continue;
+            if (ai.getIngestRateLimit() == null && ai.getIngestBurst() == null
+                    && (ai.getSampleRates() == null || ai.getSampleRates().trim().isEmpty())) continue;
+            next.put(ai.getAppCode(), new AppPolicy(ai.getIngestRateLimit(), ai.getIngestBurst(),
+                    parseSampleRates(ai.getSampleRates())));
+        }
+        policies = next;
+        policiesLoadedAt = System.currentTimeMillis();
+    }
+
+    private void reloadQuietly() {
+        try {
+            reload();
+        } catch (RuntimeException e) {
+            // 数据库不可用时沿用旧策略，避免准入阶段阻断上报
+            reloadFailures.increment();
+            log.warn("Failed to reload ingest admission policies: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 解析采样率配置：TYPE:rate 以逗号分隔，rate 取值 (0, 1]，非法项忽略。
+     */
+    public static Map<String, Double> parseSampleRates(String text) {
+        if (text == null || text.trim().isEmpty()) return Collections.emptyMap();
+        Map<String, Double> out = new HashMap<>();
+        for (String part : text.split(",")) {
+            int idx = part.indexOf(':');
+            if (idx <= 0) continue;
+            String type = part.substring(0, idx).trim().toUpperCase();
+            try {
+                double rate = Double.parseDouble(part.substring(idx + 1).trim());
+                if (rate > 0 && rate <= 1 && !type.isEmpty()) out.put(type, rate);
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        return out;
+    }
+
+    private static double rateFor(AppPolicy policy, Map<String, Double> global, String eventType) {
+        String type = eventType == null ? "UNKNOWN" : eventType.toUpperCase();
+        if (policy != null) {
+            Double r = policy.sampleRates.get(type);
+            if (r != null) return r;
+        }
+        Double r = global.get(type);
+        return r == null ? 1.0 : r;
+    }
+
+    private Map<String, Double> globalRates() {
+        Map<String, Double> g = globalRates;
+        if (g == null) {
+            g = parseSampleRates(defaultSampleRates);
+            globalRates = g;
+        }
+        return g;
+    }
+
+    private AppPolicy policyOf(String appCode) {
+        return appCode == null ? null : policies.get(appCode);
+    }
+
+    private static final class AppPolicy {
+        final Integer rate;
+        final Integer burst;
+        final Map<String, Double> sampleRates;
+
+        AppPolicy(Integer rate, Integer burst, Map<String, Double> sampleRates) {
+            this.rate = rate;
+            this.burst = burst;
+            this.sampleRates = sampleRates;
+        }
+    }
+
+    /**
+     * GCRA 令牌桶：tat 为理论到达时间，tat - now 不超过 burst 个令牌间隔即放行。
+     * 消耗超过 burst 时只要求令牌已满（tat 不晚于 now），tat 按全部消耗推进，欠额由后续的补充周期偿还。
+     */
+    static final class TokenBucket {
+        private final AtomicLong tat = new AtomicLong(System.nanoTime());
+
+        boolean tryAcquire(int cost, int rate, int burst) {
+            long interval = 1_000_000_000L / rate;
+            long tolerance = interval * burst;
+            long increment = interval * cost;
+            while (true) {
+                long now = System.nanoTime();
+                long current = tat.get();
+                long next = Math.max(current, now) + increment;
+                if (cost > burst ? current - now > 0 : next - now > tolerance) return false;
+                if (tat.compareAndSet(current, next)) return true;
+            }
+        }
+    }
+}
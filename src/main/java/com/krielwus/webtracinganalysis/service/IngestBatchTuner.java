@@ -0,0 +1,143 @@
+package com.krielwus.webtracinganalysis.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 消费线程批量大小与等待时长的自适应调节器。
+ * 每次落库后根据 EWMA 平滑的落库耗时、失败率以及当前积压调整：
+ * 积压高且落库耗时在目标内时扩大批量以提升吞吐；积压低时缩短等待以降低延迟；
+ * 落库持续失败或超时时缩小批量并拉长等待，给数据库减压。结果始终限制在配置的上下界内。
+ */
+@Component
+public class IngestBatchTuner {
+    private static final double ALPHA = 0.2;
+
+    @Value("${tracing.ingest.batch.adaptive.enabled:true}")
+    private boolean enabled;
+    @Value("${tracing.ingest.batch.size:100}")
+    private int fixedSize;
+    @Value("${tracing.ingest.batch.lingerMs:200}")
+    private long fixedLingerMs;
+    @Value("${tracing.ingest.batch.adaptive.minSize:20}")
+    private int minSize;
+    @Value("${tracing.ingest.batch.adaptive.maxSize:2000}")
+    private int maxSize;
+    @Value("${tracing.ingest.batch.adaptive.minLingerMs:5}")
+    private long minLingerMs;
+    @Value("${tracing.ingest.batch.adaptive.maxLingerMs:500}")
+    private long maxLingerMs;
+    /** 单批落库耗时目标，超过后不再扩大批量 */
+    @Value("${tracing.ingest.batch.adaptive.targetFlushMs:200}")
+    private long targetFlushMs;
+    /** 失败率（EWMA）超过该值时进入退避 */
+    @Value("${tracing.ingest.batch.adaptive.errorRateThreshold:0.3}")
+    private double errorRateThreshold;
+
+    private volatile int batchSize;
+    private volatile long lingerMs;
+    private double flushMsEwma;
+    private double errorRateEwma;
+    private long flushes;
+    private long failures;
+    private volatile int lastDepth;
+
+    /**
+     * 以固定配置作为初始值。
+     */
+    @jakarta.annotation.PostConstruct
+    public void init() {
+        batchSize = enabled ? clamp(fixedSize, minSize, maxSize) : fixedSize;
+        lingerMs = enabled ? Math.max(minLingerMs, Math.min(maxLingerMs, fixedLingerMs)) : fixedLingerMs;
+    }
+
+    /** 当前批量大小 */
+    public int batchSize() {
+        return batchSize;
+    }
+
+    /** 允许的最大批量，停机排空时使用 */
+    public int maxBatchSize() {
+        return enabled ? maxSize : fixedSize;
+    }
+
+    /**
+     * 已有部分载荷入批时的等待时长；积压为 0 时直接取下界，尽快落库零散上报。
+     */
+    public long lingerMs(int depth) {
+        if (enabled && depth == 0 && errorRateEwma < errorRateThreshold) return minLingerMs;
+        return lingerMs;
+    }
+
+    /**
+     * 批次为空时阻塞等待首条载荷的时长：新载荷到达即返回，不影响延迟，取较长值避免空闲时频繁唤醒。
+     */
+    public long idleWaitMs() {
+        return enabled ? maxLingerMs : fixedLingerMs;
+    }
+
+    /**
+     * 记录一次落库结果并更新决策。
+     * @param rows 本批载荷数
+     * @param elapsedNanos 落库耗时
+     * @param success 是否成功
+     * @param depth 当前消费线程可见的积压条数
+     */
+    public synchronized void recordFlush(int rows, long elapsedNanos, boolean success, int depth) {
+        double ms = elapsedNanos / 1_000_000.0;
+        flushes++;
+        if (!success) failures++;
+        flushMsEwma = flushes == 1 ? ms : ALPHA * ms + (1 - ALPHA) * flushMsEwma;
+        errorRateEwma = ALPHA * (success ? 0 : 1) + (1 - ALPHA) * errorRateEwma;
+        lastDepth = depth;
+        if (!enabled) return;
+
+        int size = batchSize;
+        long linger = lingerMs;
+        if (errorRateEwma > errorRateThreshold) {
+            // 数据库异常：小事务 + 长等待
+            size = size / 2;
+            linger = linger * 2;
+        } else if (flushMsEwma > targetFlushMs) {
+            // 落库偏慢：收缩批量，保持单批耗时在目标内
+            size = size - size / 4;
+        } else if (depth > size * 2) {
+            // 积压上升且落库耗时有余量：扩大批量追求吞吐
+            size = size * 2;
+            linger = linger / 2;
+        } else if (depth < size / 4) {
+            // 积压较浅：缩短等待，批量逐步回落
+            size = size - size / 8;
+            linger = linger - linger / 4;
+        } else if (rows >= size) {
+            // 批次刚好填满：适当延长等待让批次更饱满
+            linger = linger + Math.max(1, linger / 4);
+        }
+        batchSize = clamp(size, minSize, maxSize);
+        lingerMs = Math.max(minLingerMs, Math.min(maxLingerMs, linger));
+    }
+
+    /**
+     * 当前决策与观测值快照。
+     */
+    public synchronized Map<String, Object> snapshot() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("adaptive", enabled);
+        m.put("batchSize", batchSize);
+        m.put("lingerMs", lingerMs);
+        m.put("flushMsEwma", Math.round(flushMsEwma * 100) / 100.0);
+        m.put("errorRateEwma", Math.round(errorRateEwma * 1000) / 1000.0);
+        m.put("lastDepth", lastDepth);
+        m.put("flushes", flushes);
+        m.put("failures", failures);
+        m.put("bounds", enabled ? new long[] { minSize, maxSize, minLingerMs, maxLingerMs } : null);
+        return m;
+    }
+
+    private static int clamp(int v, int lo, int hi) {
+        return Math.max(lo, Math.min(hi, v));
+    }
+}
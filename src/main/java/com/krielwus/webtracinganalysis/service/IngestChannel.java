@@ -0,0 +1,46 @@
+package com.krielwus.webtracinganalysis.service;
+
+import com.krielwus.webtracinganalysis.info.IngestPayload;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 上报载荷的入队通道。
+ * 生产者为 Tomcat 工作线程，消费者为固定数量的落库线程，consumer 为消费线程序号（0 起）。
+ */
+public interface IngestChannel {
+    /** 入队，超时仍无空位返回 false */
+    boolean offer(IngestPayload payload, long timeout, TimeUnit unit) throws InterruptedException;
+
+    /** 阻塞入队，直到有空位 */
+    void put(IngestPayload payload) throws InterruptedException;
+
+    /** 消费线程取出一条，超时返回 null */
+    IngestPayload poll(int consumer, long timeout, TimeUnit unit) throws InterruptedException;
+
+    /** 消费线程非阻塞地批量取出，返回取出条数 */
+    int drainTo(int consumer, Collection<? super IngestPayload> target, int maxElements);
+
+    /**
+     * 保序分区数：同一分区内的载荷按入队顺序由固定的消费线程处理；消费线程 consumer 负责分区 consumer % lanes()。
+     * 共享队列不区分分区，返回 1。
+     */
+    default int lanes() {
+        return 1;
+    }
+
+    /** 载荷所属的保序分区 */
+    default int laneOf(IngestPayload payload) {
+        return 0;
+    }
+
+    /** 当前积压条数 */
+    int size();
+
+    /** 总容量 */
+    int capacity();
+
+    /** 通道类型名称 */
+    String name();
+}
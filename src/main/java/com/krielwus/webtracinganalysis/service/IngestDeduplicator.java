@@ -0,0 +1,119 @@
+package com.krielwus.webtracinganalysis.service;
+
+import com.krielwus.webtracinganalysis.info.IngestEvent;
+import com.krielwus.webtracinganalysis.info.IngestPayload;
+import com.krielwus.webtracinganalysis.util.Hash64;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 上报事件去重。
+ * mode 为 id（默认）时只对带 SDK 唯一标识（idempotencyKey/eventUuid/uuid）的事件去重，没有标识的事件一律保留；
+ * mode 为 content 时没有标识的事件取原始 JSON 切片的 64 位哈希作为键，内容完全相同的真实事件（如连续点击）会被合并，
+ * 且布隆过滤器误判会丢弃合法事件，只适合 SDK 无法提供标识、重放问题更严重的场景。键均与 appCode 组合。
+ * 键在入队前查询轮转布隆过滤器，仅在载荷被接收后写入，避免被拒绝的上报在重试时被误判为重复。
+ * 统计中 dropped 为实际丢弃数，estimatedFalsePositives 为按查询时误判率累计的期望误判数，两者分开呈现。
+ */
+@Component
+public class IngestDeduplicator {
+    @Value("${tracing.ingest.dedup.enabled:true}")
+    private boolean enabled;
+    /** 去重时间窗口（秒） */
+    @Value("${tracing.ingest.dedup.windowSeconds:600}")
+    private long windowSeconds;
+    @Value("${tracing.ingest.dedup.generations:3}")
+    private int generations;
+    /** 每代预期事件数，决定位图大小 */
+    @Value("${tracing.ingest.dedup.expectedPerGeneration:1000000}")
+    private long expectedPerGeneration;
+    @Value("${tracing.ingest.dedup.fpp:0.001}")
+    private double fpp;
+    /** 去重键来源：id 只按 SDK 唯一标识，content 无标识时按内容哈希 */
+    @Value("${tracing.ingest.dedup.mode:id}")
+    private String mode;
+
+    private RotatingBloomFilter filter;
+    private boolean contentKeys;
+    private final LongAdder checked = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final DoubleAdder expectedFalsePositives = new DoubleAdder();
+
+    @PostConstruct
+    public void init() {
+        if (enabled) {
+            filter = new RotatingBloomFilter(generations, expectedPerGeneration, fpp, windowSeconds * 1000L);
+        }
+        contentKeys = "content".equalsIgnoreCase(mode);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 计算各事件去重键并移除疑似重复的事件，返回移除条数；没有去重键的事件不参与判断。
+     */
+    public int removeDuplicates(IngestPayload payload) {
+        if (!enabled || payload.getEvents().isEmpty()) return 0;
+        long app = Hash64.hash(payload.resolveAppCode());
+        int before = payload.getEvents().size();
+        int[] lookups = new int[1];
+        payload.getEvents().removeIf(e -> {
+            long hash = eventHash(e);
+            if (hash == 0) return false;
+            long key = Hash64.combine(app, hash);
+            e.setDedupKey(key);
+            lookups[0]++;
+            return filter.mightContain(key);
+        });
+        int removed = before - payload.getEvents().size();
+        if (lookups[0] > 0) {
+            checked.add(lookups[0]);
+            expectedFalsePositives.add(lookups[0] * filter.estimatedFpp());
+        }
+        dropped.add(removed);
+        return removed;
+    }
+
+    /**
+     * 记录已接收载荷中各事件的去重键。
+     */
+    public void remember(IngestPayload payload) {
+        if (!enabled) return;
+        for (IngestEvent e : payload.getEvents()) {
+            if (e.getDedupKey() != 0) filter.put(e.getDedupKey());
+        }
+    }
+
+    /** 过滤器参数与当前代填充率 */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("enabled", enabled);
+        m.put("mode", contentKeys ? "content" : "id");
+        if (filter != null) {
+            m.put("checked", checked.sum());
+            m.put("dropped", dropped.sum());
+            m.put("estimatedFpp", filter.estimatedFpp());
+            m.put("estimatedFalsePositives", Math.round(expectedFalsePositives.sum() * 100) / 100.0);
+            m.put("windowSeconds", windowSeconds);
+            m.put("generations", filter.generationCount());
+            m.put("bitsPerGeneration", filter.bitSize());
+            m.put("hashes", filter.hashCount());
+            m.put("currentFill", Math.round(filter.currentFill() * 10000) / 10000.0);
+        }
+        return m;
+    }
+
+    /** 事件去重哈希；id 模式下没有 SDK 标识时返回 0（不去重） */
+    private long eventHash(IngestEvent e) {
+        String id = e.getIdempotencyKey();
+        if (id != null && !id.isEmpty()) return Hash64.hash(id);
+        return contentKeys ? Hash64.hash(e.getSource(), e.getOffset(), e.getLength()) : 0;
+    }
+}
@@ -0,0 +1,54 @@
+package com.krielwus.webtracinganalysis.service;
+
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+/**
+ * 入库管线的停机编排。
+ * 阶段高于 Web 容器的优雅停机，因此先于容器停止：入口对新上报返回 503（SDK 稍后重试），
+ * 消费线程以最大批量排空队列，超时剩余部分写入溢出文件，之后容器才开始等待在途请求。
+ * 排空在独立线程中进行，完成后回调容器；排空时长由 TracingService 按 spring.lifecycle.timeout-per-shutdown-phase 截断，
+ * 保证在容器放弃等待本阶段之前写完溢出文件。
+ */
+@Component
+public class IngestLifecycle implements SmartLifecycle {
+    private final TracingService tracingService;
+    private volatile boolean running;
+
+    public IngestLifecycle(TracingService tracingService) {
+        this.tracingService = tracingService;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        tracingService.drainAndStop();
+        running = false;
+    }
+
+    @Override
+    public void stop(Runnable callback) {
+        Thread t = new Thread(() -> {
+            try {
+                stop();
+            } finally {
+                callback.run();
+            }
+        }, "ingest-drain");
+        t.start();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return Integer.MAX_VALUE;
+    }
+}
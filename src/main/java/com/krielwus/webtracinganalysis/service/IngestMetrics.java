@@ -0,0 +1,124 @@
+package com.krielwus.webtracinganalysis.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 上报入队计数器。
+ * 按 appCode 分别统计各入队结果的上报次数与事件条数，以及去重、采样丢弃的事件条数，计数使用 LongAdder，热路径无锁。
+ * appCode 来自客户端，分别计数的应用数有上限，超出后新出现的应用计入 _other。
+ */
+@Component
+public class IngestMetrics {
+    /** 无法识别应用时的归属键 */
+    public static final String UNKNOWN_APP = "_unknown";
+    /** 超出 maxApps 后新出现的应用的归属键 */
+    public static final String OTHER = "_other";
+    private static final int MAX_CODE_LENGTH = 64;
+
+    /** 分别计数的应用数上限 */
+    @Value("${tracing.ingest.metrics.maxApps:1000}")
+    private int maxApps;
+
+    private final ConcurrentHashMap<String, AppCounters> counters = new ConcurrentHashMap<>();
+
+    /**
+     * 记录一次上报的入队结果。
+     */
+    public void record(String appCode, IngestResult result, int events) {
+        AppCounters c = countersFor(appCode);
+        c.beacons[result.ordinal()].increment();
+        c.events[result.ordinal()].add(events);
+    }
+
+    /**
+     * 记录去重丢弃的事件条数。
+     */
+    public void recordDuplicates(String appCode, int events) {
+        countersFor(appCode).duplicates.add(events);
+    }
+
+    /**
+     * 记录采样丢弃的事件条数。
+     */
+    public void recordSampledOut(String appCode, int events) {
+        countersFor(appCode).sampledOut.add(events);
+    }
+
+    /** 应用对应的计数器；应用数达到上限后新的 appCode 计入 _other */
+    private AppCounters countersFor(String appCode) {
+        String key = appCode == null || appCode.isEmpty() ? UNKNOWN_APP
+                : appCode.length() > MAX_CODE_LENGTH ? appCode.substring(0, MAX_CODE_LENGTH) : appCode;
+        AppCounters c = counters.get(key);
+        if (c == null) {
+            if (counters.size() >= maxApps) key = OTHER;
+            c = counters.computeIfAbsent(key, k -> new AppCounters());
+        }
+        return c;
+    }
+
+    /**
+     * 计数快照：appCode -> {accepted: {beacons, events}, spilled: {...}, ..., duplicates, sampledOut}，另含 _total 汇总。
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> out = new TreeMap<>();
+        long[] totalBeacons = new long[IngestResult.values().length];
+        long[] totalEvents = new long[IngestResult.values().length];
+        long totalDuplicates = 0;
+        long totalSampledOut = 0;
+        for (Map.Entry<String, AppCounters> e : counters.entrySet()) {
+            long[] beacons = new long[totalBeacons.length];
+            long[] events = new long[totalEvents.length];
+            for (IngestResult r : IngestResult.values()) {
+                beacons[r.ordinal()] = e.getValue().beacons[r.ordinal()].sum();
+                events[r.ordinal()] = e.getValue().events[r.ordinal()].sum();
+                totalBeacons[r.ordinal()] += beacons[r.ordinal()];
+                totalEvents[r.ordinal()] += events[r.ordinal()];
+            }
+            long duplicates = e.getValue().duplicates.sum();
+            long sampledOut = e.getValue().sampledOut.sum();
+            totalDuplicates += duplicates;
+            totalSampledOut += sampledOut;
+            out.put(e.getKey(), toMap(beacons, events, duplicates, sampledOut));
+        }
+        out.put("_total", toMap(totalBeacons, totalEvents, totalDuplicates, totalSampledOut));
+        return out;
+    }
+
+    /** 清空计数 */
+    public void reset() {
+        counters.clear();
+    }
+
+    private Map<String, Object> toMap(long[] beacons, long[] events, long duplicates, long sampledOut) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        for (IngestResult r : IngestResult.values()) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("beacons", beacons[r.ordinal()]);
+            item.put("events", events[r.ordinal()]);
+            m.put(r.name().toLowerCase(), item);
+        }
+        m.put("duplicates", duplicates);
+        m.put("sampledOut", sampledOut);
+        return m;
+    }
+
+    private static final class AppCounters {
+        final LongAdder[] beacons = newAdders();
+        final LongAdder[] events = newAdders();
+        final LongAdder duplicates = new LongAdder();
+        final LongAdder sampledOut = new LongAdder();
+
+        private static LongAdder[] newAdders() {
+            LongAdder[] a = new LongAdder[IngestResult.values().length];
+            for (int i = 0; i < a.length; i++) a[i] = new LongAdder();
+            return a;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.krielwus.webtracinganalysis.service;
+
+/**
+ * 上报入队结果。
+ */
+public enum IngestResult {
+    /** 已进入主队列 */
+    ACCEPTED,
+    /** 主队列已满，写入溢出缓冲 */
+    SPILLED,
+    /** 过载丢弃（已计数），对客户端仍返回成功 */
+    DROPPED,
+    /** 过载拒绝，客户端应按 Retry-After 重试 */
+    REJECTED,
+    /** 超出应用限流额度被拒绝，客户端应按 Retry-After 重试 */
+    THROTTLED,
+    /** 服务停机排空中不再接收，客户端应按 Retry-After 重试（转发到其他实例） */
+    UNAVAILABLE,
+    /** 应用未登记被拒绝，客户端不应重试 */
+    UNKNOWN_APP,
+    /** 应用未登记，写入隔离存储（应用登记后回放）并计入隔离统计，对客户端仍返回成功 */
+    QUARANTINED
+}
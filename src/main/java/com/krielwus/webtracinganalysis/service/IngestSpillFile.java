@@ -0,0 +1,173 @@
+package com.krielwus.webtracinganalysis.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * 停机溢出文件。
+ * 停机排空超时后仍未落库的载荷写入本地文件，下次启动时回放；回放的记录落库后由调用方通过 deleteReplayed 删除文件，
+ * 落库前崩溃则下次启动重新回放。
+ * 每次停机写一个 spill-时间戳.bin 文件（先写临时文件再原子改名），记录格式与预写日志一致：[len:int][crc32:int][bytes]。
+ * 多次重试仍无法落库的单条载荷追加到同目录的 deadletter.bin，不自动回放；排查后改名为 spill-*.bin 即可在下次启动回放。
+ */
+@Component
+public class IngestSpillFile {
+    private static final Logger log = LoggerFactory.getLogger(IngestSpillFile.class);
+    private static final String PREFIX = "spill-";
+    private static final String SUFFIX = ".bin";
+    private static final String DEAD_LETTER = "deadletter.bin";
+
+    @Value("${tracing.ingest.shutdown.spillDir:./data/ingest-spill}")
+    private String dir;
+
+    /** 已回放、等待删除的文件 */
+    private final List<Path> replayed = new ArrayList<>();
+    private final LongAdder deadLettered = new LongAdder();
+
+    /**
+     * 写入一批载荷，返回写入条数。
+     */
+    public int write(List<byte[]> records) throws IOException {
+        if (records == null || records.isEmpty()) return 0;
+        Path root = Paths.get(dir);
+        Files.createDirectories(root);
+        String name = PREFIX + System.currentTimeMillis() + SUFFIX;
+        Path tmp = root.resolve(name + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 65536))) {
+            CRC32 crc = new CRC32();
+            for (byte[] r : records) {
+                crc.reset();
+                crc.update(r, 0, r.length);
+                out.writeInt(r.length);
+                out.writeInt((int) crc.getValue());
+                out.write(r);
+            }
+        }
+        Files.move(tmp, root.resolve(name), StandardCopyOption.ATOMIC_MOVE);
+        return records.size();
+    }
+
+    /**
+     * 追加一条无法落库的载荷到死信文件，写入失败时返回 false。
+     */
+    public synchronized boolean deadLetter(byte[] record) {
+        if (record == null || record.length == 0) return false;
+        CRC32 crc = new CRC32();
+        crc.update(record, 0, record.length);
+        try {
+            Path root = Paths.get(dir);
+            Files.createDirectories(root);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(
+                    root.resolve(DEAD_LETTER), StandardOpenOption.CREATE, StandardOpenOption.APPEND)))) {
+                out.writeInt(record.length);
+                out.writeInt((int) crc.getValue());
+                out.write(record);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to write ingest dead letter record: {}", e.getMessage());
+            return false;
+        }
+        deadLettered.increment();
+        return true;
+    }
+
+    /** 本次运行写入死信文件的条数 */
+    public long deadLettered() {
+        return deadLettered.sum();
+    }
+
+    /**
+     * 按写入顺序回放全部溢出文件，返回回放条数；文件保留到调用 deleteReplayed。
+     * 校验失败的记录及其之后的内容被丢弃。
+     */
+    public synchronized long replay(Consumer<byte[]> consumer) {
+        Path root = Paths.get(dir);
+        if (!Files.isDirectory(root)) return 0;
+        long total = 0;
+        for (Path file : listFiles(root)) {
+            long count = 0;
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 65536))) {
+                CRC32 crc = new CRC32();
+                while (true) {
+                    int len;
+                    try {
+                        len = in.readInt();
+                    } catch (EOFException eof) {
+                        break;
+                    }
+                    int expected = in.readInt();
+                    if (len <= 0) break;
+                    byte[] data = new byte[len];
+                    in.readFully(data);
+                    crc.reset();
+                    crc.update(data, 0, len);
+                    if ((int) crc.getValue() != expected) {
+                        log.warn("Corrupted ingest spill record in {}, skipping remainder", file);
+                        break;
+                    }
+                    consumer.accept(data);
+                    count++;
+                }
+            } catch (IOException e) {
+                log.warn("Failed to read ingest spill file {}: {}", file, e.getMessage());
+            }
+            replayed.add(file);
+            total += count;
+        }
+        if (total > 0) log.info("Ingest spill replayed {} records from {}", total, root);
+        return total;
+    }
+
+    /**
+     * 删除已回放的溢出文件，回放出的记录全部落库（或已写入预写日志）后调用。
+     */
+    public synchronized void deleteReplayed() {
+        for (Path file : replayed) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.warn("Failed to delete ingest spill file {}: {}", file, e.getMessage());
+            }
+        }
+        replayed.clear();
+    }
+
+    /** 尚未删除的溢出文件数 */
+    public int pendingFiles() {
+        Path root = Paths.get(dir);
+        return Files.isDirectory(root) ? listFiles(root).size() : 0;
+    }
+
+    private List<Path> listFiles(Path root) {
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> s = Files.list(root)) {
+            s.filter(p -> {
+                String n = p.getFileName().toString();
+                return n.startsWith(PREFIX) && n.endsWith(SUFFIX);
+            }).sorted().forEach(files::add);
+        } catch (IOException e) {
+            log.warn("Failed to list ingest spill dir {}: {}", root, e.getMessage());
+        }
+        return files;
+    }
+}
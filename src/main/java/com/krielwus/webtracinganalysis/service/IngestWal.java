@@ -0,0 +1,280 @@
+package com.krielwus.webtracinganalysis.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * 上报预写日志（WAL）。
+ * 载荷在入队前先追加到内存映射的段文件中，记录格式为 [len:int][crc32:int][bytes]，len 为 0 表示段内数据结束。
+ * 位置编码为 (段号 << 32) | 段内偏移；已提交位置为仍在途的最小位置，写入 checkpoint 文件，
+ * 启动时从 checkpoint 开始回放，已提交位置之前的段文件会被删除。
+ * 回放语义为至少一次：批次提交顺序不保证，重启后可能重复写入少量已落库的载荷。
+ */
+@Component
+public class IngestWal {
+    private static final Logger log = LoggerFactory.getLogger(IngestWal.class);
+    private static final String SEGMENT_SUFFIX = ".wal";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+    private static final int HEADER_BYTES = 8;
+
+    @Value("${tracing.ingest.wal.enabled:false}")
+    private boolean enabled;
+    @Value("${tracing.ingest.wal.dir:./data/ingest-wal}")
+    private String dir;
+    /** 单个段文件大小（字节） */
+    @Value("${tracing.ingest.wal.segmentBytes:67108864}")
+    private int segmentBytes;
+    /** 每次追加后是否 force 刷盘；关闭时依赖页缓存，可抵御进程崩溃但不能抵御掉电 */
+    @Value("${tracing.ingest.wal.forceOnAppend:false}")
+    private boolean forceOnAppend;
+
+    private final ConcurrentSkipListSet<Long> inFlight = new ConcurrentSkipListSet<>();
+    private Path root;
+    private FileChannel checkpointChannel;
+    private long lastCheckpoint = -1;
+    private long headSegment;
+    private MappedByteBuffer head;
+    private FileChannel headChannel;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 打开日志目录并回放未提交的记录；之后的追加写入新段。
+     * @param consumer 回放回调 (位置, 载荷字节)
+     */
+    public void open(BiConsumer<Long, byte[]> consumer) throws IOException {
+        replay(open(), consumer);
+    }
+
+    /**
+     * 打开日志目录与新的写入段，返回未提交记录的位置；返回后即可追加，回放可交给后台线程。
+     */
+    public List<Long> open() throws IOException {
+        if (!enabled) return java.util.Collections.emptyList();
+        return openAndScan();
+    }
+
+    /**
+     * 回放 open 返回的未提交记录。
+     * 持锁只做扫描与登记在途位置，回调在释放锁之后执行：回调可能阻塞在满队列上，
+     * 而消费线程提交时需要同一把锁，持锁回放会在积压超过队列容量时互相等待。
+     * @param consumer 回放回调 (位置, 载荷字节)
+     */
+    public void replay(List<Long> pending, BiConsumer<Long, byte[]> consumer) throws IOException {
+        if (!enabled) return;
+        // 未提交的记录均已登记为在途，提交位置不会越过它们，所在段在回放完成前不会被删除
+        long replayed = 0;
+        FileChannel ch = null;
+        MappedByteBuffer buf = null;
+        long current = -1;
+        try {
+            for (long position : pending) {
+                long seg = segmentOf(position);
+                if (seg != current) {
+                    if (ch != null) ch.close();
+                    ch = FileChannel.open(segmentPath(seg), StandardOpenOption.READ);
+                    buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+                    current = seg;
+                }
+                int pos = offsetOf(position);
+                byte[] data = new byte[buf.getInt(pos)];
+                buf.get(pos + HEADER_BYTES, data);
+                consumer.accept(position, data);
+                replayed++;
+            }
+        } finally {
+            if (ch != null) ch.close();
+        }
+        if (replayed > 0) log.info("Ingest WAL replayed {} records from {}", replayed, root);
+        commit(java.util.Collections.emptyList());
+    }
+
+    /** 打开日志与新的写入段，返回 checkpoint 之后校验通过的记录位置（已登记为在途） */
+    private synchronized List<Long> openAndScan() throws IOException {
+        root = Paths.get(dir);
+        Files.createDirectories(root);
+        checkpointChannel = FileChannel.open(root.resolve(CHECKPOINT_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long committed = readCheckpoint();
+        List<Long> segments = listSegments();
+        List<Long> pending = new ArrayList<>();
+        for (long seg : segments) {
+            if (seg < segmentOf(committed)) continue;
+            int from = seg == segmentOf(committed) ? offsetOf(committed) : 0;
+            scanSegment(seg, from, pending);
+        }
+        inFlight.addAll(pending);
+        headSegment = segments.isEmpty() ? Math.max(0, segmentOf(committed)) : segments.get(segments.size() - 1) + 1;
+        openHead(segmentBytes);
+        return pending;
+    }
+
+    /**
+     * 追加一条记录，返回其位置；记录在 commit 前视为在途。
+     */
+    public synchronized long append(byte[] data) throws IOException {
+        int need = HEADER_BYTES + data.length;
+        // 预留 4 字节结束标记
+        if (head.remaining() < need + 4) {
+            rollHead(need + 4);
+        }
+        long position = position(headSegment, head.position());
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length);
+        head.putInt(data.length);
+        head.putInt((int) crc.getValue());
+        head.put(data);
+        if (forceOnAppend) head.force();
+        inFlight.add(position);
+        return position;
+    }
+
+    /**
+     * 标记记录已落库（或已被放弃），推进已提交位置并清理过期段。
+     */
+    public void commit(Iterable<Long> positions) {
+        if (!enabled) return;
+        for (Long p : positions) {
+            if (p != null && p >= 0) inFlight.remove(p);
+        }
+        long committed;
+        synchronized (this) {
+            if (head == null) return;
+            committed = inFlight.isEmpty() ? position(headSegment, head.position()) : inFlight.first();
+            if (committed <= lastCheckpoint) return;
+            try {
+                ByteBuffer buf = ByteBuffer.allocate(8).putLong(0, committed);
+                checkpointChannel.write(buf, 0);
+                lastCheckpoint = committed;
+            } catch (IOException e) {
+                log.warn("Failed to write ingest WAL checkpoint: {}", e.getMessage());
+                return;
+            }
+        }
+        deleteSegmentsBefore(segmentOf(committed));
+    }
+
+    /** 在途（已写入未提交）记录数 */
+    public int inFlightCount() {
+        return inFlight.size();
+    }
+
+    /**
+     * 刷盘并关闭当前段。
+     */
+    public synchronized void close() {
+        if (head == null) return;
+        try {
+            head.force();
+            headChannel.close();
+            checkpointChannel.force(true);
+            checkpointChannel.close();
+        } catch (IOException e) {
+            log.warn("Failed to close ingest WAL: {}", e.getMessage());
+        }
+        head = null;
+    }
+
+    /** 扫描段内从 from 开始的完整记录，位置追加到 out；遇到长度越界或校验失败视为写入中断的尾部 */
+    private void scanSegment(long seg, int from, List<Long> out) throws IOException {
+        try (FileChannel ch = FileChannel.open(segmentPath(seg), StandardOpenOption.READ)) {
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            int pos = from;
+            while (pos + HEADER_BYTES <= buf.limit()) {
+                int len = buf.getInt(pos);
+                if (len <= 0 || pos + HEADER_BYTES + len > buf.limit()) break;
+                int crcValue = buf.getInt(pos + 4);
+                byte[] data = new byte[len];
+                buf.get(pos + HEADER_BYTES, data);
+                CRC32 crc = new CRC32();
+                crc.update(data, 0, len);
+                if ((int) crc.getValue() != crcValue) break;
+                out.add(position(seg, pos));
+                pos += HEADER_BYTES + len;
+            }
+        }
+    }
+
+    private void rollHead(int minCapacity) throws IOException {
+        head.force();
+        headChannel.close();
+        headSegment++;
+        openHead(Math.max(segmentBytes, minCapacity));
+    }
+
+    private void openHead(int capacity) throws IOException {
+        headChannel = FileChannel.open(segmentPath(headSegment),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        head = headChannel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    private void deleteSegmentsBefore(long segment) {
+        try {
+            for (long seg : listSegments()) {
+                if (seg >= segment) break;
+                Files.deleteIfExists(segmentPath(seg));
+            }
+        } catch (IOException e) {
+            log.warn("Failed to delete ingest WAL segments: {}", e.getMessage());
+        }
+    }
+
+    private long readCheckpoint() throws IOException {
+        if (checkpointChannel.size() < 8) return 0;
+        ByteBuffer buf = ByteBuffer.allocate(8);
+        checkpointChannel.read(buf, 0);
+        lastCheckpoint = buf.getLong(0);
+        return lastCheckpoint;
+    }
+
+    private List<Long> listSegments() throws IOException {
+        List<Long> out = new ArrayList<>();
+        try (Stream<Path> files = Files.list(root)) {
+            files.map(p -> p.getFileName().toString())
+                    .filter(n -> n.endsWith(SEGMENT_SUFFIX))
+                    .forEach(n -> {
+                        try {
+                            out.add(Long.parseLong(n.substring(0, n.length() - SEGMENT_SUFFIX.length())));
+                        } catch (NumberFormatException ignored) {
+                        }
+                    });
+        }
+        out.sort(null);
+        return out;
+    }
+
+    private Path segmentPath(long seg) {
+        return root.resolve(String.format("%020d%s", seg, SEGMENT_SUFFIX));
+    }
+
+    private static long position(long seg, int offset) {
+        return (seg << 32) | (offset & 0xFFFFFFFFL);
+    }
+
+    private static long segmentOf(long position) {
+        return position >>> 32;
+    }
+
+    private static int offsetOf(long position) {
+        return (int) position;
+    }
+}
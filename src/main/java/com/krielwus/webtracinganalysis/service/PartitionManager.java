@@ -0,0 +1,300 @@
+package com.krielwus.webtracinganalysis.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按 created_at 的 RANGE 分区维护。
+ * trace_event 与 page_view_route 按天（或按周）分区：定时预建未来 futurePartitions 个分区，
+ * 并整块删除上界早于最长保留期（RetentionPolicy.maxRetentionDays）的分区，删除分区是元数据操作，不逐行 DELETE。
+ * 分区名为 p+分区起始日期，另有 p_history（转换前的历史数据）与 pmax（MAXVALUE 兜底）。
+ * 未分区的表在开启后自动转换（主键改为 (id, created_at)）；非空表需显式开启 convertExisting，因为转换会重建整表。
+ * base_info_record 的唯一键 content_hash 不含 created_at，无法分区，其保留由逐行清理负责。
+ * 多实例部署时通过 GET_LOCK 保证同一时间只有一个实例执行 DDL。
+ */
+@Component
+public class PartitionManager {
+    private static final Logger log = LoggerFactory.getLogger(PartitionManager.class);
+    /** 参与分区的表 */
+    public static final String[] TABLES = { "trace_event", "page_view_route" };
+    private static final String LOCK_NAME = "web_tracing_partition_maintenance";
+    private static final String HISTORY = "p_history";
+    private static final String MAX = "pmax";
+    private static final DateTimeFormatter NAME = DateTimeFormatter.ofPattern("yyyyMMdd");
+    private static final DateTimeFormatter BOUND = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final RetentionPolicy retentionPolicy;
+
+    @Value("${tracing.partition.enabled:false}")
+    private boolean enabled;
+    /** 分区粒度：day 或 week */
+    @Value("${tracing.partition.granularity:day}")
+    private String granularity;
+    /** 预建的未来分区数 */
+    @Value("${tracing.partition.futurePartitions:7}")
+    private int futurePartitions;
+    @Value("${tracing.partition.checkIntervalMinutes:60}")
+    private long checkIntervalMinutes;
+    /** 是否转换已有数据的未分区表（整表重建，数据量大时应在低峰期手动开启） */
+    @Value("${tracing.partition.convertExisting:false}")
+    private boolean convertExisting;
+
+    private final Map<String, Map<String, Object>> tableStats = new ConcurrentHashMap<>();
+    private volatile long lastRunAt;
+    private volatile String lastError;
+    private ScheduledExecutorService scheduler;
+
+    public PartitionManager(JdbcTemplate jdbcTemplate, RetentionPolicy retentionPolicy) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.retentionPolicy = retentionPolicy;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) return;
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "partition-maintenance");
+            t.setDaemon(true);
+            return t;
+        });
+        long interval = Math.max(1, checkIntervalMinutes);
+        // 首次延迟片刻，等待 schema 初始化与 JPA 建表完成
+        scheduler.scheduleWithFixedDelay(this::maintainQuietly, 30, interval * 60, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) scheduler.shutdownNow();
+    }
+
+    private void maintainQuietly() {
+        try {
+            maintain();
+        } catch (RuntimeException e) {
+            lastError = e.getMessage();
+            log.warn("Partition maintenance failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 执行一轮维护：转换未分区的表、预建未来分区、删除过期分区。其他实例持有锁时直接返回 false。
+     */
+    public synchronized boolean maintain() {
+        Boolean ran = jdbcTemplate.execute((ConnectionCallback<Boolean>) con -> {
+            if (!tryLock(con)) return false;
+            try {
+                for (String table : TABLES) maintainTable(con, table);
+            } finally {
+                try (Statement st = con.createStatement()) {
+                    st.execute("DO RELEASE_LOCK('" + LOCK_NAME + "')");
+                }
+            }
+            return true;
+        });
+        lastRunAt = System.currentTimeMillis();
+        lastError = null;
+        return Boolean.TRUE.equals(ran);
+    }
+
+    private static boolean tryLock(Connection con) throws SQLException {
+        try (Statement st = con.createStatement();
+             ResultSet rs = st.executeQuery("SELECT GET_LOCK('" + LOCK_NAME + "', 0)")) {
+            return rs.next() && rs.getInt(1) == 1;
+        }
+    }
+
+    private void maintainTable(Connection con, String table) throws SQLException {
+        List<Partition> parts = listPartitions(con, table);
+        LocalDate today = LocalDate.now();
+        LocalDate current = periodStart(today);
+        int created = 0;
+        int dropped = 0;
+        if (parts.isEmpty()) {
+            if (!convert(con, table, current)) {
+                tableStats.put(table, stats(false, parts, 0, 0));
+                return;
+            }
+            parts = listPartitions(con, table);
+        }
+
+        // 预建：从最后一个有上界的分区开始补齐到 current + futurePartitions
+        LocalDate lastBound = null;
+        boolean hasMax = false;
+        for (Partition p : parts) {
+            if (p.bound == null) hasMax = true;
+            else lastBound = p.bound.toLocalDate();
+        }
+        LocalDate horizon = current;
+        for (int i = 0; i <= Math.max(0, futurePartitions); i++) horizon = next(horizon);
+        List<String> defs = new ArrayList<>();
+        LocalDate from = lastBound == null ? current : lastBound;
+        for (LocalDate p = from; p.isBefore(horizon); p = next(p)) {
+            defs.add(definition(p));
+        }
+        if (!defs.isEmpty()) {
+            String sql = hasMax
+                    ? "ALTER TABLE " + table + " REORGANIZE PARTITION " + MAX + " INTO (" + String.join(", ", defs)
+                            + ", PARTITION " + MAX + " VALUES LESS THAN (MAXVALUE))"
+                    : "ALTER TABLE " + table + " ADD PARTITION (" + String.join(", ", defs) + ")";
+            execute(con, sql);
+            created = defs.size();
+        }
+
+        // 删除：上界不晚于最长保留期起点的分区
+        int retention = retentionPolicy.maxRetentionDays();
+        if (retention > 0) {
+            LocalDateTime cutoff = today.minusDays(retention).atStartOfDay();
+            List<String> expired = new ArrayList<>();
+            for (Partition p : listPartitions(con, table)) {
+                if (p.bound != null && !p.bound.isAfter(cutoff)) expired.add(p.name);
+            }
+            if (!expired.isEmpty()) {
+                execute(con, "ALTER TABLE " + table + " DROP PARTITION " + String.join(", ", expired));
+                dropped = expired.size();
+                log.info("Dropped {} expired partitions of {}: {}", dropped, table, expired);
+            }
+        }
+        tableStats.put(table, stats(true, listPartitions(con, table), created, dropped));
+    }
+
+    /**
+     * 将未分区的表转换为分区表：现有数据进入 p_history，当前周期起按粒度分区，另加 pmax。
+     */
+    private boolean convert(Connection con, String table, LocalDate current) throws SQLException {
+        if (!convertExisting && hasRows(con, table)) {
+            log.warn("Table {} is not partitioned and holds data; set tracing.partition.convertExisting=true "
+                    + "to rebuild it as a partitioned table", table);
+            return false;
+        }
+        // 主键需包含分区列，created_at 必须非空
+        execute(con, "UPDATE " + table + " SET created_at = '1970-01-02 00:00:00' WHERE created_at IS NULL");
+        StringBuilder sql = new StringBuilder("ALTER TABLE ").append(table)
+                .append(" MODIFY created_at DATETIME NOT NULL, DROP PRIMARY KEY, ADD PRIMARY KEY (id, created_at)")
+                .append(" PARTITION BY RANGE COLUMNS(created_at) (PARTITION ").append(HISTORY)
+                .append(" VALUES LESS THAN ('").append(current.atStartOfDay().format(BOUND)).append("'), ");
+        LocalDate p = current;
+        for (int i = 0; i <= Math.max(0, futurePartitions); i++, p = next(p)) {
+            sql.append(definition(p)).append(", ");
+        }
+        sql.append("PARTITION ").append(MAX).append(" VALUES LESS THAN (MAXVALUE))");
+        execute(con, sql.toString());
+        log.info("Converted {} to RANGE partitions on created_at", table);
+        return true;
+    }
+
+    private String definition(LocalDate periodStart) {
+        return "PARTITION p" + periodStart.format(NAME) + " VALUES LESS THAN ('"
+                + next(periodStart).atStartOfDay().format(BOUND) + "')";
+    }
+
+    private boolean weekly() {
+        return "week".equalsIgnoreCase(granularity);
+    }
+
+    private LocalDate periodStart(LocalDate d) {
+        return weekly() ? d.with(DayOfWeek.MONDAY) : d;
+    }
+
+    private LocalDate next(LocalDate periodStart) {
+        return weekly() ? periodStart.plusWeeks(1) : periodStart.plusDays(1);
+    }
+
+    private static boolean hasRows(Connection con, String table) throws SQLException {
+        try (Statement st = con.createStatement();
+             ResultSet rs = st.executeQuery("SELECT 1 FROM " + table + " LIMIT 1")) {
+            return rs.next();
+        }
+    }
+
+    private static void execute(Connection con, String sql) throws SQLException {
+        try (Statement st = con.createStatement()) {
+            st.execute(sql);
+        }
+    }
+
+    /** 按序列出分区；未分区的表返回空列表。bound 为上界，MAXVALUE 为 null */
+    private static List<Partition> listPartitions(Connection con, String table) throws SQLException {
+        List<Partition> out = new ArrayList<>();
+        try (PreparedStatement ps = con.prepareStatement("SELECT PARTITION_NAME, PARTITION_DESCRIPTION "
+                + "FROM information_schema.PARTITIONS WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? "
+                + "AND PARTITION_NAME IS NOT NULL ORDER BY PARTITION_ORDINAL_POSITION")) {
+            ps.setString(1, table);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    String desc = rs.getString(2);
+                    LocalDateTime bound = null;
+                    if (desc != null && !"MAXVALUE".equalsIgnoreCase(desc.trim())) {
+                        bound = LocalDateTime.parse(desc.replace("'", "").trim(), BOUND);
+                    }
+                    out.add(new Partition(rs.getString(1), bound));
+                }
+            }
+        }
+        return out;
+    }
+
+    private Map<String, Object> stats(boolean partitioned, List<Partition> parts, int created, int dropped) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("partitioned", partitioned);
+        m.put("partitions", parts.size());
+        LocalDateTime first = null;
+        LocalDateTime last = null;
+        for (Partition p : parts) {
+            if (p.bound == null) continue;
+            if (first == null) first = p.bound;
+            last = p.bound;
+        }
+        m.put("firstBound", first == null ? null : first.format(BOUND));
+        m.put("lastBound", last == null ? null : last.format(BOUND));
+        m.put("lastCreated", created);
+        m.put("lastDropped", dropped);
+        return m;
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("enabled", enabled);
+        m.put("granularity", weekly() ? "week" : "day");
+        m.put("futurePartitions", futurePartitions);
+        m.put("retentionDays", retentionPolicy.maxRetentionDays());
+        m.put("lastRunAt", lastRunAt);
+        m.put("lastError", lastError);
+        m.put("tables", new LinkedHashMap<>(tableStats));
+        return m;
+    }
+
+    private static final class Partition {
+        final String name;
+        final LocalDateTime bound;
+
+        Partition(String name, LocalDateTime bound) {
+            this.name = name;
+            this.bound = bound;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.krielwus.webtracinganalysis.service;
+
+import com.krielwus.webtracinganalysis.util.Hash64;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * 未登记应用上报的隔离存储。
+ * quarantine 模式下被隔离的载荷按 appCode 追加到本地文件（记录格式与溢出文件一致：[len:int][crc32:int][bytes]），
+ * 应用登记后由 ApplicationRegistry 回放进入入库管线并删除文件；SDK 先于控制台建应用上线时，这段时间的数据不再丢失。
+ * 每个应用与全部应用的文件大小分别有上限，超出后的载荷只计数丢弃。
+ */
+@Component
+public class QuarantineStore {
+    private static final Logger log = LoggerFactory.getLogger(QuarantineStore.class);
+    private static final String SUFFIX = ".bin";
+
+    @Value("${tracing.ingest.appRegistry.quarantine.dir:./data/ingest-quarantine}")
+    private String dir;
+    /** 单个应用的隔离文件上限（字节），0 表示不保存 */
+    @Value("${tracing.ingest.appRegistry.quarantine.maxBytesPerApp:4194304}")
+    private long maxBytesPerApp;
+    /** 全部隔离文件的总上限（字节） */
+    @Value("${tracing.ingest.appRegistry.quarantine.maxTotalBytes:268435456}")
+    private long maxTotalBytes;
+
+    /** 文件名 -> 当前大小 */
+    private final Map<String, Long> sizes = new LinkedHashMap<>();
+    private long totalBytes;
+    private final LongAdder stored = new LongAdder();
+    private final LongAdder overflowed = new LongAdder();
+    private final LongAdder released = new LongAdder();
+    private final LongAdder writeFailures = new LongAdder();
+
+    @PostConstruct
+    public synchronized void init() {
+        Path root = Paths.get(dir);
+        if (!Files.isDirectory(root)) return;
+        try (Stream<Path> s = Files.list(root)) {
+            s.filter(p -> p.getFileName().toString().endsWith(SUFFIX)).forEach(p -> {
+                try {
+                    long size = Files.size(p);
+                    sizes.put(p.getFileName().toString(), size);
+                    totalBytes += size;
+                } catch (IOException ignored) {
+                }
+            });
+        } catch (IOException e) {
+            log.warn("Failed to list quarantine dir {}: {}", root, e.getMessage());
+        }
+    }
+
+    /**
+     * 追加一条隔离载荷；超出上限或写入失败时返回 false（只计数）。
+     */
+    public synchronized boolean store(String appCode, byte[] record) {
+        if (record == null || record.length == 0) return false;
+        String name = fileName(appCode);
+        long current = sizes.getOrDefault(name, 0L);
+        long size = record.length + 8L;
+        if (current + size > maxBytesPerApp || totalBytes + size > maxTotalBytes) {
+            overflowed.increment();
+            return false;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(record, 0, record.length);
+        ByteBuffer header = ByteBuffer.allocate(8).putInt(record.length).putInt((int) crc.getValue());
+        try {
+            Path root = Paths.get(dir);
+            Files.createDirectories(root);
+            try (OutputStream out = Files.newOutputStream(root.resolve(name),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                out.write(header.array());
+                out.write(record);
+            }
+        } catch (IOException e) {
+            writeFailures.increment();
+            log.warn("Failed to write quarantine record for {}: {}", appCode, e.getMessage());
+            return false;
+        }
+        sizes.put(name, current + size);
+        totalBytes += size;
+        stored.increment();
+        return true;
+    }
+
+    /** 该应用是否有待回放的隔离数据 */
+    public synchronized boolean has(String appCode) {
+        return sizes.containsKey(fileName(appCode));
+    }
+
+    /**
+     * 按写入顺序回放该应用的隔离数据，全部交给 consumer 后删除文件，返回回放条数。
+     * 校验失败的记录及其之后的内容被丢弃。
+     */
+    public synchronized long release(String appCode, Consumer<byte[]> consumer) {
+        String name = fileName(appCode);
+        Long size = sizes.get(name);
+        if (size == null) return 0;
+        Path file = Paths.get(dir).resolve(name);
+        long count = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 65536))) {
+            CRC32 crc = new CRC32();
+            while (true) {
+                int len;
+                try {
+                    len = in.readInt();
+                } catch (EOFException eof) {
+                    break;
+                }
+                int expected = in.readInt();
+                if (len <= 0) break;
+                byte[] data = new byte[len];
+                in.readFully(data);
+                crc.reset();
+                crc.update(data, 0, len);
+                if ((int) crc.getValue() != expected) {
+                    log.warn("Corrupted quarantine record in {}, skipping remainder", file);
+                    break;
+                }
+                consumer.accept(data);
+                count++;
+            }
+        } catch (IOException e) {
+            log.warn("Failed to read quarantine file {}: {}", file, e.getMessage());
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Failed to delete quarantine file {}: {}", file, e.getMessage());
+        }
+        sizes.remove(name);
+        totalBytes -= size;
+        released.add(count);
+        if (count > 0) log.info("Released {} quarantined payloads for app {}", count, appCode);
+        return count;
+    }
+
+    /** 文件名：可读前缀加完整 appCode 的哈希，避免不同编码清洗后冲突 */
+    static String fileName(String appCode) {
+        String code = appCode == null ? "" : appCode;
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < code.length() && sb.length() < 32; i++) {
+            char c = code.charAt(i);
+            sb.append(Character.isLetterOrDigit(c) && c < 128 || c == '-' || c == '_' ? c : '_');
+        }
+        return sb.append('-').append(Long.toHexString(Hash64.hash(code))).append(SUFFIX).toString();
+    }
+
+    /** 隔离存储状态 */
+    public synchronized Map<String, Object> snapshot() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("apps", sizes.size());
+        m.put("bytes", totalBytes);
+        m.put("maxBytesPerApp", maxBytesPerApp);
+        m.put("maxTotalBytes", maxTotalBytes);
+        m.put("stored", stored.sum());
+        m.put("overflowed", overflowed.sum());
+        m.put("released", released.sum());
+        m.put("writeFailures", writeFailures.sum());
+        return m;
+    }
+}
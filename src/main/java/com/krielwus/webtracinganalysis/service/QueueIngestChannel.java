@@ -0,0 +1,55 @@
+package com.krielwus.webtracinganalysis.service;
+
+import com.krielwus.webtracinganalysis.info.IngestPayload;
+
+import java.util.Collection;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于单个 LinkedBlockingQueue 的入队通道，所有消费线程共享同一队列。
+ */
+public class QueueIngestChannel implements IngestChannel {
+    private final LinkedBlockingQueue<IngestPayload> queue;
+    private final int capacity;
+
+    public QueueIngestChannel(int capacity) {
+        this.capacity = capacity;
+        this.queue = new LinkedBlockingQueue<>(capacity);
+    }
+
+    @Override
+    public boolean offer(IngestPayload payload, long timeout, TimeUnit unit) throws InterruptedException {
+        return queue.offer(payload, timeout, unit);
+    }
+
+    @Override
+    public void put(IngestPayload payload) throws InterruptedException {
+        queue.put(payload);
+    }
+
+    @Override
+    public IngestPayload poll(int consumer, long timeout, TimeUnit unit) throws InterruptedException {
+        return queue.poll(timeout, unit);
+    }
+
+    @Override
+    public int drainTo(int consumer, Collection<? super IngestPayload> target, int maxElements) {
+        return queue.drainTo(target, maxElements);
+    }
+
+    @Override
+    public int size() {
+        return queue.size();
+    }
+
+    @Override
+    public int capacity() {
+        return capacity;
+    }
+
+    @Override
+    public String name() {
+        return "queue";
+    }
+}
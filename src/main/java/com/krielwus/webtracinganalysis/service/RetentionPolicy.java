@@ -0,0 +1,105 @@
+package com.krielwus.webtracinganalysis.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 数据保留策略。
+ * 规则格式 appCode:eventType:days，逗号分隔，* 为通配，如 *:ERROR:90,*:CLICK:14,demo:*:7；
+ * 匹配优先级：应用+类型 > 应用+* > *+类型 > 默认天数。天数为 0 表示永久保留。
+ */
+@Component
+public class RetentionPolicy {
+    /** 通配符 */
+    public static final String ANY = "*";
+
+    /** 未命中规则时的保留天数，0 为永久保留 */
+    @Value("${tracing.retention.defaultDays:0}")
+    private int defaultDays;
+    @Value("${tracing.retention.rules:}")
+    private String rulesText;
+
+    private volatile Map<String, Integer> rules = Collections.emptyMap();
+
+    @PostConstruct
+    public void init() {
+        rules = parseRules(rulesText);
+    }
+
+    /**
+     * 解析规则文本为 "APP|TYPE" -> 天数；格式不合法的条目忽略，类型统一转大写。
+     */
+    public static Map<String, Integer> parseRules(String text) {
+        if (text == null || text.trim().isEmpty()) return Collections.emptyMap();
+        Map<String, Integer> out = new LinkedHashMap<>();
+        for (String part : text.split(",")) {
+            String[] f = part.trim().split(":");
+            if (f.length != 3 || f[0].trim().isEmpty() || f[1].trim().isEmpty()) continue;
+            try {
+                int days = Integer.parseInt(f[2].trim());
+                if (days >= 0) out.put(key(f[0].trim(), f[1].trim().toUpperCase()), days);
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        return out;
+    }
+
+    private static String key(String appCode, String eventType) {
+        return appCode + "|" + eventType;
+    }
+
+    /** 指定应用与事件类型的保留天数，0 为永久保留 */
+    public int retentionDays(String appCode, String eventType) {
+        Map<String, Integer> r = rules;
+        String app = appCode == null ? ANY : appCode;
+        String type = eventType == null ? ANY : eventType.toUpperCase();
+        Integer days = r.get(key(app, type));
+        if (days == null) days = r.get(key(app, ANY));
+        if (days == null) days = r.get(key(ANY, type));
+        if (days == null) days = r.get(key(ANY, ANY));
+        return days == null ? defaultDays : days;
+    }
+
+    /**
+     * 所有规则中最长的保留天数，早于该天数的数据对任何应用都已过期；存在永久保留的规则时返回 0。
+     */
+    public int maxRetentionDays() {
+        Map<String, Integer> r = rules;
+        int max = r.containsKey(key(ANY, ANY)) ? r.get(key(ANY, ANY)) : defaultDays;
+        if (max == 0) return 0;
+        for (int days : r.values()) {
+            if (days == 0) return 0;
+            max = Math.max(max, days);
+        }
+        return max;
+    }
+
+    /** 已配置的规则：[{appCode, eventType, days}] */
+    public List<Map<String, Object>> rules() {
+        List<Map<String, Object>> out = new ArrayList<>();
+        rules.forEach((k, days) -> {
+            int idx = k.indexOf('|');
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("appCode", k.substring(0, idx));
+            m.put("eventType", k.substring(idx + 1));
+            m.put("days", days);
+            out.add(m);
+        });
+        return out;
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("defaultDays", defaultDays);
+        m.put("maxRetentionDays", maxRetentionDays());
+        m.put("rules", rules());
+        return m;
+    }
+}
@@ -0,0 +1,448 @@
+package com.krielwus.webtracinganalysis.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 数据保留与清除引擎。
+ * 按主键区间分块扫描 trace_event、page_view_route、base_info_record，按 RetentionPolicy 判定过期行后按主键删除，
+ * 每块一个短事务；按 maxRowsPerSecond 限速，数据库负载（Threads_running）或复制延迟超过阈值时暂停等待。
+ * 进度逐块写入 retention_progress，停机或取消后下次运行从断点继续；清除全部数据（purge）同样分块执行。
+ * 任务串行执行，多实例部署时通过 GET_LOCK 保证同一时间只有一个实例在删除。
+ */
+@Component
+public class RetentionService {
+    private static final Logger log = LoggerFactory.getLogger(RetentionService.class);
+    public static final String KIND_RETENTION = "retention";
+    public static final String KIND_PURGE = "purge";
+    private static final String LOCK_NAME = "web_tracing_retention";
+
+    /** 参与清理的表；ordered 表示主键与时间基本同序，扫描到未过期的整块即可提前结束 */
+    private static final List<TableSpec> TABLES = List.of(
+            new TableSpec("trace_event", "SELECT id, app_code, event_type, created_at FROM trace_event "
+                    + "WHERE id >= ? AND id < ?", true, true),
+            new TableSpec("page_view_route", "SELECT id, app_code, 'PV', created_at FROM page_view_route "
+                    + "WHERE id >= ? AND id < ?", true, true),
+            new TableSpec("base_info_record", "SELECT id, app_code, NULL, COALESCE(last_seen, created_at) "
+                    + "FROM base_info_record WHERE id >= ? AND id < ?", false, false));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final RetentionPolicy retentionPolicy;
+    private final BaseInfoDedupCache baseInfoDedup;
+
+    @Value("${tracing.retention.enabled:true}")
+    private boolean enabled;
+    @Value("${tracing.retention.runIntervalMinutes:60}")
+    private long runIntervalMinutes;
+    /** 每块覆盖的主键区间大小 */
+    @Value("${tracing.retention.chunkSize:2000}")
+    private int chunkSize;
+    /** 每秒最多删除的行数 */
+    @Value("${tracing.retention.maxRowsPerSecond:5000}")
+    private int maxRowsPerSecond;
+    /** Threads_running 超过该值时暂停，0 为不检查 */
+    @Value("${tracing.retention.maxThreadsRunning:32}")
+    private int maxThreadsRunning;
+    /** 复制延迟（秒）超过该值时暂停，0 为不检查 */
+    @Value("${tracing.retention.maxReplicationLagSeconds:10}")
+    private int maxReplicationLagSeconds;
+    /** 返回复制延迟秒数的查询；为空时读取当前连接的 SHOW REPLICA STATUS */
+    @Value("${tracing.retention.lagQuery:}")
+    private String lagQuery;
+    /** 负载或延迟超限时的等待间隔 */
+    @Value("${tracing.retention.backoffMs:5000}")
+    private long backoffMs;
+
+    private ScheduledExecutorService worker;
+    private volatile Job current;
+    private volatile Job last;
+    private volatile boolean cancelRequested;
+
+    public RetentionService(JdbcTemplate jdbcTemplate, RetentionPolicy retentionPolicy, BaseInfoDedupCache baseInfoDedup) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.retentionPolicy = retentionPolicy;
+        this.baseInfoDedup = baseInfoDedup;
+    }
+
+    @PostConstruct
+    public void start() {
+        worker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "retention-worker");
+            t.setDaemon(true);
+            return t;
+        });
+        // 启动后先续跑上次未完成的清除任务
+        worker.schedule(this::resumePendingPurge, 60, TimeUnit.SECONDS);
+        if (enabled) {
+            long interval = Math.max(1, runIntervalMinutes);
+            worker.scheduleWithFixedDelay(() -> runQuietly(KIND_RETENTION), 2, interval, TimeUnit.MINUTES);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        cancelRequested = true;
+        if (worker != null) worker.shutdownNow();
+    }
+
+    /** 提交一次按保留策略的清理，排在当前任务之后执行 */
+    public void submitRetention() {
+        worker.execute(() -> runQuietly(KIND_RETENTION));
+    }
+
+    /** 提交清除全部数据的任务（替代逐实体 deleteAll），排在当前任务之后执行 */
+    public void submitPurge() {
+        worker.execute(() -> runQuietly(KIND_PURGE));
+    }
+
+    /** 请求取消当前任务；进度已持久化，下次运行从断点继续 */
+    public void cancel() {
+        cancelRequested = true;
+    }
+
+    private void resumePendingPurge() {
+        try {
+            Integer pending = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM retention_progress "
+                    + "WHERE job_kind = ? AND finished_at IS NULL", Integer.class, KIND_PURGE);
+            if (pending != null && pending > 0) runQuietly(KIND_PURGE);
+        } catch (RuntimeException e) {
+            log.warn("Failed to check pending purge: {}", e.getMessage());
+        }
+    }
+
+    private void runQuietly(String kind) {
+        if (KIND_RETENTION.equals(kind) && minRetentionDays() == 0) return;
+        Job job = new Job(kind);
+        current = job;
+        cancelRequested = false;
+        try {
+            Boolean locked = jdbcTemplate.execute((ConnectionCallback<Boolean>) con -> {
+                JdbcTemplate jt = new JdbcTemplate(new SingleConnectionDataSource(con, true));
+                Integer got = jt.queryForObject("SELECT GET_LOCK(?, 0)", Integer.class, LOCK_NAME);
+                if (got == null || got != 1) return false;
+                try {
+                    for (TableSpec t : TABLES) {
+                        if (cancelRequested) break;
+                        runTable(jt, job, t);
+                    }
+                } finally {
+                    jt.queryForObject("SELECT RELEASE_LOCK(?)", Integer.class, LOCK_NAME);
+                }
+                return true;
+            });
+            if (!Boolean.TRUE.equals(locked)) {
+                job.state = "SKIPPED";
+                job.message = "another instance holds the retention lock";
+            } else {
+                job.state = cancelRequested ? "CANCELLED" : "DONE";
+            }
+        } catch (RuntimeException e) {
+            job.state = "FAILED";
+            job.message = e.getMessage();
+            log.warn("Retention job {} failed: {}", kind, e.getMessage());
+        } finally {
+            job.finishedAt = System.currentTimeMillis();
+            last = job;
+            current = null;
+        }
+        if (job.deleted > 0) log.info("Retention job {} deleted {} rows", kind, job.deleted);
+    }
+
+    private void runTable(JdbcTemplate jt, Job job, TableSpec t) {
+        boolean purge = KIND_PURGE.equals(job.kind);
+        TableProgress p = loadOrStart(jt, job.kind, t.name);
+        job.tables.put(t.name, p);
+        if (p.maxId == 0) {
+            finish(jt, job.kind, p);
+            return;
+        }
+        long now = System.currentTimeMillis();
+        // 任何规则下都不可能过期的时间点：早于它的行才需要逐行判定
+        long loosestCutoff = purge ? Long.MAX_VALUE : now - minRetentionDays() * 86_400_000L;
+        long step = Math.max(1, chunkSize);
+        while (p.lastId <= p.maxId && !cancelRequested && !Thread.currentThread().isInterrupted()) {
+            waitUntilHealthy(jt, job);
+            if (cancelRequested) break;
+            long from = p.lastId;
+            long to = Math.min(p.maxId + 1, from + step);
+            long started = System.currentTimeMillis();
+            int deleted;
+            if (purge) {
+                deleted = jt.update("DELETE FROM " + t.name + " WHERE id >= ? AND id < ?", from, to);
+                p.scanned += deleted;
+            } else {
+                List<Object[]> rows = jt.query(t.scanSql, (rs, i) -> new Object[] {
+                        rs.getLong(1), rs.getString(2), rs.getString(3), rs.getTimestamp(4) }, from, to);
+                p.scanned += rows.size();
+                List<Long> expired = new ArrayList<>();
+                boolean anyOld = false;
+                for (Object[] r : rows) {
+                    Timestamp at = (Timestamp) r[3];
+                    if (at == null || at.getTime() >= loosestCutoff) continue;
+                    anyOld = true;
+                    String app = r[1] == null || ((String) r[1]).isEmpty() ? null : (String) r[1];
+                    int days = retentionPolicy.retentionDays(app, (String) r[2]);
+                    if (days > 0 && at.getTime() < now - days * 86_400_000L) expired.add((Long) r[0]);
+                }
+                deleted = expired.isEmpty() ? 0 : deleteIds(jt, t, expired, loosestCutoff);
+                // 主键与时间同序的表：整块都未过期说明后续只会更新，本轮结束
+                if (t.ordered && !rows.isEmpty() && !anyOld) {
+                    p.lastId = p.maxId + 1;
+                }
+            }
+            p.deleted += deleted;
+            job.deleted += deleted;
+            if (p.lastId <= p.maxId) p.lastId = to;
+            saveProgress(jt, job.kind, p);
+            throttle(deleted, System.currentTimeMillis() - started);
+        }
+        if (p.lastId > p.maxId) {
+            finish(jt, job.kind, p);
+            if (purge && "base_info_record".equals(t.name)) baseInfoDedup.clear();
+        }
+    }
+
+    private int deleteIds(JdbcTemplate jt, TableSpec t, List<Long> ids, long loosestCutoff) {
+        StringBuilder sql = new StringBuilder("DELETE FROM ").append(t.name).append(" WHERE id IN (");
+        for (int i = 0; i < ids.size(); i++) sql.append(i == 0 ? "?" : ",?");
+        sql.append(')');
+        List<Object> args = new ArrayList<>(ids);
+        if (t.partitioned) {
+            // 附带时间上界，分区表上只访问可能过期的分区
+            sql.append(" AND created_at < ?");
+            args.add(new Timestamp(loosestCutoff));
+        }
+        return jt.update(sql.toString(), args.toArray());
+    }
+
+    /** 按 maxRowsPerSecond 限速 */
+    private void throttle(int deleted, long elapsedMs) {
+        if (maxRowsPerSecond <= 0 || deleted <= 0) return;
+        long sleep = deleted * 1000L / maxRowsPerSecond - elapsedMs;
+        if (sleep > 0) sleepQuietly(sleep);
+    }
+
+    private void waitUntilHealthy(JdbcTemplate jt, Job job) {
+        while (!cancelRequested && !Thread.currentThread().isInterrupted()) {
+            String reason = unhealthyReason(jt);
+            if (reason == null) {
+                job.pausedReason = null;
+                return;
+            }
+            if (job.pausedReason == null) log.info("Retention job {} paused: {}", job.kind, reason);
+            job.pausedReason = reason;
+            job.pauses++;
+            sleepQuietly(Math.max(100, backoffMs));
+        }
+    }
+
+    private String unhealthyReason(JdbcTemplate jt) {
+        if (maxThreadsRunning > 0) {
+            try {
+                List<Map<String, Object>> rows = jt.queryForList("SHOW GLOBAL STATUS LIKE 'Threads_running'");
+                if (!rows.isEmpty()) {
+                    long running = Long.parseLong(String.valueOf(rows.get(0).get("Value")));
+                    if (running > maxThreadsRunning) return "threads_running=" + running;
+                }
+            } catch (RuntimeException ignored) {
+                // 无权限查看状态时不做负载检查
+            }
+        }
+        if (maxReplicationLagSeconds > 0) {
+            Long lag = replicationLag(jt);
+            if (lag != null && lag > maxReplicationLagSeconds) return "replication_lag=" + lag + "s";
+        }
+        return null;
+    }
+
+    private Long replicationLag(JdbcTemplate jt) {
+        try {
+            if (lagQuery != null && !lagQuery.trim().isEmpty()) {
+                return jt.queryForObject(lagQuery, Long.class);
+            }
+            List<Map<String, Object>> rows;
+            try {
+                rows = jt.queryForList("SHOW REPLICA STATUS");
+            } catch (RuntimeException e) {
+                // MySQL 8.0.22 之前的版本
+                rows = jt.queryForList("SHOW SLAVE STATUS");
+            }
+            if (rows.isEmpty()) return null;
+            Object v = rows.get(0).get("Seconds_Behind_Source");
+            if (v == null) v = rows.get(0).get("Seconds_Behind_Master");
+            return v == null ? null : Long.parseLong(v.toString());
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private TableProgress loadOrStart(JdbcTemplate jt, String kind, String table) {
+        List<TableProgress> rows = jt.query("SELECT last_id, max_id, scanned, deleted, started_at FROM retention_progress "
+                        + "WHERE job_kind = ? AND table_name = ? AND finished_at IS NULL",
+                (rs, i) -> {
+                    TableProgress p = new TableProgress(table);
+                    p.lastId = rs.getLong(1);
+                    p.maxId = rs.getLong(2);
+                    p.scanned = rs.getLong(3);
+                    p.deleted = rs.getLong(4);
+                    Timestamp started = rs.getTimestamp(5);
+                    p.startedAt = started == null ? System.currentTimeMillis() : started.getTime();
+                    p.resumed = true;
+                    return p;
+                }, kind, table);
+        if (!rows.isEmpty()) return rows.get(0);
+        // 新一轮：上界固定为开始时的最大主键，不追赶运行期间的新写入
+        TableProgress p = new TableProgress(table);
+        Long min = jt.queryForObject("SELECT MIN(id) FROM " + table, Long.class);
+        Long max = jt.queryForObject("SELECT MAX(id) FROM " + table, Long.class);
+        p.lastId = min == null ? 0 : min;
+        p.maxId = max == null ? 0 : max;
+        p.startedAt = System.currentTimeMillis();
+        jt.update("INSERT INTO retention_progress (job_kind, table_name, last_id, max_id, scanned, deleted, started_at, "
+                        + "updated_at, finished_at) VALUES (?, ?, ?, ?, 0, 0, ?, ?, NULL) ON DUPLICATE KEY UPDATE "
+                        + "last_id = VALUES(last_id), max_id = VALUES(max_id), scanned = 0, deleted = 0, "
+                        + "started_at = VALUES(started_at), updated_at = VALUES(updated_at), finished_at = NULL",
+                kind, table, p.lastId, p.maxId, new Timestamp(p.startedAt), new Timestamp(p.startedAt));
+        return p;
+    }
+
+    private static void saveProgress(JdbcTemplate jt, String kind, TableProgress p) {
+        jt.update("UPDATE retention_progress SET last_id = ?, scanned = ?, deleted = ?, updated_at = ? "
+                        + "WHERE job_kind = ? AND table_name = ?",
+                p.lastId, p.scanned, p.deleted, new Timestamp(System.currentTimeMillis()), kind, p.table);
+    }
+
+    private static void finish(JdbcTemplate jt, String kind, TableProgress p) {
+        p.finished = true;
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        jt.update("UPDATE retention_progress SET finished_at = ?, updated_at = ? WHERE job_kind = ? AND table_name = ?",
+                now, now, kind, p.table);
+    }
+
+    /** 所有规则中最短的正保留天数；没有任何会过期的规则时返回 0 */
+    private int minRetentionDays() {
+        int min = 0;
+        int def = retentionPolicy.retentionDays(null, null);
+        if (def > 0) min = def;
+        for (Map<String, Object> r : retentionPolicy.rules()) {
+            int days = (Integer) r.get("days");
+            if (days > 0 && (min == 0 || days < min)) min = days;
+        }
+        return min;
+    }
+
+    private static void sleepQuietly(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** 当前与上一次任务的状态，以及持久化的各表进度 */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("enabled", enabled);
+        m.put("policy", retentionPolicy.snapshot());
+        m.put("current", current == null ? null : current.toMap());
+        m.put("last", last == null ? null : last.toMap());
+        List<Map<String, Object>> progress;
+        try {
+            progress = jdbcTemplate.queryForList("SELECT job_kind, table_name, last_id, max_id, scanned, deleted, "
+                    + "started_at, updated_at, finished_at FROM retention_progress ORDER BY job_kind, table_name");
+        } catch (RuntimeException e) {
+            progress = Collections.emptyList();
+        }
+        m.put("progress", progress);
+        return m;
+    }
+
+    private static final class TableSpec {
+        final String name;
+        final String scanSql;
+        final boolean ordered;
+        final boolean partitioned;
+
+        TableSpec(String name, String scanSql, boolean ordered, boolean partitioned) {
+            this.name = name;
+            this.scanSql = scanSql;
+            this.ordered = ordered;
+            this.partitioned = partitioned;
+        }
+    }
+
+    private static final class TableProgress {
+        final String table;
+        long lastId;
+        long maxId;
+        long scanned;
+        long deleted;
+        long startedAt;
+        boolean resumed;
+        boolean finished;
+
+        TableProgress(String table) {
+            this.table = table;
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("lastId", lastId);
+            m.put("maxId", maxId);
+            m.put("scanned", scanned);
+            m.put("deleted", deleted);
+            m.put("resumed", resumed);
+            m.put("finished", finished);
+            return m;
+        }
+    }
+
+    private static final class Job {
+        final String kind;
+        final long startedAt = System.currentTimeMillis();
+        final Map<String, TableProgress> tables = new LinkedHashMap<>();
+        volatile String state = "RUNNING";
+        volatile String message;
+        volatile String pausedReason;
+        volatile long pauses;
+        volatile long deleted;
+        volatile long finishedAt;
+
+        Job(String kind) {
+            this.kind = kind;
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("kind", kind);
+            m.put("state", state);
+            m.put("startedAt", startedAt);
+            m.put("finishedAt", finishedAt == 0 ? null : finishedAt);
+            m.put("deleted", deleted);
+            m.put("pausedReason", pausedReason);
+            m.put("pauses", pauses);
+            m.put("message", message);
+            Map<String, Object> t = new LinkedHashMap<>();
+            tables.forEach((k, v) -> t.put(k, v.toMap()));
+            m.put("tables", t);
+            return m;
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.krielwus.webtracinganalysis.service;
+
+import com.krielwus.webtracinganalysis.info.IngestEvent;
+import com.krielwus.webtracinganalysis.info.IngestPayload;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 分片环形缓冲入队通道。
+ * 每个消费线程独占一个分片，分片为预分配的多生产者单消费者有界环（按序号槽位 CAS 认领，入队不分配节点）。
+ * 载荷按 sessionId（缺省时按 appCode）哈希到分片，同一会话始终由同一消费线程按入队顺序处理。
+ */
+public class RingIngestChannel implements IngestChannel {
+    /** 通道空/满时的等待方式 */
+    public enum WaitStrategy {
+        /** 忙等，延迟最低，占用 CPU */
+        SPIN,
+        /** 让出 CPU 时间片 */
+        YIELD,
+        /** 短暂 park，CPU 占用最低 */
+        PARK;
+
+        public static WaitStrategy of(String name) {
+            for (WaitStrategy s : values()) {
+                if (s.name().equalsIgnoreCase(name)) return s;
+            }
+            return PARK;
+        }
+
+        void idle() {
+            switch (this) {
+                case SPIN:
+                    Thread.onSpinWait();
+                    break;
+                case YIELD:
+                    Thread.yield();
+                    break;
+                default:
+                    LockSupport.parkNanos(PARK_NANOS);
+            }
+        }
+    }
+
+    private static final long PARK_NANOS = 50_000L;
+
+    private final Shard[] shards;
+    private final WaitStrategy waitStrategy;
+    private final int capacity;
+
+    /**
+     * @param shardCount 分片数（等于消费线程数）
+     * @param totalCapacity 总容量，平均分配到各分片并向上取 2 的幂
+     */
+    public RingIngestChannel(int shardCount, int totalCapacity, WaitStrategy waitStrategy) {
+        int n = Math.max(1, shardCount);
+        int perShard = Math.max(2, Integer.highestOneBit(Math.max(1, totalCapacity / n) - 1) << 1);
+        this.shards = new Shard[n];
+        for (int i = 0; i < n; i++) shards[i] = new Shard(perShard);
+        this.capacity = perShard * n;
+        this.waitStrategy = waitStrategy;
+    }
+
+    @Override
+    public boolean offer(IngestPayload payload, long timeout, TimeUnit unit) throws InterruptedException {
+        Shard shard = shardOf(payload);
+        if (shard.offer(payload)) return true;
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (System.nanoTime() < deadline) {
+            if (Thread.interrupted()) throw new InterruptedException();
+            waitStrategy.idle();
+            if (shard.offer(payload)) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void put(IngestPayload payload) throws InterruptedException {
+        Shard shard = shardOf(payload);
+        while (!shard.offer(payload)) {
+            if (Thread.interrupted()) throw new InterruptedException();
+            waitStrategy.idle();
+        }
+    }
+
+    @Override
+    public IngestPayload poll(int consumer, long timeout, TimeUnit unit) throws InterruptedException {
+        Shard shard = shards[consumer % shards.length];
+        IngestPayload p = shard.poll();
+        if (p != null) return p;
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (System.nanoTime() < deadline) {
+            if (Thread.interrupted()) throw new InterruptedException();
+            waitStrategy.idle();
+            p = shard.poll();
+            if (p != null) return p;
+        }
+        return null;
+    }
+
+    @Override
+    public int drainTo(int consumer, Collection<? super IngestPayload> target, int maxElements) {
+        Shard shard = shards[consumer % shards.length];
+        int n = 0;
+        IngestPayload p;
+        while (n < maxElements && (p = shard.poll()) != null) {
+            target.add(p);
+            n++;
+        }
+        return n;
+    }
+
+    @Override
+    public int lanes() {
+        return shards.length;
+    }
+
+    @Override
+    public int laneOf(IngestPayload payload) {
+        String key = shardKey(payload);
+        int h = key == null ? 0 : key.hashCode();
+        h ^= (h >>> 16);
+        return (h & 0x7fffffff) % shards.length;
+    }
+
+    @Override
+    public int size() {
+        int total = 0;
+        for (Shard s : shards) total += s.size();
+        return total;
+    }
+
+    @Override
+    public int capacity() {
+        return capacity;
+    }
+
+    @Override
+    public String name() {
+        return "ring";
+    }
+
+    private Shard shardOf(IngestPayload payload) {
+        return shards[laneOf(payload)];
+    }
+
+    private static String shardKey(IngestPayload payload) {
+        String sessionId = payload.hasBaseInfo() ? payload.getSessionId() : null;
+        if (sessionId == null || sessionId.isEmpty()) {
+            for (IngestEvent e : payload.getEvents()) {
+                if (e.getSessionId() != null && !e.getSessionId().isEmpty()) return e.getSessionId();
+            }
+            return payload.resolveAppCode();
+        }
+        return sessionId;
+    }
+
+    /**
+     * 有界多生产者单消费者环。
+     * 槽位序号 seq 与生产序号 pos 相等表示可写，等于 pos + 1 表示可读；消费后置为 pos + 容量供下一轮写入。
+     */
+    private static final class Shard {
+        private final Object[] slots;
+        private final AtomicLongArray sequences;
+        private final int mask;
+        private final AtomicLong tail = new AtomicLong();
+        /** 仅由所属消费线程读写 */
+        private volatile long head;
+
+        Shard(int capacity) {
+            this.slots = new Object[capacity];
+            this.sequences = new AtomicLongArray(capacity);
+            this.mask = capacity - 1;
+            for (int i = 0; i < capacity; i++) sequences.set(i, i);
+        }
+
+        boolean offer(IngestPayload payload) {
+            while (true) {
+                long pos = tail.get();
+                int idx = (int) (pos & mask);
+                long dif = sequences.get(idx) - pos;
+                if (dif == 0) {
+                    if (tail.compareAndSet(pos, pos + 1)) {
+                        slots[idx] = payload;
+                        sequences.lazySet(idx, pos + 1);
+                        return true;
+                    }
+                } else if (dif < 0) {
+                    return false;
+                } else {
+                    Thread.onSpinWait();
+                }
+            }
+        }
+
+        IngestPayload poll() {
+            long pos = head;
+            int idx = (int) (pos & mask);
+            if (sequences.get(idx) != pos + 1) return null;
+            IngestPayload p = (IngestPayload) slots[idx];
+            slots[idx] = null;
+            sequences.lazySet(idx, pos + slots.length);
+            head = pos + 1;
+            return p;
+        }
+
+        int size() {
+            long s = tail.get() - head;
+            return (int) Math.max(0, Math.min(s, slots.length));
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.krielwus.webtracinganalysis.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 按时间窗口轮转的布隆过滤器。
+ * 由若干代位图组成，新键写入当前代，查询覆盖所有代；每隔 window/generations 轮转一次，
+ * 清空最旧的一代作为新的当前代，因此键的记忆时长在 window*(g-1)/g 到 window 之间，内存固定。
+ * 位图使用 AtomicLongArray，查询与写入无锁，只有轮转时加锁。每代记录新写入的键数，用于估算当前误判率。
+ */
+public class RotatingBloomFilter {
+    private final AtomicLongArray[] generations;
+    private final AtomicLong[] inserted;
+    private final int bits;
+    private final int hashes;
+    private final long rotateNanos;
+    private volatile int current;
+    private volatile long rotatedAt;
+
+    /**
+     * @param generations 代数（至少 2）
+     * @param expectedPerGeneration 每代预期写入键数
+     * @param fpp 期望误判率
+     * @param windowMillis 去重时间窗口
+     */
+    public RotatingBloomFilter(int generations, long expectedPerGeneration, double fpp, long windowMillis) {
+        int g = Math.max(2, generations);
+        long n = Math.max(1, expectedPerGeneration);
+        double p = Math.min(0.5, Math.max(1e-9, fpp));
+        long m = (long) Math.ceil(-n * Math.log(p) / (Math.log(2) * Math.log(2)));
+        m = Math.min(Integer.MAX_VALUE - 63, Math.max(64, m));
+        this.bits = (int) m;
+        this.hashes = Math.max(1, (int) Math.round((double) m / n * Math.log(2)));
+        this.generations = new AtomicLongArray[g];
+        this.inserted = new AtomicLong[g];
+        for (int i = 0; i < g; i++) {
+            this.generations[i] = new AtomicLongArray((bits + 63) >>> 6);
+            this.inserted[i] = new AtomicLong();
+        }
+        this.rotateNanos = Math.max(1, windowMillis) * 1_000_000L / g;
+        this.rotatedAt = System.nanoTime();
+    }
+
+    /** 是否可能已存在（存在误判，不会漏判） */
+    public boolean mightContain(long key) {
+        maybeRotate();
+        for (AtomicLongArray gen : generations) {
+            if (contains(gen, key)) return true;
+        }
+        return false;
+    }
+
+    /** 写入当前代 */
+    public void put(long key) {
+        maybeRotate();
+        int g = current;
+        AtomicLongArray gen = generations[g];
+        boolean changed = false;
+        int h1 = (int) key;
+        int h2 = (int) (key >>> 32);
+        for (int i = 1; i <= hashes; i++) {
+            int combined = h1 + i * h2;
+            if (combined < 0) combined = ~combined;
+            int bit = combined % bits;
+            long mask = 1L << bit;
+            int idx = bit >>> 6;
+            long prev;
+            do {
+                prev = gen.get(idx);
+                if ((prev & mask) != 0) break;
+            } while (!gen.compareAndSet(idx, prev, prev | mask));
+            if ((prev & mask) == 0) changed = true;
+        }
+        // 位全部已置位的键视为已存在，不重复计数
+        if (changed) inserted[g].incrementAndGet();
+    }
+
+    /**
+     * 按各代已写入键数估算的当前误判率：单代 (1 - e^(-kn/m))^k，查询覆盖所有代，合并为 1 - Π(1 - p_g)。
+     */
+    public double estimatedFpp() {
+        double miss = 1;
+        for (AtomicLong n : inserted) {
+            double p = Math.pow(1 - Math.exp(-(double) hashes * n.get() / bits), hashes);
+            miss *= 1 - p;
+        }
+        return 1 - miss;
+    }
+
+    public int bitSize() {
+        return bits;
+    }
+
+    public int hashCount() {
+        return hashes;
+    }
+
+    public int generationCount() {
+        return generations.length;
+    }
+
+    /** 当前代已置位比例 */
+    public double currentFill() {
+        AtomicLongArray gen = generations[current];
+        long set = 0;
+        for (int i = 0; i < gen.length(); i++) set += Long.bitCount(gen.get(i));
+        return (double) set / bits;
+    }
+
+    private boolean contains(AtomicLongArray gen, long key) {
+        int h1 = (int) key;
+        int h2 = (int) (key >>> 32);
+        for (int i = 1; i <= hashes; i++) {
+            int combined = h1 + i * h2;
+            if (combined < 0) combined = ~combined;
+            int bit = combined % bits;
+            if ((gen.get(bit >>> 6) & (1L << bit)) == 0) return false;
+        }
+        return true;
+    }
+
+    private void maybeRotate() {
+        if (System.nanoTime() - rotatedAt < rotateNanos) return;
+        synchronized (this) {
+            long now = System.nanoTime();
+            if (now - rotatedAt < rotateNanos) return;
+            // 长时间空闲后可能跨越多个轮转周期，按经过的周期数清理（最多清空全部代）
+            long steps = Math.min(generations.length, (now - rotatedAt) / rotateNanos);
+            int next = current;
+            for (long s = 0; s < steps; s++) {
+                next = (next + 1) % generations.length;
+                AtomicLongArray gen = generations[next];
+                for (int i = 0; i < gen.length(); i++) gen.set(i, 0L);
+                inserted[next].set(0);
+            }
+            current = next;
+            rotatedAt = now;
+        }
+    }
+}
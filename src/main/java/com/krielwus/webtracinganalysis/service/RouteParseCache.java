@@ -0,0 +1,117 @@
+package com.krielwus.webtracinganalysis.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 页面路由解析结果缓存。
+ * 以完整 URL 为键缓存 (routeType, routePath, routeParamsJson) 三元组，避免消费线程对热点 URL 重复解析与序列化。
+ * 按键哈希分段，每段为访问顺序的 LinkedHashMap（LRU），段内加锁，段间互不阻塞；总容量固定。
+ * 超长 URL 不进入缓存，避免少量异常地址占满内存。
+ */
+@Component
+public class RouteParseCache {
+    /** 总容量（条），0 表示关闭缓存 */
+    @Value("${tracing.ingest.routeCache.maxSize:10000}")
+    private int maxSize;
+    @Value("${tracing.ingest.routeCache.segments:16}")
+    private int segmentCount;
+    /** 超过该长度的 URL 不缓存 */
+    @Value("${tracing.ingest.routeCache.maxUrlLength:2048}")
+    private int maxUrlLength;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private volatile Segment[] segments;
+
+    /**
+     * 取缓存的解析结果，未命中时调用 parser 解析并写入。
+     * 返回的数组为缓存共享实例，调用方不得修改。
+     */
+    public String[] get(String url, Function<String, String[]> parser) {
+        if (url == null || maxSize <= 0 || url.length() > maxUrlLength) {
+            return parser.apply(url);
+        }
+        Segment seg = segmentFor(url);
+        String[] parts;
+        synchronized (seg) {
+            parts = seg.get(url);
+        }
+        if (parts != null) {
+            hits.increment();
+            return parts;
+        }
+        misses.increment();
+        parts = parser.apply(url);
+        synchronized (seg) {
+            seg.put(url, parts);
+        }
+        return parts;
+    }
+
+    /** 缓存状态：容量、当前条数、命中/未命中/淘汰次数与命中率 */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        long h = hits.sum();
+        long miss = misses.sum();
+        int size = 0;
+        Segment[] segs = segments;
+        if (segs != null) {
+            for (Segment s : segs) {
+                synchronized (s) {
+                    size += s.size();
+                }
+            }
+        }
+        m.put("maxSize", maxSize);
+        m.put("size", size);
+        m.put("hits", h);
+        m.put("misses", miss);
+        m.put("evictions", evictions.sum());
+        m.put("hitRate", h + miss == 0 ? 0.0 : (double) h / (h + miss));
+        return m;
+    }
+
+    private Segment segmentFor(String url) {
+        Segment[] segs = segments;
+        if (segs == null) {
+            synchronized (this) {
+                segs = segments;
+                if (segs == null) {
+                    int n = Integer.highestOneBit(Math.max(1, Math.min(segmentCount, maxSize)));
+                    int perSegment = Math.max(1, maxSize / n);
+                    segs = new Segment[n];
+                    for (int i = 0; i < n; i++) segs[i] = new Segment(perSegment);
+                    segments = segs;
+                }
+            }
+        }
+        int h = url.hashCode();
+        h ^= h >>> 16;
+        return segs[h & (segs.length - 1)];
+    }
+
+    private final class Segment extends LinkedHashMap<String, String[]> {
+        private final int capacity;
+
+        Segment(int capacity) {
+            super(Math.min(capacity, 1024), 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String[]> eldest) {
+            if (size() > capacity) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.krielwus.webtracinganalysis.service;
+
+import com.krielwus.webtracinganalysis.config.LaneLimitedDataSource;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 低基数字符串字典。
+ * 将 appCode/appName/eventType 等重复度很高的字符串映射为紧凑的 int ID，持久化在 string_dict 表中，
+ * 进程内以读多写少的缓存保存双向映射：正向为每类一个 ConcurrentHashMap，反向为按 ID 下标的数组（扩容时复制）。
+ * 入库时用于复用同一字符串实例，分析时热点循环比较 int 而非字符串。
+ * 查询只读缓存，不访问数据库：未知取值记入待分配集合后原样返回，由后台线程每 flushIntervalMs
+ * 以一条多行 INSERT IGNORE 与一条回查批量分配 ID，不占用入库事务与消费线程。
+ * 只接受 KINDS 中的低基数类别（routePath 等高基数取值不进字典）；每类条目数有上限，超出后不再分配。
+ */
+@Service
+public class StringDictionaryService {
+    private static final Logger log = LoggerFactory.getLogger(StringDictionaryService.class);
+
+    public static final String APP_CODE = "APP_CODE";
+    public static final String APP_NAME = "APP_NAME";
+    public static final String EVENT_TYPE = "EVENT_TYPE";
+
+    /** 进入字典的类别，均为低基数取值 */
+    private static final Set<String> KINDS = Set.of(APP_CODE, APP_NAME, EVENT_TYPE);
+    /** 字典值最大长度，与 string_dict.value 列一致 */
+    private static final int MAX_VALUE_LENGTH = 512;
+    /** 每条语句最多分配的取值数 */
+    private static final int FLUSH_CHUNK = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /** 每类最多缓存的条目数，超出后不再分配新 ID */
+    @Value("${tracing.dict.maxEntriesPerKind:10000}")
+    private int maxEntriesPerKind;
+    /** 后台批量分配新 ID 的间隔（毫秒） */
+    @Value("${tracing.dict.flushIntervalMs:500}")
+    private long flushIntervalMs;
+    /** 待分配取值的上限，超出的取值本轮不分配，下次出现时再记入 */
+    @Value("${tracing.dict.maxPending:10000}")
+    private int maxPending;
+
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, Integer>> forward = new ConcurrentHashMap<>();
+    private volatile String[] reverse = new String[1024];
+    private volatile boolean loaded;
+    /** 待分配的 [kind, value] */
+    private final Set<List<String>> pending = ConcurrentHashMap.newKeySet();
+    private final AtomicLong assigned = new AtomicLong();
+    private final AtomicLong flushFailures = new AtomicLong();
+    private ScheduledExecutorService writer;
+
+    public StringDictionaryService(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void start() {
+        writer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(() -> {
+                // 分配写入归入入库通道，不占用看板查询的连接
+                LaneLimitedDataSource.markIngestThread();
+                r.run();
+            }, "string-dict-writer");
+            t.setDaemon(true);
+            return t;
+        });
+        writer.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, Math.max(50, flushIntervalMs),
+                TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (writer != null) writer.shutdownNow();
+    }
+
+    /**
+     * 取字符串对应的 ID，只读缓存；未知取值记入待分配集合并返回 0，后台分配后再次调用即可取到。
+     * 非字典类别、空值、超长值或超出容量返回 0。
+     */
+    public int idOf(String kind, String value) {
+        if (!KINDS.contains(kind) || value == null || value.isEmpty() || value.length() > MAX_VALUE_LENGTH) return 0;
+        ensureLoaded();
+        ConcurrentHashMap<String, Integer> ids = forward.computeIfAbsent(kind, k -> new ConcurrentHashMap<>());
+        Integer id = ids.get(value);
+        if (id != null) return id;
+        if (ids.size() < maxEntriesPerKind && pending.size() < maxPending) pending.add(List.of(kind, value));
+        return 0;
+    }
+
+    private void flushQuietly() {
+        try {
+            flushPending();
+        } catch (RuntimeException e) {
+            flushFailures.incrementAndGet();
+            log.debug("String dictionary flush failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 批量分配待分配取值：每 FLUSH_CHUNK 个一条多行 INSERT IGNORE，再按 (kind, value) 一次回查 ID。
+     * 失败的取值丢弃，下次出现时重新记入。
+     */
+    void flushPending() {
+        if (pending.isEmpty()) return;
+        List<List<String>> batch = new ArrayList<>(Math.min(pending.size(), FLUSH_CHUNK));
+        for (Iterator<List<String>> it = pending.iterator(); it.hasNext() && batch.size() < FLUSH_CHUNK; ) {
+            batch.add(it.next());
+            it.remove();
+        }
+        Object[] args = new Object[batch.size() * 2];
+        StringBuilder tuples = new StringBuilder(batch.size() * 6);
+        for (int i = 0; i < batch.size(); i++) {
+            if (i > 0) tuples.append(',');
+            tuples.append("(?,?)");
+            args[2 * i] = batch.get(i).get(0);
+            args[2 * i + 1] = batch.get(i).get(1);
+        }
+        jdbcTemplate.update("INSERT IGNORE INTO string_dict (kind, value) VALUES " + tuples, args);
+        jdbcTemplate.query("SELECT id, kind, value FROM string_dict WHERE (kind, value) IN (" + tuples + ")", rs -> {
+            put(rs.getString(2), rs.getInt(1), rs.getString(3));
+            assigned.incrementAndGet();
+        }, args);
+    }
+
+    /** ID 对应的字符串，未知 ID 返回 null */
+    public String valueOf(int id) {
+        String[] r = reverse;
+        return id > 0 && id < r.length ? r[id] : null;
+    }
+
+    /**
+     * 返回字典中的规范字符串实例，使同一取值在内存中只保留一份；无法编码时原样返回。
+     */
+    public String intern(String kind, String value) {
+        int id = idOf(kind, value);
+        if (id == 0) return value;
+        String canonical = valueOf(id);
+        return canonical == null ? value : canonical;
+    }
+
+    /** 各类条目数 */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        for (Map.Entry<String, ConcurrentHashMap<String, Integer>> e : forward.entrySet()) {
+            m.put(e.getKey(), e.getValue().size());
+        }
+        m.put("maxEntriesPerKind", maxEntriesPerKind);
+        m.put("pending", pending.size());
+        m.put("assigned", assigned.get());
+        m.put("flushFailures", flushFailures.get());
+        return m;
+    }
+
+    private void ensureLoaded() {
+        if (loaded) return;
+        synchronized (this) {
+            if (loaded) return;
+            try {
+                // 只加载字典类别；历史上写入的 ROUTE_PATH 等高基数取值不再进缓存
+                List<Object[]> rows = jdbcTemplate.query("SELECT id, kind, value FROM string_dict WHERE kind IN (?, ?, ?)",
+                        (rs, i) -> new Object[] { rs.getInt(1), rs.getString(2), rs.getString(3) },
+                        APP_CODE, APP_NAME, EVENT_TYPE);
+                for (Object[] r : rows) {
+                    put((String) r[1], (Integer) r[0], (String) r[2]);
+                }
+            } catch (RuntimeException e) {
+                log.warn("String dictionary preload failed: {}", e.getMessage());
+            }
+            loaded = true;
+        }
+    }
+
+    private void put(String kind, int id, String value) {
+        synchronized (this) {
+            String[] r = reverse;
+            if (id >= r.length) {
+                r = Arrays.copyOf(r, Math.max(id + 1, r.length * 2));
+            } else if (r[id] != null) {
+                value = r[id];
+            }
+            r[id] = value;
+            // 原地写入后重新发布 volatile 引用；读方总是先从正向映射拿到 ID，再经该引用读取
+            reverse = r;
+        }
+        forward.computeIfAbsent(kind, k -> new ConcurrentHashMap<>()).putIfAbsent(value, id);
+    }
+}
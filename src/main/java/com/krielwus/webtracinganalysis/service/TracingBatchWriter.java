@@ -0,0 +1,190 @@
+package com.krielwus.webtracinganalysis.service;
+
+import com.krielwus.webtracinganalysis.entity.BaseInfoRecord;
+import com.krielwus.webtracinganalysis.entity.PageViewRoute;
+import com.krielwus.webtracinganalysis.entity.TracingEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Component;
+
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 埋点数据批量写入器。
+ * 三张表主键均为 IDENTITY，Hibernate 会因此关闭 JDBC 批处理，saveAll 实际为逐行 INSERT；
+ * 这里直接拼接多行 VALUES 语句，一次往返写入一批记录，并回填自增主键（基线记录为按内容哈希 upsert，不回填）。
+ * 需在外层事务内调用（JdbcTemplate 与 JPA 事务共用同一连接）。
+ */
+@Component
+public class TracingBatchWriter {
+    private static final String TRACE_EVENT_COLUMNS = "(event_type, app_code, app_name, session_id, payload, sample_rate, error_code, error_message, request_uri, error_level, severity, fingerprint, base_hash, created_at)";
+    private static final String PAGE_VIEW_ROUTE_COLUMNS = "(app_code, app_name, session_id, sdk_user_uuid, device_id, route_type, route_path, route_params, full_url, sample_rate, created_at)";
+    private static final String BASE_INFO_UPSERT_PREFIX =
+            "INSERT INTO base_info_record (payload, content_hash, app_code, session_id, device_id, sdk_user_uuid, "
+            + "created_at, last_seen) VALUES ";
+    /** 已存在的行推进 last_seen，并顺带补齐尚未回填的标识列 */
+    private static final String BASE_INFO_UPSERT_SUFFIX =
+            " ON DUPLICATE KEY UPDATE last_seen = GREATEST(COALESCE(last_seen, created_at), VALUES(last_seen)),"
+            + " app_code = COALESCE(app_code, VALUES(app_code)), session_id = COALESCE(session_id, VALUES(session_id)),"
+            + " device_id = COALESCE(device_id, VALUES(device_id)),"
+            + " sdk_user_uuid = COALESCE(sdk_user_uuid, VALUES(sdk_user_uuid))";
+
+    private final JdbcTemplate jdbcTemplate;
+    /** 单条 INSERT 语句携带的最大行数，避免超出 max_allowed_packet 与占位符上限 */
+    @Value("${tracing.ingest.writer.rowsPerStatement:500}")
+    private int rowsPerStatement;
+
+    public TracingBatchWriter(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /** 批量写入事件记录 */
+    public void writeEvents(List<TracingEvent> events) {
+        if (events == null || events.isEmpty()) return;
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        for (int from = 0; from < events.size(); from += chunkSize()) {
+            List<TracingEvent> chunk = events.subList(from, Math.min(events.size(), from + chunkSize()));
+            List<Map<String, Object>> keys = insert("trace_event", TRACE_EVENT_COLUMNS, 14, chunk.size(), (ps, i, base) -> {
+                TracingEvent e = chunk.get(i);
+                ps.setString(base + 1, e.getEventType());
+                ps.setString(base + 2, e.getAppCode());
+                ps.setString(base + 3, e.getAppName());
+                ps.setString(base + 4, e.getSessionId());
+                ps.setString(base + 5, e.getPayload());
+                ps.setObject(base + 6, e.getSampleRate());
+                ps.setString(base + 7, e.getErrorCode());
+                ps.setString(base + 8, e.getErrorMessage());
+                ps.setString(base + 9, e.getRequestUri());
+                ps.setString(base + 10, e.getErrorLevel());
+                ps.setString(base + 11, e.getSeverity() == null ? null : e.getSeverity().name());
+                ps.setObject(base + 12, e.getFingerprint());
+                ps.setObject(base + 13, e.getBaseHash());
+                ps.setTimestamp(base + 14, now);
+            });
+            for (int i = 0; i < chunk.size(); i++) {
+                chunk.get(i).setCreatedAt(now);
+                chunk.get(i).setId(keyAt(keys, i));
+            }
+        }
+    }
+
+    /** 批量写入页面路由记录 */
+    public void writeRoutes(List<PageViewRoute> routes) {
+        if (routes == null || routes.isEmpty()) return;
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        for (int from = 0; from < routes.size(); from += chunkSize()) {
+            List<PageViewRoute> chunk = routes.subList(from, Math.min(routes.size(), from + chunkSize()));
+            List<Map<String, Object>> keys = insert("page_view_route", PAGE_VIEW_ROUTE_COLUMNS, 11, chunk.size(), (ps, i, base) -> {
+                PageViewRoute r = chunk.get(i);
+                ps.setString(base + 1, r.getAppCode());
+                ps.setString(base + 2, r.getAppName());
+                ps.setString(base + 3, r.getSessionId());
+                ps.setString(base + 4, r.getSdkUserUuid());
+                ps.setString(base + 5, r.getDeviceId());
+                ps.setString(base + 6, r.getRouteType());
+                ps.setString(base + 7, r.getRoutePath());
+                ps.setString(base + 8, r.getRouteParams());
+                ps.setString(base + 9, r.getFullUrl());
+                ps.setObject(base + 10, r.getSampleRate());
+                ps.setTimestamp(base + 11, now);
+            });
+            for (int i = 0; i < chunk.size(); i++) {
+                chunk.get(i).setCreatedAt(now);
+                chunk.get(i).setId(keyAt(keys, i));
+            }
+        }
+    }
+
+    /**
+     * 按内容哈希批量写入基线记录：新内容插入，已存在的只推进 last_seen。
+     * 批内相同哈希先合并为一行；不回填主键（重复行的主键无法从多行 upsert 取得）。
+     */
+    public void writeBaseInfos(List<BaseInfoRecord> records) {
+        if (records == null || records.isEmpty()) return;
+        Map<Long, BaseInfoRecord> unique = new java.util.LinkedHashMap<>();
+        for (BaseInfoRecord r : records) unique.putIfAbsent(r.getContentHash(), r);
+        List<BaseInfoRecord> rows = new java.util.ArrayList<>(unique.values());
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        for (int from = 0; from < rows.size(); from += chunkSize()) {
+            List<BaseInfoRecord> chunk = rows.subList(from, Math.min(rows.size(), from + chunkSize()));
+            StringBuilder sql = new StringBuilder(BASE_INFO_UPSERT_PREFIX.length() + BASE_INFO_UPSERT_SUFFIX.length()
+                    + chunk.size() * 18);
+            sql.append(BASE_INFO_UPSERT_PREFIX);
+            for (int i = 0; i < chunk.size(); i++) {
+                if (i > 0) sql.append(',');
+                sql.append("(?,?,?,?,?,?,?,?)");
+            }
+            sql.append(BASE_INFO_UPSERT_SUFFIX);
+            jdbcTemplate.update(sql.toString(), ps -> {
+                for (int i = 0; i < chunk.size(); i++) {
+                    BaseInfoRecord r = chunk.get(i);
+                    int base = i * 8;
+                    ps.setString(base + 1, r.getPayload());
+                    ps.setObject(base + 2, r.getContentHash());
+                    ps.setString(base + 3, r.getAppCode() == null ? "" : r.getAppCode());
+                    ps.setString(base + 4, r.getSessionId());
+                    ps.setString(base + 5, r.getDeviceId());
+                    ps.setString(base + 6, r.getSdkUserUuid());
+                    // 取采集时间（与哈希的日期分桶一致），未设置时取写入时间
+                    Timestamp seen = r.getCreatedAt() == null ? now : new Timestamp(r.getCreatedAt().getTime());
+                    ps.setTimestamp(base + 7, seen);
+                    ps.setTimestamp(base + 8, seen);
+                }
+            });
+        }
+        for (BaseInfoRecord r : records) {
+            if (r.getCreatedAt() == null) r.setCreatedAt(now);
+            r.setLastSeen(r.getCreatedAt());
+        }
+    }
+
+    private int chunkSize() {
+        return Math.max(1, rowsPerStatement);
+    }
+
+    /**
+     * 执行一条多行 INSERT：INSERT INTO t (..) VALUES (?,..),(?,..)...
+     */
+    private List<Map<String, Object>> insert(String table, String columns, int columnCount, int rows, RowBinder binder) {
+        StringBuilder sql = new StringBuilder(64 + rows * (columnCount * 2 + 3));
+        sql.append("INSERT INTO ").append(table).append(' ').append(columns).append(" VALUES ");
+        StringBuilder tuple = new StringBuilder(columnCount * 2 + 1).append('(');
+        for (int c = 0; c < columnCount; c++) {
+            if (c > 0) tuple.append(',');
+            tuple.append('?');
+        }
+        tuple.append(')');
+        for (int r = 0; r < rows; r++) {
+            if (r > 0) sql.append(',');
+            sql.append(tuple);
+        }
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement(sql.toString(), Statement.RETURN_GENERATED_KEYS);
+            for (int r = 0; r < rows; r++) {
+                binder.bind(ps, r, r * columnCount);
+            }
+            return ps;
+        }, keyHolder);
+        return keyHolder.getKeyList();
+    }
+
+    private Long keyAt(List<Map<String, Object>> keys, int i) {
+        if (keys == null || i >= keys.size()) return null;
+        for (Object v : keys.get(i).values()) {
+            if (v instanceof Number) return ((Number) v).longValue();
+        }
+        return null;
+    }
+
+    @FunctionalInterface
+    private interface RowBinder {
+        void bind(PreparedStatement ps, int row, int offset) throws java.sql.SQLException;
+    }
+}
@@ -4,9 +4,13 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.krielwus.webtracinganalysis.entity.BaseInfoRecord;
 import com.krielwus.webtracinganalysis.entity.TracingEvent;
+import com.krielwus.webtracinganalysis.info.IngestEvent;
+import com.krielwus.webtracinganalysis.info.IngestPayload;
 import com.krielwus.webtracinganalysis.repository.BaseInfoRecordRepository;
 import com.krielwus.webtracinganalysis.repository.ApplicationInfoRepository;
 import com.krielwus.webtracinganalysis.repository.TracingEventRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -36,6 +40,7 @@ import java.time.format.DateTimeFormatter;
  */
 @Service
 public class TracingService {
+    private static final Logger log = LoggerFactory.getLogger(TracingService.class);
     private final TracingEventRepository tracingEventRepository;
     private final BaseInfoRecordRepository baseInfoRecordRepository;
     private final ApplicationInfoRepository applicationInfoRepository;
@@ -44,18 +49,110 @@ public class TracingService {
     private final com.krielwus.webtracinganalysis.config.SessionPathProperties sessionPathProperties;
     private final ObjectMapper objectMapper = new ObjectMapper();
     private static final DateTimeFormatter DF = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    /** 停机收尾预留：消费线程超出截止时间后的宽限与强制终止等待、生产者入队等待、写溢出文件 */
+    private static final long DRAIN_GRACE_MS = 2000;
+    private static final long PRODUCER_WAIT_MS = 500;
+    private static final long SPILL_WRITE_RESERVE_MS = 2000;
     @Value("${tracing.ingest.queue.maxSize:20000}")
     private int queueMaxSize;
-    @Value("${tracing.ingest.batch.size:100}")
-    private int batchSize;
-    @Value("${tracing.ingest.batch.lingerMs:200}")
-    private long lingerMs;
     @Value("${tracing.ingest.consumer.threads:2}")
     private int consumerThreads;
     @Value("${tracing.ingest.offerTimeoutMs:10}")
     private long offerTimeoutMs;
-    private BlockingQueue<Map<String, Object>> ingestQueue;
+    /** 入库方式：jpa（saveAll 逐行插入）或 jdbc（多行 INSERT 批量写入） */
+    @Value("${tracing.ingest.writer.mode:jdbc}")
+    private String writerMode;
+    @Autowired
+    private TracingBatchWriter batchWriter;
+    @Autowired
+    private TrackPayloadDecoder payloadDecoder;
+    @Autowired
+    private IngestMetrics ingestMetrics;
+    @Autowired
+    private IngestWal ingestWal;
+    /** 预写日志记录编码：json（原始请求体）或 smile（更紧凑，回放时自动识别） */
+    @Value("${tracing.ingest.wal.encoding:json}")
+    private String walEncoding;
+    @Autowired
+    private IngestBatchTuner batchTuner;
+    /** 同一批次落库的最多尝试次数（数据库不可用类异常不计入），超过后拆批定位无法写入的载荷并转入死信文件 */
+    @Value("${tracing.ingest.batch.flushMaxAttempts:3}")
+    private int flushMaxAttempts;
+    @Autowired
+    private IngestDeduplicator deduplicator;
+    @Autowired
+    private IngestAdmissionControl admissionControl;
+    @Autowired
+    private ApplicationRegistry appRegistry;
+    @Autowired
+    private ErrorSeverityClassifier severityClassifier;
+    @Autowired
+    private ErrorFingerprinter errorFingerprinter;
+    @Autowired
+    private RouteParseCache routeParseCache;
+    @Autowired
+    private StringDictionaryService stringDictionary;
+    @Autowired
+    private BaseInfoDedupCache baseInfoDedup;
+    @Autowired
+    private ErrorIssueAggregator issueAggregator;
+    @Autowired
+    private RetentionService retentionService;
+    @Autowired
+    private EventArchive eventArchive;
+    @Autowired
+    private EmbeddedAnalyticsStore analyticsStore;
+    @Autowired
+    private com.krielwus.webtracinganalysis.repository.ErrorIssueRepository errorIssueRepository;
+    /** 主队列满时的过载策略：reject（拒绝并提示重试）、spill（写入溢出缓冲）、drop（计数后丢弃） */
+    @Value("${tracing.ingest.overload.policy:reject}")
+    private String overloadPolicy;
+    @Value("${tracing.ingest.overload.spillMaxSize:50000}")
+    private int spillMaxSize;
+    /** 入队通道：queue（共享 LinkedBlockingQueue）或 ring（按会话分片的环形缓冲，每个消费线程独占一片） */
+    @Value("${tracing.ingest.channel:queue}")
+    private String channelType;
+    /** ring 通道空/满时的等待方式：spin、yield、park */
+    @Value("${tracing.ingest.ring.waitStrategy:park}")
+    private String ringWaitStrategy;
+    private IngestChannel ingestQueue;
+    /**
+     * 溢出缓冲，与通道的保序分区一一对应，只由负责该分区的消费线程取出；
+     * 分区的溢出缓冲非空时，该分区的新载荷也写入溢出缓冲，消费线程先取完通道再取溢出缓冲，保证同一会话按入队顺序落库。
+     */
+    private List<BlockingQueue<IngestPayload>> overflowQueues;
     private ExecutorService consumerPool;
+    @Autowired
+    private IngestSpillFile spillFile;
+    /** 与请求线程一致：开启虚拟线程（JDK 21+）时消费线程也以虚拟线程运行，不支持时回退平台线程 */
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+    /** 停机时排空队列的最长时间（毫秒），超时后剩余载荷写入溢出文件 */
+    @Value("${tracing.ingest.shutdown.drainTimeoutMs:20000}")
+    private long drainTimeoutMs;
+    /** 容器每个停机阶段的总时限；排空时间按此截断，保证写溢出文件在容器放弃等待之前完成 */
+    @Value("${spring.lifecycle.timeout-per-shutdown-phase:30s}")
+    private Duration shutdownPhaseTimeout;
+    /** 入口是否接收新载荷，停机排空开始后置为 false */
+    private volatile boolean accepting = true;
+    private volatile boolean draining;
+    private volatile long drainDeadline;
+    private final java.util.concurrent.atomic.AtomicBoolean drained = new java.util.concurrent.atomic.AtomicBoolean();
+    /** 正在 ingestAsync 中的调用数 */
+    private final java.util.concurrent.atomic.AtomicInteger activeProducers = new java.util.concurrent.atomic.AtomicInteger();
+    /** 已被消费线程取出、尚未落库的载荷数 */
+    private final java.util.concurrent.atomic.AtomicInteger batchedPayloads = new java.util.concurrent.atomic.AtomicInteger();
+    /** 排空阶段落库失败、需写入溢出文件的载荷 */
+    private final List<IngestPayload> drainLeftovers = Collections.synchronizedList(new ArrayList<>());
+    private volatile long spilledToFile;
+    private volatile long replayedFromFile;
+    /** 从溢出文件回放、尚未落库且没有预写日志兜底的载荷；全部落库后才删除溢出文件 */
+    private final Set<IngestPayload> replayPending = ConcurrentHashMap.newKeySet();
+    private volatile boolean replayLoaded;
+    /** 启动回放（预写日志与溢出文件）在后台线程进行，结束前为 true */
+    private volatile boolean replaying;
+    private Thread replayThread;
+    private volatile boolean replayIncomplete;
     
     // 缓存用户权限应用代码集合，避免重复查询；key 兼容 userId 和 username
     private final ConcurrentHashMap<String, Set<String>> userAppCodesCache = new ConcurrentHashMap<>();
@@ -79,114 +176,632 @@ public class TracingService {
 
     @PostConstruct
     public void initIngest() {
-        ingestQueue = new LinkedBlockingQueue<>(queueMaxSize);
-        consumerPool = Executors.newFixedThreadPool(consumerThreads);
+        ingestQueue = "ring".equalsIgnoreCase(channelType)
+                ? new RingIngestChannel(consumerThreads, queueMaxSize, RingIngestChannel.WaitStrategy.of(ringWaitStrategy))
+                : new QueueIngestChannel(queueMaxSize);
+        int lanes = ingestQueue.lanes();
+        overflowQueues = new ArrayList<>(lanes);
+        for (int i = 0; i < lanes; i++) {
+            overflowQueues.add(new LinkedBlockingQueue<>(Math.max(1, spillMaxSize / lanes)));
+        }
+        java.util.concurrent.ThreadFactory factory = virtualThreads
+                ? com.krielwus.webtracinganalysis.util.VirtualThreads.factory("ingest-consumer-") : null;
+        if (factory == null) {
+            java.util.concurrent.atomic.AtomicInteger seq = new java.util.concurrent.atomic.AtomicInteger();
+            factory = r -> new Thread(r, "ingest-consumer-" + seq.getAndIncrement());
+        }
+        consumerPool = Executors.newFixedThreadPool(consumerThreads, factory);
         for (int i = 0; i < consumerThreads; i++) {
-            consumerPool.submit(this::runConsumerLoop);
+            final int consumer = i;
+            consumerPool.submit(() -> runConsumerLoop(consumer));
+        }
+        // 日志在此同步打开，之后的上报即可追加；回放在后台进行，积压超过队列容量或数据库变慢时不阻塞容器启动
+        List<Long> walPending;
+        try {
+            walPending = ingestWal.open();
+        } catch (java.io.IOException e) {
+            throw new IllegalStateException("failed to open ingest WAL", e);
+        }
+        replaying = true;
+        replayThread = new Thread(() -> {
+            try {
+                replayWal(walPending);
+                // 停机中断时不再回放溢出文件，文件保留到下次启动
+                if (!Thread.currentThread().isInterrupted()) replaySpillFile();
+            } finally {
+                replaying = false;
+            }
+        }, "ingest-replay");
+        replayThread.setDaemon(true);
+        replayThread.start();
+        appRegistry.setReleaseTarget(this::replayQuarantined);
+    }
+
+    /**
+     * 回放应用登记前被隔离的载荷：与溢出文件回放一样阻塞入队（开启预写日志时先追加到日志），不经过限流与采样。
+     */
+    private void replayQuarantined(byte[] bytes) {
+        IngestPayload p = payloadDecoder.decode(bytes);
+        if (p == null) return;
+        if (ingestWal.isEnabled()) {
+            try {
+                p.setWalPosition(ingestWal.append(bytes));
+            } catch (java.io.IOException e) {
+                log.warn("Failed to append quarantined record to WAL: {}", e.getMessage());
+            }
+        }
+        try {
+            ingestQueue.put(p);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 回放上次停机写入的溢出文件。开启预写日志时先追加到日志，记录已由日志兜底，文件读完即可删除；
+     * 否则（或追加失败时）文件保留到回放的载荷全部落库后再删除，期间崩溃会在下次启动重新回放（至少一次）。
+     */
+    private void replaySpillFile() {
+        replayedFromFile = spillFile.replay(bytes -> {
+            IngestPayload p = payloadDecoder.decode(bytes);
+            if (p == null || replayIncomplete) return;
+            if (ingestWal.isEnabled()) {
+                try {
+                    p.setWalPosition(ingestWal.append(bytes));
+                } catch (java.io.IOException e) {
+                    log.warn("Failed to append replayed spill record to WAL: {}", e.getMessage());
+                }
+            }
+            if (p.getWalPosition() < 0) replayPending.add(p);
+            try {
+                ingestQueue.put(p);
+            } catch (InterruptedException e) {
+                // 未入队的记录只在文件中，本次运行不再删除溢出文件
+                replayIncomplete = true;
+                replayPending.remove(p);
+                Thread.currentThread().interrupt();
+            }
+        });
+        replayLoaded = true;
+        releaseReplayedSpill();
+    }
+
+    /** 回放的载荷均已落库（或已由预写日志兜底）时删除已回放的溢出文件 */
+    private void releaseReplayedSpill() {
+        if (replayLoaded && !replayIncomplete && replayPending.isEmpty()) spillFile.deleteReplayed();
+    }
+
+    /**
+     * 回放预写日志中未提交的载荷；队列满时阻塞等待消费线程腾出空间，被中断时未入队的记录留在日志中。
+     */
+    private void replayWal(List<Long> pending) {
+        try {
+            ingestWal.replay(pending, (position, bytes) -> {
+                IngestPayload p = payloadDecoder.decode(bytes);
+                if (p == null) {
+                    ingestWal.commit(Collections.singletonList(position));
+                    return;
+                }
+                p.setWalPosition(position);
+                try {
+                    ingestQueue.put(p);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        } catch (java.io.IOException e) {
+            log.error("Failed to replay ingest WAL: {}", e.getMessage());
         }
     }
 
     @PreDestroy
     public void shutdownConsumers() {
-        if (consumerPool != null) {
-            consumerPool.shutdownNow();
+        // 正常情况下已由 IngestLifecycle 排空，这里兜底（如容器启动失败直接销毁）
+        drainAndStop();
+        // 未落库的载荷保留在预写日志中，下次启动回放
+        ingestWal.close();
+    }
+
+    /**
+     * 停机排空：入口立即停止接收（返回 UNAVAILABLE），消费线程以最大批量继续落库直到队列清空或超时，
+     * 之后仍未落库的载荷写入溢出文件，下次启动回放。已写入预写日志的载荷由日志回放，不重复写入溢出文件。
+     * 多次调用只执行一次。
+     */
+    public void drainAndStop() {
+        if (consumerPool == null || !drained.compareAndSet(false, true)) return;
+        long t0 = System.currentTimeMillis();
+        accepting = false;
+        // 启动回放尚未结束时停止回放：未入队的记录仍在预写日志或溢出文件中，下次启动继续
+        if (replayThread != null) replayThread.interrupt();
+        drainDeadline = t0 + effectiveDrainTimeoutMs();
+        draining = true;
+        consumerPool.shutdown();
+        try {
+            if (!consumerPool.awaitTermination(Math.max(0, drainDeadline - System.currentTimeMillis()) + DRAIN_GRACE_MS,
+                    TimeUnit.MILLISECONDS)) {
+                consumerPool.shutdownNow();
+                consumerPool.awaitTermination(DRAIN_GRACE_MS, TimeUnit.MILLISECONDS);
+            }
+            // 等待已通过入口检查的上报与回放线程完成入队，避免在收集剩余载荷之后再写入队列
+            long waitUntil = System.currentTimeMillis() + PRODUCER_WAIT_MS;
+            while ((activeProducers.get() > 0 || replaying) && System.currentTimeMillis() < waitUntil) {
+                Thread.sleep(5);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<IngestPayload> rest = new ArrayList<>(drainLeftovers);
+        drainLeftovers.clear();
+        // 按分区先通道后溢出缓冲收集，溢出文件中同一会话仍保持入队顺序
+        for (int i = 0; i < consumerThreads; i++) {
+            ingestQueue.drainTo(i, rest, Integer.MAX_VALUE);
+            if (i < overflowQueues.size()) overflowQueues.get(i).drainTo(rest);
+        }
+        List<byte[]> records = new ArrayList<>();
+        for (IngestPayload p : rest) {
+            if (p.getWalPosition() < 0 && p.getSource() != null) records.add(p.getSource());
+        }
+        try {
+            spilledToFile = spillFile.write(records);
+            // 上次回放尚未落库的载荷已随本次溢出文件重新写出时，旧文件不再需要
+            Set<IngestPayload> restSet = Collections.newSetFromMap(new IdentityHashMap<>());
+            restSet.addAll(rest);
+            if (restSet.containsAll(replayPending)) {
+                replayPending.clear();
+                releaseReplayedSpill();
+            }
+        } catch (java.io.IOException e) {
+            log.error("Failed to write {} payloads to ingest spill file: {}", records.size(), e.getMessage());
         }
+        log.info("Ingest drained in {} ms, {} payloads left, {} written to spill file",
+                System.currentTimeMillis() - t0, rest.size(), spilledToFile);
     }
 
-    public boolean ingestAsync(Map<String, Object> payload) {
-        if (payload == null) return true;
+    /**
+     * 实际排空时长：配置值与停机阶段时限扣除收尾预留（线程终止、生产者等待、写溢出文件）后的较小者。
+     */
+    long effectiveDrainTimeoutMs() {
+        long phase = shutdownPhaseTimeout == null ? Long.MAX_VALUE : shutdownPhaseTimeout.toMillis();
+        long budget = phase - 2 * DRAIN_GRACE_MS - PRODUCER_WAIT_MS - SPILL_WRITE_RESERVE_MS;
+        return Math.max(0, Math.min(drainTimeoutMs, budget));
+    }
+
+    /**
+     * 入库管线生命周期状态：是否接收、启动回放是否进行中、在途调用与积压、停机排空结果，供编排系统判断是否排空完成。
+     */
+    public Map<String, Object> getLifecycleStats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        String state = accepting ? "RUNNING" : (consumerPool != null && consumerPool.isTerminated() ? "STOPPED" : "DRAINING");
+        m.put("state", state);
+        m.put("accepting", accepting);
+        m.put("replaying", replaying);
+        m.put("activeProducers", activeProducers.get());
+        m.put("queueDepth", ingestQueue.size());
+        m.put("spillDepth", overflowSize());
+        m.put("batchedPayloads", batchedPayloads.get());
+        int inFlight = activeProducers.get() + ingestQueue.size() + overflowSize() + batchedPayloads.get();
+        m.put("inFlight", inFlight);
+        m.put("drainTimeoutMs", effectiveDrainTimeoutMs());
+        m.put("spilledToFile", spilledToFile);
+        m.put("replayedFromFile", replayedFromFile);
+        m.put("pendingSpillFiles", spillFile.pendingFiles());
+        return m;
+    }
+
+    /**
+     * 兼容 Map 形式的载荷：转换为类型化载荷后入队。
+     */
+    public IngestResult ingestAsync(Map<String, Object> payload) {
+        if (payload == null) return IngestResult.ACCEPTED;
+        return ingestAsync(payloadDecoder.fromMap(payload));
+    }
+
+    /**
+     * 异步入库：载荷入队，由消费线程批量落库。
+     * 主队列在 offerTimeoutMs 内仍无空位时按过载策略处理，结果按 appCode 计数。
+     */
+    public IngestResult ingestAsync(IngestPayload payload) {
+        if (payload == null) return IngestResult.ACCEPTED;
+        // 先计数再检查，停机排空据此等待已放行的调用完成入队
+        activeProducers.incrementAndGet();
         try {
-            return ingestQueue.offer(payload, offerTimeoutMs, TimeUnit.MILLISECONDS);
+            if (!accepting) return recordResult(payload, IngestResult.UNAVAILABLE);
+            return admit(payload);
+        } finally {
+            activeProducers.decrementAndGet();
+        }
+    }
+
+    private IngestResult admit(IngestPayload payload) {
+        if (appRegistry.isEnforcing()) {
+            // 未登记应用先于去重与限流处理，不占用去重窗口和令牌桶
+            int unregistered = appRegistry.filterUnregistered(payload);
+            if (unregistered < 0 || (unregistered > 0 && payload.getEvents().isEmpty())) {
+                IngestResult result = appRegistry.isRejecting() ? IngestResult.UNKNOWN_APP : IngestResult.QUARANTINED;
+                ingestMetrics.record(IngestMetrics.UNKNOWN_APP, result,
+                        unregistered < 0 ? payload.getEvents().size() : unregistered);
+                return result;
+            }
+        }
+        if (deduplicator.isEnabled()) {
+            int duplicates = deduplicator.removeDuplicates(payload);
+            if (duplicates > 0) {
+                ingestMetrics.recordDuplicates(payload.resolveAppCode(), duplicates);
+                // 全部事件均为重复（SDK 重试或代理重放），整条上报连同 baseInfo 一并忽略
+                if (payload.getEvents().isEmpty()) return IngestResult.ACCEPTED;
+            }
+        }
+        int sampledOut = admissionControl.sample(payload);
+        if (sampledOut > 0) {
+            ingestMetrics.recordSampledOut(payload.resolveAppCode(), sampledOut);
+            if (payload.getEvents().isEmpty()) return IngestResult.ACCEPTED;
+        }
+        if (!admissionControl.tryAcquire(payload)) {
+            return recordResult(payload, IngestResult.THROTTLED);
+        }
+        if (ingestWal.isEnabled() && payload.getWalPosition() < 0) {
+            try {
+                byte[] record = "smile".equalsIgnoreCase(walEncoding)
+                        ? payloadDecoder.toSmile(payload.getSource()) : payload.getSource();
+                payload.setWalPosition(ingestWal.append(record));
+            } catch (java.io.IOException e) {
+                return recordResult(payload, IngestResult.REJECTED);
+            }
+        }
+        IngestResult result;
+        BlockingQueue<IngestPayload> overflow = overflowQueues.get(ingestQueue.laneOf(payload));
+        try {
+            // 分区已有溢出积压时不再插队进入通道，否则会先于更早溢出的同会话载荷落库
+            result = overflow.isEmpty() && ingestQueue.offer(payload, offerTimeoutMs, TimeUnit.MILLISECONDS)
+                    ? IngestResult.ACCEPTED : onOverload(payload, overflow);
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
-            return false;
+            result = IngestResult.REJECTED;
+        }
+        if ((result == IngestResult.REJECTED || result == IngestResult.DROPPED) && payload.getWalPosition() >= 0) {
+            ingestWal.commit(Collections.singletonList(payload.getWalPosition()));
+        }
+        if (result == IngestResult.ACCEPTED || result == IngestResult.SPILLED) {
+            deduplicator.remember(payload);
+        }
+        return recordResult(payload, result);
+    }
+
+    private IngestResult recordResult(IngestPayload payload, IngestResult result) {
+        ingestMetrics.record(payload.resolveAppCode(), result, payload.getEvents().size());
+        return result;
+    }
+
+    private IngestResult onOverload(IngestPayload payload, BlockingQueue<IngestPayload> overflow) {
+        if ("drop".equalsIgnoreCase(overloadPolicy)) {
+            return IngestResult.DROPPED;
+        }
+        if ("spill".equalsIgnoreCase(overloadPolicy)) {
+            // 溢出缓冲也满时退化为拒绝，交由客户端重试
+            return overflow.offer(payload) ? IngestResult.SPILLED : IngestResult.REJECTED;
         }
+        return IngestResult.REJECTED;
+    }
+
+    /**
+     * 入队状态：主队列与溢出缓冲的深度、容量及当前过载策略。
+     */
+    public Map<String, Object> getIngestQueueStats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("policy", overloadPolicy);
+        m.put("channel", ingestQueue.name());
+        m.put("queueDepth", ingestQueue.size());
+        m.put("queueCapacity", ingestQueue.capacity());
+        m.put("spillDepth", overflowSize());
+        m.put("spillCapacity", spillMaxSize);
+        m.put("spillLanes", overflowQueues.size());
+        m.put("walEnabled", ingestWal.isEnabled());
+        m.put("walInFlight", ingestWal.inFlightCount());
+        m.put("deadLettered", spillFile.deadLettered());
+        return m;
     }
 
-    private void runConsumerLoop() {
-        java.util.ArrayList<Map<String, Object>> batch = new java.util.ArrayList<>(batchSize);
+    /**
+     * 消费循环：批量大小与等待时长由 IngestBatchTuner 按积压与落库表现动态给出；
+     * 批次填满，或自首条入批起超过等待时长，即落库。
+     * 落库失败的批次原样重试，重试期间不再取新载荷；超过 flushMaxAttempts 后拆批隔离无法写入的载荷。
+     */
+    private void runConsumerLoop(int consumer) {
+        com.krielwus.webtracinganalysis.config.LaneLimitedDataSource.markIngestThread();
+        java.util.ArrayList<IngestPayload> batch = new java.util.ArrayList<>(batchTuner.batchSize());
+        BlockingQueue<IngestPayload> overflow = overflowQueues.get(consumer % overflowQueues.size());
+        long batchStart = 0;
+        boolean retrying = false;
+        int failedAttempts = 0;
         while (!Thread.currentThread().isInterrupted()) {
             try {
-                Map<String, Object> item = ingestQueue.poll(lingerMs, TimeUnit.MILLISECONDS);
-                if (item != null) {
-                    batch.add(item);
-                    ingestQueue.drainTo(batch, Math.max(0, batchSize - batch.size()));
+                // 排空阶段：超时即退出，剩余载荷由 drainAndStop 写入溢出文件
+                if (draining && System.currentTimeMillis() >= drainDeadline) break;
+                int depth = consumerDepth(overflow);
+                int target = draining ? batchTuner.maxBatchSize() : batchTuner.batchSize();
+                long linger = draining ? 0 : batchTuner.lingerMs(depth);
+                IngestPayload item = null;
+                if (!retrying) {
+                    long waitMs = draining ? 0 : batch.isEmpty() ? batchTuner.idleWaitMs()
+                            : Math.max(0, linger - (System.currentTimeMillis() - batchStart));
+                    // 先取通道再取溢出缓冲：通道中的载荷均早于本分区溢出缓冲中的载荷
+                    item = ingestQueue.poll(consumer, overflow.isEmpty() ? waitMs : 0, TimeUnit.MILLISECONDS);
+                    if (item == null) item = overflow.poll();
+                    if (item != null) {
+                        if (batch.isEmpty()) batchStart = System.currentTimeMillis();
+                        int before = batch.size();
+                        batch.add(item);
+                        ingestQueue.drainTo(consumer, batch, Math.max(0, target - batch.size()));
+                        overflow.drainTo(batch, Math.max(0, target - batch.size()));
+                        batchedPayloads.addAndGet(batch.size() - before);
+                    } else if (draining && batch.isEmpty()) {
+                        break;
+                    }
                 }
-                if (!batch.isEmpty() && (batch.size() >= batchSize || item == null)) {
-                    flushBatch(batch);
+                if (!batch.isEmpty() && (retrying || batch.size() >= target || item == null
+                        || System.currentTimeMillis() - batchStart >= linger)) {
+                    long t0 = System.nanoTime();
+                    try {
+                        flushBatch(batch);
+                    } catch (RuntimeException e) {
+                        batchTuner.recordFlush(batch.size(), System.nanoTime() - t0, false, consumerDepth(overflow));
+                        retrying = true;
+                        if (isTransientFailure(e) || ++failedAttempts < flushMaxAttempts) {
+                            // 保留批次稍后重试，避免数据库异常时空转
+                            Thread.sleep(batchTuner.lingerMs(Integer.MAX_VALUE));
+                            continue;
+                        }
+                        batchedPayloads.addAndGet(-isolateFailures(batch));
+                        retrying = !batch.isEmpty();
+                        failedAttempts = 0;
+                        continue;
+                    }
+                    batchTuner.recordFlush(batch.size(), System.nanoTime() - t0, true, consumerDepth(overflow));
+                    batchedPayloads.addAndGet(-batch.size());
                     batch.clear();
+                    retrying = false;
+                    failedAttempts = 0;
                 }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             } catch (Exception ignored) {
             }
         }
-        if (!batch.isEmpty()) flushBatch(batch);
+        if (!batch.isEmpty()) {
+            try {
+                flushBatch(batch);
+            } catch (RuntimeException e) {
+                drainLeftovers.addAll(batch);
+            }
+            batchedPayloads.addAndGet(-batch.size());
+        }
     }
 
-    private void flushBatch(java.util.List<Map<String, Object>> payloads) {
+    /**
+     * 批次多次重试仍失败：二分拆批，能写入的部分正常落库，单独仍失败的载荷转入死信文件。
+     * 拆分中遇到数据库不可用类异常即停止，未处理的载荷留在批次中继续重试。
+     * 已处理（落库或转入死信）的载荷从批次中移除，返回其条数。
+     */
+    private int isolateFailures(List<IngestPayload> batch) {
+        List<IngestPayload> done = new ArrayList<>();
+        if (batch.size() == 1) {
+            if (deadLetter(batch.get(0))) done.add(batch.get(0));
+        } else {
+            int mid = batch.size() / 2;
+            if (isolate(batch.subList(0, mid), done)) isolate(batch.subList(mid, batch.size()), done);
+        }
+        Set<IngestPayload> handled = Collections.newSetFromMap(new IdentityHashMap<>());
+        handled.addAll(done);
+        batch.removeIf(handled::contains);
+        return done.size();
+    }
+
+    /** 落库一段载荷，失败时继续二分；数据库不可用时返回 false */
+    private boolean isolate(List<IngestPayload> part, List<IngestPayload> done) {
+        try {
+            flushBatch(part);
+            done.addAll(part);
+            return true;
+        } catch (RuntimeException e) {
+            if (isTransientFailure(e)) return false;
+            if (part.size() == 1) {
+                if (deadLetter(part.get(0))) done.add(part.get(0));
+                return true;
+            }
+            int mid = part.size() / 2;
+            return isolate(part.subList(0, mid), done) && isolate(part.subList(mid, part.size()), done);
+        }
+    }
+
+    /**
+     * 单条载荷无法落库：写入死信文件，并提交其预写日志位置、从溢出文件回放集合中移除。
+     * 死信文件写入失败时返回 false，载荷留在批次中。
+     */
+    private boolean deadLetter(IngestPayload p) {
+        if (p.getSource() != null && !spillFile.deadLetter(p.getSource())) return false;
+        log.error("Dead-lettered ingest payload for app {} after {} failed flush attempts",
+                p.resolveAppCode(), flushMaxAttempts);
+        if (!replayPending.isEmpty()) {
+            replayPending.remove(p);
+            releaseReplayedSpill();
+        }
+        if (p.getWalPosition() >= 0) ingestWal.commit(Collections.singletonList(p.getWalPosition()));
+        return true;
+    }
+
+    /** 连接、超时、锁等数据库不可用类异常：重试即可，拆批无助于定位 */
+    private static boolean isTransientFailure(RuntimeException e) {
+        return e instanceof org.springframework.dao.TransientDataAccessException
+                || e instanceof org.springframework.dao.RecoverableDataAccessException
+                || e instanceof org.springframework.dao.DataAccessResourceFailureException
+                || e instanceof org.springframework.transaction.CannotCreateTransactionException;
+    }
+
+    /** 单个消费线程视角的积压条数 */
+    private int consumerDepth(BlockingQueue<IngestPayload> overflow) {
+        return ingestQueue.size() / Math.max(1, consumerThreads) + overflow.size();
+    }
+
+    private int overflowSize() {
+        int n = 0;
+        for (BlockingQueue<IngestPayload> q : overflowQueues) n += q.size();
+        return n;
+    }
+
+    private void flushBatch(java.util.List<IngestPayload> payloads) {
         org.springframework.transaction.support.TransactionTemplate tt = new org.springframework.transaction.support.TransactionTemplate(transactionManager);
-        tt.execute(status -> {
-            java.util.ArrayList<BaseInfoRecord> baseRecords = new java.util.ArrayList<>();
+        java.util.ArrayList<BaseInfoRecord> baseRecords = new java.util.ArrayList<>();
+        java.util.ArrayList<EmbeddedAnalyticsStore.Row> analyticsRows = analyticsStore.isEnabled() ? new java.util.ArrayList<>() : null;
+        List<TracingEvent> written = tt.execute(status -> {
+            baseRecords.clear();
+            if (analyticsRows != null) analyticsRows.clear();
             java.util.ArrayList<TracingEvent> eventRecords = new java.util.ArrayList<>();
             java.util.ArrayList<com.krielwus.webtracinganalysis.entity.PageViewRoute> routeRecords = new java.util.ArrayList<>();
-            for (Map<String, Object> payload : payloads) {
-                Object eventInfoObj = payload.get("eventInfo");
-                Object baseInfoObj = payload.get("baseInfo");
-                Map<String, Object> base = null;
-                if (baseInfoObj != null) {
-                    base = toMap(baseInfoObj);
-                    BaseInfoRecord record = new BaseInfoRecord();
-                    record.setPayload(toJson(baseInfoObj));
-                    baseRecords.add(record);
-                }
-                if (eventInfoObj != null) {
-                    java.util.List<Map<String, Object>> events = toList(eventInfoObj);
-                    for (Map<String, Object> e : events) {
-                        TracingEvent te = new TracingEvent();
-                        Object type = e.get("eventType");
-                        te.setEventType(type == null ? "UNKNOWN" : String.valueOf(type));
-                        te.setPayload(toJson(e));
-                        String appCode = base != null ? getString(base, "appCode", "APP_CODE") : getString(e, "appCode", "APP_CODE");
-                        String appName = base != null ? getString(base, "appName", "APP_NAME") : getString(e, "appName", "APP_NAME");
-                        String sessionId = getString(e, "sessionId", "SESSION_ID");
-                        if (sessionId == null || sessionId.isEmpty()) {
-                            sessionId = base != null ? getString(base, "sessionId", "SESSION_ID") : null;
-                        }
-                        te.setAppCode(appCode);
-                        te.setAppName(appName);
-                        te.setSessionId(sessionId);
-                        eventRecords.add(te);
-                        if ("PV".equalsIgnoreCase(te.getEventType())) {
-                            String fullUrl = getString(e, "triggerPageUrl", "pageUrl", "URL", "PAGE_URL");
-                            String sdkUserUuid = getString(e, "sdkUserUuid", "SDK_USER_UUID");
-                            if (sdkUserUuid == null || sdkUserUuid.isEmpty()) {
-                                sdkUserUuid = base != null ? getString(base, "sdkUserUuid", "SDK_USER_UUID") : null;
-                            }
-                            String deviceId = getString(e, "deviceId", "DEVICE_ID");
-                            if (deviceId == null || deviceId.isEmpty()) {
-                                deviceId = base != null ? getString(base, "deviceId", "DEVICE_ID") : null;
-                            }
-                            String[] parts = parsePageRoute(fullUrl);
-                            com.krielwus.webtracinganalysis.entity.PageViewRoute pvr = new com.krielwus.webtracinganalysis.entity.PageViewRoute();
-                            pvr.setAppCode(appCode);
-                            pvr.setAppName(appName);
-                            pvr.setSessionId(sessionId);
-                            pvr.setSdkUserUuid(sdkUserUuid);
-                            pvr.setDeviceId(deviceId);
-                            pvr.setFullUrl(fullUrl);
-                            pvr.setRouteType(parts[0]);
-                            pvr.setRoutePath(parts[1]);
-                            pvr.setRouteParams(parts[2]);
-                            routeRecords.add(pvr);
-                        }
-                    }
-                }
+            for (IngestPayload payload : payloads) {
+                collectRecords(payload, baseRecords, eventRecords, routeRecords, analyticsRows);
             }
-            if (!baseRecords.isEmpty()) baseInfoRecordRepository.saveAll(baseRecords);
-            if (!eventRecords.isEmpty()) tracingEventRepository.saveAll(eventRecords);
-            if (!routeRecords.isEmpty())
-                pageViewRouteRepository.saveAll(routeRecords);
-            return null;
+            persistRecords(baseRecords, eventRecords, routeRecords);
+            return eventRecords;
         });
+        // 事务提交后再计入错误聚合与基线去重缓存，回滚的批次不会产生计数
+        issueAggregator.record(written);
+        markBaseInfosWritten(baseRecords);
+        analyticsStore.appendAfterCommit(analyticsRows);
+        if (!replayPending.isEmpty()) {
+            replayPending.removeAll(payloads);
+            releaseReplayedSpill();
+        }
+        if (ingestWal.isEnabled()) {
+            java.util.ArrayList<Long> positions = new java.util.ArrayList<>(payloads.size());
+            for (IngestPayload p : payloads) positions.add(p.getWalPosition());
+            ingestWal.commit(positions);
+        }
+    }
+
+    /**
+     * 基线标识列的取值：空串视为缺失，超出列宽的截断。
+     */
+    private static String identityColumn(String value) {
+        if (value == null || value.isEmpty()) return null;
+        return value.length() > 128 ? value.substring(0, 128) : value;
+    }
+
+    /**
+     * 将一次上报载荷展开为基线、事件与页面路由记录，analyticsRows 不为空时同时生成嵌入式分析存储的行。
+     * 存在 baseInfo 时应用标识取自 baseInfo，会话/用户/设备标识优先取事件自身字段。
+     */
+    private void collectRecords(IngestPayload payload, List<BaseInfoRecord> baseRecords,
+            List<TracingEvent> eventRecords, List<com.krielwus.webtracinganalysis.entity.PageViewRoute> routeRecords,
+            List<EmbeddedAnalyticsStore.Row> analyticsRows) {
+        boolean hasBase = payload.hasBaseInfo();
+        long now = System.currentTimeMillis();
+        Long baseHash = null;
+        if (hasBase) {
+            // 标识哈希按自然日分桶：同一标识每天一行，created_at/last_seen 不跨天，按日去重计数与逐条存储时一致
+            baseHash = com.krielwus.webtracinganalysis.util.Hash64.combine(payload.baseInfoHash(),
+                    java.time.LocalDate.now().toEpochDay());
+            // 同一内容近期已写入时跳过，只有事件通过 base_hash 引用
+            if (baseInfoDedup.needsWrite(baseHash, now)) {
+                BaseInfoRecord record = new BaseInfoRecord();
+                record.setPayload(payload.getBaseInfoJson());
+                record.setContentHash(baseHash);
+                record.setCreatedAt(new Date(now));
+                record.setAppCode(identityColumn(payload.getAppCode()));
+                record.setSessionId(identityColumn(payload.getSessionId()));
+                record.setDeviceId(identityColumn(payload.getDeviceId()));
+                record.setSdkUserUuid(identityColumn(payload.getSdkUserUuid()));
+                baseRecords.add(record);
+            }
+        }
+        for (IngestEvent e : payload.getEvents()) {
+            TracingEvent te = new TracingEvent();
+            te.setEventType(e.getEventType() == null ? "UNKNOWN" : e.getEventType());
+            te.setPayload(e.getPayloadJson());
+            String appCode = hasBase ? payload.getAppCode() : e.getAppCode();
+            String appName = hasBase ? payload.getAppName() : e.getAppName();
+            String sessionId = e.getSessionId();
+            if (sessionId == null || sessionId.isEmpty()) {
+                sessionId = hasBase ? payload.getSessionId() : null;
+            }
+            appCode = stringDictionary.intern(StringDictionaryService.APP_CODE, appCode);
+            appName = stringDictionary.intern(StringDictionaryService.APP_NAME, appName);
+            te.setEventType(stringDictionary.intern(StringDictionaryService.EVENT_TYPE, te.getEventType()));
+            te.setAppCode(appCode);
+            te.setAppName(appName);
+            te.setSessionId(sessionId);
+            te.setSampleRate(e.getSampleRate());
+            te.setBaseHash(baseHash);
+            if ("ERROR".equalsIgnoreCase(te.getEventType())) {
+                te.setErrorCode(clip(e.getErrorCode(), 128));
+                te.setErrorMessage(clip(e.getErrorMessage(), 1024));
+                te.setRequestUri(clip(e.getRequestUri(), 1024));
+                te.setErrorLevel(clip(e.getErrorLevel(), 32));
+                te.setSeverity(severityClassifier.classify(e.getErrorCode(), e.getErrorMessage(), e.getErrorLevel()));
+                te.setFingerprint(errorFingerprinter.fingerprint(e.getErrorCode(), e.getErrorMessage(),
+                        e.getErrorStack(), e.getRequestUri()));
+            }
+            eventRecords.add(te);
+            String sdkUserUuid = e.getSdkUserUuid();
+            if (sdkUserUuid == null || sdkUserUuid.isEmpty()) {
+                sdkUserUuid = hasBase ? payload.getSdkUserUuid() : null;
+            }
+            String deviceId = e.getDeviceId();
+            if (deviceId == null || deviceId.isEmpty()) {
+                deviceId = hasBase ? payload.getDeviceId() : null;
+            }
+            String routePath = null;
+            if ("PV".equalsIgnoreCase(te.getEventType())) {
+                String fullUrl = e.getTriggerPageUrl();
+                String[] parts = routeParseCache.get(fullUrl, this::parsePageRoute);
+                com.krielwus.webtracinganalysis.entity.PageViewRoute pvr = new com.krielwus.webtracinganalysis.entity.PageViewRoute();
+                pvr.setAppCode(appCode);
+                pvr.setAppName(appName);
+                pvr.setSessionId(sessionId);
+                pvr.setSdkUserUuid(sdkUserUuid);
+                pvr.setDeviceId(deviceId);
+                pvr.setFullUrl(fullUrl);
+                pvr.setRouteType(parts[0]);
+                // 路由为高基数取值，不进字典；分析时按路径在查询内分配局部 ID
+                pvr.setRoutePath(parts[1]);
+                pvr.setRouteParams(parts[2]);
+                pvr.setSampleRate(te.getSampleRate());
+                routeRecords.add(pvr);
+                routePath = pvr.getRoutePath();
+            }
+            if (analyticsRows != null) {
+                analyticsRows.add(new EmbeddedAnalyticsStore.Row(now, appCode, te.getEventType(), routePath, sessionId,
+                        sdkUserUuid, deviceId, te.getSampleRate()));
+            }
+        }
+    }
+
+    private void markBaseInfosWritten(List<BaseInfoRecord> baseRecords) {
+        if (baseRecords.isEmpty()) return;
+        java.util.ArrayList<Long> hashes = new java.util.ArrayList<>(baseRecords.size());
+        for (BaseInfoRecord r : baseRecords) hashes.add(r.getContentHash());
+        baseInfoDedup.markWritten(hashes, System.currentTimeMillis());
+    }
+
+    /** 截断至列长度，避免超长字段导致整批写入失败 */
+    private static String clip(String s, int max) {
+        return s == null || s.length() <= max ? s : s.substring(0, max);
+    }
+
+    /**
+     * 按配置的写入方式持久化一批记录，需在事务内调用。
+     */
+    private void persistRecords(List<BaseInfoRecord> baseRecords, List<TracingEvent> eventRecords,
+            List<com.krielwus.webtracinganalysis.entity.PageViewRoute> routeRecords) {
+        // 基线记录按内容哈希 upsert，JPA 无法表达，两种写入方式均走 JDBC
+        batchWriter.writeBaseInfos(baseRecords);
+        if ("jdbc".equalsIgnoreCase(writerMode)) {
+            batchWriter.writeEvents(eventRecords);
+            batchWriter.writeRoutes(routeRecords);
+            return;
+        }
+        if (!eventRecords.isEmpty()) tracingEventRepository.saveAll(eventRecords);
+        if (!routeRecords.isEmpty())
+            pageViewRouteRepository.saveAll(routeRecords);
     }
 
     /**
@@ -195,62 +810,17 @@ public class TracingService {
      */
     @Transactional
     public void ingest(Map<String, Object> payload) {
-        Object eventInfoObj = payload.get("eventInfo");
-        Object baseInfoObj = payload.get("baseInfo");
-        Map<String, Object> base = null;
-        if (baseInfoObj != null) {
-            base = toMap(baseInfoObj);
-            BaseInfoRecord record = new BaseInfoRecord();
-            record.setPayload(toJson(baseInfoObj));
-            baseInfoRecordRepository.save(record);
-        }
-        if (eventInfoObj != null) {
-            List<Map<String, Object>> events = toList(eventInfoObj);
-            List<TracingEvent> batch = new ArrayList<>(events.size());
-            java.util.ArrayList<com.krielwus.webtracinganalysis.entity.PageViewRoute> routeRecords = new java.util.ArrayList<>();
-            for (Map<String, Object> e : events) {
-                TracingEvent te = new TracingEvent();
-                Object type = e.get("eventType");
-                te.setEventType(type == null ? "UNKNOWN" : String.valueOf(type));
-                te.setPayload(toJson(e));
-                String appCode = base != null ? getString(base, "appCode", "APP_CODE") : getString(e, "appCode", "APP_CODE");
-                String appName = base != null ? getString(base, "appName", "APP_NAME") : getString(e, "appName", "APP_NAME");
-                String sessionId = getString(e, "sessionId", "SESSION_ID");
-                if (sessionId == null || sessionId.isEmpty()) {
-                    sessionId = base != null ? getString(base, "sessionId", "SESSION_ID") : null;
-                }
-                te.setAppCode(appCode);
-                te.setAppName(appName);
-                te.setSessionId(sessionId);
-                batch.add(te);
-                if ("PV".equalsIgnoreCase(te.getEventType())) {
-                    String fullUrl = getString(e, "triggerPageUrl", "pageUrl", "URL", "PAGE_URL");
-                    String sdkUserUuid = getString(e, "sdkUserUuid", "SDK_USER_UUID");
-                    if (sdkUserUuid == null || sdkUserUuid.isEmpty()) {
-                        sdkUserUuid = base != null ? getString(base, "sdkUserUuid", "SDK_USER_UUID") : null;
-                    }
-                    String deviceId = getString(e, "deviceId", "DEVICE_ID");
-                    if (deviceId == null || deviceId.isEmpty()) {
-                        deviceId = base != null ? getString(base, "deviceId", "DEVICE_ID") : null;
-                    }
-                    String[] parts = parsePageRoute(fullUrl);
-                    com.krielwus.webtracinganalysis.entity.PageViewRoute pvr = new com.krielwus.webtracinganalysis.entity.PageViewRoute();
-                    pvr.setAppCode(appCode);
-                    pvr.setAppName(appName);
-                    pvr.setSessionId(sessionId);
-                    pvr.setSdkUserUuid(sdkUserUuid);
-                    pvr.setDeviceId(deviceId);
-                    pvr.setFullUrl(fullUrl);
-                    pvr.setRouteType(parts[0]);
-                    pvr.setRoutePath(parts[1]);
-                    pvr.setRouteParams(parts[2]);
-                    routeRecords.add(pvr);
-                }
-            }
-            if (!batch.isEmpty()) tracingEventRepository.saveAll(batch);
-            if (!routeRecords.isEmpty())
-                pageViewRouteRepository.saveAll(routeRecords);
-        }
+        IngestPayload decoded = payloadDecoder.fromMap(payload);
+        if (decoded == null) return;
+        java.util.ArrayList<BaseInfoRecord> baseRecords = new java.util.ArrayList<>();
+        java.util.ArrayList<TracingEvent> eventRecords = new java.util.ArrayList<>();
+        java.util.ArrayList<com.krielwus.webtracinganalysis.entity.PageViewRoute> routeRecords = new java.util.ArrayList<>();
+        java.util.ArrayList<EmbeddedAnalyticsStore.Row> analyticsRows = analyticsStore.isEnabled() ? new java.util.ArrayList<>() : null;
+        collectRecords(decoded, baseRecords, eventRecords, routeRecords, analyticsRows);
+        persistRecords(baseRecords, eventRecords, routeRecords);
+        issueAggregator.record(eventRecords);
+        markBaseInfosWritten(baseRecords);
+        analyticsStore.appendAfterCommit(analyticsRows);
     }
 
     /**
@@ -278,12 +848,12 @@ public class TracingService {
     }
 
     /**
-     * 清理所有事件与基线记录（开发调试用）。
+     * 清理所有事件与基线记录（开发调试用）。提交到保留引擎后台分块删除，立即返回。
      */
-    @Transactional
     public void cleanAll() {
-        tracingEventRepository.deleteAll();
-        baseInfoRecordRepository.deleteAll();
+        retentionService.submitPurge();
+        eventArchive.deleteAll();
+        analyticsStore.deleteAll();
     }
 
     /**
@@ -292,34 +862,16 @@ public class TracingService {
     public Map<String, Object> aggregateDailyBase(LocalDate date) {
         Date start = Date.from(date.atStartOfDay(ZoneId.systemDefault()).toInstant());
         Date end = Date.from(date.plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant());
-
-        java.util.List<BaseInfoRecord> records = baseInfoRecordRepository.findByCreatedAtBetween(start, end);
-        Set<String> apps = new HashSet<>();
-        Set<String> users = new HashSet<>();
-        Set<String> devices = new HashSet<>();
-        Set<String> sessions = new HashSet<>();
-        for (BaseInfoRecord r : records) {
-            Map<String, Object> m = fromJson(r.getPayload(), new TypeReference<Map<String, Object>>() {});
-            if (m == null) continue;
-            String appCode = getString(m, "appCode", "APP_CODE");
-            if (appCode != null && !appCode.isEmpty()) apps.add(appCode);
-            String uid = getString(m, "sdkUserUuid");
-            if (uid != null && !uid.isEmpty()) users.add(uid);
-            String deviceId = getString(m, "deviceId", "DEVICE_ID");
-            if (deviceId != null && !deviceId.isEmpty()) devices.add(deviceId);
-            String sessionId = getString(m, "sessionId", "SESSION_ID");
-            if (sessionId != null && !sessionId.isEmpty()) sessions.add(sessionId);
-        }
-
-        int pv = (int) tracingEventRepository.countByEventTypeAndCreatedAtBetween("PV", start, end);
-        int click = (int) tracingEventRepository.countByEventTypeAndCreatedAtBetween("CLICK", start, end);
-        int error = (int) tracingEventRepository.countByEventTypeAndCreatedAtBetween("ERROR", start, end);
+        int[] ids = dailyIdentities(null, date, () -> baseInfoRecordRepository.countIdentitiesBetween(start, end));
+        int pv = dailyEventCount("PV", null, date);
+        int click = dailyEventCount("CLICK", null, date);
+        int error = dailyEventCount("ERROR", null, date);
         Map<String, Object> item = new LinkedHashMap<>();
         item.put("DAY_TIME", DF.format(date));
-        item.put("APPLICATION_NUM", apps.size());
-        item.put("USER_COUNT", users.size());
-        item.put("DEVICE_NUM", devices.size());
-        item.put("SESSION_UNM", sessions.size());
+        item.put("APPLICATION_NUM", ids[0]);
+        item.put("USER_COUNT", ids[1]);
+        item.put("DEVICE_NUM", ids[2]);
+        item.put("SESSION_UNM", ids[3]);
         item.put("CLICK_NUM", click);
         item.put("PV_NUM", pv);
         item.put("ERROR_NUM", error);
@@ -347,34 +899,18 @@ public class TracingService {
             return emptyItem;
         }
 
-        java.util.List<BaseInfoRecord> records = baseInfoRecordRepository.findByCreatedAtBetween(start, end);
-        Set<String> apps = new HashSet<>();
-        Set<String> users = new HashSet<>();
-        Set<String> devices = new HashSet<>();
-        Set<String> sessions = new HashSet<>();
-        for (BaseInfoRecord r : records) {
-            Map<String, Object> m = fromJson(r.getPayload(), new TypeReference<Map<String, Object>>() {});
-            if (m == null) continue;
-            String appCode = getString(m, "appCode", "APP_CODE");
-            if (appCode == null || appCode.isEmpty() || !userAppCodes.contains(appCode)) continue;
-            apps.add(appCode);
-            String uid = getString(m, "sdkUserUuid");
-            if (uid != null && !uid.isEmpty()) users.add(uid);
-            String deviceId = getString(m, "deviceId", "DEVICE_ID");
-            if (deviceId != null && !deviceId.isEmpty()) devices.add(deviceId);
-            String sessionId = getString(m, "sessionId", "SESSION_ID");
-            if (sessionId != null && !sessionId.isEmpty()) sessions.add(sessionId);
-        }
-        int pv = (int) tracingEventRepository.countByEventTypeAndCreatedAtBetweenAndAppCodes("PV", start, end, userAppCodes);
-        int click = (int) tracingEventRepository.countByEventTypeAndCreatedAtBetweenAndAppCodes("CLICK", start, end, userAppCodes);
-        int error = (int) tracingEventRepository.countByEventTypeAndCreatedAtBetweenAndAppCodes("ERROR", start, end, userAppCodes);
+        int[] ids = dailyIdentities(userAppCodes, date,
+                () -> baseInfoRecordRepository.countIdentitiesByAppCodesBetween(userAppCodes, start, end));
+        int pv = dailyEventCount("PV", userAppCodes, date);
+        int click = dailyEventCount("CLICK", userAppCodes, date);
+        int error = dailyEventCount("ERROR", userAppCodes, date);
         
         Map<String, Object> item = new LinkedHashMap<>();
         item.put("DAY_TIME", DF.format(date));
-        item.put("APPLICATION_NUM", apps.size());
-        item.put("USER_COUNT", users.size());
-        item.put("DEVICE_NUM", devices.size());
-        item.put("SESSION_UNM", sessions.size());
+        item.put("APPLICATION_NUM", ids[0]);
+        item.put("USER_COUNT", ids[1]);
+        item.put("DEVICE_NUM", ids[2]);
+        item.put("SESSION_UNM", ids[3]);
         item.put("CLICK_NUM", click);
         item.put("PV_NUM", pv);
         item.put("ERROR_NUM", error);
@@ -385,18 +921,15 @@ public class TracingService {
      * 统计所有数据的累计指标（基于 trace_event）。
      */
     public Map<String, Object> aggregateAllBase() {
-        Set<String> apps = distinctAppCodesAll();
-        Set<String> users = distinctSdkUserUuidsAll();
-        Set<String> devices = distinctDeviceIdsAll();
-        Set<String> sessions = distinctSessionIdsAll();
+        int[] ids = identityCounts(baseInfoRecordRepository.countIdentitiesAll());
         int pv = (int) tracingEventRepository.countByEventType("PV");
         int click = (int) tracingEventRepository.countByEventType("CLICK");
         int error = (int) tracingEventRepository.countByEventType("ERROR");
         Map<String, Object> item = new LinkedHashMap<>();
-        item.put("APPLICATION_NUM", apps.size());
-        item.put("USER_COUNT", users.size());
-        item.put("DEVICE_NUM", devices.size());
-        item.put("SESSION_UNM", sessions.size());
+        item.put("APPLICATION_NUM", ids[0]);
+        item.put("USER_COUNT", ids[1]);
+        item.put("DEVICE_NUM", ids[2]);
+        item.put("SESSION_UNM", ids[3]);
         item.put("CLICK_NUM", click);
         item.put("PV_NUM", pv);
         item.put("ERROR_NUM", error);
@@ -423,18 +956,16 @@ public class TracingService {
             return emptyItem;
         }
         
-        Set<String> users = distinctSdkUserUuidsAllByAppCodes(userAppCodes);
-        Set<String> devices = distinctDeviceIdsAllByAppCodes(userAppCodes);
-        Set<String> sessions = distinctSessionIdsAllByAppCodes(userAppCodes);
+        int[] ids = identityCounts(baseInfoRecordRepository.countIdentitiesByAppCodes(userAppCodes));
         int pv = (int) tracingEventRepository.countByEventTypeAndAppCodes("PV", userAppCodes);
         int click = (int) tracingEventRepository.countByEventTypeAndAppCodes("CLICK", userAppCodes);
         int error = (int) tracingEventRepository.countByEventTypeAndAppCodes("ERROR", userAppCodes);
         
         Map<String, Object> item = new LinkedHashMap<>();
         item.put("APPLICATION_NUM", userAppCodes.size());
-        item.put("USER_COUNT", users.size());
-        item.put("DEVICE_NUM", devices.size());
-        item.put("SESSION_UNM", sessions.size());
+        item.put("USER_COUNT", ids[1]);
+        item.put("DEVICE_NUM", ids[2]);
+        item.put("SESSION_UNM", ids[3]);
         item.put("CLICK_NUM", click);
         item.put("PV_NUM", pv);
         item.put("ERROR_NUM", error);
@@ -475,8 +1006,6 @@ public class TracingService {
      * 按应用（appCode）统计日期范围内每日 PV 数，并返回 appCode 与 appName（仅限用户有权限的应用）。
      */
     public List<Map<String, Object>> aggregateDailyPVByAppForUser(LocalDate startDate, LocalDate endDate, String userId, String username) {
-        Date rangeStart = Date.from(startDate.atStartOfDay(ZoneId.systemDefault()).toInstant());
-        Date rangeEnd = Date.from(endDate.plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant());
         
         // 获取用户有权限的应用代码
         Set<String> userAppCodes = getUserAccessibleAppCodes(userId, username);
@@ -486,7 +1015,9 @@ public class TracingService {
             return new ArrayList<>();
         }
         
-        java.util.List<Object[]> rows = tracingEventRepository.countDailyPvByAppAndAppCodes(rangeStart, rangeEnd, userAppCodes);
+        java.util.List<Object[]> rows = dailyCounts(
+                (from, to) -> tracingEventRepository.countDailyPvByAppAndAppCodes(from, to, userAppCodes),
+                "PV", userAppCodes, startDate, endDate, true);
         Map<String, String> nameByCode = new HashMap<>();
         for (com.krielwus.webtracinganalysis.entity.ApplicationInfo ai : applicationInfoRepository.findAll()) {
             if (ai.getAppCode() != null && !ai.getAppCode().isEmpty() && userAppCodes.contains(ai.getAppCode())) {
@@ -524,14 +1055,13 @@ public class TracingService {
      * 按日统计指定事件类型的总量（限定用户权限）。
      */
     public List<Map<String, Object>> aggregateDailyCountByEventTypeForUser(LocalDate startDate, LocalDate endDate, String eventType, String userId, String username) {
-        Date rangeStart = Date.from(startDate.atStartOfDay(ZoneId.systemDefault()).toInstant());
-        Date rangeEnd = Date.from(endDate.plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant());
         Set<String> userAppCodes = getUserAccessibleAppCodes(userId, username);
         List<Object[]> rows;
         if (userAppCodes.isEmpty()) {
             rows = new ArrayList<>();
         } else {
-            rows = tracingEventRepository.countDailyByEventTypeAndAppCodes(eventType, rangeStart, rangeEnd, userAppCodes);
+            rows = dailyCounts((from, to) -> tracingEventRepository.countDailyByEventTypeAndAppCodes(eventType, from, to,
+                    userAppCodes), eventType, userAppCodes, startDate, endDate, false);
         }
         Map<String, Integer> dayCount = new HashMap<>();
         for (Object[] r : rows) {
@@ -554,14 +1084,13 @@ public class TracingService {
      * 按日按应用统计指定事件类型的总量（限定用户权限）。
      */
     public List<Map<String, Object>> aggregateDailyCountByEventTypeByAppForUser(LocalDate startDate, LocalDate endDate, String eventType, String userId, String username) {
-        Date rangeStart = Date.from(startDate.atStartOfDay(ZoneId.systemDefault()).toInstant());
-        Date rangeEnd = Date.from(endDate.plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant());
         Set<String> userAppCodes = getUserAccessibleAppCodes(userId, username);
         List<Object[]> rows;
         if (userAppCodes.isEmpty()) {
             rows = new ArrayList<>();
         } else {
-            rows = tracingEventRepository.countDailyByEventTypeByAppAndAppCodes(eventType, rangeStart, rangeEnd, userAppCodes);
+            rows = dailyCounts((from, to) -> tracingEventRepository.countDailyByEventTypeByAppAndAppCodes(eventType, from,
+                    to, userAppCodes), eventType, userAppCodes, startDate, endDate, true);
         }
         Map<String, String> nameByCode = new HashMap<>();
         for (com.krielwus.webtracinganalysis.entity.ApplicationInfo ai : applicationInfoRepository.findAll()) {
@@ -598,9 +1127,8 @@ public class TracingService {
      * 按日统计指定事件类型的总量（全量）。
      */
     public List<Map<String, Object>> aggregateDailyCountByEventType(LocalDate startDate, LocalDate endDate, String eventType) {
-        Date rangeStart = Date.from(startDate.atStartOfDay(ZoneId.systemDefault()).toInstant());
-        Date rangeEnd = Date.from(endDate.plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant());
-        List<Object[]> rows = tracingEventRepository.countDailyByEventType(eventType, rangeStart, rangeEnd);
+        List<Object[]> rows = dailyCounts((from, to) -> tracingEventRepository.countDailyByEventType(eventType, from, to),
+                eventType, null, startDate, endDate, false);
         Map<String, Integer> dayCount = new HashMap<>();
         for (Object[] r : rows) {
             String day = String.valueOf(r[0]);
@@ -622,9 +1150,8 @@ public class TracingService {
      * 按日按应用统计指定事件类型的总量（全量）。
      */
     public List<Map<String, Object>> aggregateDailyCountByEventTypeByApp(LocalDate startDate, LocalDate endDate, String eventType) {
-        Date rangeStart = Date.from(startDate.atStartOfDay(ZoneId.systemDefault()).toInstant());
-        Date rangeEnd = Date.from(endDate.plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant());
-        List<Object[]> rows = tracingEventRepository.countDailyByEventTypeByApp(eventType, rangeStart, rangeEnd);
+        List<Object[]> rows = dailyCounts((from, to) -> tracingEventRepository.countDailyByEventTypeByApp(eventType, from,
+                to), eventType, null, startDate, endDate, true);
         Map<String, String> nameByCode = new HashMap<>();
         for (com.krielwus.webtracinganalysis.entity.ApplicationInfo ai : applicationInfoRepository.findAll()) {
             if (ai.getAppCode() != null && !ai.getAppCode().isEmpty()) {
@@ -821,6 +1348,69 @@ public class TracingService {
         return out;
     }
 
+    /**
+     * 错误聚合分页（指定单个应用），sort 为 lastSeen（默认）或 count。
+     */
+    public Map<String, Object> pageErrorIssuesByApp(String appCode, int pageNo, int pageSize, String severity, String sort) {
+        int p = pageNo < 1 ? 1 : pageNo;
+        int s = pageSize < 1 ? 20 : Math.min(pageSize, 200);
+        Map<String, Object> out = new LinkedHashMap<>();
+        if (appCode == null || appCode.trim().isEmpty()) {
+            out.put("list", Collections.emptyList());
+            out.put("total", 0);
+            out.put("pageNo", 1);
+            out.put("pageSize", 20);
+            return out;
+        }
+        org.springframework.data.domain.Sort order = "count".equalsIgnoreCase(sort)
+                ? org.springframework.data.domain.Sort.by(org.springframework.data.domain.Sort.Direction.DESC, "eventCount")
+                : org.springframework.data.domain.Sort.by(org.springframework.data.domain.Sort.Direction.DESC, "lastSeen");
+        PageRequest page = PageRequest.of(p - 1, s, order);
+        String sev = (severity == null || severity.trim().isEmpty()) ? null : severity.trim().toUpperCase();
+        org.springframework.data.domain.Page<com.krielwus.webtracinganalysis.entity.ErrorIssue> result = sev == null
+                ? errorIssueRepository.findByAppCode(appCode.trim(), page)
+                : errorIssueRepository.findByAppCodeAndSeverity(appCode.trim(), sev, page);
+        List<Map<String, Object>> list = new ArrayList<>();
+        for (com.krielwus.webtracinganalysis.entity.ErrorIssue issue : result.getContent()) {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("ID", issue.getId());
+            m.put("APP_CODE", issue.getAppCode());
+            // 64 位指纹超出前端安全整数范围，以十六进制字符串返回
+            m.put("FINGERPRINT", Long.toHexString(issue.getFingerprint()));
+            m.put("ERROR_CODE", issue.getErrorCode());
+            m.put("MESSAGE", issue.getMessage());
+            m.put("SEVERITY", issue.getSeverity());
+            m.put("FIRST_SEEN", issue.getFirstSeen());
+            m.put("LAST_SEEN", issue.getLastSeen());
+            m.put("COUNT", issue.getEventCount());
+            m.put("SAMPLE_EVENT_ID", issue.getSampleEventId());
+            list.add(m);
+        }
+        out.put("list", list);
+        out.put("total", result.getTotalElements());
+        out.put("pageNo", p);
+        out.put("pageSize", s);
+        return out;
+    }
+
+    /**
+     * 指定错误聚合下的事件分页；fingerprint 为十六进制字符串。
+     */
+    public Map<String, Object> pageErrorsByFingerprint(String appCode, String fingerprint, int pageNo, int pageSize) {
+        int p = pageNo < 1 ? 1 : pageNo;
+        int s = pageSize < 1 ? 20 : Math.min(pageSize, 200);
+        long fp = Long.parseUnsignedLong(fingerprint.trim(), 16);
+        long total = tracingEventRepository.countErrorsByAppCodeAndFingerprint(appCode.trim(), fp);
+        List<Object[]> rows = tracingEventRepository.findErrorPageLiteByAppCodeAndFingerprint(appCode.trim(), fp,
+                PageRequest.of(p - 1, s));
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("list", mapErrorLiteRows(rows));
+        out.put("total", total);
+        out.put("pageNo", p);
+        out.put("pageSize", s);
+        return out;
+    }
+
     public String getErrorPayload(long id) {
         return tracingEventRepository.findErrorPayloadById(id);
     }
@@ -946,9 +1536,8 @@ public class TracingService {
      * 按应用（appCode）统计日期范围内每日 PV 数，并返回 appCode 与 appName。
      */
     public List<Map<String, Object>> aggregateDailyPVByApp(LocalDate startDate, LocalDate endDate) {
-        Date rangeStart = Date.from(startDate.atStartOfDay(ZoneId.systemDefault()).toInstant());
-        Date rangeEnd = Date.from(endDate.plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant());
-        java.util.List<Object[]> rows = tracingEventRepository.countDailyPvByApp(rangeStart, rangeEnd);
+        java.util.List<Object[]> rows = dailyCounts((from, to) -> tracingEventRepository.countDailyPvByApp(from, to),
+                "PV", null, startDate, endDate, true);
         Map<String, String> nameByCode = new HashMap<>();
         for (com.krielwus.webtracinganalysis.entity.ApplicationInfo ai : applicationInfoRepository.findAll()) {
             if (ai.getAppCode() != null && !ai.getAppCode().isEmpty()) {
@@ -983,30 +1572,16 @@ public class TracingService {
     public Map<String, Object> aggregateDailyBaseByApp(String appCode, LocalDate date) {
         Date start = Date.from(date.atStartOfDay(ZoneId.systemDefault()).toInstant());
         Date end = Date.from(date.plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant());
-        java.util.List<BaseInfoRecord> records = baseInfoRecordRepository.findByCreatedAtBetween(start, end);
-        Set<String> users = new HashSet<>();
-        Set<String> devices = new HashSet<>();
-        Set<String> sessions = new HashSet<>();
-        for (BaseInfoRecord r : records) {
-            Map<String, Object> m = fromJson(r.getPayload(), new TypeReference<Map<String, Object>>() {});
-            if (m == null) continue;
-            String code = getString(m, "appCode", "APP_CODE");
-            if (code == null || code.isEmpty() || !code.equals(appCode)) continue;
-            String uid = getString(m, "sdkUserUuid");
-            if (uid != null && !uid.isEmpty()) users.add(uid);
-            String deviceId = getString(m, "deviceId", "DEVICE_ID");
-            if (deviceId != null && !deviceId.isEmpty()) devices.add(deviceId);
-            String sessionId = getString(m, "sessionId", "SESSION_ID");
-            if (sessionId != null && !sessionId.isEmpty()) sessions.add(sessionId);
-        }
+        int[] ids = dailyIdentities(Collections.singleton(appCode), date,
+                () -> baseInfoRecordRepository.countIdentitiesByAppBetween(appCode, start, end));
         int pv = (int) tracingEventRepository.countByEventTypeAndAppCodeAndCreatedAtBetween("PV", appCode, start, end);
         int click = (int) tracingEventRepository.countByEventTypeAndAppCodeAndCreatedAtBetween("CLICK", appCode, start, end);
         int error = (int) tracingEventRepository.countByEventTypeAndAppCodeAndCreatedAtBetween("ERROR", appCode, start, end);
         Map<String, Object> item = new LinkedHashMap<>();
         item.put("DAY_TIME", DF.format(date));
-        item.put("USER_COUNT", users.size());
-        item.put("DEVICE_NUM", devices.size());
-        item.put("SESSION_UNM", sessions.size());
+        item.put("USER_COUNT", ids[1]);
+        item.put("DEVICE_NUM", ids[2]);
+        item.put("SESSION_UNM", ids[3]);
         item.put("CLICK_NUM", click);
         item.put("PV_NUM", pv);
         item.put("ERROR_NUM", error);
@@ -1014,17 +1589,15 @@ public class TracingService {
     }
 
     public Map<String, Object> aggregateAllBaseByApp(String appCode) {
-        Set<String> users = distinctSdkUserUuidsAllByApp(appCode);
-        Set<String> devices = distinctDeviceIdsAllByApp(appCode);
-        Set<String> sessions = distinctSessionIdsAllByApp(appCode);
+        int[] ids = identityCounts(baseInfoRecordRepository.countIdentitiesByApp(appCode));
         int pv = (int) tracingEventRepository.countByEventTypeAndAppCode("PV", appCode);
         int click = (int) tracingEventRepository.countByEventTypeAndAppCode("CLICK", appCode);
         int error = (int) tracingEventRepository.countByEventTypeAndAppCode("ERROR", appCode);
         Map<String, Object> item = new LinkedHashMap<>();
         item.put("APPLICATION_NUM", 1);
-        item.put("USER_COUNT", users.size());
-        item.put("DEVICE_NUM", devices.size());
-        item.put("SESSION_UNM", sessions.size());
+        item.put("USER_COUNT", ids[1]);
+        item.put("DEVICE_NUM", ids[2]);
+        item.put("SESSION_UNM", ids[3]);
         item.put("CLICK_NUM", click);
         item.put("PV_NUM", pv);
         item.put("ERROR_NUM", error);
@@ -1039,17 +1612,10 @@ public class TracingService {
         for (LocalDate d = startDate; !d.isAfter(endDate); d = d.plusDays(1)) {
             Date start = Date.from(d.atStartOfDay(ZoneId.systemDefault()).toInstant());
             Date end = Date.from(d.plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant());
-            java.util.List<BaseInfoRecord> records = baseInfoRecordRepository.findByCreatedAtBetween(start, end);
-            Set<String> users = new HashSet<>();
-            for (BaseInfoRecord r : records) {
-                Map<String, Object> m = fromJson(r.getPayload(), new TypeReference<Map<String, Object>>() {});
-                if (m == null) continue;
-                String uid = getString(m, "sdkUserUuid", "SDK_USER_UUID");
-                if (uid != null && !uid.isEmpty()) users.add(uid);
-            }
+            int[] ids = dailyIdentities(null, d, () -> baseInfoRecordRepository.countIdentitiesBetween(start, end));
             Map<String, Object> row = new LinkedHashMap<>();
             row.put("DATETIME", DF.format(d));
-            row.put("COUNT", users.size());
+            row.put("COUNT", ids[1]);
             out.add(row);
         }
         return out;
@@ -1062,28 +1628,16 @@ public class TracingService {
         Set<String> userAppCodes = getUserAccessibleAppCodes(userId, username);
         List<Map<String, Object>> out = new ArrayList<>();
         for (LocalDate d = startDate; !d.isAfter(endDate); d = d.plusDays(1)) {
-            if (userAppCodes.isEmpty()) {
-                Map<String, Object> row = new LinkedHashMap<>();
-                row.put("DATETIME", DF.format(d));
-                row.put("COUNT", 0);
-                out.add(row);
-                continue;
-            }
-            Date start = Date.from(d.atStartOfDay(ZoneId.systemDefault()).toInstant());
-            Date end = Date.from(d.plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant());
-            java.util.List<BaseInfoRecord> records = baseInfoRecordRepository.findByCreatedAtBetween(start, end);
-            Set<String> users = new HashSet<>();
-            for (BaseInfoRecord r : records) {
-                Map<String, Object> m = fromJson(r.getPayload(), new TypeReference<Map<String, Object>>() {});
-                if (m == null) continue;
-                String appCode = getString(m, "appCode", "APP_CODE");
-                if (appCode == null || !userAppCodes.contains(appCode)) continue;
-                String uid = getString(m, "sdkUserUuid", "SDK_USER_UUID");
-                if (uid != null && !uid.isEmpty()) users.add(uid);
+            int users = 0;
+            if (!userAppCodes.isEmpty()) {
+                Date start = Date.from(d.atStartOfDay(ZoneId.systemDefault()).toInstant());
+                Date end = Date.from(d.plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant());
+                users = dailyIdentities(userAppCodes, d,
+                        () -> baseInfoRecordRepository.countIdentitiesByAppCodesBetween(userAppCodes, start, end))[1];
             }
             Map<String, Object> row = new LinkedHashMap<>();
             row.put("DATETIME", DF.format(d));
-            row.put("COUNT", users.size());
+            row.put("COUNT", users);
             out.add(row);
         }
         return out;
@@ -1093,10 +1647,6 @@ public class TracingService {
      * 按日按应用统计 UV（全量，基于基线表去重 sdkUserUuid）。
      */
     public List<Map<String, Object>> aggregateDailyUVByApp(LocalDate startDate, LocalDate endDate) {
-        Date rangeStart = Date.from(startDate.atStartOfDay(ZoneId.systemDefault()).toInstant());
-        Date rangeEnd = Date.from(endDate.plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant());
-        java.util.List<BaseInfoRecord> records = baseInfoRecordRepository.findByCreatedAtBetween(rangeStart, rangeEnd);
-
         Map<String, String> nameByCode = new HashMap<>();
         for (com.krielwus.webtracinganalysis.entity.ApplicationInfo ai : applicationInfoRepository.findAll()) {
             if (ai.getAppCode() != null && !ai.getAppCode().isEmpty()) {
@@ -1105,35 +1655,9 @@ public class TracingService {
         }
 
         Set<String> allCodes = new HashSet<>();
-        Map<String, Map<String, Set<String>>> dayUserByCode = new HashMap<>();
-        for (BaseInfoRecord r : records) {
-            String day = DF.format(r.getCreatedAt().toInstant().atZone(ZoneId.systemDefault()).toLocalDate());
-            Map<String, Object> m = fromJson(r.getPayload(), new TypeReference<Map<String, Object>>() {});
-            if (m == null) continue;
-            String code = getString(m, "appCode", "APP_CODE");
-            String uid = getString(m, "sdkUserUuid", "SDK_USER_UUID");
-            if (code == null || code.isEmpty() || uid == null || uid.isEmpty()) continue;
-            allCodes.add(code);
-            dayUserByCode
-                    .computeIfAbsent(day, k -> new HashMap<>())
-                    .computeIfAbsent(code, k -> new HashSet<>())
-                    .add(uid);
-        }
-
-        List<Map<String, Object>> out = new ArrayList<>();
-        for (LocalDate d = startDate; !d.isAfter(endDate); d = d.plusDays(1)) {
-            String day = DF.format(d);
-            Map<String, Set<String>> byCode = dayUserByCode.getOrDefault(day, Collections.emptyMap());
-            for (String code : allCodes) {
-                Map<String, Object> row = new LinkedHashMap<>();
-                row.put("APP_CODE", code);
-                row.put("APP_NAME", nameByCode.getOrDefault(code, code));
-                row.put("DATETIME", day);
-                row.put("COUNT", byCode.getOrDefault(code, Collections.emptySet()).size());
-                out.add(row);
-            }
-        }
-        return out;
+        Map<String, Map<String, Integer>> dayUsersByCode = countDailyUsersByApp(startDate, endDate, null);
+        for (Map<String, Integer> byCode : dayUsersByCode.values()) allCodes.addAll(byCode.keySet());
+        return dailyUsersByAppRows(startDate, endDate, allCodes, dayUsersByCode, nameByCode);
     }
 
     /**
@@ -1144,43 +1668,48 @@ public class TracingService {
         if (userAppCodes.isEmpty()) {
             return new ArrayList<>();
         }
-        Date rangeStart = Date.from(startDate.atStartOfDay(ZoneId.systemDefault()).toInstant());
-        Date rangeEnd = Date.from(endDate.plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant());
-        java.util.List<BaseInfoRecord> records = baseInfoRecordRepository.findByCreatedAtBetween(rangeStart, rangeEnd);
-
         Map<String, String> nameByCode = new HashMap<>();
         for (com.krielwus.webtracinganalysis.entity.ApplicationInfo ai : applicationInfoRepository.findAll()) {
             if (ai.getAppCode() != null && !ai.getAppCode().isEmpty() && userAppCodes.contains(ai.getAppCode())) {
                 nameByCode.put(ai.getAppCode(), ai.getAppName() == null ? ai.getAppCode() : ai.getAppName());
             }
         }
+        Map<String, Map<String, Integer>> dayUsersByCode = countDailyUsersByApp(startDate, endDate, userAppCodes);
+        return dailyUsersByAppRows(startDate, endDate, new HashSet<>(userAppCodes), dayUsersByCode, nameByCode);
+    }
 
-        Set<String> allCodes = new HashSet<>(userAppCodes);
-        Map<String, Map<String, Set<String>>> dayUserByCode = new HashMap<>();
-        for (BaseInfoRecord r : records) {
-            String day = DF.format(r.getCreatedAt().toInstant().atZone(ZoneId.systemDefault()).toLocalDate());
-            Map<String, Object> m = fromJson(r.getPayload(), new TypeReference<Map<String, Object>>() {});
-            if (m == null) continue;
-            String code = getString(m, "appCode", "APP_CODE");
-            if (code == null || code.isEmpty() || !userAppCodes.contains(code)) continue;
-            String uid = getString(m, "sdkUserUuid", "SDK_USER_UUID");
-            if (uid == null || uid.isEmpty()) continue;
-            dayUserByCode
-                    .computeIfAbsent(day, k -> new HashMap<>())
-                    .computeIfAbsent(code, k -> new HashSet<>())
-                    .add(uid);
+    /**
+     * 逐日按应用统计去重用户数：day -> appCode -> 用户数；appCodes 非空时只保留其中的应用，仅保留用户数大于 0 的应用。
+     */
+    private Map<String, Map<String, Integer>> countDailyUsersByApp(LocalDate startDate, LocalDate endDate, Set<String> appCodes) {
+        Map<String, Map<String, Integer>> out = new HashMap<>();
+        for (LocalDate d = startDate; !d.isAfter(endDate); d = d.plusDays(1)) {
+            Date start = Date.from(d.atStartOfDay(ZoneId.systemDefault()).toInstant());
+            Date end = Date.from(d.plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant());
+            Map<String, Integer> byCode = new HashMap<>();
+            for (Object[] r : baseInfoRecordRepository.countUsersGroupByAppBetween(start, end)) {
+                String code = (String) r[0];
+                int users = r[1] == null ? 0 : ((Number) r[1]).intValue();
+                if (users == 0 || (appCodes != null && !appCodes.contains(code))) continue;
+                byCode.put(code, users);
+            }
+            out.put(DF.format(d), byCode);
         }
+        return out;
+    }
 
+    private List<Map<String, Object>> dailyUsersByAppRows(LocalDate startDate, LocalDate endDate, Set<String> allCodes,
+            Map<String, Map<String, Integer>> dayUsersByCode, Map<String, String> nameByCode) {
         List<Map<String, Object>> out = new ArrayList<>();
         for (LocalDate d = startDate; !d.isAfter(endDate); d = d.plusDays(1)) {
             String day = DF.format(d);
-            Map<String, Set<String>> byCode = dayUserByCode.getOrDefault(day, Collections.emptyMap());
+            Map<String, Integer> byCode = dayUsersByCode.getOrDefault(day, Collections.emptyMap());
             for (String code : allCodes) {
                 Map<String, Object> row = new LinkedHashMap<>();
                 row.put("APP_CODE", code);
                 row.put("APP_NAME", nameByCode.getOrDefault(code, code));
                 row.put("DATETIME", day);
-                row.put("COUNT", byCode.getOrDefault(code, Collections.emptySet()).size());
+                row.put("COUNT", byCode.getOrDefault(code, 0));
                 out.add(row);
             }
         }
@@ -1197,20 +1726,12 @@ public class TracingService {
         for (LocalDate d = startDate; !d.isAfter(endDate); d = d.plusDays(1)) {
             Date start = Date.from(d.atStartOfDay(ZoneId.systemDefault()).toInstant());
             Date end = Date.from(d.plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant());
-            java.util.List<BaseInfoRecord> records = baseInfoRecordRepository.findByCreatedAtBetween(start, end);
-            Set<String> users = new HashSet<>();
-            for (BaseInfoRecord r : records) {
-                Map<String, Object> m = fromJson(r.getPayload(), new TypeReference<Map<String, Object>>() {});
-                if (m == null) continue;
-                String code = getString(m, "appCode", "APP_CODE");
-                if (code == null || !trimmed.equals(code)) continue;
-                String uid = getString(m, "sdkUserUuid", "SDK_USER_UUID");
-                if (uid != null && !uid.isEmpty()) users.add(uid);
-            }
+            int[] ids = dailyIdentities(Collections.singleton(trimmed), d,
+                    () -> baseInfoRecordRepository.countIdentitiesByAppBetween(trimmed, start, end));
             Map<String, Object> row = new LinkedHashMap<>();
             row.put("APP_CODE", trimmed);
             row.put("DATETIME", DF.format(d));
-            row.put("COUNT", users.size());
+            row.put("COUNT", ids[1]);
             out.add(row);
         }
         return out;
@@ -1221,7 +1742,7 @@ public class TracingService {
         for (LocalDate d = startDate; !d.isAfter(endDate); d = d.plusDays(1)) {
             Date start = Date.from(d.atStartOfDay(ZoneId.systemDefault()).toInstant());
             Date end = Date.from(d.plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant());
-            int pv = (int) tracingEventRepository.countByEventTypeAndAppCodeAndCreatedAtBetween("PV", appCode, start, end);
+            int pv = weightedCountForApp("PV", appCode, d, start, end);
             Map<String, Object> row = new LinkedHashMap<>();
             row.put("APP_CODE", appCode);
             row.put("DATETIME", DF.format(d));
@@ -1236,8 +1757,7 @@ public class TracingService {
         for (LocalDate d = startDate; !d.isAfter(endDate); d = d.plusDays(1)) {
             Date start = Date.from(d.atStartOfDay(ZoneId.systemDefault()).toInstant());
             Date end = Date.from(d.plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant());
-            int cnt = (int) tracingEventRepository.countByEventTypeAndAppCodeAndCreatedAtBetween("ERROR", appCode,
-                    start, end);
+            int cnt = weightedCountForApp("ERROR", appCode, d, start, end);
             Map<String, Object> row = new LinkedHashMap<>();
             row.put("APP_CODE", appCode);
             row.put("DATETIME", DF.format(d));
@@ -1252,8 +1772,7 @@ public class TracingService {
         for (LocalDate d = startDate; !d.isAfter(endDate); d = d.plusDays(1)) {
             Date start = Date.from(d.atStartOfDay(ZoneId.systemDefault()).toInstant());
             Date end = Date.from(d.plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant());
-            int cnt = (int) tracingEventRepository.countByEventTypeAndAppCodeAndCreatedAtBetween("CLICK", appCode,
-                    start, end);
+            int cnt = weightedCountForApp("CLICK", appCode, d, start, end);
             Map<String, Object> row = new LinkedHashMap<>();
             row.put("APP_CODE", appCode);
             row.put("DATETIME", DF.format(d));
@@ -1270,20 +1789,12 @@ public class TracingService {
         for (LocalDate d = startDate; !d.isAfter(endDate); d = d.plusDays(1)) {
             Date start = Date.from(d.atStartOfDay(ZoneId.systemDefault()).toInstant());
             Date end = Date.from(d.plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant());
-            java.util.List<BaseInfoRecord> records = baseInfoRecordRepository.findByCreatedAtBetween(start, end);
-            Set<String> devices = new HashSet<>();
-            for (BaseInfoRecord r : records) {
-                Map<String, Object> m = fromJson(r.getPayload(), new TypeReference<Map<String, Object>>() {});
-                if (m == null) continue;
-                String code = getString(m, "appCode", "APP_CODE");
-                if (code == null || !trimmed.equals(code)) continue;
-                String did = getString(m, "deviceId", "DEVICE_ID");
-                if (did != null && !did.isEmpty()) devices.add(did);
-            }
+            int[] ids = dailyIdentities(Collections.singleton(trimmed), d,
+                    () -> baseInfoRecordRepository.countIdentitiesByAppBetween(trimmed, start, end));
             Map<String, Object> row = new LinkedHashMap<>();
             row.put("APP_CODE", trimmed);
             row.put("DATETIME", DF.format(d));
-            row.put("COUNT", devices.size());
+            row.put("COUNT", ids[2]);
             out.add(row);
         }
         return out;
@@ -1296,29 +1807,105 @@ public class TracingService {
         for (LocalDate d = startDate; !d.isAfter(endDate); d = d.plusDays(1)) {
             Date start = Date.from(d.atStartOfDay(ZoneId.systemDefault()).toInstant());
             Date end = Date.from(d.plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant());
-            java.util.List<BaseInfoRecord> records = baseInfoRecordRepository.findByCreatedAtBetween(start, end);
-            Set<String> sessions = new HashSet<>();
-            for (BaseInfoRecord r : records) {
-                Map<String, Object> m = fromJson(r.getPayload(), new TypeReference<Map<String, Object>>() {});
-                if (m == null) continue;
-                String code = getString(m, "appCode", "APP_CODE");
-                if (code == null || !trimmed.equals(code)) continue;
-                String sid = getString(m, "sessionId", "SESSION_ID");
-                if (sid != null && !sid.isEmpty()) sessions.add(sid);
-            }
+            int[] ids = dailyIdentities(Collections.singleton(trimmed), d,
+                    () -> baseInfoRecordRepository.countIdentitiesByAppBetween(trimmed, start, end));
             Map<String, Object> row = new LinkedHashMap<>();
             row.put("APP_CODE", trimmed);
             row.put("DATETIME", DF.format(d));
-            row.put("COUNT", sessions.size());
+            row.put("COUNT", ids[3]);
             out.add(row);
         }
         return out;
     }
 
+    /** 单个应用单日的加权事件数；嵌入式存储覆盖该日时从存储读取，已归档的日期从归档读取 */
+    private int weightedCountForApp(String eventType, String appCode, LocalDate d, Date start, Date end) {
+        if (analyticsStore.covers(d)) {
+            return (int) analyticsStore.weightedCount(eventType, appCode, d);
+        }
+        if (eventArchive.isArchived(EventArchive.TRACE_EVENT, d)) {
+            return (int) eventArchive.sumWeighted(eventType, appCode, d);
+        }
+        return (int) tracingEventRepository.sumWeightedByEventTypeAndAppCodeBetween(eventType, appCode, start, end);
+    }
+
+    /**
+     * 按日统计行（query 以 [from, to) 时间区间查库）：嵌入式存储覆盖的日期由存储计算，
+     * 覆盖起始之前的日期查库并追加归档中的行（已归档的日期在库中已无数据，两部分按天不重叠）。
+     */
+    private List<Object[]> dailyCounts(java.util.function.BiFunction<Date, Date, List<Object[]>> query, String eventType,
+            Set<String> appCodes, LocalDate startDate, LocalDate endDate, boolean byApp) {
+        LocalDate covered = analyticsStore.coverageStart();
+        List<Object[]> out = new ArrayList<>();
+        LocalDate dbEnd = endDate;
+        if (covered != null && !covered.isAfter(endDate)) {
+            LocalDate from = covered.isAfter(startDate) ? covered : startDate;
+            out.addAll(analyticsStore.countDaily(eventType, appCodes, from, endDate, byApp));
+            dbEnd = from.minusDays(1);
+        }
+        if (dbEnd.isBefore(startDate)) return out;
+        out.addAll(query.apply(Date.from(startDate.atStartOfDay(ZoneId.systemDefault()).toInstant()),
+                Date.from(dbEnd.plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant())));
+        if (eventArchive.hasArchived(EventArchive.TRACE_EVENT, startDate, dbEnd)) {
+            out.addAll(eventArchive.countDaily(eventType, appCodes, startDate, dbEnd, byApp));
+        }
+        return out;
+    }
+
+    /**
+     * 单日某事件类型的加权数量，与 dailyIdentities 走同一后端（存储覆盖该日时均由存储计算），
+     * 同一响应中的计数与去重数来自同一份数据。appCodes 为空表示全部应用。
+     */
+    private int dailyEventCount(String eventType, Set<String> appCodes, LocalDate d) {
+        List<Object[]> rows = appCodes == null
+                ? dailyCounts((from, to) -> tracingEventRepository.countDailyByEventType(eventType, from, to),
+                        eventType, null, d, d, false)
+                : dailyCounts((from, to) -> tracingEventRepository.countDailyByEventTypeAndAppCodes(eventType, from, to,
+                        appCodes), eventType, appCodes, d, d, false);
+        long total = 0;
+        for (Object[] r : rows) total += ((Number) r[1]).longValue();
+        return (int) total;
+    }
+
+    /**
+     * 单日标识去重计数 [apps, users, devices, sessions]；嵌入式存储覆盖该日时按事件中的标识计算，否则按基线表计算。
+     * appCodes 为空表示全部应用。
+     */
+    private int[] dailyIdentities(Set<String> appCodes, LocalDate d, java.util.function.Supplier<List<Object[]>> query) {
+        if (analyticsStore.covers(d)) return analyticsStore.identityCounts(appCodes, d, d);
+        return identityCounts(query.get());
+    }
+
+    /**
+     * 合并库内与归档的路由访问量并按 PV 倒序：库内按路由、会话、用户分组的行并入归档的累加器，
+     * 会话与用户在整个区间内去重，跨归档边界活跃的只计一次。
+     */
+    static List<Object[]> mergeRoutePv(List<Object[]> groups, Map<String, EventArchive.RouteVisits> archived) {
+        for (Object[] r : groups) {
+            archived.computeIfAbsent(String.valueOf(r[0]), k -> new EventArchive.RouteVisits())
+                    .add(((Number) r[3]).doubleValue(), (String) r[1], (String) r[2]);
+        }
+        List<Object[]> out = EventArchive.routePvRows(archived);
+        out.sort((a, b) -> Long.compare((Long) b[1], (Long) a[1]));
+        return out;
+    }
+
     public List<Map<String, Object>> aggregatePagePVForApp(LocalDate startDate, LocalDate endDate, String appCode) {
         Date start = Date.from(startDate.atStartOfDay(ZoneId.systemDefault()).toInstant());
         Date end = Date.from(endDate.plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant());
-        java.util.List<Object[]> rows = pageViewRouteRepository.countRoutePvForAppBetween(appCode, start, end);
+        // 会话与用户数需要在整个区间内去重，只有存储覆盖整个区间时才由存储计算
+        if (analyticsStore.covers(startDate)) {
+            return routePvRows(analyticsStore.countRoutePv(appCode, startDate, endDate));
+        }
+        if (eventArchive.hasArchived(EventArchive.PAGE_VIEW_ROUTE, startDate, endDate)) {
+            return routePvRows(mergeRoutePv(
+                    pageViewRouteRepository.sumRoutePvBySessionAndUserForAppBetween(appCode, start, end),
+                    eventArchive.routeVisits(appCode, startDate, endDate)));
+        }
+        return routePvRows(pageViewRouteRepository.countRoutePvForAppBetween(appCode, start, end));
+    }
+
+    private static List<Map<String, Object>> routePvRows(List<Object[]> rows) {
         java.util.List<Map<String, Object>> out = new java.util.ArrayList<>();
         for (Object[] r : rows) {
             Map<String, Object> row = new LinkedHashMap<>();
@@ -1402,20 +1989,15 @@ public class TracingService {
                 PageRequest.of(0, limit));
         if (sessionIds.isEmpty())
             return Collections.emptyList();
-        List<com.krielwus.webtracinganalysis.entity.PageViewRoute> rows = pageViewRouteRepository
-                .findByAppCodeAndSessionIdsBetweenOrdered(appCode.trim(), sessionIds, start, end);
-        Map<String, List<com.krielwus.webtracinganalysis.entity.PageViewRoute>> bySession = new LinkedHashMap<>();
-        for (com.krielwus.webtracinganalysis.entity.PageViewRoute r : rows) {
-            if (r.getSessionId() == null || r.getSessionId().isEmpty())
-                continue;
-            bySession.computeIfAbsent(r.getSessionId(), k -> new ArrayList<>()).add(r);
-        }
+        Map<String, List<com.krielwus.webtracinganalysis.entity.PageViewRoute>> bySession = loadSessionRoutes(
+                appCode.trim(), sessionIds, start, end, false);
+        RouteContext ctx = new RouteContext(ignore);
         List<Map<String, Object>> out = new ArrayList<>();
         for (String sid : sessionIds) {
             List<com.krielwus.webtracinganalysis.entity.PageViewRoute> list = bySession.get(sid);
             if (list == null || list.isEmpty())
                 continue;
-            List<SessionStep> steps = buildSessionSteps(list, collapse, minStay, ignore, depth);
+            List<SessionStep> steps = buildSessionSteps(list, collapse, minStay, ctx, depth);
             if (steps.isEmpty())
                 continue;
             com.krielwus.webtracinganalysis.entity.PageViewRoute first = list.get(0);
@@ -1467,7 +2049,7 @@ public class TracingService {
                         start, end);
         if (rows.isEmpty())
             return Collections.emptyList();
-        List<SessionStep> steps = buildSessionSteps(rows, collapse, minStay, ignore, depth);
+        List<SessionStep> steps = buildSessionSteps(rows, collapse, minStay, new RouteContext(ignore), depth);
         List<Map<String, Object>> out = new ArrayList<>();
         for (SessionStep s : steps) {
             Map<String, Object> m = new LinkedHashMap<>();
@@ -1534,20 +2116,16 @@ public class TracingService {
             out.put("sessionCount", 0);
             return out;
         }
-        List<com.krielwus.webtracinganalysis.entity.PageViewRoute> rows = pageViewRouteRepository
-                .findByAppCodeAndSessionIdsBetweenOrdered(appCode.trim(), sessionIds, start, end);
-        Map<String, List<com.krielwus.webtracinganalysis.entity.PageViewRoute>> bySession = new LinkedHashMap<>();
-        for (com.krielwus.webtracinganalysis.entity.PageViewRoute r : rows) {
-            if (r.getSessionId() == null || r.getSessionId().isEmpty())
-                continue;
-            bySession.computeIfAbsent(r.getSessionId(), k -> new ArrayList<>()).add(r);
-        }
 
         String startRoute = (startRoutePath == null || startRoutePath.trim().isEmpty()) ? null : startRoutePath.trim();
         String groupMode = (groupBy == null) ? "NONE" : groupBy.trim().toUpperCase(Locale.ROOT);
         if (!"USER".equals(groupMode) && !"PARAM".equals(groupMode))
             groupMode = "NONE";
         String groupParam = (groupParamName == null || groupParamName.trim().isEmpty()) ? null : groupParamName.trim();
+        // 只有按参数分组时才需要 route_params，其余情况走不含大字段的投影查询
+        Map<String, List<com.krielwus.webtracinganalysis.entity.PageViewRoute>> bySession = loadSessionRoutes(
+                appCode.trim(), sessionIds, start, end, "PARAM".equals(groupMode));
+        RouteContext ctx = new RouteContext(ignore);
 
         Map<String, GroupAgg> groupAgg = new HashMap<>();
         long sessionsUsedTotal = 0;
@@ -1555,10 +2133,10 @@ public class TracingService {
             List<com.krielwus.webtracinganalysis.entity.PageViewRoute> list = bySession.get(sid);
             if (list == null || list.isEmpty())
                 continue;
-            List<SessionStep> rawSteps = buildSessionSteps(list, collapse, minStay, ignore, 1000);
+            List<SessionStep> rawSteps = buildSessionSteps(list, collapse, minStay, ctx, 1000);
             if (rawSteps.isEmpty())
                 continue;
-            List<SessionStep> steps = applyStartRouteAndDepth(rawSteps, startRoute, depth);
+            List<SessionStep> steps = applyStartRouteAndDepth(rawSteps, ctx.lookup(startRoute), depth);
             if (steps.isEmpty())
                 continue;
             sessionsUsedTotal++;
@@ -1577,15 +2155,14 @@ public class TracingService {
 
             GroupAgg agg = groupAgg.computeIfAbsent(gk, k -> new GroupAgg());
             agg.sessionsUsed++;
-            List<String> routeSeq = steps.stream().map(s -> s.routePath).collect(java.util.stream.Collectors.toList());
-            String key = String.join(" -> ", routeSeq);
-            agg.pathCount.put(key, agg.pathCount.getOrDefault(key, 0L) + 1L);
-            agg.sampleSession.putIfAbsent(key, sid);
-            for (int i = 0; i < routeSeq.size(); i++) {
-                String route = routeSeq.get(i);
-                agg.funnel.computeIfAbsent(i + 1, k -> new HashMap<>()).put(route,
-                        agg.funnel.getOrDefault(i + 1, Collections.emptyMap()).getOrDefault(route, 0L) + 1L);
+            int[] ids = new int[steps.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = steps.get(i).routeId;
+                agg.funnel.computeIfAbsent(i + 1, k -> new HashMap<>()).merge(ids[i], 1L, Long::sum);
             }
+            RouteSeq key = new RouteSeq(ids);
+            agg.pathCount.merge(key, 1L, Long::sum);
+            agg.sampleSession.putIfAbsent(key, sid);
         }
 
         List<Map<String, Object>> groups = new ArrayList<>();
@@ -1598,12 +2175,12 @@ public class TracingService {
             GroupAgg agg = ge.getValue();
 
             List<Map<String, Object>> topPaths = new ArrayList<>();
-            List<Map.Entry<String, Long>> pathEntries = new ArrayList<>(agg.pathCount.entrySet());
+            List<Map.Entry<RouteSeq, Long>> pathEntries = new ArrayList<>(agg.pathCount.entrySet());
             pathEntries.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
             for (int i = 0; i < Math.min(n, pathEntries.size()); i++) {
-                Map.Entry<String, Long> en = pathEntries.get(i);
+                Map.Entry<RouteSeq, Long> en = pathEntries.get(i);
                 Map<String, Object> m = new LinkedHashMap<>();
-                m.put("PATH", en.getKey());
+                m.put("PATH", ctx.join(en.getKey().ids));
                 m.put("COUNT", en.getValue());
                 m.put("PCT", agg.sessionsUsed <= 0 ? 0 : (double) en.getValue() * 100.0 / (double) agg.sessionsUsed);
                 m.put("SAMPLE_SESSION_ID", agg.sampleSession.get(en.getKey()));
@@ -1614,17 +2191,17 @@ public class TracingService {
             List<Integer> stepsIdx = new ArrayList<>(agg.funnel.keySet());
             Collections.sort(stepsIdx);
             for (Integer stepIndex : stepsIdx) {
-                Map<String, Long> mp = agg.funnel.get(stepIndex);
+                Map<Integer, Long> mp = agg.funnel.get(stepIndex);
                 if (mp == null)
                     continue;
-                List<Map.Entry<String, Long>> ents = new ArrayList<>(mp.entrySet());
+                List<Map.Entry<Integer, Long>> ents = new ArrayList<>(mp.entrySet());
                 ents.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
                 int take = Math.min(10, ents.size());
                 for (int i = 0; i < take; i++) {
-                    Map.Entry<String, Long> en = ents.get(i);
+                    Map.Entry<Integer, Long> en = ents.get(i);
                     Map<String, Object> m = new LinkedHashMap<>();
                     m.put("STEP", stepIndex);
-                    m.put("ROUTE_PATH", en.getKey());
+                    m.put("ROUTE_PATH", ctx.name(en.getKey()));
                     m.put("COUNT", en.getValue());
                     funnelOut.add(m);
                 }
@@ -1659,19 +2236,44 @@ public class TracingService {
 
     private static class GroupAgg {
         private long sessionsUsed = 0;
-        private final Map<String, Long> pathCount = new HashMap<>();
-        private final Map<String, String> sampleSession = new HashMap<>();
-        private final Map<Integer, Map<String, Long>> funnel = new HashMap<>();
+        private final Map<RouteSeq, Long> pathCount = new HashMap<>();
+        private final Map<RouteSeq, String> sampleSession = new HashMap<>();
+        private final Map<Integer, Map<Integer, Long>> funnel = new HashMap<>();
     }
 
-    private List<SessionStep> applyStartRouteAndDepth(List<SessionStep> steps, String startRoutePath, int maxDepth) {
+    /** 以路由 ID 序列作为路径计数键 */
+    private static final class RouteSeq {
+        private final int[] ids;
+        private final int hash;
+
+        private RouteSeq(int[] ids) {
+            this.ids = ids;
+            this.hash = Arrays.hashCode(ids);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof RouteSeq && Arrays.equals(ids, ((RouteSeq) o).ids);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * 截取从起始路由开始、不超过 maxDepth 的步骤。
+     * startRouteId 为 null 表示不限定起点；为 0 表示起点路由在本次数据中不存在。
+     */
+    private List<SessionStep> applyStartRouteAndDepth(List<SessionStep> steps, Integer startRouteId, int maxDepth) {
         if (steps == null || steps.isEmpty())
             return Collections.emptyList();
         List<SessionStep> sliced = steps;
-        if (startRoutePath != null && !startRoutePath.isEmpty()) {
+        if (startRouteId != null) {
             int idx = -1;
             for (int i = 0; i < steps.size(); i++) {
-                if (startRoutePath.equals(steps.get(i).routePath)) {
+                if (steps.get(i).routeId == startRouteId) {
                     idx = i;
                     break;
                 }
@@ -1690,7 +2292,8 @@ public class TracingService {
                 long d = cut.get(i + 1).createdAt.getTime() - s.createdAt.getTime();
                 duration = Math.max(0, d);
             }
-            out.add(new SessionStep(s.createdAt, s.routePath, s.routeType, s.routeParams, s.fullUrl, duration));
+            out.add(new SessionStep(s.createdAt, s.routeId, s.routePath, s.routeType, s.routeParams, s.fullUrl,
+                    duration));
         }
         return out;
     }
@@ -1732,75 +2335,89 @@ public class TracingService {
                 PageRequest.of(0, limit));
         if (sessionIds.isEmpty())
             return out;
-        List<com.krielwus.webtracinganalysis.entity.PageViewRoute> rows = pageViewRouteRepository
-                .findByAppCodeAndSessionIdsBetweenOrdered(appCode.trim(), sessionIds, start, end);
-        Map<String, List<com.krielwus.webtracinganalysis.entity.PageViewRoute>> bySession = new LinkedHashMap<>();
-        for (com.krielwus.webtracinganalysis.entity.PageViewRoute r : rows) {
-            if (r.getSessionId() == null || r.getSessionId().isEmpty())
-                continue;
-            bySession.computeIfAbsent(r.getSessionId(), k -> new ArrayList<>()).add(r);
-        }
-        Map<String, Integer> nodeIndex = new LinkedHashMap<>();
+        Map<String, List<com.krielwus.webtracinganalysis.entity.PageViewRoute>> bySession = loadSessionRoutes(
+                appCode.trim(), sessionIds, start, end, false);
+        RouteContext ctx = new RouteContext(ignoreRoutePatterns);
         List<Map<String, Object>> nodes = new ArrayList<>();
-        Map<String, Long> linkCount = new HashMap<>();
+        Map<Link, Long> linkCount = new LinkedHashMap<>();
         for (String sid : sessionIds) {
             List<com.krielwus.webtracinganalysis.entity.PageViewRoute> list = bySession.get(sid);
             if (list == null || list.isEmpty())
                 continue;
-            List<SessionStep> steps = buildSessionSteps(list, collapse, minStay, ignoreRoutePatterns, 1000);
+            List<SessionStep> steps = buildSessionSteps(list, collapse, minStay, ctx, 1000);
             if (steps.isEmpty())
                 continue;
-            List<SessionStep> sliced = applyStartRouteAndDepth(steps, startRoutePath, depth);
+            String startRoute = (startRoutePath == null || startRoutePath.isEmpty()) ? null : startRoutePath;
+            List<SessionStep> sliced = applyStartRouteAndDepth(steps, ctx.lookup(startRoute), depth);
             if (sliced.isEmpty())
                 continue;
             for (int i = 0; i < sliced.size() - 1; i++) {
-                String a = i + ":" + sliced.get(i).routePath;
-                String b = (i + 1) + ":" + sliced.get(i + 1).routePath;
-                if (sliced.get(i).routePath == null || sliced.get(i).routePath.isEmpty() || 
-                    sliced.get(i + 1).routePath == null || sliced.get(i + 1).routePath.isEmpty())
-                    continue;
-                String key = a + "||" + b;
-                linkCount.put(key, linkCount.getOrDefault(key, 0L) + 1L);
+                linkCount.merge(new Link(i, sliced.get(i).routeId, sliced.get(i + 1).routeId), 1L, Long::sum);
             }
         }
         Set<String> allNodes = new LinkedHashSet<>();
-        for (String k : linkCount.keySet()) {
-            String[] ab = k.split("\\|\\|");
-            allNodes.add(ab[0]);
-            allNodes.add(ab[1]);
+        List<Map<String, Object>> links = new ArrayList<>();
+        for (Map.Entry<Link, Long> en : linkCount.entrySet()) {
+            Link k = en.getKey();
+            String a = k.step + ":" + ctx.name(k.from);
+            String b = (k.step + 1) + ":" + ctx.name(k.to);
+            allNodes.add(a);
+            allNodes.add(b);
+            Map<String, Object> l = new LinkedHashMap<>();
+            l.put("source", a);
+            l.put("target", b);
+            l.put("value", en.getValue());
+            links.add(l);
         }
-        int idx = 0;
         for (String name : allNodes) {
-            nodeIndex.put(name, idx++);
             Map<String, Object> n = new LinkedHashMap<>();
             n.put("name", name);
             nodes.add(n);
         }
-        List<Map<String, Object>> links = new ArrayList<>();
-        for (Map.Entry<String, Long> en : linkCount.entrySet()) {
-            String[] ab = en.getKey().split("\\|\\|");
-            Map<String, Object> l = new LinkedHashMap<>();
-            l.put("source", ab[0]);
-            l.put("target", ab[1]);
-            l.put("value", en.getValue());
-            links.add(l);
-        }
         out.put("nodes", nodes);
         out.put("links", links);
         return out;
     }
 
+    /** 桑基图连线：第 step 步从 from 路由到 to 路由 */
+    private static final class Link {
+        private final int step;
+        private final int from;
+        private final int to;
+
+        private Link(int step, int from, int to) {
+            this.step = step;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Link))
+                return false;
+            Link l = (Link) o;
+            return step == l.step && from == l.from && to == l.to;
+        }
+
+        @Override
+        public int hashCode() {
+            return (step * 31 + from) * 31 + to;
+        }
+    }
+
     private static class SessionStep {
         private final Date createdAt;
+        private final int routeId;
         private final String routePath;
         private final String routeType;
         private final String routeParams;
         private final String fullUrl;
         private final Long durationMs;
 
-        private SessionStep(Date createdAt, String routePath, String routeType, String routeParams, String fullUrl,
-                Long durationMs) {
+        private SessionStep(Date createdAt, int routeId, String routePath, String routeType, String routeParams,
+                String fullUrl, Long durationMs) {
             this.createdAt = createdAt;
+            this.routeId = routeId;
             this.routePath = routePath;
             this.routeType = routeType;
             this.routeParams = routeParams;
@@ -1812,58 +2429,33 @@ public class TracingService {
     private List<SessionStep> buildSessionSteps(List<com.krielwus.webtracinganalysis.entity.PageViewRoute> rows,
             boolean collapseConsecutiveDuplicates,
             long minStayMs,
-            List<String> ignoreRoutePatterns,
+            RouteContext ctx,
             int maxDepth) {
-        List<java.util.regex.Pattern> patterns = new ArrayList<>();
-        if (ignoreRoutePatterns != null) {
-            for (String p : ignoreRoutePatterns) {
-                if (p == null || p.trim().isEmpty())
-                    continue;
-                try {
-                    patterns.add(java.util.regex.Pattern.compile(p.trim()));
-                } catch (Exception ignore) {
-                }
-            }
-        }
         List<com.krielwus.webtracinganalysis.entity.PageViewRoute> filtered = new ArrayList<>();
+        List<Integer> filteredIds = new ArrayList<>();
         for (com.krielwus.webtracinganalysis.entity.PageViewRoute r : rows) {
-            String path = r.getRoutePath();
-            if (path == null || path.isEmpty())
+            int id = ctx.idOf(r);
+            if (id == 0 || ctx.isIgnored(id))
                 continue;
-            boolean ignored = false;
-            for (java.util.regex.Pattern pt : patterns) {
-                if (pt.matcher(path).find()) {
-                    ignored = true;
-                    break;
-                }
-            }
-            if (!ignored)
-                filtered.add(r);
+            filtered.add(r);
+            filteredIds.add(id);
         }
         if (filtered.isEmpty())
             return Collections.emptyList();
 
         List<com.krielwus.webtracinganalysis.entity.PageViewRoute> collapsed = new ArrayList<>();
-        com.krielwus.webtracinganalysis.entity.PageViewRoute last = null;
-        for (com.krielwus.webtracinganalysis.entity.PageViewRoute r : filtered) {
-            if (!collapseConsecutiveDuplicates) {
-                collapsed.add(r);
-                continue;
-            }
-            if (last == null) {
-                collapsed.add(r);
-                last = r;
-                continue;
-            }
-            String cur = r.getRoutePath();
-            String prev = last.getRoutePath();
-            if (cur != null && cur.equals(prev)) {
+        Map<com.krielwus.webtracinganalysis.entity.PageViewRoute, Integer> idByRow = new IdentityHashMap<>();
+        int lastId = 0;
+        for (int i = 0; i < filtered.size(); i++) {
+            com.krielwus.webtracinganalysis.entity.PageViewRoute r = filtered.get(i);
+            int id = filteredIds.get(i);
+            idByRow.put(r, id);
+            if (collapseConsecutiveDuplicates && lastId != 0 && id == lastId) {
                 collapsed.set(collapsed.size() - 1, r);
-                last = r;
             } else {
                 collapsed.add(r);
-                last = r;
             }
+            lastId = id;
         }
 
         if (collapsed.isEmpty())
@@ -1908,12 +2500,121 @@ public class TracingService {
                 long d = cut.get(i + 1).getCreatedAt().getTime() - r.getCreatedAt().getTime();
                 duration = Math.max(0, d);
             }
-            out.add(new SessionStep(r.getCreatedAt(), r.getRoutePath(), r.getRouteType(), r.getRouteParams(),
+            int id = idByRow.get(r);
+            out.add(new SessionStep(r.getCreatedAt(), id, ctx.name(id), r.getRouteType(), r.getRouteParams(),
                     r.getFullUrl(), duration));
         }
         return out;
     }
 
+    /**
+     * 读取会话的路由记录并按会话分组（保持时间顺序）。
+     * withParams 为 false 时走投影查询，不加载 route_params/full_url 大字段。
+     */
+    private Map<String, List<com.krielwus.webtracinganalysis.entity.PageViewRoute>> loadSessionRoutes(String appCode,
+            List<String> sessionIds, Date start, Date end, boolean withParams) {
+        List<com.krielwus.webtracinganalysis.entity.PageViewRoute> rows;
+        if (withParams) {
+            rows = pageViewRouteRepository.findByAppCodeAndSessionIdsBetweenOrdered(appCode, sessionIds, start, end);
+        } else {
+            List<Object[]> raw = pageViewRouteRepository.findRouteStepsBySessionIds(appCode, sessionIds, start, end);
+            rows = new ArrayList<>(raw.size());
+            for (Object[] o : raw) {
+                com.krielwus.webtracinganalysis.entity.PageViewRoute r = new com.krielwus.webtracinganalysis.entity.PageViewRoute();
+                r.setAppCode(appCode);
+                r.setSessionId((String) o[0]);
+                r.setRoutePath((String) o[1]);
+                r.setCreatedAt((Date) o[2]);
+                r.setSdkUserUuid((String) o[3]);
+                r.setDeviceId((String) o[4]);
+                r.setRouteType((String) o[5]);
+                rows.add(r);
+            }
+        }
+        Map<String, List<com.krielwus.webtracinganalysis.entity.PageViewRoute>> bySession = new LinkedHashMap<>();
+        for (com.krielwus.webtracinganalysis.entity.PageViewRoute r : rows) {
+            if (r.getSessionId() == null || r.getSessionId().isEmpty())
+                continue;
+            bySession.computeIfAbsent(r.getSessionId(), k -> new ArrayList<>()).add(r);
+        }
+        return bySession;
+    }
+
+    /**
+     * 单次会话路径分析内的路由 ID 上下文。
+     * 路由为高基数取值，不进字符串字典，按路径在本次分析内分配从 1 开始的局部 ID；
+     * 同一路径在上下文内只对应一个 ID。忽略规则按 ID 缓存，聚合过程只比较 int，输出时再还原路径。
+     */
+    private static final class RouteContext {
+        private final List<java.util.regex.Pattern> patterns = new ArrayList<>();
+        private final Map<Integer, String> names = new HashMap<>();
+        private final Map<String, Integer> byPath = new HashMap<>();
+        private final Map<Integer, Boolean> ignored = new HashMap<>();
+        private int nextLocalId;
+
+        private RouteContext(List<String> ignoreRoutePatterns) {
+            if (ignoreRoutePatterns != null) {
+                for (String p : ignoreRoutePatterns) {
+                    if (p == null || p.trim().isEmpty())
+                        continue;
+                    try {
+                        patterns.add(java.util.regex.Pattern.compile(p.trim()));
+                    } catch (Exception ignore) {
+                    }
+                }
+            }
+        }
+
+        /** 行对应的路由 ID，路径为空时返回 0 */
+        private int idOf(com.krielwus.webtracinganalysis.entity.PageViewRoute r) {
+            String path = r.getRoutePath();
+            if (path == null || path.isEmpty())
+                return 0;
+            Integer known = byPath.get(path);
+            if (known != null)
+                return known;
+            int id = ++nextLocalId;
+            byPath.put(path, id);
+            names.put(id, path);
+            return id;
+        }
+
+        /** 已出现过的路径的 ID；path 为 null 返回 null，未出现过返回 0 */
+        private Integer lookup(String path) {
+            if (path == null)
+                return null;
+            Integer id = byPath.get(path);
+            return id == null ? 0 : id;
+        }
+
+        private boolean isIgnored(int id) {
+            if (patterns.isEmpty())
+                return false;
+            return ignored.computeIfAbsent(id, k -> {
+                String path = names.get(k);
+                for (java.util.regex.Pattern pt : patterns) {
+                    if (pt.matcher(path).find())
+                        return true;
+                }
+                return false;
+            });
+        }
+
+        private String name(int id) {
+            return names.get(id);
+        }
+
+        private String join(int[] ids) {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < ids.length; i++) {
+                if (i > 0)
+                    sb.append(" -> ");
+                sb.append(names.get(ids[i]));
+            }
+            return sb.toString();
+        }
+    }
+
     /** 将事件载荷解析为 Map */
     private Map<String, Object> parsePayload(TracingEvent e) {
         return fromJson(e.getPayload(), new TypeReference<Map<String, Object>>() {});
@@ -2037,218 +2738,17 @@ public class TracingService {
         return toJson(map);
     }
 
-    private Set<String> distinctAppCodesRange(Date start, Date end) {
-        List<BaseInfoRecord> records = baseInfoRecordRepository.findByCreatedAtBetween(start, end);
-        Set<String> set = new HashSet<>();
-        for (BaseInfoRecord r : records) {
-            Map<String, Object> m = fromJson(r.getPayload(), new TypeReference<Map<String, Object>>() {});
-            String appCode = getString(m, "appCode", "APP_CODE");
-            if (appCode != null && !appCode.isEmpty()) set.add(appCode);
-        }
-        return set;
-    }
-
-    private Set<String> distinctDeviceIdsRangeByApp(Date start, Date end, String appCode) {
-        List<BaseInfoRecord> records = baseInfoRecordRepository.findByCreatedAtBetween(start, end);
-        Set<String> set = new HashSet<>();
-        for (BaseInfoRecord r : records) {
-            Map<String, Object> m = fromJson(r.getPayload(), new TypeReference<Map<String, Object>>() {});
-            String code = getString(m, "appCode", "APP_CODE");
-            if (appCode != null && appCode.length() > 0 && (code == null || !code.equals(appCode))) continue;
-            String deviceId = getString(m, "deviceId", "DEVICE_ID");
-            if (deviceId != null && !deviceId.isEmpty()) set.add(deviceId);
-        }
-        return set;
-    }
-
-    private Set<String> distinctSessionIdsRangeByApp(Date start, Date end, String appCode) {
-        List<BaseInfoRecord> records = baseInfoRecordRepository.findByCreatedAtBetween(start, end);
-        Set<String> set = new HashSet<>();
-        for (BaseInfoRecord r : records) {
-            Map<String, Object> m = fromJson(r.getPayload(), new TypeReference<Map<String, Object>>() {});
-            String code = getString(m, "appCode", "APP_CODE");
-            if (appCode != null && appCode.length() > 0 && (code == null || !code.equals(appCode))) continue;
-            String sessionId = getString(m, "sessionId", "SESSION_ID");
-            if (sessionId != null && !sessionId.isEmpty()) set.add(sessionId);
-        }
-        return set;
-    }
-
-    private Set<String> distinctSdkUserUuidsRangeByApp(Date start, Date end, String appCode) {
-        List<BaseInfoRecord> records = baseInfoRecordRepository.findByCreatedAtBetween(start, end);
-        Set<String> set = new HashSet<>();
-        for (BaseInfoRecord r : records) {
-            Map<String, Object> m = fromJson(r.getPayload(), new TypeReference<Map<String, Object>>() {});
-            String code = getString(m, "appCode", "APP_CODE");
-            if (appCode != null && appCode.length() > 0 && (code == null || !code.equals(appCode))) continue;
-            String uid = getString(m, "sdkUserUuid");
-            if (uid != null && !uid.isEmpty()) set.add(uid);
-        }
-        return set;
-    }
-
-    private Set<String> distinctSessionIdsRangeByAppEvents(Date start, Date end, String appCode) {
-        List<TracingEvent> events = tracingEventRepository.findByCreatedAtBetween(start, end);
-        Set<String> set = new HashSet<>();
-        for (TracingEvent e : events) {
-            if (appCode != null && appCode.length() > 0) {
-                String code = e.getAppCode();
-                if (code == null || !code.equals(appCode)) continue;
-            }
-            String sessionId = e.getSessionId();
-            if (sessionId == null || sessionId.isEmpty()) {
-                Map<String, Object> m = parsePayload(e);
-                sessionId = getString(m, "sessionId", "SESSION_ID");
-            }
-            if (sessionId != null && !sessionId.isEmpty()) set.add(sessionId);
-        }
-        return set;
-    }
-
-    private Set<String> distinctDeviceIdsRangeByAppEvents(Date start, Date end, String appCode) {
-        List<TracingEvent> events = tracingEventRepository.findByCreatedAtBetween(start, end);
-        Set<String> set = new HashSet<>();
-        for (TracingEvent e : events) {
-            if (appCode != null && appCode.length() > 0) {
-                String code = e.getAppCode();
-                if (code == null || !code.equals(appCode)) continue;
-            }
-            Map<String, Object> m = parsePayload(e);
-            String deviceId = getString(m, "deviceId", "DEVICE_ID");
-            if (deviceId != null && !deviceId.isEmpty()) set.add(deviceId);
-        }
-        return set;
-    }
-
-    private Set<String> distinctSdkUserUuidsRangeByAppEvents(Date start, Date end, String appCode) {
-        List<TracingEvent> events = tracingEventRepository.findByCreatedAtBetween(start, end);
-        Set<String> set = new HashSet<>();
-        for (TracingEvent e : events) {
-            if (appCode != null && appCode.length() > 0) {
-                String code = e.getAppCode();
-                if (code == null || !code.equals(appCode)) continue;
-            }
-            Map<String, Object> m = parsePayload(e);
-            String uid = getString(m, "sdkUserUuid");
-            if (uid != null && !uid.isEmpty()) set.add(uid);
-        }
-        return set;
-    }
-
-    private Set<String> distinctDeviceIdsAllByApp(String appCode) {
-        List<BaseInfoRecord> records = baseInfoRecordRepository.findAll();
-        Set<String> set = new HashSet<>();
-        for (BaseInfoRecord r : records) {
-            Map<String, Object> m = fromJson(r.getPayload(), new TypeReference<Map<String, Object>>() {});
-            String code = getString(m, "appCode", "APP_CODE");
-            if (appCode != null && appCode.length() > 0 && (code == null || !code.equals(appCode))) continue;
-            String deviceId = getString(m, "deviceId", "DEVICE_ID");
-            if (deviceId != null && !deviceId.isEmpty()) set.add(deviceId);
-        }
-        return set;
-    }
-
-    private Set<String> distinctSessionIdsAllByApp(String appCode) {
-        List<BaseInfoRecord> records = baseInfoRecordRepository.findAll();
-        Set<String> set = new HashSet<>();
-        for (BaseInfoRecord r : records) {
-            Map<String, Object> m = fromJson(r.getPayload(), new TypeReference<Map<String, Object>>() {});
-            String code = getString(m, "appCode", "APP_CODE");
-            if (appCode != null && appCode.length() > 0 && (code == null || !code.equals(appCode))) continue;
-            String sessionId = getString(m, "sessionId", "SESSION_ID");
-            if (sessionId != null && !sessionId.isEmpty()) set.add(sessionId);
-        }
-        return set;
-    }
-
-    private Set<String> distinctSdkUserUuidsAllByApp(String appCode) {
-        List<BaseInfoRecord> records = baseInfoRecordRepository.findAll();
-        Set<String> set = new HashSet<>();
-        for (BaseInfoRecord r : records) {
-            Map<String, Object> m = fromJson(r.getPayload(), new TypeReference<Map<String, Object>>() {});
-            String code = getString(m, "appCode", "APP_CODE");
-            if (appCode != null && appCode.length() > 0 && (code == null || !code.equals(appCode))) continue;
-            String uid = getString(m, "sdkUserUuid");
-            if (uid != null && !uid.isEmpty()) set.add(uid);
-        }
-        return set;
-    }
-
-    private Set<String> distinctAppCodesAll() {
-        List<BaseInfoRecord> records = baseInfoRecordRepository.findAll();
-        Set<String> set = new HashSet<>();
-        for (BaseInfoRecord r : records) {
-            Map<String, Object> m = fromJson(r.getPayload(), new TypeReference<Map<String, Object>>() {});
-            String appCode = getString(m, "appCode", "APP_CODE");
-            if (appCode != null && !appCode.isEmpty()) set.add(appCode);
-        }
-        return set;
-    }
-
-    private Set<String> distinctDeviceIdsRange(Date start, Date end) {
-        List<BaseInfoRecord> records = baseInfoRecordRepository.findByCreatedAtBetween(start, end);
-        Set<String> set = new HashSet<>();
-        for (BaseInfoRecord r : records) {
-            Map<String, Object> m = fromJson(r.getPayload(), new TypeReference<Map<String, Object>>() {});
-            String deviceId = getString(m, "deviceId", "DEVICE_ID");
-            if (deviceId != null && !deviceId.isEmpty()) set.add(deviceId);
-        }
-        return set;
-    }
-
-    private Set<String> distinctDeviceIdsAll() {
-        List<BaseInfoRecord> records = baseInfoRecordRepository.findAll();
-        Set<String> set = new HashSet<>();
-        for (BaseInfoRecord r : records) {
-            Map<String, Object> m = fromJson(r.getPayload(), new TypeReference<Map<String, Object>>() {});
-            String deviceId = getString(m, "deviceId", "DEVICE_ID");
-            if (deviceId != null && !deviceId.isEmpty()) set.add(deviceId);
-        }
-        return set;
-    }
-
-    private Set<String> distinctSessionIdsRange(Date start, Date end) {
-        List<BaseInfoRecord> records = baseInfoRecordRepository.findByCreatedAtBetween(start, end);
-        Set<String> set = new HashSet<>();
-        for (BaseInfoRecord r : records) {
-            Map<String, Object> m = fromJson(r.getPayload(), new TypeReference<Map<String, Object>>() {});
-            String sessionId = getString(m, "sessionId", "SESSION_ID");
-            if (sessionId != null && !sessionId.isEmpty()) set.add(sessionId);
-        }
-        return set;
-    }
-
-    private Set<String> distinctSessionIdsAll() {
-        List<BaseInfoRecord> records = baseInfoRecordRepository.findAll();
-        Set<String> set = new HashSet<>();
-        for (BaseInfoRecord r : records) {
-            Map<String, Object> m = fromJson(r.getPayload(), new TypeReference<Map<String, Object>>() {});
-            String sessionId = getString(m, "sessionId", "SESSION_ID");
-            if (sessionId != null && !sessionId.isEmpty()) set.add(sessionId);
-        }
-        return set;
-    }
-
-    private Set<String> distinctSdkUserUuidsRange(Date start, Date end) {
-        List<BaseInfoRecord> records = baseInfoRecordRepository.findByCreatedAtBetween(start, end);
-        Set<String> set = new HashSet<>();
-        for (BaseInfoRecord r : records) {
-            Map<String, Object> m = fromJson(r.getPayload(), new TypeReference<Map<String, Object>>() {});
-            String uid = getString(m, "sdkUserUuid");
-            if (uid != null && !uid.isEmpty()) set.add(uid);
-        }
-        return set;
-    }
-
-    private Set<String> distinctSdkUserUuidsAll() {
-        List<BaseInfoRecord> records = baseInfoRecordRepository.findAll();
-        Set<String> set = new HashSet<>();
-        for (BaseInfoRecord r : records) {
-            Map<String, Object> m = fromJson(r.getPayload(), new TypeReference<Map<String, Object>>() {});
-            String uid = getString(m, "sdkUserUuid");
-            if (uid != null && !uid.isEmpty()) set.add(uid);
+    /**
+     * 基线表去重计数结果行转为 [应用数, 用户数, 设备数, 会话数]。
+     */
+    private static int[] identityCounts(List<Object[]> rows) {
+        int[] out = new int[4];
+        if (rows == null || rows.isEmpty() || rows.get(0) == null) return out;
+        Object[] r = rows.get(0);
+        for (int i = 0; i < out.length && i < r.length; i++) {
+            out[i] = r[i] == null ? 0 : ((Number) r[i]).intValue();
         }
-        return set;
+        return out;
     }
 
     /**
@@ -2279,40 +2779,4 @@ public class TracingService {
         userAppCodesCache.put(cacheKey, appCodes);
         return appCodes;
     }
-
-    /**
-     * 获取指定应用代码集合的去重用户UUID集合
-     */
-    private Set<String> distinctSdkUserUuidsAllByAppCodes(Set<String> appCodes) {
-        Set<String> set = new HashSet<>();
-        for (String appCode : appCodes) {
-            Set<String> appUsers = distinctSdkUserUuidsAllByApp(appCode);
-            set.addAll(appUsers);
-        }
-        return set;
-    }
-
-    /**
-     * 获取指定应用代码集合的去重设备ID集合
-     */
-    private Set<String> distinctDeviceIdsAllByAppCodes(Set<String> appCodes) {
-        Set<String> set = new HashSet<>();
-        for (String appCode : appCodes) {
-            Set<String> appDevices = distinctDeviceIdsAllByApp(appCode);
-            set.addAll(appDevices);
-        }
-        return set;
-    }
-
-    /**
-     * 获取指定应用代码集合的去重会话ID集合
-     */
-    private Set<String> distinctSessionIdsAllByAppCodes(Set<String> appCodes) {
-        Set<String> set = new HashSet<>();
-        for (String appCode : appCodes) {
-            Set<String> appSessions = distinctSessionIdsAllByApp(appCode);
-            set.addAll(appSessions);
-        }
-        return set;
-    }
 }
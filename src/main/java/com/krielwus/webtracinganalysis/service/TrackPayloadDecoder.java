@@ -0,0 +1,401 @@
+package com.krielwus.webtracinganalysis.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.krielwus.webtracinganalysis.info.IngestEvent;
+import com.krielwus.webtracinganalysis.info.IngestPayload;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 上报载荷解码器。
+ * 以 Jackson 流式 JsonParser 单遍扫描请求体，只提取入库与索引需要的字段
+ * （eventType/appCode/appName/sessionId/sdkUserUuid/deviceId/triggerPageUrl 及 ERROR 事件的错误码、信息、地址与等级），
+ * baseInfo 与每条事件的原始 JSON 按字节偏移切片保留，避免 Map 中转与重复序列化。
+ * 支持 Smile（application/x-jackson-smile）与 CBOR（application/cbor）二进制请求体：
+ * 二进制文档单遍解析，提取字段的同时把每个 token 写入 JSON 生成器，切片偏移取自生成器输出，
+ * 不再先转码为 JSON 再解析一遍；入库的 payload 与切片仍为 JSON。
+ */
+@Component
+public class TrackPayloadDecoder {
+    private static final int F_EVENT_TYPE = 0;
+    private static final int F_APP_CODE = 1;
+    private static final int F_APP_NAME = 2;
+    private static final int F_SESSION_ID = 3;
+    private static final int F_SDK_USER_UUID = 4;
+    private static final int F_DEVICE_ID = 5;
+    private static final int F_PAGE_URL = 6;
+    private static final int F_IDEMPOTENCY_KEY = 7;
+    private static final int F_ERROR_CODE = 8;
+    private static final int F_ERROR_MESSAGE = 9;
+    private static final int F_REQUEST_URI = 10;
+    private static final int F_ERROR_LEVEL = 11;
+    private static final int F_ERROR_STACK = 12;
+    private static final int FIELD_COUNT = 13;
+
+    /**
+     * 字段别名 -> {字段槽位, 优先级, [字段槽位, 优先级]...}，优先级数值越小越优先（与原 getString 的别名顺序一致）；
+     * 同一别名可同时填充多个槽位。
+     */
+    private static final Map<String, int[]> EVENT_KEYS = new HashMap<>();
+    private static final Map<String, int[]> BASE_KEYS = new HashMap<>();
+
+    static {
+        EVENT_KEYS.put("eventType", new int[] { F_EVENT_TYPE, 0 });
+        EVENT_KEYS.put("appCode", new int[] { F_APP_CODE, 0 });
+        EVENT_KEYS.put("APP_CODE", new int[] { F_APP_CODE, 1 });
+        EVENT_KEYS.put("appName", new int[] { F_APP_NAME, 0 });
+        EVENT_KEYS.put("APP_NAME", new int[] { F_APP_NAME, 1 });
+        EVENT_KEYS.put("sessionId", new int[] { F_SESSION_ID, 0 });
+        EVENT_KEYS.put("SESSION_ID", new int[] { F_SESSION_ID, 1 });
+        EVENT_KEYS.put("sdkUserUuid", new int[] { F_SDK_USER_UUID, 0 });
+        EVENT_KEYS.put("SDK_USER_UUID", new int[] { F_SDK_USER_UUID, 1 });
+        EVENT_KEYS.put("deviceId", new int[] { F_DEVICE_ID, 0 });
+        EVENT_KEYS.put("DEVICE_ID", new int[] { F_DEVICE_ID, 1 });
+        EVENT_KEYS.put("triggerPageUrl", new int[] { F_PAGE_URL, 0, F_REQUEST_URI, 0 });
+        EVENT_KEYS.put("pageUrl", new int[] { F_PAGE_URL, 1, F_REQUEST_URI, 2 });
+        EVENT_KEYS.put("URL", new int[] { F_PAGE_URL, 2 });
+        EVENT_KEYS.put("PAGE_URL", new int[] { F_PAGE_URL, 3 });
+        // SDK 侧生成的事件唯一标识（eventId 为事件类别编码，不能用于去重）
+        EVENT_KEYS.put("idempotencyKey", new int[] { F_IDEMPOTENCY_KEY, 0 });
+        EVENT_KEYS.put("eventUuid", new int[] { F_IDEMPOTENCY_KEY, 1 });
+        EVENT_KEYS.put("uuid", new int[] { F_IDEMPOTENCY_KEY, 2 });
+        // 错误字段，别名顺序与错误列表原 JSON_EXTRACT 的 COALESCE 顺序一致
+        EVENT_KEYS.put("errorCode", new int[] { F_ERROR_CODE, 0 });
+        EVENT_KEYS.put("code", new int[] { F_ERROR_CODE, 1 });
+        EVENT_KEYS.put("eventId", new int[] { F_ERROR_CODE, 2 });
+        EVENT_KEYS.put("errMessage", new int[] { F_ERROR_MESSAGE, 0 });
+        EVENT_KEYS.put("message", new int[] { F_ERROR_MESSAGE, 1 });
+        EVENT_KEYS.put("msg", new int[] { F_ERROR_MESSAGE, 2 });
+        EVENT_KEYS.put("errorMsg", new int[] { F_ERROR_MESSAGE, 3 });
+        EVENT_KEYS.put("errorMessage", new int[] { F_ERROR_MESSAGE, 4 });
+        EVENT_KEYS.put("requestUri", new int[] { F_REQUEST_URI, 1 });
+        EVENT_KEYS.put("url", new int[] { F_REQUEST_URI, 3 });
+        EVENT_KEYS.put("severity", new int[] { F_ERROR_LEVEL, 0 });
+        EVENT_KEYS.put("level", new int[] { F_ERROR_LEVEL, 1 });
+        EVENT_KEYS.put("errLevel", new int[] { F_ERROR_LEVEL, 2 });
+        EVENT_KEYS.put("errStack", new int[] { F_ERROR_STACK, 0 });
+        EVENT_KEYS.put("stack", new int[] { F_ERROR_STACK, 1 });
+        EVENT_KEYS.put("stackTrace", new int[] { F_ERROR_STACK, 2 });
+
+        BASE_KEYS.put("appCode", new int[] { F_APP_CODE, 0 });
+        BASE_KEYS.put("APP_CODE", new int[] { F_APP_CODE, 1 });
+        BASE_KEYS.put("appName", new int[] { F_APP_NAME, 0 });
+        BASE_KEYS.put("APP_NAME", new int[] { F_APP_NAME, 1 });
+        BASE_KEYS.put("sessionId", new int[] { F_SESSION_ID, 0 });
+        BASE_KEYS.put("SESSION_ID", new int[] { F_SESSION_ID, 1 });
+        BASE_KEYS.put("sdkUserUuid", new int[] { F_SDK_USER_UUID, 0 });
+        BASE_KEYS.put("SDK_USER_UUID", new int[] { F_SDK_USER_UUID, 1 });
+        BASE_KEYS.put("deviceId", new int[] { F_DEVICE_ID, 0 });
+        BASE_KEYS.put("DEVICE_ID", new int[] { F_DEVICE_ID, 1 });
+    }
+
+    /** baseInfo 中每次发送都会变化的字段，不参与标识哈希（SDK 每次发送都会写入 sendTime） */
+    private static final java.util.Set<String> VOLATILE_BASE_KEYS = java.util.Set.of("sendTime");
+
+    public static final String CONTENT_TYPE_SMILE = "application/x-jackson-smile";
+    public static final String CONTENT_TYPE_CBOR = "application/cbor";
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final SmileFactory smileFactory = new SmileFactory();
+    private final CBORFactory cborFactory = new CBORFactory();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * 读取请求体并解码。
+     */
+    public IngestPayload decode(InputStream in) throws IOException {
+        if (in == null) return null;
+        return decode(in.readAllBytes());
+    }
+
+    /**
+     * 按 Content-Type 读取请求体并解码。
+     */
+    public IngestPayload decode(InputStream in, String contentType) throws IOException {
+        if (in == null) return null;
+        return decode(in.readAllBytes(), contentType);
+    }
+
+    /**
+     * 按 Content-Type 解码：Smile/CBOR 边解析边生成 JSON，其余按 JSON 处理。
+     */
+    public IngestPayload decode(byte[] body, String contentType) {
+        if (body == null || body.length == 0) return null;
+        JsonFactory binary = binaryFactory(contentType);
+        if (binary == null) return decode(body);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length + (body.length >> 1));
+        try (JsonParser p = binary.createParser(body); JsonGenerator g = jsonFactory.createGenerator(out)) {
+            return decodeDocument(new Cursor(p, g, out), null);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 解码单个文档；以 Smile 头（":)\n"）开头的按 Smile 处理，其余视为 UTF-8 JSON。
+     * 空文档或非法文档返回 null。
+     */
+    public IngestPayload decode(byte[] body) {
+        if (body == null || body.length == 0) return null;
+        if (isSmile(body)) return decode(body, CONTENT_TYPE_SMILE);
+        return decodeJson(body);
+    }
+
+    /**
+     * 将 JSON 文档编码为 Smile，用于预写日志等内部存储；失败时返回原字节。
+     */
+    public byte[] toSmile(byte[] json) {
+        try {
+            return transcode(jsonFactory, smileFactory, json);
+        } catch (IOException | RuntimeException e) {
+            return json;
+        }
+    }
+
+    private IngestPayload decodeJson(byte[] body) {
+        if (body == null || body.length == 0) return null;
+        try (JsonParser p = jsonFactory.createParser(body)) {
+            return decodeDocument(new Cursor(p, null, null), body);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 扫描顶层对象：提取 baseInfo 与事件字段并记录切片，结束后按源字节（JSON 请求体或生成的 JSON）组装载荷。
+     * 顶层不是对象时返回 null。
+     */
+    private IngestPayload decodeDocument(Cursor c, byte[] body) throws IOException {
+        if (c.next() != JsonToken.START_OBJECT) return null;
+        String[] base = null;
+        int baseStart = -1, baseLength = 0;
+        long baseHash = 0;
+        List<int[]> eventSlices = new ArrayList<>();
+        List<String[]> eventValues = new ArrayList<>();
+        while (c.next() == JsonToken.FIELD_NAME) {
+            String name = c.parser.currentName();
+            JsonToken t = c.next();
+            if ("baseInfo".equals(name) && t == JsonToken.START_OBJECT) {
+                baseStart = c.tokenStart();
+                base = new String[FIELD_COUNT];
+                java.util.TreeMap<String, String> identity = new java.util.TreeMap<>();
+                readObjectFields(c, BASE_KEYS, base, identity);
+                baseLength = c.tokenEnd() - baseStart;
+                baseHash = identityHash(identity);
+            } else if ("eventInfo".equals(name) && t == JsonToken.START_ARRAY) {
+                readEvents(c, eventSlices, eventValues);
+            } else {
+                c.skipChildren();
+            }
+        }
+        byte[] source = body;
+        if (c.generator != null) {
+            c.generator.flush();
+            source = c.out.toByteArray();
+        }
+        IngestPayload payload = new IngestPayload(source);
+        if (base != null) {
+            payload.setBaseInfoSlice(baseStart, baseLength);
+            payload.setBaseInfoHash(baseHash);
+            payload.setAppCode(base[F_APP_CODE]);
+            payload.setAppName(base[F_APP_NAME]);
+            payload.setSessionId(base[F_SESSION_ID]);
+            payload.setSdkUserUuid(base[F_SDK_USER_UUID]);
+            payload.setDeviceId(base[F_DEVICE_ID]);
+        }
+        for (int i = 0; i < eventSlices.size(); i++) {
+            int[] slice = eventSlices.get(i);
+            String[] values = eventValues.get(i);
+            IngestEvent e = new IngestEvent(source, slice[0], slice[1]);
+            e.setEventType(values[F_EVENT_TYPE]);
+            e.setAppCode(values[F_APP_CODE]);
+            e.setAppName(values[F_APP_NAME]);
+            e.setSessionId(values[F_SESSION_ID]);
+            e.setSdkUserUuid(values[F_SDK_USER_UUID]);
+            e.setDeviceId(values[F_DEVICE_ID]);
+            e.setTriggerPageUrl(values[F_PAGE_URL]);
+            e.setIdempotencyKey(values[F_IDEMPOTENCY_KEY]);
+            e.setErrorCode(values[F_ERROR_CODE]);
+            e.setErrorMessage(values[F_ERROR_MESSAGE]);
+            e.setRequestUri(values[F_REQUEST_URI]);
+            e.setErrorLevel(values[F_ERROR_LEVEL]);
+            e.setErrorStack(values[F_ERROR_STACK]);
+            payload.getEvents().add(e);
+        }
+        return payload;
+    }
+
+    /**
+     * 兼容旧调用方的 Map 载荷：序列化一次后按同一路径解码。
+     */
+    public IngestPayload fromMap(Map<String, Object> payload) {
+        if (payload == null || payload.isEmpty()) return null;
+        try {
+            return decode(objectMapper.writeValueAsBytes(payload));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private JsonFactory binaryFactory(String contentType) {
+        if (contentType == null) return null;
+        String ct = contentType.toLowerCase();
+        if (ct.startsWith(CONTENT_TYPE_SMILE)) return smileFactory;
+        if (ct.startsWith(CONTENT_TYPE_CBOR)) return cborFactory;
+        return null;
+    }
+
+    private static boolean isSmile(byte[] body) {
+        return body.length >= 3 && body[0] == ':' && body[1] == ')' && body[2] == '\n';
+    }
+
+    private static byte[] transcode(JsonFactory from, JsonFactory to, byte[] body) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length + (body.length >> 1));
+        try (JsonParser p = from.createParser(body); JsonGenerator g = to.createGenerator(out)) {
+            if (p.nextToken() == null) return new byte[0];
+            g.copyCurrentStructure(p);
+        }
+        return out.toByteArray();
+    }
+
+    private void readEvents(Cursor c, List<int[]> slices, List<String[]> valuesList) throws IOException {
+        JsonToken t;
+        while ((t = c.next()) != JsonToken.END_ARRAY && t != null) {
+            if (t != JsonToken.START_OBJECT) {
+                c.skipChildren();
+                continue;
+            }
+            int start = c.tokenStart();
+            String[] values = new String[FIELD_COUNT];
+            readObjectFields(c, EVENT_KEYS, values, null);
+            slices.add(new int[] { start, c.tokenEnd() - start });
+            valuesList.add(values);
+        }
+    }
+
+    /**
+     * 扫描当前对象的第一层字段，按别名优先级填充 values；嵌套结构直接跳过。
+     * identity 不为空时同时收集除易变字段外的全部字段（字段名 -> 文本，嵌套结构展开为其 token 序列），用于标识哈希。
+     * 返回时解析器停在对象的 END_OBJECT 上。
+     */
+    private void readObjectFields(Cursor c, Map<String, int[]> keys, String[] values,
+            java.util.TreeMap<String, String> identity) throws IOException {
+        JsonParser p = c.parser;
+        int[] priority = new int[FIELD_COUNT];
+        java.util.Arrays.fill(priority, Integer.MAX_VALUE);
+        while (c.next() == JsonToken.FIELD_NAME) {
+            String name = p.currentName();
+            int[] slot = keys.get(name);
+            JsonToken v = c.next();
+            boolean collect = identity != null && !VOLATILE_BASE_KEYS.contains(name);
+            if (v == JsonToken.START_OBJECT || v == JsonToken.START_ARRAY) {
+                if (collect) identity.put(name, flatten(c));
+                else c.skipChildren();
+                continue;
+            }
+            if (collect && v != JsonToken.VALUE_NULL) identity.put(name, p.getText());
+            if (slot == null || v == JsonToken.VALUE_NULL) continue;
+            String text = p.getText();
+            // eventType 保留原值（可为空串），其余字段与 getString 一致忽略空串
+            if (slot[0] != F_EVENT_TYPE && (text == null || text.isEmpty())) continue;
+            for (int i = 0; i < slot.length; i += 2) {
+                if (slot[i + 1] < priority[slot[i]]) {
+                    priority[slot[i]] = slot[i + 1];
+                    values[slot[i]] = text;
+                }
+            }
+        }
+    }
+
+    /** 将当前嵌套结构展开为 token 文本序列，返回时解析器停在其结束 token 上 */
+    private static String flatten(Cursor c) throws IOException {
+        JsonParser p = c.parser;
+        StringBuilder sb = new StringBuilder();
+        int depth = 0;
+        JsonToken t = p.currentToken();
+        do {
+            if (t == JsonToken.START_OBJECT || t == JsonToken.START_ARRAY) depth++;
+            else if (t == JsonToken.END_OBJECT || t == JsonToken.END_ARRAY) depth--;
+            sb.append(t == JsonToken.FIELD_NAME ? p.currentName() : p.getText()).append('\u0001');
+            if (depth == 0) break;
+            t = c.next();
+        } while (t != null);
+        return sb.toString();
+    }
+
+    /**
+     * 解析游标：JSON 请求体直接按解析器字节偏移切片；二进制请求体同时把每个 token 写入 JSON 生成器，
+     * 切片偏移取生成器已输出的字节数。
+     */
+    private static final class Cursor {
+        final JsonParser parser;
+        final JsonGenerator generator;
+        final ByteArrayOutputStream out;
+
+        Cursor(JsonParser parser, JsonGenerator generator, ByteArrayOutputStream out) {
+            this.parser = parser;
+            this.generator = generator;
+            this.out = out;
+        }
+
+        JsonToken next() throws IOException {
+            JsonToken t = parser.nextToken();
+            if (generator != null && t != null) generator.copyCurrentEvent(parser);
+            return t;
+        }
+
+        /** 跳过当前嵌套结构（二进制模式下逐个 token 写出），停在其结束 token 上 */
+        void skipChildren() throws IOException {
+            if (generator == null) {
+                parser.skipChildren();
+                return;
+            }
+            JsonToken t = parser.currentToken();
+            if (t != JsonToken.START_OBJECT && t != JsonToken.START_ARRAY) return;
+            int depth = 1;
+            while (depth > 0) {
+                t = next();
+                if (t == null) throw new java.io.EOFException("Unexpected end of document");
+                if (t == JsonToken.START_OBJECT || t == JsonToken.START_ARRAY) depth++;
+                else if (t == JsonToken.END_OBJECT || t == JsonToken.END_ARRAY) depth--;
+            }
+        }
+
+        /** 当前 START_OBJECT 的起始偏移 */
+        int tokenStart() throws IOException {
+            if (generator == null) return (int) parser.currentTokenLocation().getByteOffset();
+            generator.flush();
+            return out.size() - 1;
+        }
+
+        /** 当前 END_OBJECT 之后的偏移 */
+        int tokenEnd() throws IOException {
+            if (generator == null) return (int) parser.currentLocation().getByteOffset();
+            generator.flush();
+            return out.size();
+        }
+    }
+
+    /** 按字段名排序后的 字段名/取值 序列的 64 位哈希，字段顺序与易变字段不影响结果；0 保留为“无 baseInfo” */
+    static long identityHash(java.util.SortedMap<String, String> identity) {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, String> e : identity.entrySet()) {
+            sb.append(e.getKey()).append('\u0002').append(e.getValue()).append('\u0003');
+        }
+        long h = com.krielwus.webtracinganalysis.util.Hash64.hash(sb.toString());
+        return h == 0L ? 1L : h;
+    }
+}
@@ -0,0 +1,97 @@
+package com.krielwus.webtracinganalysis.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 多关键字子串匹配（Aho–Corasick 自动机）。
+ * 构造时把关键字编译为完整的 ASCII 状态转移表（失败指针已折叠进转移），扫描时每个字符一次查表；
+ * 每个关键字带一个标记位，{@link #scan(CharSequence)} 返回文本中命中关键字的标记位并集。
+ * 关键字按小写编译，扫描时对 ASCII 字符就地转小写；非 ASCII 字符回到初始状态。
+ */
+public final class AhoCorasick {
+    private static final int ALPHABET = 128;
+
+    private final int[][] next;
+    private final int[] output;
+
+    /**
+     * @param keywords 关键字（仅 ASCII，大小写不敏感）
+     * @param tags 与关键字一一对应的标记位
+     */
+    public AhoCorasick(String[] keywords, int[] tags) {
+        if (keywords.length != tags.length) throw new IllegalArgumentException("keywords and tags differ in length");
+        List<int[]> trie = new ArrayList<>();
+        List<Integer> out = new ArrayList<>();
+        trie.add(newNode());
+        out.add(0);
+        for (int k = 0; k < keywords.length; k++) {
+            int state = 0;
+            String word = keywords[k].toLowerCase();
+            for (int i = 0; i < word.length(); i++) {
+                char c = word.charAt(i);
+                if (c >= ALPHABET) throw new IllegalArgumentException("non-ASCII keyword: " + keywords[k]);
+                if (trie.get(state)[c] < 0) {
+                    trie.get(state)[c] = trie.size();
+                    trie.add(newNode());
+                    out.add(0);
+                }
+                state = trie.get(state)[c];
+            }
+            out.set(state, out.get(state) | tags[k]);
+        }
+        int n = trie.size();
+        this.next = trie.toArray(new int[n][]);
+        this.output = new int[n];
+        for (int i = 0; i < n; i++) output[i] = out.get(i);
+        int[] fail = new int[n];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int c = 0; c < ALPHABET; c++) {
+            if (next[0][c] < 0) {
+                next[0][c] = 0;
+            } else {
+                fail[next[0][c]] = 0;
+                queue.add(next[0][c]);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int s = queue.poll();
+            output[s] |= output[fail[s]];
+            for (int c = 0; c < ALPHABET; c++) {
+                int t = next[s][c];
+                if (t < 0) {
+                    next[s][c] = next[fail[s]][c];
+                } else {
+                    fail[t] = next[fail[s]][c];
+                    queue.add(t);
+                }
+            }
+        }
+    }
+
+    /** 扫描文本，返回命中关键字的标记位并集；未命中返回 0 */
+    public int scan(CharSequence text) {
+        if (text == null) return 0;
+        int state = 0;
+        int hits = 0;
+        for (int i = 0, len = text.length(); i < len; i++) {
+            char c = text.charAt(i);
+            if (c >= ALPHABET) {
+                state = 0;
+                continue;
+            }
+            if (c >= 'A' && c <= 'Z') c = (char) (c + ('a' - 'A'));
+            state = next[state][c];
+            hits |= output[state];
+        }
+        return hits;
+    }
+
+    private static int[] newNode() {
+        int[] node = new int[ALPHABET];
+        Arrays.fill(node, -1);
+        return node;
+    }
+}
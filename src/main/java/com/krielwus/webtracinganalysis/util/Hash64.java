@@ -0,0 +1,71 @@
+package com.krielwus.webtracinganalysis.util;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 64 位非加密哈希（MurmurHash64A）。
+ * 用于去重键、指纹等需要低碰撞率、可直接对字节切片计算的场景。
+ */
+public final class Hash64 {
+    private static final long M = 0xc6a4a7935bd1e995L;
+    private static final int R = 47;
+    private static final long DEFAULT_SEED = 0x9747b28cL;
+
+    private Hash64() {
+    }
+
+    /** 对字节切片计算哈希 */
+    public static long hash(byte[] data, int offset, int length) {
+        return hash(data, offset, length, DEFAULT_SEED);
+    }
+
+    /** 对字符串的 UTF-8 字节计算哈希 */
+    public static long hash(String s) {
+        if (s == null) return 0L;
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        return hash(b, 0, b.length, DEFAULT_SEED);
+    }
+
+    /**
+     * 以指定种子对字节切片计算哈希。
+     */
+    public static long hash(byte[] data, int offset, int length, long seed) {
+        long h = seed ^ (length * M);
+        int end = offset + (length & ~7);
+        for (int i = offset; i < end; i += 8) {
+            long k = (data[i] & 0xffL)
+                    | (data[i + 1] & 0xffL) << 8
+                    | (data[i + 2] & 0xffL) << 16
+                    | (data[i + 3] & 0xffL) << 24
+                    | (data[i + 4] & 0xffL) << 32
+                    | (data[i + 5] & 0xffL) << 40
+                    | (data[i + 6] & 0xffL) << 48
+                    | (data[i + 7] & 0xffL) << 56;
+            k *= M;
+            k ^= k >>> R;
+            k *= M;
+            h ^= k;
+            h *= M;
+        }
+        int tail = length & 7;
+        if (tail > 0) {
+            for (int i = tail - 1; i >= 0; i--) {
+                h ^= (data[end + i] & 0xffL) << (8 * i);
+            }
+            h *= M;
+        }
+        h ^= h >>> R;
+        h *= M;
+        h ^= h >>> R;
+        return h;
+    }
+
+    /** 组合两个哈希值 */
+    public static long combine(long a, long b) {
+        long h = a ^ (b + 0x9e3779b97f4a7c15L + (a << 6) + (a >>> 2));
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,79 @@
+package com.krielwus.webtracinganalysis.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * 按行读取 NDJSON 字节流。
+ * 以 \n 分行（兼容 \r\n），直接返回行字节，不做字符解码；
+ * 超过 maxLineBytes 的行会被跳过至行尾，并通过 {@link #lastLineTooLong()} 标记。
+ */
+public class NdjsonLineReader {
+    private final InputStream in;
+    private final int maxLineBytes;
+    private final byte[] buf = new byte[8192];
+    private int pos;
+    private int limit;
+    private byte[] line = new byte[256];
+    private boolean tooLong;
+    private long lineNumber;
+    private long totalRead;
+    private long offset;
+
+    public NdjsonLineReader(InputStream in, int maxLineBytes) {
+        this.in = in;
+        this.maxLineBytes = maxLineBytes;
+    }
+
+    /**
+     * 读取下一行；流结束返回 null。超长行返回空数组。
+     */
+    public byte[] next() throws IOException {
+        int len = 0;
+        tooLong = false;
+        boolean any = false;
+        while (true) {
+            if (pos >= limit) {
+                limit = in.read(buf, 0, buf.length);
+                pos = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    if (!any) return null;
+                    break;
+                }
+                totalRead += limit;
+            }
+            any = true;
+            byte b = buf[pos++];
+            if (b == '\n') break;
+            if (tooLong) continue;
+            if (len >= maxLineBytes) {
+                tooLong = true;
+                continue;
+            }
+            if (len == line.length) line = Arrays.copyOf(line, Math.min(maxLineBytes, line.length * 2));
+            line[len++] = b;
+        }
+        lineNumber++;
+        offset = totalRead - (limit - pos);
+        if (tooLong) return new byte[0];
+        if (len > 0 && line[len - 1] == '\r') len--;
+        return Arrays.copyOf(line, len);
+    }
+
+    /** 上一次 next() 返回的行是否超长 */
+    public boolean lastLineTooLong() {
+        return tooLong;
+    }
+
+    /** 已完整读出的行之后的字节偏移（相对解压后的流），即下一行的起始位置 */
+    public long offset() {
+        return offset;
+    }
+
+    /** 上一次 next() 返回的行号（1 起） */
+    public long lineNumber() {
+        return lineNumber;
+    }
+}
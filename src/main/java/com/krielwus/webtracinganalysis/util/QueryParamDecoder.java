@@ -0,0 +1,82 @@
+package com.krielwus.webtracinganalysis.util;
+
+import java.util.Arrays;
+
+/**
+ * 原始查询串参数解码。
+ * 直接在未解码的查询串上定位参数并做百分号解码，结果为 UTF-8 字节，
+ * 不经过容器的参数解析与 String 中转，供图片打点等只取单个参数的场景使用。
+ */
+public final class QueryParamDecoder {
+
+    private QueryParamDecoder() {
+    }
+
+    /**
+     * 取参数 name 的首个取值并解码为字节；参数不存在或查询串为空返回 null。
+     * '+' 视为空格，非法的百分号转义按原字符保留。
+     */
+    public static byte[] decode(String rawQuery, String name) {
+        if (rawQuery == null || rawQuery.isEmpty() || name == null || name.isEmpty()) return null;
+        int len = rawQuery.length();
+        int nameLen = name.length();
+        int i = 0;
+        while (i < len) {
+            int end = rawQuery.indexOf('&', i);
+            if (end < 0) end = len;
+            if (end - i >= nameLen && rawQuery.startsWith(name, i)) {
+                int after = i + nameLen;
+                if (after == end) return new byte[0];
+                if (rawQuery.charAt(after) == '=') return decodeRange(rawQuery, after + 1, end);
+            }
+            i = end + 1;
+        }
+        return null;
+    }
+
+    private static byte[] decodeRange(String s, int from, int to) {
+        byte[] out = new byte[to - from];
+        int n = 0;
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c == '%' && i + 2 < to) {
+                int hi = hex(s.charAt(i + 1));
+                int lo = hex(s.charAt(i + 2));
+                if (hi >= 0 && lo >= 0) {
+                    out[n++] = (byte) ((hi << 4) | lo);
+                    i += 2;
+                    continue;
+                }
+            }
+            if (c == '+') {
+                out[n++] = ' ';
+            } else if (c < 0x80) {
+                out[n++] = (byte) c;
+            } else {
+                // 容器已按 URI 编码解出的非 ASCII 字符，重新编码为 UTF-8
+                if (n + 4 > out.length) out = Arrays.copyOf(out, out.length + (to - i) * 3 + 4);
+                int cp = Character.codePointAt(s, i);
+                if (Character.charCount(cp) == 2) i++;
+                if (cp < 0x800) {
+                    out[n++] = (byte) (0xC0 | (cp >> 6));
+                } else if (cp < 0x10000) {
+                    out[n++] = (byte) (0xE0 | (cp >> 12));
+                    out[n++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                } else {
+                    out[n++] = (byte) (0xF0 | (cp >> 18));
+                    out[n++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                    out[n++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                }
+                out[n++] = (byte) (0x80 | (cp & 0x3F));
+            }
+        }
+        return n == out.length ? out : Arrays.copyOf(out, n);
+    }
+
+    private static int hex(char c) {
+        if (c >= '0' && c <= '9') return c - '0';
+        if (c >= 'a' && c <= 'f') return c - 'a' + 10;
+        if (c >= 'A' && c <= 'F') return c - 'A' + 10;
+        return -1;
+    }
+}
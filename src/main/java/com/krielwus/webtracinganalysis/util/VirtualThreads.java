@@ -0,0 +1,35 @@
+package com.krielwus.webtracinganalysis.util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * 虚拟线程支持探测。
+ * 项目以 JDK 17 编译，虚拟线程 API（JDK 21+）通过反射获取；运行在不支持的 JDK 上时返回 null，由调用方回退到平台线程。
+ */
+public final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    /** 当前 JVM 是否支持虚拟线程 */
+    public static boolean isSupported() {
+        return factory("probe-") != null;
+    }
+
+    /**
+     * 以 prefix 加序号命名的虚拟线程工厂；不支持时返回 null。
+     */
+    public static ThreadFactory factory(String prefix) {
+        try {
+            Method ofVirtual = Thread.class.getMethod("ofVirtual");
+            Object builder = ofVirtual.invoke(null);
+            // 通过公开接口 Thread.Builder 取方法，实现类不可反射访问
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, prefix, 0L);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+}
@@ -3,6 +3,7 @@ CREATE DATABASE IF NOT EXISTS `web_tracing` DEFAULT CHARACTER SET utf8mb4 COLLAT
 USE `web_tracing`;
 
 -- 埋点事件表：保存前端上报的每条事件的原始 JSON 及类型
+-- 开启 tracing.partition.enabled 后由 PartitionManager 转换为按 created_at 的 RANGE 分区（主键改为 id + created_at）
 CREATE TABLE IF NOT EXISTS `trace_event` (
   `id` BIGINT NOT NULL AUTO_INCREMENT COMMENT '主键ID',
   `event_type` VARCHAR(64) NULL COMMENT '事件类型，如 PV/CLICK/ERROR/HTTP 等',
@@ -10,15 +11,53 @@ CREATE TABLE IF NOT EXISTS `trace_event` (
   `app_name` VARCHAR(256) NULL COMMENT '应用名称 appName',
   `session_id` VARCHAR(128) NULL COMMENT '会话ID',
   `payload` LONGTEXT NULL COMMENT '事件原始JSON载荷，保留完整结构用于分析',
+  `sample_rate` DOUBLE NULL COMMENT '采样率 (0,1]，聚合时按 1/sample_rate 加权，空值视为 1',
+  `error_code` VARCHAR(128) NULL COMMENT '错误码（ERROR 事件入库时提取）',
+  `error_message` VARCHAR(1024) NULL COMMENT '错误信息（ERROR 事件入库时提取，截断至 1024）',
+  `request_uri` VARCHAR(1024) NULL COMMENT '出错页面或请求地址（ERROR 事件入库时提取）',
+  `error_level` VARCHAR(32) NULL COMMENT '上报的错误等级原值',
+  `severity` VARCHAR(16) NULL COMMENT '错误等级 CRITICAL/FATAL/ERROR/WARN/INFO（入库时计算）',
+  `fingerprint` BIGINT NULL COMMENT '错误指纹（归一化信息与堆栈顶部帧的 64 位哈希）',
+  `base_hash` BIGINT NULL COMMENT '所属上报的 baseInfo 标识哈希（base_info_record.content_hash）',
   `created_at` DATETIME NULL COMMENT '事件入库时间（服务端接收时间）',
   PRIMARY KEY (`id`),
   KEY `idx_event_type_created_at` (`event_type`, `created_at`),
-  KEY `idx_appcode_created_at` (`app_code`, `created_at`)
+  KEY `idx_appcode_created_at` (`app_code`, `created_at`),
+  KEY `idx_app_type_error_code` (`app_code`, `event_type`, `error_code`, `created_at`),
+  KEY `idx_app_type_severity` (`app_code`, `event_type`, `severity`, `created_at`),
+  KEY `idx_app_fingerprint` (`app_code`, `fingerprint`, `created_at`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='前端埋点事件记录';
 
 -- 已包含结构化列，无需二次 ALTER
 
+-- 错误聚合表：同一应用下指纹相同的错误归为一条
+CREATE TABLE IF NOT EXISTS `error_issue` (
+  `id` BIGINT NOT NULL AUTO_INCREMENT,
+  `app_code` VARCHAR(128) NOT NULL COMMENT '应用标识',
+  `fingerprint` BIGINT NOT NULL COMMENT '错误指纹',
+  `error_code` VARCHAR(128) NULL COMMENT '错误码',
+  `message` VARCHAR(1024) NULL COMMENT '归一化后的错误信息',
+  `severity` VARCHAR(16) NULL COMMENT '错误等级',
+  `first_seen` DATETIME NULL COMMENT '首次出现时间',
+  `last_seen` DATETIME NULL COMMENT '最近出现时间',
+  `event_count` BIGINT NULL COMMENT '累计次数（按采样率加权）',
+  `sample_event_id` BIGINT NULL COMMENT '最近一条样例事件ID',
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `uk_issue_app_fingerprint` (`app_code`, `fingerprint`),
+  KEY `idx_issue_app_last_seen` (`app_code`, `last_seen`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='错误聚合（按指纹分组）';
+
+-- 低基数字符串字典：appCode/appName/eventType/routePath 到 int ID 的映射
+CREATE TABLE IF NOT EXISTS `string_dict` (
+  `id` INT NOT NULL AUTO_INCREMENT,
+  `kind` VARCHAR(16) NOT NULL COMMENT '取值类别 APP_CODE/APP_NAME/EVENT_TYPE（历史数据可能含 ROUTE_PATH）',
+  `value` VARCHAR(512) COLLATE utf8mb4_bin NOT NULL COMMENT '原始字符串（区分大小写）',
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `uk_dict_kind_value` (`kind`, `value`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='字符串字典';
+
 -- 页面访问路由归总表
+-- 与 trace_event 相同，可由 PartitionManager 按 created_at 分区
 CREATE TABLE IF NOT EXISTS `page_view_route` (
   `id` BIGINT NOT NULL AUTO_INCREMENT,
   `app_code` VARCHAR(128) NULL,
@@ -28,8 +67,10 @@ CREATE TABLE IF NOT EXISTS `page_view_route` (
   `device_id` VARCHAR(128) NULL,
   `route_type` VARCHAR(16) NULL,
   `route_path` VARCHAR(512) NULL,
+  `route_id` INT NULL COMMENT '仅历史数据：早期版本写入的 route_path 字典 ID，新写入为 NULL，查询不再使用',
   `route_params` LONGTEXT NULL,
   `full_url` TEXT NULL,
+  `sample_rate` DOUBLE NULL COMMENT '对应 PV 事件的采样率 (0,1]，路由 PV 按 1/sample_rate 加权，空值视为 1',
   `created_at` DATETIME NULL,
   PRIMARY KEY (`id`),
   KEY `idx_pvr_appcode_created_at` (`app_code`, `created_at`),
@@ -42,9 +83,19 @@ CREATE TABLE IF NOT EXISTS `page_view_route` (
 CREATE TABLE IF NOT EXISTS `base_info_record` (
   `id` BIGINT NOT NULL AUTO_INCREMENT COMMENT '主键ID',
   `payload` LONGTEXT NULL COMMENT '基线信息原始JSON载荷',
-  `created_at` DATETIME NULL COMMENT '上报入库时间',
+  `content_hash` BIGINT NULL COMMENT 'baseInfo 标识哈希（排除易变字段、按天分桶），同一标识每天只存一行',
+  `app_code` VARCHAR(128) NULL COMMENT '应用标识，缺失时为空串',
+  `session_id` VARCHAR(128) NULL COMMENT '会话ID',
+  `device_id` VARCHAR(128) NULL COMMENT '设备ID',
+  `sdk_user_uuid` VARCHAR(128) NULL COMMENT 'SDK 用户标识',
+  `created_at` DATETIME NULL COMMENT '首次入库时间',
+  `last_seen` DATETIME NULL COMMENT '最近出现时间',
   PRIMARY KEY (`id`),
-  KEY `idx_created_at` (`created_at`)
+  UNIQUE KEY `uk_base_content_hash` (`content_hash`),
+  KEY `idx_created_at` (`created_at`),
+  KEY `idx_base_last_seen` (`last_seen`),
+  KEY `idx_base_app_identity` (`app_code`, `last_seen`, `created_at`, `sdk_user_uuid`, `device_id`, `session_id`),
+  KEY `idx_base_seen_identity` (`last_seen`, `created_at`, `app_code`, `sdk_user_uuid`, `device_id`, `session_id`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='基线环境信息记录';
 -- 用户表：持久化注册用户
 CREATE TABLE IF NOT EXISTS `user_account` (
@@ -65,6 +116,9 @@ CREATE TABLE IF NOT EXISTS `application_info` (
   `app_code_prefix` VARCHAR(64) NOT NULL,
   `app_desc` VARCHAR(1000) NULL,
   `app_managers` LONGTEXT NULL COMMENT 'JSON数组，应用管理员用户名列表',
+  `ingest_rate_limit` INT NULL COMMENT '上报限流：每秒事件数，空值使用全局配置',
+  `ingest_burst` INT NULL COMMENT '上报限流：突发容量（事件数）',
+  `sample_rates` VARCHAR(512) NULL COMMENT '按事件类型采样率，如 CLICK:0.1,PV:1',
   `created_at` DATETIME NULL,
   `updated_at` DATETIME NULL,
   PRIMARY KEY (`id`),
@@ -105,3 +159,17 @@ CREATE TABLE IF NOT EXISTS `refresh_token_audit` (
   PRIMARY KEY (`id`),
   KEY `idx_user_created` (`user_id`, `created_at`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='刷新令牌审计';
+
+-- 保留/清除任务进度：每张表一行，逐块更新，未完成的任务下次从 last_id 继续
+CREATE TABLE IF NOT EXISTS `retention_progress` (
+  `job_kind` VARCHAR(16) NOT NULL COMMENT '任务类型 retention/purge',
+  `table_name` VARCHAR(64) NOT NULL COMMENT '目标表',
+  `last_id` BIGINT NOT NULL DEFAULT 0 COMMENT '下一块起始主键',
+  `max_id` BIGINT NOT NULL DEFAULT 0 COMMENT '本轮开始时的最大主键',
+  `scanned` BIGINT NOT NULL DEFAULT 0,
+  `deleted` BIGINT NOT NULL DEFAULT 0,
+  `started_at` DATETIME NULL,
+  `updated_at` DATETIME NULL,
+  `finished_at` DATETIME NULL,
+  PRIMARY KEY (`job_kind`, `table_name`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='数据保留任务进度';
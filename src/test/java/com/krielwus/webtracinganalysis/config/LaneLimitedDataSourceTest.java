@@ -0,0 +1,85 @@
+package com.krielwus.webtracinganalysis.config;
+
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLTransientConnectionException;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 按通道限流数据源测试。
+ * 覆盖分析通道满时看板请求线程按短超时快速失败，以及入库通道不受分析通道占用影响。
+ */
+class LaneLimitedDataSourceTest {
+
+    private static DataSource stub() {
+        return (DataSource) Proxy.newProxyInstance(getClassLoader(), new Class<?>[] { DataSource.class },
+                (proxy, method, args) -> {
+                    if ("getConnection".equals(method.getName())) {
+                        return Proxy.newProxyInstance(getClassLoader(), new Class<?>[] { Connection.class },
+                                (p, m, a) -> null);
+                    }
+                    return null;
+                });
+    }
+
+    private static ClassLoader getClassLoader() {
+        return LaneLimitedDataSourceTest.class.getClassLoader();
+    }
+
+    private static Connection holdOnOtherThread(LaneLimitedDataSource ds) throws InterruptedException {
+        Connection[] c = new Connection[1];
+        Thread t = new Thread(() -> {
+            try {
+                c[0] = ds.getConnection();
+            } catch (Exception ignored) {
+            }
+        });
+        t.start();
+        t.join(5000);
+        return c[0];
+    }
+
+    /** 分析通道已满时，标记为看板请求的线程在短超时后失败，而不是等待 acquireTimeoutMs */
+    @Test
+    void requestThreadFailsFast() throws Exception {
+        LaneLimitedDataSource ds = new LaneLimitedDataSource(stub(), 1, 1, 60_000, 100);
+        // 由另一个线程占住分析通道唯一的许可（同一线程的嵌套获取不占许可）
+        Connection held = holdOnOtherThread(ds);
+        LaneLimitedDataSource.markFailFast();
+        try {
+            long start = System.nanoTime();
+            assertThrows(SQLTransientConnectionException.class, ds::getConnection);
+            assertTrue(System.nanoTime() - start < 5_000_000_000L);
+        } finally {
+            LaneLimitedDataSource.clearFailFast();
+            held.close();
+        }
+        // 许可归还后可再次获取
+        ds.getConnection().close();
+    }
+
+    /** 分析通道占满不影响入库线程取连接 */
+    @Test
+    void ingestLaneIsIsolated() throws Exception {
+        LaneLimitedDataSource ds = new LaneLimitedDataSource(stub(), 1, 1, 60_000, 100);
+        Connection held = holdOnOtherThread(ds);
+        Connection[] got = new Connection[1];
+        Thread t = new Thread(() -> {
+            LaneLimitedDataSource.markIngestThread();
+            try {
+                got[0] = ds.getConnection();
+                got[0].close();
+            } catch (Exception ignored) {
+            }
+        });
+        t.start();
+        t.join(5000);
+        assertTrue(got[0] != null);
+        held.close();
+    }
+}
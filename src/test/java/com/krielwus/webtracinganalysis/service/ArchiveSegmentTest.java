@@ -0,0 +1,141 @@
+package com.krielwus.webtracinganalysis.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 归档段文件格式测试。
+ * 覆盖各列编码（差分 zigzag 变长、可空 long/double、字典、Deflate 文本）的写入读回、跨块与时间裁剪，以及校验对损坏与截断的识别。
+ */
+class ArchiveSegmentTest {
+
+    private static final List<ArchiveSegment.Column> COLUMNS = Arrays.asList(
+            new ArchiveSegment.Column("id", ArchiveSegment.Kind.DELTA),
+            new ArchiveSegment.Column("created_at", ArchiveSegment.Kind.DELTA),
+            new ArchiveSegment.Column("app_code", ArchiveSegment.Kind.DICT),
+            new ArchiveSegment.Column("fingerprint", ArchiveSegment.Kind.LONG),
+            new ArchiveSegment.Column("sample_rate", ArchiveSegment.Kind.DOUBLE),
+            new ArchiveSegment.Column("payload", ArchiveSegment.Kind.TEXT));
+
+    private static final long BASE = 1_700_000_000_000L;
+
+    @TempDir
+    Path dir;
+
+    private Path write(int rows, int blockRows) throws IOException {
+        Path file = dir.resolve("seg");
+        try (ArchiveSegment.Writer w = ArchiveSegment.create(file, "trace_event", 19000, COLUMNS, "created_at", blockRows)) {
+            for (int i = 0; i < rows; i++) {
+                w.append(new Object[] {
+                        // 主键非单调，差分出现负值
+                        (long) (i % 2 == 0 ? i * 10 : i * 10 - 15),
+                        BASE + i * 1000L,
+                        i % 3 == 0 ? null : "app" + (i % 3),
+                        i % 4 == 0 ? null : (long) -i * 1_000_003L,
+                        i % 5 == 0 ? null : 1.0 / (1 + i % 5),
+                        i % 7 == 0 ? null : "{\"n\":" + i + ",\"s\":\"中文\"}" });
+            }
+            assertEquals(rows, w.finish());
+        }
+        return file;
+    }
+
+    /** 全部列写入后按块读回，取值与写入一致 */
+    @Test
+    void roundTripsAllColumnKinds() throws Exception {
+        Path file = write(1000, 64);
+        ArchiveSegment.Meta m = ArchiveSegment.open(file);
+        assertEquals("trace_event", m.getTable());
+        assertEquals(19000, m.getDay());
+        assertEquals(1000, m.getRows());
+        assertEquals(BASE, m.getMinTime());
+        assertEquals(BASE + 999_000L, m.getMaxTime());
+        assertEquals(Arrays.asList("app1", "app2"), m.dictionary("app_code"));
+        assertTrue(m.hasColumn("payload"));
+        assertFalse(m.hasColumn("route_path"));
+
+        List<Integer> seen = new ArrayList<>();
+        m.scan(new String[] { "id", "created_at", "app_code", "fingerprint", "sample_rate", "payload" },
+                Long.MIN_VALUE, Long.MAX_VALUE, b -> {
+                    for (int r = 0; r < b.rows(); r++) {
+                        int i = seen.size();
+                        assertEquals(i % 2 == 0 ? i * 10 : i * 10 - 15, b.getLong(0, r));
+                        assertEquals(BASE + i * 1000L, b.getLong(1, r));
+                        assertEquals(i % 3 == 0 ? null : "app" + (i % 3), b.getString(2, r));
+                        assertEquals(i % 4 == 0, b.isNull(3, r));
+                        if (i % 4 != 0) assertEquals((long) -i * 1_000_003L, b.getLong(3, r));
+                        assertEquals(i % 5 == 0, b.isNull(4, r));
+                        if (i % 5 != 0) assertEquals(1.0 / (1 + i % 5), b.getDouble(4, r));
+                        if (i % 7 == 0) assertNull(b.getString(5, r));
+                        else assertEquals("{\"n\":" + i + ",\"s\":\"中文\"}", b.getString(5, r));
+                        seen.add(i);
+                    }
+                });
+        assertEquals(1000, seen.size());
+        assertEquals(1000, m.verify());
+    }
+
+    /** 时间范围与块的 min/max 不相交的块被跳过 */
+    @Test
+    void skipsBlocksOutsideTimeRange() throws Exception {
+        ArchiveSegment.Meta m = ArchiveSegment.open(write(1000, 100));
+        long[] rows = new long[1];
+        m.scan(new String[] { "created_at" }, BASE + 250_000L, BASE + 450_000L, b -> rows[0] += b.rows());
+        // 覆盖第 200-499 行所在的 3 个块
+        assertEquals(300, rows[0]);
+        rows[0] = 0;
+        m.scan(new String[] { "created_at" }, BASE + 2_000_000L, BASE + 3_000_000L, b -> rows[0] += b.rows());
+        assertEquals(0, rows[0]);
+    }
+
+    /** 空段可正常打开与校验 */
+    @Test
+    void emptySegment() throws Exception {
+        ArchiveSegment.Meta m = ArchiveSegment.open(write(0, 16));
+        assertEquals(0, m.getRows());
+        assertEquals(0, m.verify());
+    }
+
+    /** 列块内容被改动时校验和不一致 */
+    @Test
+    void verifyDetectsCorruptBlock() throws Exception {
+        Path file = write(500, 64);
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer b = ByteBuffer.allocate(1);
+            ch.read(b, 40);
+            b.flip();
+            byte flipped = (byte) (b.get() ^ 0x5A);
+            ch.write(ByteBuffer.wrap(new byte[] { flipped }), 40);
+        }
+        ArchiveSegment.Meta m = ArchiveSegment.open(file);
+        assertThrows(IOException.class, m::verify);
+    }
+
+    /** 截断的文件（尾部元数据缺失）无法打开 */
+    @Test
+    void rejectsTruncatedFile() throws Exception {
+        Path file = write(500, 64);
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ch.truncate(ch.size() - 20);
+        }
+        assertThrows(IOException.class, () -> ArchiveSegment.open(file));
+        Files.write(file, new byte[4]);
+        assertThrows(IOException.class, () -> ArchiveSegment.open(file));
+    }
+}
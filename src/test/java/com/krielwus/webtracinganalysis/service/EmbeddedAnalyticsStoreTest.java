@@ -0,0 +1,147 @@
+package com.krielwus.webtracinganalysis.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 嵌入式列存测试。
+ * 覆盖列写入与读回（加权计数、去重计数、路由统计）、聚簇重排后结果不变并持久化、覆盖起始日期，以及按保留规则重写分区。
+ * MySQL 回灌以空结果代替。
+ */
+class EmbeddedAnalyticsStoreTest {
+
+    @TempDir
+    Path dir;
+
+    private final List<EmbeddedAnalyticsStore> opened = new ArrayList<>();
+
+    /** 回灌查询不返回任何行 */
+    private static final class EmptyJdbcTemplate extends JdbcTemplate {
+        @Override
+        public <T> T execute(ConnectionCallback<T> action) {
+            return null;
+        }
+    }
+
+    @AfterEach
+    void close() {
+        opened.forEach(EmbeddedAnalyticsStore::stop);
+    }
+
+    private EmbeddedAnalyticsStore open(String rules) throws InterruptedException {
+        RetentionPolicy policy = new RetentionPolicy();
+        ReflectionTestUtils.setField(policy, "rulesText", rules);
+        policy.init();
+        EmbeddedAnalyticsStore store = new EmbeddedAnalyticsStore(new EmptyJdbcTemplate(), policy, null);
+        ReflectionTestUtils.setField(store, "backend", "embedded");
+        ReflectionTestUtils.setField(store, "dir", dir.toString());
+        ReflectionTestUtils.setField(store, "bootstrapDays", 30);
+        ReflectionTestUtils.setField(store, "scanThreads", 2);
+        store.start();
+        opened.add(store);
+        for (int i = 0; i < 500 && !store.isActive(); i++) Thread.sleep(10);
+        assertTrue(store.isActive());
+        return store;
+    }
+
+    private static long at(LocalDate day, int hour) {
+        return day.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli() + hour * 3_600_000L;
+    }
+
+    private static EmbeddedAnalyticsStore.Row row(long time, String app, String type, String route, String session,
+            String user, Double sampleRate) {
+        return new EmbeddedAnalyticsStore.Row(time, app, type, route, session, user, "dev-" + user, sampleRate);
+    }
+
+    /** 写入的行按列读回：采样率加权计数、按应用分组、去重计数与路由统计 */
+    @Test
+    void appendAndQuery() throws InterruptedException {
+        EmbeddedAnalyticsStore store = open("");
+        LocalDate day = LocalDate.now().minusDays(1);
+        store.append(List.of(
+                row(at(day, 1), "a", "CLICK", null, "s1", "u1", null),
+                row(at(day, 2), "a", "CLICK", null, "s1", "u1", 0.25),
+                row(at(day, 3), "b", "CLICK", null, "s2", "u2", null),
+                row(at(day, 4), "a", "PV", "/home", "s1", "u1", 0.5),
+                row(at(day, 5), "a", "PV", "/home", "s3", "u2", null),
+                row(at(day, 6), "a", "PV", "/list", "s3", "u2", null)));
+
+        assertEquals(5L, store.weightedCount("CLICK", "a", day));
+        List<Object[]> byApp = store.countDaily("CLICK", null, day, day, true);
+        assertEquals(2, byApp.size());
+        assertArrayEquals(new int[] { 2, 2, 2, 3 }, store.identityCounts(null, day, day));
+        assertArrayEquals(new int[] { 1, 1, 1, 1 }, store.identityCounts(Set.of("b"), day, day));
+
+        List<Object[]> routes = store.countRoutePv("a", day, day);
+        assertArrayEquals(new Object[] { "/home", 3L, 2L, 2L }, routes.get(0));
+        assertArrayEquals(new Object[] { "/list", 1L, 1L, 1L }, routes.get(1));
+    }
+
+    /** 聚簇重排后查询结果不变，重启后数据、字典与倒排仍然可用 */
+    @Test
+    void clusterKeepsResultsAcrossRestart() throws InterruptedException {
+        EmbeddedAnalyticsStore store = open("");
+        LocalDate day = LocalDate.now().minusDays(2);
+        List<EmbeddedAnalyticsStore.Row> rows = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            rows.add(row(at(day, i % 24), "app" + (i % 3), i % 2 == 0 ? "CLICK" : "ERROR", null, "s" + i, "u" + (i % 7), null));
+        }
+        store.append(rows);
+        long before = store.weightedCount("CLICK", "app1", day);
+        int[] identity = store.identityCounts(Set.of("app2"), day, day);
+
+        ReflectionTestUtils.invokeMethod(store, "clusterQuietly");
+        assertTrue(Files.exists(dir.resolve(day.format(java.time.format.DateTimeFormatter.BASIC_ISO_DATE)).resolve("app.idx")));
+        assertEquals(before, store.weightedCount("CLICK", "app1", day));
+        assertArrayEquals(identity, store.identityCounts(Set.of("app2"), day, day));
+        store.stop();
+
+        EmbeddedAnalyticsStore reopened = open("");
+        assertEquals(before, reopened.weightedCount("CLICK", "app1", day));
+        assertArrayEquals(identity, reopened.identityCounts(Set.of("app2"), day, day));
+    }
+
+    /** 覆盖起始日期为回灌窗口起点，更早的日期应回落到 MySQL */
+    @Test
+    void coverageStartsAtBootstrapWindow() throws InterruptedException {
+        EmbeddedAnalyticsStore store = open("");
+        LocalDate start = LocalDate.now().minusDays(29);
+        assertEquals(start, store.coverageStart());
+        assertTrue(store.covers(start));
+        assertFalse(store.covers(start.minusDays(1)));
+    }
+
+    /** 保留规则只删除命中的应用与事件类型组合，其余行保留 */
+    @Test
+    void retentionRewritesOnlyExpiredRows() throws InterruptedException {
+        EmbeddedAnalyticsStore store = open("demo:CLICK:7");
+        LocalDate day = LocalDate.now().minusDays(10);
+        store.append(List.of(
+                row(at(day, 1), "demo", "CLICK", null, "s1", "u1", null),
+                row(at(day, 2), "demo", "ERROR", null, "s1", "u1", null),
+                row(at(day, 3), "other", "CLICK", null, "s2", "u2", null)));
+
+        ReflectionTestUtils.invokeMethod(store, "applyRetentionQuietly");
+        assertEquals(0L, store.weightedCount("CLICK", "demo", day));
+        assertEquals(1L, store.weightedCount("ERROR", "demo", day));
+        assertEquals(1L, store.weightedCount("CLICK", "other", day));
+        assertEquals(1L, store.snapshot().get("expiredRows"));
+    }
+}
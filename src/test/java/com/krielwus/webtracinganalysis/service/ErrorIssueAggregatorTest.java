@@ -0,0 +1,100 @@
+package com.krielwus.webtracinganalysis.service;
+
+import com.krielwus.webtracinganalysis.entity.TracingEvent;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * 错误聚合器测试。
+ * 覆盖同键合并与写入失败时取出条目合并回待写入集合、下次写入计数不丢失。
+ */
+class ErrorIssueAggregatorTest {
+
+    /** 记录 batchUpdate 参数，可设置为失败 */
+    private static final class RecordingJdbcTemplate extends JdbcTemplate {
+        boolean fail;
+        final List<Object[]> rows = new ArrayList<>();
+
+        @Override
+        public int[] batchUpdate(String sql, List<Object[]> batchArgs) {
+            if (fail) throw new DataAccessResourceFailureException("down");
+            rows.addAll(batchArgs);
+            return new int[batchArgs.size()];
+        }
+    }
+
+    private static final class NoopTransactionManager implements PlatformTransactionManager {
+        int rollbacks;
+
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            return new SimpleTransactionStatus();
+        }
+
+        @Override
+        public void commit(TransactionStatus status) {
+        }
+
+        @Override
+        public void rollback(TransactionStatus status) {
+            rollbacks++;
+        }
+    }
+
+    private static TracingEvent error(long id, long fingerprint, long at) {
+        TracingEvent e = new TracingEvent();
+        e.setId(id);
+        e.setAppCode("app");
+        e.setFingerprint(fingerprint);
+        e.setErrorMessage("boom " + id);
+        e.setCreatedAt(new Date(at));
+        return e;
+    }
+
+    private static ErrorIssueAggregator aggregator(JdbcTemplate jdbc, PlatformTransactionManager tm) {
+        ErrorIssueAggregator a = new ErrorIssueAggregator(jdbc, tm, new ErrorFingerprinter());
+        ReflectionTestUtils.setField(a, "enabled", true);
+        ReflectionTestUtils.setField(a, "maxPending", 10000);
+        return a;
+    }
+
+    /** 写入失败后条目保留，与之后新记录的计数合并，恢复后一次写入 */
+    @Test
+    void failedFlushKeepsCounts() {
+        RecordingJdbcTemplate jdbc = new RecordingJdbcTemplate();
+        NoopTransactionManager tm = new NoopTransactionManager();
+        ErrorIssueAggregator a = aggregator(jdbc, tm);
+        a.record(List.of(error(1, 7, 1000), error(2, 7, 3000), error(3, 9, 2000)));
+
+        jdbc.fail = true;
+        assertThrows(DataAccessResourceFailureException.class, a::flush);
+        assertEquals(1, tm.rollbacks);
+        assertEquals(2, a.snapshot().get("pending"));
+
+        a.record(Collections.singletonList(error(4, 7, 500)));
+        jdbc.fail = false;
+        assertEquals(2, a.flush());
+        assertEquals(0, a.snapshot().get("pending"));
+
+        Object[] issue = jdbc.rows.stream().filter(r -> (Long) r[1] == 7L).findFirst().orElseThrow();
+        assertEquals(3L, issue[7]);
+        assertEquals(500L, ((Date) issue[5]).getTime());
+        assertEquals(3000L, ((Date) issue[6]).getTime());
+        // 样例取最晚一次的事件
+        assertEquals(2L, issue[8]);
+    }
+}
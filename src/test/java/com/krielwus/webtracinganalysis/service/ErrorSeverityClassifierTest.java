@@ -0,0 +1,44 @@
+package com.krielwus.webtracinganalysis.service;
+
+import com.krielwus.webtracinganalysis.entity.ErrorSeverity;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 错误等级分类规则测试。
+ * 覆盖上报等级优先、消息关键字与错误码规则的先后顺序。
+ */
+class ErrorSeverityClassifierTest {
+
+    private final ErrorSeverityClassifier classifier = new ErrorSeverityClassifier();
+
+    /** 上报的等级字段优先于其他规则，无法识别的取值回落到规则判断 */
+    @Test
+    void declaredLevelWins() {
+        assertEquals(ErrorSeverity.CRITICAL, classifier.classify("404", "timeout", "crit"));
+        assertEquals(ErrorSeverity.WARN, classifier.classify("500", "out of memory", "Warning"));
+        assertEquals(ErrorSeverity.INFO, classifier.classify(null, null, "info"));
+        assertEquals(ErrorSeverity.CRITICAL, classifier.classify(null, "JavaScript heap out of memory", "unknown"));
+    }
+
+    /** 消息关键字大小写不敏感，CRITICAL 优先于 FATAL 与 WARN */
+    @Test
+    void messageKeywords() {
+        assertEquals(ErrorSeverity.CRITICAL, classifier.classify(null, "RangeError: Maximum call stack size exceeded", null));
+        assertEquals(ErrorSeverity.CRITICAL, classifier.classify(null, "ChunkLoadError: Loading chunk 12 failed", null));
+        assertEquals(ErrorSeverity.CRITICAL, classifier.classify("404", "Failed to fetch dynamically imported module", null));
+        assertEquals(ErrorSeverity.FATAL, classifier.classify("503", "Fatal: renderer crashed, request timeout", null));
+        assertEquals(ErrorSeverity.WARN, classifier.classify(null, "TypeError: Failed to fetch", null));
+        assertEquals(ErrorSeverity.WARN, classifier.classify(null, "请求超时 timed out", null));
+    }
+
+    /** 5xx 为 ERROR、4xx 为 WARN，且错误码规则先于超时/网络关键字 */
+    @Test
+    void statusCodes() {
+        assertEquals(ErrorSeverity.ERROR, classifier.classify("502", "network error", null));
+        assertEquals(ErrorSeverity.WARN, classifier.classify("404", "not found", null));
+        assertEquals(ErrorSeverity.ERROR, classifier.classify("5a0", "something broke", null));
+        assertEquals(ErrorSeverity.ERROR, classifier.classify(null, null, null));
+    }
+}
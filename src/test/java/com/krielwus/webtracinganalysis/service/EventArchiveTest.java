@@ -0,0 +1,169 @@
+package com.krielwus.webtracinganalysis.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 冷数据归档查询测试。
+ * 覆盖扫描目录加载段、按采样率加权的按日统计、路由统计（含没有 sample_rate 列的早期段）、
+ * 跨归档边界的路由统计中会话与用户只计一次、损坏的 .pending 段被隔离而不删除库中数据，以及超出最长保留期的段被删除。
+ */
+class EventArchiveTest {
+
+    private static final List<ArchiveSegment.Column> EVENT_COLUMNS = Arrays.asList(
+            new ArchiveSegment.Column("id", ArchiveSegment.Kind.DELTA),
+            new ArchiveSegment.Column("created_at", ArchiveSegment.Kind.DELTA),
+            new ArchiveSegment.Column("app_code", ArchiveSegment.Kind.DICT),
+            new ArchiveSegment.Column("event_type", ArchiveSegment.Kind.DICT),
+            new ArchiveSegment.Column("sample_rate", ArchiveSegment.Kind.DOUBLE));
+    private static final List<ArchiveSegment.Column> LEGACY_ROUTE_COLUMNS = Arrays.asList(
+            new ArchiveSegment.Column("id", ArchiveSegment.Kind.DELTA),
+            new ArchiveSegment.Column("created_at", ArchiveSegment.Kind.DELTA),
+            new ArchiveSegment.Column("app_code", ArchiveSegment.Kind.DICT),
+            new ArchiveSegment.Column("session_id", ArchiveSegment.Kind.TEXT),
+            new ArchiveSegment.Column("sdk_user_uuid", ArchiveSegment.Kind.TEXT),
+            new ArchiveSegment.Column("route_path", ArchiveSegment.Kind.DICT));
+
+    @TempDir
+    Path dir;
+
+    private EventArchive archive(String rules) {
+        RetentionPolicy policy = new RetentionPolicy();
+        ReflectionTestUtils.setField(policy, "rulesText", rules);
+        policy.init();
+        EventArchive a = new EventArchive(null, policy);
+        ReflectionTestUtils.setField(a, "dir", dir.toString());
+        return a;
+    }
+
+    private static long at(LocalDate day, int minute) {
+        return day.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli() + minute * 60_000L;
+    }
+
+    private Path segment(String table, LocalDate day, String suffix, List<ArchiveSegment.Column> columns,
+            List<Object[]> rows) throws IOException {
+        Path tableDir = Files.createDirectories(dir.resolve(table));
+        Path file = tableDir.resolve(day.format(DateTimeFormatter.BASIC_ISO_DATE) + suffix);
+        try (ArchiveSegment.Writer w = ArchiveSegment.create(file, table, day.toEpochDay(), columns, "created_at", 2)) {
+            for (Object[] r : rows) w.append(r);
+            w.finish();
+        }
+        return file;
+    }
+
+    /** 按日统计按 1/sample_rate 加权，空采样率按 1 计，支持按应用过滤与分组 */
+    @Test
+    void countsWeightedEvents() throws IOException {
+        LocalDate day = LocalDate.now().minusDays(40);
+        segment(EventArchive.TRACE_EVENT, day, ".seg", EVENT_COLUMNS, List.of(
+                new Object[] { 1L, at(day, 1), "a", "CLICK", null },
+                new Object[] { 2L, at(day, 2), "a", "CLICK", 0.5 },
+                new Object[] { 3L, at(day, 3), "b", "CLICK", null },
+                new Object[] { 4L, at(day, 4), "a", "ERROR", null }));
+        EventArchive a = archive("");
+        a.rescan();
+
+        assertTrue(a.isArchived(EventArchive.TRACE_EVENT, day));
+        assertTrue(a.hasArchived(EventArchive.TRACE_EVENT, day.minusDays(1), day.plusDays(1)));
+        assertFalse(a.isArchived(EventArchive.PAGE_VIEW_ROUTE, day));
+        assertEquals(3L, a.sumWeighted("CLICK", "a", day));
+        assertEquals(0L, a.sumWeighted("CLICK", "c", day));
+        List<Object[]> total = a.countDaily("CLICK", null, day, day, false);
+        assertArrayEquals(new Object[] { day.toString(), 4L }, total.get(0));
+        assertEquals(2, a.countDaily("CLICK", Set.of("a", "b"), day, day, true).size());
+    }
+
+    /** 早期段没有 sample_rate 列时 PV 按权重 1 计，会话与用户去重 */
+    @Test
+    void routePvOnLegacySegment() throws IOException {
+        LocalDate day = LocalDate.now().minusDays(40);
+        segment(EventArchive.PAGE_VIEW_ROUTE, day, ".seg", LEGACY_ROUTE_COLUMNS, List.of(
+                new Object[] { 1L, at(day, 1), "a", "s1", "u1", "/home" },
+                new Object[] { 2L, at(day, 2), "a", "s1", "u1", "/home" },
+                new Object[] { 3L, at(day, 3), "a", "s2", null, "/home" },
+                new Object[] { 4L, at(day, 4), "b", "s3", "u3", "/home" }));
+        EventArchive a = archive("");
+        a.rescan();
+
+        List<Object[]> routes = a.countRoutePv("a", day, day);
+        assertEquals(1, routes.size());
+        assertArrayEquals(new Object[] { "/home", 3L, 2L, 1L }, routes.get(0));
+    }
+
+    /** 归档与库内合并：PV 相加，两侧都出现的会话与用户只计一次，结果按 PV 倒序 */
+    @Test
+    void mixedRangeCountsDistinctAcrossBoundary() throws IOException {
+        LocalDate day = LocalDate.now().minusDays(40);
+        segment(EventArchive.PAGE_VIEW_ROUTE, day, ".seg", LEGACY_ROUTE_COLUMNS, List.of(
+                new Object[] { 1L, at(day, 1), "a", "s1", "u1", "/home" },
+                new Object[] { 2L, at(day, 2), "a", "s2", "u2", "/list" }));
+        EventArchive a = archive("");
+        a.rescan();
+
+        // 库内按 [route_path, session_id, sdk_user_uuid, pv] 分组的行
+        List<Object[]> db = List.of(
+                new Object[] { "/home", "s1", "u1", 2.0 },
+                new Object[] { "/home", "s3", "u1", 1.0 },
+                new Object[] { "/list", null, null, 4.0 });
+        List<Object[]> rows = TracingService.mergeRoutePv(db, a.routeVisits("a", day, day.plusDays(40)));
+        assertEquals(2, rows.size());
+        assertArrayEquals(new Object[] { "/list", 5L, 1L, 1L }, rows.get(0));
+        assertArrayEquals(new Object[] { "/home", 4L, 2L, 1L }, rows.get(1));
+    }
+
+    /** 校验失败的 .pending 段改名为 .corrupt，不继续删除库中数据、不发布 */
+    @Test
+    void corruptPendingIsQuarantined() throws Exception {
+        LocalDate day = LocalDate.now().minusDays(40);
+        Path pending = segment(EventArchive.TRACE_EVENT, day, ".pending", EVENT_COLUMNS, List.of(
+                new Object[] { 1L, at(day, 1), "a", "CLICK", null },
+                new Object[] { 2L, at(day, 2), "a", "CLICK", null },
+                new Object[] { 3L, at(day, 3), "a", "CLICK", null }));
+        byte[] bytes = Files.readAllBytes(pending);
+        // 头部 8 字节之后即第一个列块
+        bytes[8] ^= 0x5A;
+        Files.write(pending, bytes);
+
+        EventArchive a = archive("");
+        ReflectionTestUtils.invokeMethod(a, "resumePending", (Connection) null, EventArchive.TRACE_EVENT);
+        assertFalse(Files.exists(pending));
+        assertTrue(Files.exists(pending.resolveSibling(pending.getFileName() + ".corrupt")));
+        assertFalse(a.isArchived(EventArchive.TRACE_EVENT, day));
+    }
+
+    /** 早于最长保留期的段在归档轮次中删除，保留期内的不受影响 */
+    @Test
+    void expiresSegmentsBeyondRetention() throws IOException {
+        LocalDate old = LocalDate.now().minusDays(120);
+        LocalDate recent = LocalDate.now().minusDays(40);
+        Path expired = segment(EventArchive.TRACE_EVENT, old, ".seg", EVENT_COLUMNS,
+                List.<Object[]>of(new Object[] { 1L, at(old, 1), "a", "CLICK", null }));
+        Path kept = segment(EventArchive.TRACE_EVENT, recent, ".seg", EVENT_COLUMNS,
+                List.<Object[]>of(new Object[] { 2L, at(recent, 1), "a", "CLICK", null }));
+        EventArchive a = archive("*:*:90");
+        a.rescan();
+
+        ReflectionTestUtils.invokeMethod(a, "expireSegments");
+        assertFalse(Files.exists(expired));
+        assertTrue(Files.exists(kept));
+        assertFalse(a.isArchived(EventArchive.TRACE_EVENT, old));
+        assertTrue(a.isArchived(EventArchive.TRACE_EVENT, recent));
+    }
+}
@@ -0,0 +1,71 @@
+package com.krielwus.webtracinganalysis.service;
+
+import com.krielwus.webtracinganalysis.info.IngestPayload;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 上报准入控制测试。
+ * 覆盖令牌桶的足额扣减（超过突发容量的批量记为欠额）、令牌桶数上限与采样率配置解析。
+ */
+class IngestAdmissionControlTest {
+
+    /** 突发容量内按条数扣减，用尽后拒绝 */
+    @Test
+    void bucketLimitsWithinBurst() {
+        IngestAdmissionControl.TokenBucket bucket = new IngestAdmissionControl.TokenBucket();
+        assertTrue(bucket.tryAcquire(6, 1, 10));
+        assertTrue(bucket.tryAcquire(4, 1, 10));
+        assertFalse(bucket.tryAcquire(1, 1, 10));
+    }
+
+    /** 超过突发容量的批量只在令牌满时放行，并按全部条数记欠额，欠额补足前的上报一律拒绝 */
+    @Test
+    void oversizedBatchIsChargedInFull() throws Exception {
+        IngestAdmissionControl.TokenBucket bucket = new IngestAdmissionControl.TokenBucket();
+        // 每秒 100 个令牌、突发 10：一次消耗 30 个，欠额约 200ms 才能补足
+        assertTrue(bucket.tryAcquire(30, 100, 10));
+        assertFalse(bucket.tryAcquire(30, 100, 10));
+        Thread.sleep(50);
+        assertFalse(bucket.tryAcquire(1, 100, 10));
+        Thread.sleep(300);
+        assertTrue(bucket.tryAcquire(1, 100, 10));
+    }
+
+    /** 非法项与越界采样率被忽略，类型统一为大写 */
+    @Test
+    void parsesSampleRates() {
+        Map<String, Double> rates = IngestAdmissionControl.parseSampleRates("click:0.1, PV:1,ERROR:0,bad,PERF:x,X:2");
+        assertEquals(2, rates.size());
+        assertEquals(0.1, rates.get("CLICK"));
+        assertEquals(1.0, rates.get("PV"));
+    }
+
+    private static IngestPayload payload(String appCode) {
+        IngestPayload p = new IngestPayload(new byte[0]);
+        p.setBaseInfoSlice(0, 0);
+        p.setAppCode(appCode);
+        return p;
+    }
+
+    /** 令牌桶数达到上限后，没有应用级策略的新 appCode 共用 _other 桶，已有的桶不受影响 */
+    @Test
+    void excessCodesShareOneBucket() {
+        IngestAdmissionControl control = new IngestAdmissionControl(null);
+        ReflectionTestUtils.setField(control, "defaultRate", 1);
+        ReflectionTestUtils.setField(control, "defaultBurst", 1);
+        ReflectionTestUtils.setField(control, "maxBuckets", 2);
+        assertTrue(control.tryAcquire(payload("a")));
+        assertTrue(control.tryAcquire(payload("b")));
+        assertTrue(control.tryAcquire(payload("random-1")));
+        assertFalse(control.tryAcquire(payload("random-2")));
+        assertFalse(control.tryAcquire(payload("a")));
+        assertEquals(3, control.snapshot().get("buckets"));
+    }
+}
@@ -0,0 +1,81 @@
+package com.krielwus.webtracinganalysis.service;
+
+import com.krielwus.webtracinganalysis.info.IngestEvent;
+import com.krielwus.webtracinganalysis.info.IngestPayload;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 上报事件去重测试。
+ * 覆盖默认 id 模式下只按 SDK 标识去重、内容相同的真实事件保留，content 模式的内容去重，以及丢弃数与期望误判数的统计。
+ */
+class IngestDeduplicatorTest {
+
+    private static final byte[] CLICK = "{\"eventType\":\"CLICK\"}".getBytes(StandardCharsets.UTF_8);
+
+    private static IngestDeduplicator deduplicator(String mode) {
+        IngestDeduplicator d = new IngestDeduplicator();
+        ReflectionTestUtils.setField(d, "enabled", true);
+        ReflectionTestUtils.setField(d, "windowSeconds", 600L);
+        ReflectionTestUtils.setField(d, "generations", 3);
+        ReflectionTestUtils.setField(d, "expectedPerGeneration", 10000L);
+        ReflectionTestUtils.setField(d, "fpp", 0.001);
+        ReflectionTestUtils.setField(d, "mode", mode);
+        d.init();
+        return d;
+    }
+
+    private static IngestPayload payload(String... ids) {
+        IngestPayload p = new IngestPayload(CLICK);
+        p.setAppCode("app");
+        for (String id : ids) {
+            IngestEvent e = new IngestEvent(CLICK, 0, CLICK.length);
+            e.setIdempotencyKey(id);
+            p.getEvents().add(e);
+        }
+        return p;
+    }
+
+    /** 默认模式：带标识的重放被丢弃，内容相同但没有标识的事件全部保留 */
+    @Test
+    void idModeKeepsIdenticalEventsWithoutId() {
+        IngestDeduplicator d = deduplicator("id");
+        IngestPayload first = payload("a", null, null);
+        assertEquals(0, d.removeDuplicates(first));
+        d.remember(first);
+
+        IngestPayload replay = payload("a", null, null, "b");
+        assertEquals(1, d.removeDuplicates(replay));
+        assertEquals(3, replay.getEvents().size());
+
+        Map<String, Object> s = d.snapshot();
+        assertEquals("id", s.get("mode"));
+        assertEquals(3L, s.get("checked"));
+        assertEquals(1L, s.get("dropped"));
+        assertTrue((Double) s.get("estimatedFalsePositives") < 0.01);
+    }
+
+    /** content 模式：没有标识时按内容去重 */
+    @Test
+    void contentModeDedupsByContent() {
+        IngestDeduplicator d = deduplicator("content");
+        IngestPayload first = payload((String) null);
+        d.removeDuplicates(first);
+        d.remember(first);
+        assertEquals(1, d.removeDuplicates(payload((String) null)));
+    }
+
+    /** 未被接收的载荷不写入过滤器，重试时不会被误判为重复 */
+    @Test
+    void rejectedPayloadIsNotRemembered() {
+        IngestDeduplicator d = deduplicator("id");
+        assertEquals(0, d.removeDuplicates(payload("x")));
+        assertEquals(0, d.removeDuplicates(payload("x")));
+    }
+}
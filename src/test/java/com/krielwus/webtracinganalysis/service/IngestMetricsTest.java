@@ -0,0 +1,39 @@
+package com.krielwus.webtracinganalysis.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 上报入队计数器测试。
+ * 覆盖应用数达到上限后新出现的 appCode 计入 _other，已有应用照常分别计数。
+ */
+class IngestMetricsTest {
+
+    /** 随机 appCode 不会让计数表无限增长，超出部分汇总到 _other，_total 不受影响 */
+    @Test
+    @SuppressWarnings("unchecked")
+    void foldsExcessAppsIntoOther() {
+        IngestMetrics metrics = new IngestMetrics();
+        ReflectionTestUtils.setField(metrics, "maxApps", 3);
+        for (int i = 0; i < 100; i++) metrics.record("app-" + i, IngestResult.ACCEPTED, 2);
+        metrics.record("app-0", IngestResult.THROTTLED, 1);
+        metrics.recordDuplicates("random", 5);
+
+        Map<String, Object> snapshot = metrics.snapshot();
+        // 3 个应用 + _other + _total
+        assertEquals(5, snapshot.size());
+        assertTrue(snapshot.containsKey(IngestMetrics.OTHER));
+        Map<String, Object> other = (Map<String, Object>) snapshot.get(IngestMetrics.OTHER);
+        assertEquals(97L, ((Map<String, Object>) other.get("accepted")).get("beacons"));
+        assertEquals(5L, other.get("duplicates"));
+        Map<String, Object> app0 = (Map<String, Object>) snapshot.get("app-0");
+        assertEquals(1L, ((Map<String, Object>) app0.get("throttled")).get("beacons"));
+        Map<String, Object> total = (Map<String, Object>) snapshot.get("_total");
+        assertEquals(200L, ((Map<String, Object>) total.get("accepted")).get("events"));
+    }
+}
@@ -0,0 +1,82 @@
+package com.krielwus.webtracinganalysis.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 停机溢出文件测试。
+ * 覆盖写入后按顺序回放、文件保留到 deleteReplayed 才删除（落库前崩溃可重新回放）、损坏尾部被截断，以及死信文件不参与回放。
+ */
+class IngestSpillFileTest {
+
+    @TempDir
+    Path dir;
+
+    private IngestSpillFile spillFile() {
+        IngestSpillFile f = new IngestSpillFile();
+        ReflectionTestUtils.setField(f, "dir", dir.toString());
+        return f;
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** 回放不删除文件，再次启动仍可回放；deleteReplayed 后文件被删除 */
+    @Test
+    void replayKeepsFilesUntilDeleted() throws IOException {
+        IngestSpillFile f = spillFile();
+        assertEquals(2, f.write(List.of(bytes("a"), bytes("b"))));
+
+        List<String> seen = new ArrayList<>();
+        assertEquals(2, f.replay(b -> seen.add(new String(b, StandardCharsets.UTF_8))));
+        assertEquals(List.of("a", "b"), seen);
+        assertEquals(1, f.pendingFiles());
+
+        // 模拟落库前崩溃：新实例重新回放同一文件
+        assertEquals(2, spillFile().replay(b -> { }));
+
+        f.deleteReplayed();
+        assertEquals(0, f.pendingFiles());
+    }
+
+    /** 校验失败的记录及其之后的内容被丢弃，之前的记录正常回放 */
+    @Test
+    void corruptTailIsTruncated() throws IOException {
+        IngestSpillFile f = spillFile();
+        f.write(List.of(bytes("ok")));
+        Path file;
+        try (var s = Files.list(dir)) {
+            file = s.findFirst().orElseThrow();
+        }
+        Files.write(file, new byte[] { 0, 0, 0, 3, 1, 2, 3, 4, 'x', 'y', 'z' }, StandardOpenOption.APPEND);
+
+        List<String> seen = new ArrayList<>();
+        assertEquals(1, f.replay(b -> seen.add(new String(b, StandardCharsets.UTF_8))));
+        assertEquals(List.of("ok"), seen);
+    }
+
+    /** 死信记录追加到独立文件，不计入待回放文件，也不会在启动时自动回放 */
+    @Test
+    void deadLettersAreNotReplayed() {
+        IngestSpillFile f = spillFile();
+        assertTrue(f.deadLetter(bytes("bad-1")));
+        assertTrue(f.deadLetter(bytes("bad-2")));
+        assertEquals(2L, f.deadLettered());
+        assertTrue(Files.exists(dir.resolve("deadletter.bin")));
+        assertEquals(0, f.pendingFiles());
+        assertEquals(0, f.replay(b -> { }));
+    }
+}
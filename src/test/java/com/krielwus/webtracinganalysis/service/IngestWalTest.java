@@ -0,0 +1,150 @@
+package com.krielwus.webtracinganalysis.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 预写日志回放测试。
+ * 覆盖未提交记录的回放、checkpoint 之前的记录不重放、积压超过队列容量时回放不与提交互相等待，
+ * 以及打开后回放前即可追加（回放交给后台线程）。
+ */
+class IngestWalTest {
+
+    @TempDir
+    Path dir;
+
+    private IngestWal wal(int segmentBytes) {
+        IngestWal wal = new IngestWal();
+        ReflectionTestUtils.setField(wal, "enabled", true);
+        ReflectionTestUtils.setField(wal, "dir", dir.toString());
+        ReflectionTestUtils.setField(wal, "segmentBytes", segmentBytes);
+        return wal;
+    }
+
+    private static byte[] bytes(int i) {
+        return ("{\"n\":" + i + "}").getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** 已提交的记录不回放，未提交的按写入顺序回放，跨段同样生效 */
+    @Test
+    void replaysOnlyUncommitted() throws Exception {
+        IngestWal wal = wal(256);
+        wal.open((p, b) -> { });
+        List<Long> positions = new ArrayList<>();
+        for (int i = 0; i < 40; i++) positions.add(wal.append(bytes(i)));
+        wal.commit(positions.subList(0, 10));
+        wal.close();
+
+        List<String> replayed = new ArrayList<>();
+        IngestWal reopened = wal(256);
+        reopened.open((p, b) -> replayed.add(new String(b, StandardCharsets.UTF_8)));
+        assertEquals(30, replayed.size());
+        assertEquals("{\"n\":10}", replayed.get(0));
+        assertEquals("{\"n\":39}", replayed.get(29));
+        assertEquals(30, reopened.inFlightCount());
+        reopened.close();
+    }
+
+    /** 写入中断留下的损坏尾部被忽略，之前的完整记录照常回放 */
+    @Test
+    void stopsAtCorruptTail() throws Exception {
+        IngestWal wal = wal(4096);
+        wal.open((p, b) -> { });
+        for (int i = 0; i < 5; i++) wal.append(bytes(i));
+        wal.close();
+        Path segment;
+        try (var files = Files.list(dir)) {
+            segment = files.filter(p -> p.toString().endsWith(".wal")).sorted().findFirst().orElseThrow();
+        }
+        // 破坏第 4 条记录的载荷，使其校验失败
+        int recordBytes = 8 + bytes(0).length;
+        try (var ch = java.nio.channels.FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            ch.write(java.nio.ByteBuffer.wrap(new byte[] { 'x' }), 3L * recordBytes + 9);
+        }
+        List<Long> replayed = new ArrayList<>();
+        IngestWal reopened = wal(4096);
+        reopened.open((p, b) -> replayed.add(p));
+        assertEquals(3, replayed.size());
+        reopened.close();
+    }
+
+    /** 积压大于队列容量：回放阻塞在满队列时，消费线程仍能提交并腾出空间，启动不会卡住 */
+    @Test
+    void replayDoesNotBlockCommits() throws Exception {
+        IngestWal wal = wal(1 << 16);
+        wal.open((p, b) -> { });
+        for (int i = 0; i < 500; i++) wal.append(bytes(i));
+        wal.close();
+
+        IngestWal reopened = wal(1 << 16);
+        BlockingQueue<Long> queue = new ArrayBlockingQueue<>(8);
+        Thread consumer = new Thread(() -> {
+            try {
+                while (true) {
+                    Long p = queue.poll(5, TimeUnit.SECONDS);
+                    if (p == null) return;
+                    reopened.commit(Collections.singletonList(p));
+                }
+            } catch (InterruptedException ignored) {
+            }
+        });
+        consumer.setDaemon(true);
+        consumer.start();
+        assertTimeoutPreemptively(java.time.Duration.ofSeconds(10), () -> reopened.open((p, b) -> {
+            try {
+                queue.put(p);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (reopened.inFlightCount() > 0 && System.currentTimeMillis() < deadline) Thread.sleep(5);
+        assertEquals(0, reopened.inFlightCount());
+        reopened.close();
+
+        List<Long> again = new ArrayList<>();
+        IngestWal third = wal(1 << 16);
+        third.open((p, b) -> again.add(p));
+        assertTrue(again.isEmpty());
+        third.close();
+    }
+
+    /** open 返回后即可追加新记录，之后回放的只有上次未提交的记录；未回放完的记录仍登记为在途 */
+    @Test
+    void appendsBeforeDeferredReplay() throws Exception {
+        IngestWal wal = wal(4096);
+        wal.open((p, b) -> { });
+        for (int i = 0; i < 3; i++) wal.append(bytes(i));
+        wal.close();
+
+        IngestWal reopened = wal(4096);
+        List<Long> pending = reopened.open();
+        assertEquals(3, pending.size());
+        long fresh = reopened.append(bytes(100));
+        assertEquals(4, reopened.inFlightCount());
+
+        List<String> replayed = new ArrayList<>();
+        reopened.replay(pending, (p, b) -> replayed.add(new String(b, StandardCharsets.UTF_8)));
+        assertEquals(List.of("{\"n\":0}", "{\"n\":1}", "{\"n\":2}"), replayed);
+        reopened.commit(pending);
+        reopened.commit(Collections.singletonList(fresh));
+        assertEquals(0, reopened.inFlightCount());
+        reopened.close();
+    }
+}
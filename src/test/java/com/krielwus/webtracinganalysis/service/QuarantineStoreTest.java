@@ -0,0 +1,99 @@
+package com.krielwus.webtracinganalysis.service;
+
+import com.krielwus.webtracinganalysis.info.IngestPayload;
+import com.krielwus.webtracinganalysis.repository.ApplicationInfoRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 未登记应用隔离存储测试。
+ * 覆盖按应用追加与上限、重启后恢复大小统计、登记后按顺序回放并删除，以及注册表按事件拆分隔离无 baseInfo 的上报。
+ */
+class QuarantineStoreTest {
+
+    @TempDir
+    Path dir;
+
+    private final TrackPayloadDecoder decoder = new TrackPayloadDecoder();
+
+    private QuarantineStore store(long perApp, long total) {
+        QuarantineStore s = new QuarantineStore();
+        ReflectionTestUtils.setField(s, "dir", dir.toString());
+        ReflectionTestUtils.setField(s, "maxBytesPerApp", perApp);
+        ReflectionTestUtils.setField(s, "maxTotalBytes", total);
+        s.init();
+        return s;
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** 超出单应用上限的载荷只计数；重启后保留统计，回放按写入顺序并删除文件 */
+    @Test
+    void storesWithinBoundsAndReleases() {
+        QuarantineStore s = store(30, 1000);
+        assertTrue(s.store("app", bytes("{\"a\":1}")));
+        assertTrue(s.store("app", bytes("{\"a\":2}")));
+        assertFalse(s.store("app", bytes("{\"a\":3}")));
+        assertEquals(1L, s.snapshot().get("overflowed"));
+
+        QuarantineStore restarted = store(30, 1000);
+        assertTrue(restarted.has("app"));
+        assertEquals(30L, restarted.snapshot().get("bytes"));
+        List<String> seen = new ArrayList<>();
+        assertEquals(2, restarted.release("app", b -> seen.add(new String(b, StandardCharsets.UTF_8))));
+        assertEquals(List.of("{\"a\":1}", "{\"a\":2}"), seen);
+        assertFalse(restarted.has("app"));
+        assertEquals(0L, restarted.snapshot().get("bytes"));
+    }
+
+    /** 文件名只含安全字符，且清洗后相同的不同编码不会冲突 */
+    @Test
+    void fileNamesAreSafeAndDistinct() {
+        String a = QuarantineStore.fileName("../a b");
+        assertFalse(a.contains("/") || a.contains(" "));
+        assertNotEquals(a, QuarantineStore.fileName("../a_b"));
+    }
+
+    /** 无 baseInfo 的上报：未登记应用的事件被移出并按应用写入隔离存储，登记后回放为可解码的上报 */
+    @Test
+    void registryQuarantinesUnregisteredEvents() {
+        QuarantineStore s = store(1 << 20, 1 << 20);
+        List<String> codes = new ArrayList<>(List.of("known"));
+        ApplicationInfoRepository repo = (ApplicationInfoRepository) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[] { ApplicationInfoRepository.class },
+                (proxy, method, args) -> "findAllAppCodes".equals(method.getName()) ? new ArrayList<>(codes) : null);
+        ApplicationRegistry registry = new ApplicationRegistry(repo, s);
+        ReflectionTestUtils.setField(registry, "mode", "quarantine");
+        registry.refresh();
+
+        IngestPayload p = decoder.decode(bytes("{\"eventInfo\":[{\"appCode\":\"known\",\"eventType\":\"PV\"},"
+                + "{\"appCode\":\"new\",\"eventType\":\"CLICK\"},{\"appCode\":\"new\",\"eventType\":\"PV\"}]}"));
+        assertEquals(2, registry.filterUnregistered(p));
+        assertEquals(1, p.getEvents().size());
+        assertTrue(s.has("new"));
+
+        List<IngestPayload> released = new ArrayList<>();
+        registry.setReleaseTarget(b -> released.add(decoder.decode(b)));
+        assertTrue(released.isEmpty());
+        codes.add("new");
+        registry.refresh();
+        assertEquals(1, released.size());
+        assertEquals(2, released.get(0).getEvents().size());
+        assertEquals("CLICK", released.get(0).getEvents().get(0).getEventType());
+        assertFalse(s.has("new"));
+    }
+}
@@ -0,0 +1,171 @@
+package com.krielwus.webtracinganalysis.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 数据保留清理测试。
+ * 覆盖按主键区间分块扫描、只删除命中规则的过期行且每次删除不超过一块、主键与时间同序的表遇到整块未过期时提前结束，
+ * 以及清空任务按区间分块删除。数据库以内存中的 trace_event 代替。
+ */
+class RetentionServiceTest {
+
+    private static final long DAY = 86_400_000L;
+
+    /** 内存中的 trace_event：id -> [app_code, event_type, created_at]，记录扫描区间与每次删除的行数 */
+    private static final class FakeTable extends JdbcTemplate {
+        final TreeMap<Long, Object[]> rows = new TreeMap<>();
+        final List<long[]> scans = new ArrayList<>();
+        final List<Integer> deletes = new ArrayList<>();
+
+        void add(long id, String app, String type, long createdAt) {
+            rows.put(id, new Object[] { app, type, new Timestamp(createdAt) });
+        }
+
+        @Override
+        public <T> List<T> query(String sql, RowMapper<T> rowMapper, Object... args) {
+            if (sql.contains("retention_progress")) return Collections.emptyList();
+            long from = (Long) args[0], to = (Long) args[1];
+            scans.add(new long[] { from, to });
+            List<T> out = new ArrayList<>();
+            for (Map.Entry<Long, Object[]> e : rows.subMap(from, to).entrySet()) {
+                try {
+                    out.add(rowMapper.mapRow(resultSet(e.getKey(), e.getValue()), out.size()));
+                } catch (SQLException ex) {
+                    throw new IllegalStateException(ex);
+                }
+            }
+            return out;
+        }
+
+        @Override
+        public <T> T queryForObject(String sql, Class<T> requiredType) {
+            if (rows.isEmpty()) return null;
+            return requiredType.cast(sql.contains("MIN(id)") ? rows.firstKey() : rows.lastKey());
+        }
+
+        @Override
+        public List<Map<String, Object>> queryForList(String sql) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public int update(String sql, Object... args) {
+            if (!sql.startsWith("DELETE FROM trace_event")) return 1;
+            int removed = 0;
+            if (sql.contains("id IN")) {
+                for (Object a : args) {
+                    if (a instanceof Long && rows.remove(a) != null) removed++;
+                }
+            } else {
+                Map<Long, Object[]> range = rows.subMap((Long) args[0], (Long) args[1]);
+                removed = range.size();
+                range.clear();
+            }
+            deletes.add(removed);
+            return removed;
+        }
+
+        private static ResultSet resultSet(long id, Object[] r) {
+            return (ResultSet) Proxy.newProxyInstance(RetentionServiceTest.class.getClassLoader(),
+                    new Class<?>[] { ResultSet.class }, (proxy, method, a) -> {
+                        int column = (Integer) a[0];
+                        return switch (method.getName()) {
+                            case "getLong" -> id;
+                            case "getString" -> (String) r[column - 2];
+                            case "getTimestamp" -> r[2];
+                            default -> null;
+                        };
+                    });
+        }
+    }
+
+    private static RetentionService service(FakeTable table, String rules, int chunkSize) {
+        RetentionPolicy policy = new RetentionPolicy();
+        ReflectionTestUtils.setField(policy, "rulesText", rules);
+        policy.init();
+        RetentionService s = new RetentionService(table, policy, null);
+        ReflectionTestUtils.setField(s, "chunkSize", chunkSize);
+        ReflectionTestUtils.setField(s, "maxRowsPerSecond", 0);
+        ReflectionTestUtils.setField(s, "maxThreadsRunning", 0);
+        ReflectionTestUtils.setField(s, "maxReplicationLagSeconds", 0);
+        return s;
+    }
+
+    /** 在 trace_event 上执行一次指定类型的任务 */
+    private static void runTraceEvent(RetentionService s, FakeTable table, String kind) throws Exception {
+        Class<?> jobClass = Class.forName(RetentionService.class.getName() + "$Job");
+        Constructor<?> c = jobClass.getDeclaredConstructor(String.class);
+        c.setAccessible(true);
+        Object job = c.newInstance(kind);
+        List<?> tables = (List<?>) ReflectionTestUtils.getField(RetentionService.class, "TABLES");
+        ReflectionTestUtils.invokeMethod(s, "runTable", table, job, tables.get(0));
+    }
+
+    /** 按 chunkSize 划分主键区间逐块扫描，只删除命中规则的过期行 */
+    @Test
+    void scansInChunksAndDeletesOnlyExpired() throws Exception {
+        FakeTable table = new FakeTable();
+        long old = System.currentTimeMillis() - 20 * DAY;
+        for (long id = 1; id <= 10; id++) {
+            table.add(id, "demo", id % 2 == 0 ? "CLICK" : "ERROR", old + id);
+        }
+        RetentionService s = service(table, "demo:CLICK:7", 3);
+        runTraceEvent(s, table, RetentionService.KIND_RETENTION);
+
+        assertEquals(4, table.scans.size());
+        for (int i = 0; i < table.scans.size(); i++) {
+            assertEquals(1 + 3L * i, table.scans.get(i)[0]);
+            assertTrue(table.scans.get(i)[1] - table.scans.get(i)[0] <= 3);
+        }
+        assertEquals(5, table.deletes.stream().mapToInt(Integer::intValue).sum());
+        assertTrue(table.deletes.stream().allMatch(n -> n <= 3));
+        assertEquals(5, table.rows.size());
+        assertTrue(table.rows.values().stream().allMatch(r -> "ERROR".equals(r[1])));
+    }
+
+    /** 主键与时间同序的表：扫描到整块都未过期即结束本轮，不再扫描后续区间 */
+    @Test
+    void orderedTableStopsAtFreshChunk() throws Exception {
+        FakeTable table = new FakeTable();
+        long now = System.currentTimeMillis();
+        for (long id = 1; id <= 3; id++) table.add(id, "demo", "CLICK", now - 20 * DAY);
+        for (long id = 4; id <= 12; id++) table.add(id, "demo", "CLICK", now);
+        RetentionService s = service(table, "demo:CLICK:7", 3);
+        runTraceEvent(s, table, RetentionService.KIND_RETENTION);
+
+        assertEquals(2, table.scans.size());
+        assertEquals(9, table.rows.size());
+        assertEquals(4L, (long) table.rows.firstKey());
+    }
+
+    /** 清空任务不判定保留规则，按主键区间分块删除全部行 */
+    @Test
+    void purgeDeletesByRange() throws Exception {
+        FakeTable table = new FakeTable();
+        long now = System.currentTimeMillis();
+        for (long id = 1; id <= 7; id++) table.add(id, "demo", "CLICK", now);
+        RetentionService s = service(table, "", 3);
+        runTraceEvent(s, table, RetentionService.KIND_PURGE);
+
+        assertTrue(table.scans.isEmpty());
+        assertEquals(List.of(3, 3, 1), table.deletes);
+        assertTrue(table.rows.isEmpty());
+    }
+}
@@ -0,0 +1,97 @@
+package com.krielwus.webtracinganalysis.service;
+
+import com.krielwus.webtracinganalysis.info.IngestPayload;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 分片环形缓冲通道测试。
+ * 覆盖同一会话固定落在同一分区且分区内先进先出、分区满时入队失败，以及多生产者并发入队不丢不重。
+ */
+class RingIngestChannelTest {
+
+    private static IngestPayload payload(String sessionId, int seq) {
+        IngestPayload p = new IngestPayload(("{\"n\":" + seq + "}").getBytes(StandardCharsets.UTF_8));
+        p.setBaseInfoSlice(0, 0);
+        p.setSessionId(sessionId);
+        return p;
+    }
+
+    private static int seq(IngestPayload p) {
+        String s = new String(p.getSource(), StandardCharsets.UTF_8);
+        return Integer.parseInt(s.substring(5, s.length() - 1));
+    }
+
+    /** 同一会话的载荷落在同一分区，由对应消费线程按入队顺序取出 */
+    @Test
+    void sessionStaysInOneLaneInOrder() throws InterruptedException {
+        RingIngestChannel ch = new RingIngestChannel(4, 1024, RingIngestChannel.WaitStrategy.PARK);
+        assertEquals(4, ch.lanes());
+        for (int i = 0; i < 50; i++) assertTrue(ch.offer(payload("s-1", i), 0, TimeUnit.MILLISECONDS));
+        int lane = ch.laneOf(payload("s-1", 0));
+        List<IngestPayload> out = new ArrayList<>();
+        ch.drainTo(lane, out, Integer.MAX_VALUE);
+        assertEquals(50, out.size());
+        for (int i = 0; i < 50; i++) assertEquals(i, seq(out.get(i)));
+        for (int c = 0; c < 4; c++) {
+            if (c != lane) assertNull(ch.poll(c, 0, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    /** 分区满时入队超时返回 false，取出后恢复 */
+    @Test
+    void fullShardRejects() throws InterruptedException {
+        RingIngestChannel ch = new RingIngestChannel(1, 4, RingIngestChannel.WaitStrategy.YIELD);
+        assertEquals(4, ch.capacity());
+        for (int i = 0; i < 4; i++) assertTrue(ch.offer(payload("s", i), 0, TimeUnit.MILLISECONDS));
+        assertFalse(ch.offer(payload("s", 4), 1, TimeUnit.MILLISECONDS));
+        IngestPayload first = ch.poll(0, 0, TimeUnit.MILLISECONDS);
+        assertEquals(0, seq(first));
+        assertTrue(ch.offer(payload("s", 4), 0, TimeUnit.MILLISECONDS));
+        assertEquals(4, ch.size());
+    }
+
+    /** 多个生产者并发写入单个分区，消费线程取出的条数与各生产者内的顺序均正确 */
+    @Test
+    void concurrentProducers() throws InterruptedException {
+        RingIngestChannel ch = new RingIngestChannel(1, 64, RingIngestChannel.WaitStrategy.YIELD);
+        int producers = 4, perProducer = 5000;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < producers; t++) {
+            final String session = "p" + t;
+            Thread th = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < perProducer; i++) ch.put(payload(session, i));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            th.start();
+            threads.add(th);
+        }
+        start.countDown();
+        int[] next = new int[producers];
+        int total = 0;
+        while (total < producers * perProducer) {
+            IngestPayload p = ch.poll(0, 1000, TimeUnit.MILLISECONDS);
+            assertTrue(p != null, "timed out after " + total);
+            int producer = p.getSessionId().charAt(1) - '0';
+            assertEquals(next[producer]++, seq(p));
+            total++;
+        }
+        for (Thread th : threads) th.join(5000);
+        assertNull(ch.poll(0, 0, TimeUnit.MILLISECONDS));
+    }
+}
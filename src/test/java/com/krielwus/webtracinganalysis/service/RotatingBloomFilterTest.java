@@ -0,0 +1,58 @@
+package com.krielwus.webtracinganalysis.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 轮转布隆过滤器测试。
+ * 覆盖无漏判、误判率接近配置值、误判率估算，以及窗口过后旧键被轮转清除。
+ */
+class RotatingBloomFilterTest {
+
+    /** 写入的键必然命中；未写入键的误判率与估算值都在配置值附近 */
+    @Test
+    void noFalseNegativesAndBoundedFpp() {
+        RotatingBloomFilter f = new RotatingBloomFilter(3, 20000, 0.01, 600_000);
+        SplittableRandom random = new SplittableRandom(42);
+        long[] keys = new long[20000];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = random.nextLong();
+            f.put(keys[i]);
+        }
+        for (long k : keys) assertTrue(f.mightContain(k));
+        int hits = 0;
+        for (int i = 0; i < 100000; i++) {
+            if (f.mightContain(random.nextLong())) hits++;
+        }
+        double observed = hits / 100000.0;
+        assertTrue(observed < 0.02, "observed fpp " + observed);
+        assertTrue(f.estimatedFpp() > 0.005 && f.estimatedFpp() < 0.02, "estimated fpp " + f.estimatedFpp());
+    }
+
+    /** 重复写入同一个键不增加估算的填充量 */
+    @Test
+    void repeatedPutsDoNotInflateEstimate() {
+        RotatingBloomFilter f = new RotatingBloomFilter(2, 1000, 0.01, 600_000);
+        assertEquals(0.0, f.estimatedFpp());
+        f.put(7L);
+        double once = f.estimatedFpp();
+        for (int i = 0; i < 100; i++) f.put(7L);
+        assertEquals(once, f.estimatedFpp());
+    }
+
+    /** 超过窗口后全部代被清空，旧键不再命中 */
+    @Test
+    void forgetsKeysAfterWindow() throws Exception {
+        RotatingBloomFilter f = new RotatingBloomFilter(2, 1000, 0.01, 100);
+        f.put(1L);
+        assertTrue(f.mightContain(1L));
+        Thread.sleep(250);
+        assertFalse(f.mightContain(1L));
+        assertEquals(0.0, f.estimatedFpp());
+    }
+}
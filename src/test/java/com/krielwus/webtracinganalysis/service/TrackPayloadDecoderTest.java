@@ -0,0 +1,88 @@
+package com.krielwus.webtracinganalysis.service;
+
+import com.krielwus.webtracinganalysis.info.IngestEvent;
+import com.krielwus.webtracinganalysis.info.IngestPayload;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * 上报载荷解码测试。
+ * 覆盖字段别名优先级、原始切片保留、baseInfo 标识哈希对易变字段与字段顺序不敏感，
+ * 以及 Smile/CBOR 请求体单遍解码后切片、字段与哈希和 JSON 请求体一致。
+ */
+class TrackPayloadDecoderTest {
+
+    private final TrackPayloadDecoder decoder = new TrackPayloadDecoder();
+
+    private IngestPayload decode(String json) {
+        return decoder.decode(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** 标识字段按别名优先级提取，baseInfo 与事件保留原始 JSON 切片 */
+    @Test
+    void extractsFieldsAndSlices() {
+        IngestPayload p = decode("{\"baseInfo\":{\"APP_CODE\":\"b\",\"appCode\":\"a\",\"sessionId\":\"s1\",\"ext\":{\"k\":[1,2]}},"
+                + "\"eventInfo\":[{\"eventType\":\"PV\",\"URL\":\"/x\",\"triggerPageUrl\":\"/y\"},{\"eventType\":\"ERROR\",\"msg\":\"m\",\"code\":\"500\"}]}");
+        assertEquals("a", p.getAppCode());
+        assertEquals("s1", p.getSessionId());
+        assertEquals("{\"APP_CODE\":\"b\",\"appCode\":\"a\",\"sessionId\":\"s1\",\"ext\":{\"k\":[1,2]}}", p.getBaseInfoJson());
+        assertEquals(2, p.getEvents().size());
+        IngestEvent pv = p.getEvents().get(0);
+        assertEquals("/y", pv.getTriggerPageUrl());
+        assertEquals("{\"eventType\":\"PV\",\"URL\":\"/x\",\"triggerPageUrl\":\"/y\"}", pv.getPayloadJson());
+        IngestEvent err = p.getEvents().get(1);
+        assertEquals("m", err.getErrorMessage());
+        assertEquals("500", err.getErrorCode());
+        assertNull(decode("[1,2]"));
+        assertNull(decode("{\"baseInfo\":"));
+    }
+
+    /** SDK 每次发送都会改变 sendTime，标识哈希不受其与字段顺序影响，但任一标识字段变化时不同 */
+    @Test
+    void baseInfoHashIgnoresVolatileFields() {
+        long a = decode("{\"baseInfo\":{\"appCode\":\"a\",\"deviceId\":\"d\",\"sessionId\":\"s\",\"ext\":{\"x\":1},\"sendTime\":1}}").baseInfoHash();
+        long b = decode("{\"baseInfo\":{\"sendTime\":2,\"sessionId\":\"s\",\"ext\":{\"x\":1},\"deviceId\":\"d\",\"appCode\":\"a\"}}").baseInfoHash();
+        long c = decode("{\"baseInfo\":{\"appCode\":\"a\",\"deviceId\":\"d\",\"sessionId\":\"s2\",\"ext\":{\"x\":1},\"sendTime\":1}}").baseInfoHash();
+        long d = decode("{\"baseInfo\":{\"appCode\":\"a\",\"deviceId\":\"d\",\"sessionId\":\"s\",\"ext\":{\"x\":2},\"sendTime\":1}}").baseInfoHash();
+        assertEquals(a, b);
+        assertNotEquals(a, c);
+        assertNotEquals(a, d);
+        assertEquals(0L, decode("{\"eventInfo\":[]}").baseInfoHash());
+    }
+
+    /** 二进制请求体：存储的源字节为 JSON，切片、字段与标识哈希与同一文档的 JSON 请求体一致 */
+    @Test
+    void binaryBodiesDecodeLikeJson() throws Exception {
+        String json = "{\"baseInfo\":{\"appCode\":\"a\",\"sendTime\":1,\"ext\":{\"k\":[1,2.5,null]}},"
+                + "\"skip\":[{\"x\":1}],\"eventInfo\":[{\"eventType\":\"PV\",\"triggerPageUrl\":\"/y\"},"
+                + "{\"eventType\":\"ERROR\",\"msg\":\"m\",\"n\":{\"deep\":true}}]}";
+        IngestPayload expected = decode(json);
+        Object tree = new ObjectMapper().readValue(json, Object.class);
+        byte[] smile = new ObjectMapper(new SmileFactory()).writeValueAsBytes(tree);
+        byte[] cbor = new ObjectMapper(new CBORFactory()).writeValueAsBytes(tree);
+        for (IngestPayload p : new IngestPayload[] {
+                decoder.decode(smile, TrackPayloadDecoder.CONTENT_TYPE_SMILE),
+                decoder.decode(smile),
+                decoder.decode(cbor, TrackPayloadDecoder.CONTENT_TYPE_CBOR) }) {
+            assertEquals(json, new String(p.getSource(), StandardCharsets.UTF_8));
+            assertEquals(expected.getBaseInfoJson(), p.getBaseInfoJson());
+            assertEquals(expected.baseInfoHash(), p.baseInfoHash());
+            assertEquals("a", p.getAppCode());
+            assertEquals(2, p.getEvents().size());
+            for (int i = 0; i < 2; i++) {
+                assertEquals(expected.getEvents().get(i).getPayloadJson(), p.getEvents().get(i).getPayloadJson());
+            }
+            assertEquals("/y", p.getEvents().get(0).getTriggerPageUrl());
+            assertEquals("m", p.getEvents().get(1).getErrorMessage());
+        }
+        assertNull(decoder.decode(new byte[] { 1, 2, 3 }, TrackPayloadDecoder.CONTENT_TYPE_CBOR));
+    }
+}
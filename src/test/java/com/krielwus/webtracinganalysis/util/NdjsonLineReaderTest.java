@@ -0,0 +1,92 @@
+package com.krielwus.webtracinganalysis.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * NDJSON 行读取测试。
+ * 覆盖 \r\n 行尾、末行无换行、超长行跳过，以及行号与字节偏移在压缩流中途截断时指向首个未读完的行。
+ */
+class NdjsonLineReaderTest {
+
+    private static NdjsonLineReader reader(String s, int maxLineBytes) {
+        return new NdjsonLineReader(new ByteArrayInputStream(s.getBytes(StandardCharsets.UTF_8)), maxLineBytes);
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** 兼容 \r\n，末行没有换行也能读出，偏移随行推进 */
+    @Test
+    void readsLinesAndOffsets() throws IOException {
+        NdjsonLineReader r = reader("{\"a\":1}\r\n{\"b\":2}\n{\"c\":3}", 1024);
+        assertArrayEquals(bytes("{\"a\":1}"), r.next());
+        assertEquals(1, r.lineNumber());
+        assertEquals(9, r.offset());
+        assertArrayEquals(bytes("{\"b\":2}"), r.next());
+        assertEquals(17, r.offset());
+        assertArrayEquals(bytes("{\"c\":3}"), r.next());
+        assertEquals(3, r.lineNumber());
+        assertNull(r.next());
+    }
+
+    /** 超长行被跳过至行尾并标记，后续行不受影响 */
+    @Test
+    void skipsTooLongLine() throws IOException {
+        NdjsonLineReader r = reader("0123456789\nok\n", 4);
+        assertEquals(0, r.next().length);
+        assertTrue(r.lastLineTooLong());
+        assertArrayEquals(bytes("ok"), r.next());
+        assertEquals(2, r.lineNumber());
+    }
+
+    /** gzip 流中途截断：已读出的行保留，偏移指向未读完行的起始位置 */
+    @Test
+    void truncatedGzipKeepsPosition() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 2000; i++) sb.append("{\"n\":").append(i).append("}\n");
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (GZIPOutputStream gz = new GZIPOutputStream(bos)) {
+            gz.write(bytes(sb.toString()));
+        }
+        byte[] full = bos.toByteArray();
+        byte[] cut = Arrays.copyOf(full, full.length / 2);
+
+        NdjsonLineReader r = new NdjsonLineReader(new GZIPInputStream(new ByteArrayInputStream(cut)), 1024);
+        long read = 0;
+        long expectedOffset = 0;
+        try {
+            byte[] line;
+            while ((line = r.next()) != null) {
+                read++;
+                expectedOffset += line.length + 1;
+            }
+        } catch (EOFException expected) {
+            // 预期路径
+        }
+        assertTrue(read > 0 && read < 2000);
+        assertEquals(read, r.lineNumber());
+        assertEquals(expectedOffset, r.offset());
+        assertThrows(EOFException.class, () -> {
+            NdjsonLineReader again = new NdjsonLineReader(new GZIPInputStream(new ByteArrayInputStream(cut)), 1024);
+            while (again.next() != null) {
+                // 读到截断处
+            }
+        });
+    }
+}
@@ -0,0 +1,58 @@
+package com.krielwus.webtracinganalysis.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * 原始查询串参数解码测试。
+ * 覆盖 '+' 与百分号解码、非法转义原样保留、参数名为其他参数前缀、无 '=' 的裸参数，以及非 ASCII 字符（含代理对）重新编码为 UTF-8。
+ */
+class QueryParamDecoderTest {
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** '+' 解为空格，%XX 大小写均可，多字节 UTF-8 转义按字节还原 */
+    @Test
+    void decodesPlusAndPercent() {
+        assertArrayEquals(bytes("{\"a\": 1}"), QueryParamDecoder.decode("v=%7B%22a%22%3a+1%7d", "v"));
+        assertArrayEquals(bytes("中"), QueryParamDecoder.decode("x=1&v=%E4%B8%AD", "v"));
+    }
+
+    /** 非法或不完整的百分号转义按原字符保留 */
+    @Test
+    void keepsMalformedEscapes() {
+        assertArrayEquals(bytes("%zz%4"), QueryParamDecoder.decode("v=%zz%4", "v"));
+        assertArrayEquals(bytes("a%"), QueryParamDecoder.decode("v=a%&w=1", "v"));
+        assertArrayEquals(bytes("%G1A"), QueryParamDecoder.decode("v=%G1%41", "v"));
+    }
+
+    /** 参数名只按整段匹配：vv= 不会被当作 v，取首个出现的取值 */
+    @Test
+    void matchesWholeNameOnly() {
+        assertArrayEquals(bytes("2"), QueryParamDecoder.decode("vv=1&v=2&v=3", "v"));
+        assertNull(QueryParamDecoder.decode("vv=1&xv=2", "v"));
+        assertNull(QueryParamDecoder.decode("", "v"));
+        assertNull(QueryParamDecoder.decode(null, "v"));
+    }
+
+    /** 没有 '=' 的裸参数与空取值均解为空字节数组 */
+    @Test
+    void bareAndEmptyValues() {
+        assertArrayEquals(new byte[0], QueryParamDecoder.decode("a=1&v", "v"));
+        assertArrayEquals(new byte[0], QueryParamDecoder.decode("v&v=2", "v"));
+        assertArrayEquals(new byte[0], QueryParamDecoder.decode("v=&a=1", "v"));
+    }
+
+    /** 容器已解出的非 ASCII 字符重新编码为 UTF-8，代理对按单个码点编码为 4 字节 */
+    @Test
+    void reencodesNonAscii() {
+        assertArrayEquals(bytes("é中😀x"), QueryParamDecoder.decode("v=é中😀x", "v"));
+        assertArrayEquals(bytes("😀😀😀 a"), QueryParamDecoder.decode("v=😀😀😀+a", "v"));
+    }
+}